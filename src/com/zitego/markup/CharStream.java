@@ -0,0 +1,309 @@
+package com.zitego.markup;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This is a CharSequence over the characters read from a Reader. Only a window of the text is kept
+ * in memory. Characters are read as they are asked for and the text before the point that was
+ * passed to release is dropped when more room is needed. This allows a ParseCursor to parse a
+ * large document without the entire document being read into a StringBuffer first. The length
+ * of the sequence is the number of characters that have been read so far. Asking for a character
+ * reads ahead until that character and the ones after it are available or the end of the stream
+ * is reached. Asking for a character that has been released results in an IllegalStateException.<br>
+ * <br>
+ * Read errors end the stream. They can be checked for by calling checkError once parsing is
+ * done. The Reader is not closed by this class.
+ *
+ * @author John Glorioso
+ * @version $Id$
+ */
+public class CharStream implements CharSequence
+{
+    /** The default number of characters to read at a time. */
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+    /** The number of characters read ahead of the last character asked for. */
+    private static final int READ_AHEAD = 1024;
+    /** The number of bytes to look for a meta charset tag in. */
+    private static final int SNIFF_SIZE = 1024;
+    /** The pattern to find a charset in a meta tag or xml declaration. */
+    private static final Pattern CHARSET_PATTERN = Pattern.compile
+    (
+        "<meta[^>]+charset\\s*=\\s*[\"']?([a-zA-Z0-9_:.\\-]+)|<\\?xml[^>]+encoding\\s*=\\s*[\"']([a-zA-Z0-9_:.\\-]+)",
+        Pattern.CASE_INSENSITIVE
+    );
+    /** The charset to use when one is not given or found. */
+    private static final String DEFAULT_CHARSET = "ISO-8859-1";
+
+    private Reader _in;
+    /** The characters in the window. */
+    private char[] _buf;
+    /** The index in the text of the first character in the window. */
+    private int _offset = 0;
+    /** The number of characters in the window. */
+    private int _count = 0;
+    /** The index in the text before which characters can be dropped. */
+    private int _released = 0;
+    private boolean _eof = false;
+    private IOException _error;
+
+    /**
+     * Creates a new CharStream over the given reader.
+     *
+     * @param in The reader.
+     * @throws IllegalArgumentException if the reader is null.
+     */
+    public CharStream(Reader in) throws IllegalArgumentException
+    {
+        this(in, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a new CharStream over the given reader with the given initial window size.
+     *
+     * @param in The reader.
+     * @param size The initial number of characters in the window.
+     * @throws IllegalArgumentException if the reader is null or the size is less then 1.
+     */
+    public CharStream(Reader in, int size) throws IllegalArgumentException
+    {
+        if (in == null) throw new IllegalArgumentException("reader cannot be null");
+        if (size < 1) throw new IllegalArgumentException("Invalid buffer size: "+size);
+        _in = in;
+        _buf = new char[size];
+    }
+
+    /**
+     * Creates a new CharStream over the given byte stream. The charset is detected from the byte
+     * order mark if there is one. Otherwise, the given charset is used. If that is null, then
+     * the charset is taken from a meta tag or xml declaration at the start of the document. If
+     * there is not one, then ISO-8859-1 is used.
+     *
+     * @param in The byte stream.
+     * @param charset The charset of the stream or null to detect it.
+     * @return CharStream
+     * @throws IOException if an error occurs reading the start of the stream.
+     * @throws IllegalArgumentException if the stream is null.
+     */
+    public static CharStream forInputStream(InputStream in, Charset charset) throws IOException, IllegalArgumentException
+    {
+        if (in == null) throw new IllegalArgumentException("stream cannot be null");
+        BufferedInputStream bin = new BufferedInputStream(in);
+        return new CharStream( new InputStreamReader(bin, detectCharset(bin, charset)) );
+    }
+
+    /**
+     * Returns the charset of the given byte stream. A byte order mark is skipped over if there is one.
+     * See <code>forInputStream(InputStream, Charset)</code> for how the charset is determined.
+     *
+     * @param in The byte stream. It must support mark.
+     * @param charset The charset of the stream or null to detect it.
+     * @return Charset
+     * @throws IOException if an error occurs reading the start of the stream.
+     */
+    public static Charset detectCharset(InputStream in, Charset charset) throws IOException
+    {
+        byte[] head = new byte[SNIFF_SIZE];
+        in.mark(SNIFF_SIZE);
+        int len = 0;
+        int read = 0;
+        while ( len < head.length && (read=in.read(head, len, head.length-len)) != -1 )
+        {
+            len += read;
+        }
+        in.reset();
+
+        in.skip( bomLength(head, len) );
+        return detectCharset(head, len, charset);
+    }
+
+    /**
+     * Returns the charset of the text that starts with the given bytes. See
+     * <code>forInputStream(InputStream, Charset)</code> for how the charset is determined.
+     *
+     * @param head The first bytes of the text.
+     * @param len The number of bytes in the head.
+     * @param charset The charset of the text or null to detect it.
+     * @return Charset
+     */
+    static Charset detectCharset(byte[] head, int len, Charset charset)
+    {
+        //The byte order mark always wins
+        int bom = bomLength(head, len);
+        if (bom == 3) return Charset.forName("UTF-8");
+        else if (bom == 2) return Charset.forName( (head[0]&0xff) == 0xfe ? "UTF-16BE" : "UTF-16LE" );
+        if (charset != null) return charset;
+
+        Matcher m = CHARSET_PATTERN.matcher( new String(head, 0, len, Charset.forName(DEFAULT_CHARSET)) );
+        if ( m.find() )
+        {
+            String name = ( m.group(1) != null ? m.group(1) : m.group(2) );
+            try
+            {
+                if ( Charset.isSupported(name) ) return Charset.forName(name);
+            }
+            catch (IllegalArgumentException iae) { }
+        }
+        return Charset.forName(DEFAULT_CHARSET);
+    }
+
+    /**
+     * Returns the number of bytes in the byte order mark at the start of the given bytes or
+     * zero if there is not one.
+     *
+     * @param head The first bytes of the text.
+     * @param len The number of bytes in the head.
+     * @return int
+     */
+    static int bomLength(byte[] head, int len)
+    {
+        if (len >= 3 && (head[0]&0xff) == 0xef && (head[1]&0xff) == 0xbb && (head[2]&0xff) == 0xbf) return 3;
+        else if ( len >= 2 && (head[0]&0xff) == 0xfe && (head[1]&0xff) == 0xff ) return 2;
+        else if ( len >= 2 && (head[0]&0xff) == 0xff && (head[1]&0xff) == 0xfe ) return 2;
+        else return 0;
+    }
+
+    /**
+     * Returns the number of characters that have been read so far. Once the end of the stream
+     * has been reached, this is the length of the text.
+     *
+     * @return int
+     */
+    public int length()
+    {
+        return _offset + _count;
+    }
+
+    /**
+     * Returns the character at the given index in the text. It is read from the stream if it
+     * has not been yet.
+     *
+     * @param index The index.
+     * @return char
+     * @throws IndexOutOfBoundsException if the index is passed the end of the text.
+     * @throws IllegalStateException if the index has been released.
+     */
+    public char charAt(int index) throws IndexOutOfBoundsException, IllegalStateException
+    {
+        if (index < _offset) throw new IllegalStateException("Text at "+index+" has been released");
+        if ( !ensure(index) ) throw new IndexOutOfBoundsException("Index passed the end of the text: "+index);
+        return _buf[index-_offset];
+    }
+
+    public CharSequence subSequence(int start, int end)
+    {
+        if (start < _offset) throw new IllegalStateException("Text at "+start+" has been released");
+        if ( start > end || (end > 0 && !ensure(end-1)) ) throw new IndexOutOfBoundsException("Invalid range: "+start+" to "+end);
+        return new String(_buf, start-_offset, end-start);
+    }
+
+    /**
+     * Reads from the stream until the character at the given index is available and returns
+     * whether it is. The stream is always read at least 1024 characters passed the index unless
+     * the end is reached. This way, the length is always more then the index of any character
+     * that has been asked for until the end of the stream.
+     *
+     * @param index The index.
+     * @return boolean
+     */
+    public boolean ensure(int index)
+    {
+        while ( index+READ_AHEAD >= _offset+_count && !_eof )
+        {
+            fill( index + 1 + READ_AHEAD - (_offset+_count) );
+        }
+        return (index < _offset+_count);
+    }
+
+    /**
+     * Lets the text before the given index be dropped the next time more room is needed.
+     *
+     * @param index The index.
+     */
+    public void release(int index)
+    {
+        if (index > _released) _released = Math.min( index, length() );
+    }
+
+    /**
+     * Returns whether the end of the stream has been reached.
+     *
+     * @return boolean
+     */
+    public boolean isEof()
+    {
+        return _eof;
+    }
+
+    /**
+     * Throws the error that ended the stream if there was one.
+     *
+     * @throws IOException
+     */
+    public void checkError() throws IOException
+    {
+        if (_error != null) throw _error;
+    }
+
+    /**
+     * Reads at least the given number of characters into the window unless the end of the stream is
+     * reached first. Released text is dropped to make room before the window is grown.
+     *
+     * @param needed The number of characters.
+     */
+    private void fill(int needed)
+    {
+        if (_count+needed > _buf.length)
+        {
+            //Drop the released text first
+            int drop = _released - _offset;
+            if (drop > 0)
+            {
+                System.arraycopy(_buf, drop, _buf, 0, _count-drop);
+                _offset += drop;
+                _count -= drop;
+            }
+            if (_count+needed > _buf.length)
+            {
+                char[] tmp = new char[ Math.max(_buf.length*2, _count+needed) ];
+                System.arraycopy(_buf, 0, tmp, 0, _count);
+                _buf = tmp;
+            }
+        }
+        int goal = _count + needed;
+        try
+        {
+            while (_count < goal)
+            {
+                int read = _in.read(_buf, _count, _buf.length-_count);
+                if (read == -1)
+                {
+                    _eof = true;
+                    return;
+                }
+                _count += read;
+            }
+        }
+        catch (IOException ioe)
+        {
+            _error = ioe;
+            _eof = true;
+        }
+    }
+
+    /**
+     * Returns the text in the window.
+     *
+     * @return String
+     */
+    public String toString()
+    {
+        return new String(_buf, 0, _count);
+    }
+}
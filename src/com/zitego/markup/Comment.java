@@ -117,20 +117,42 @@ public class Comment extends MarkupContent
      */
     public static MarkupContent[] checkForComments(StringBuffer txt, MarkupContent parent, FormatType type)
     throws IllegalMarkupException, UnsupportedFormatException
+    {
+        if (txt == null) return new MarkupContent[0];
+        ParseCursor cursor = new ParseCursor( txt.toString() );
+        MarkupContent[] comments = checkForComments(cursor, parent, type);
+        txt.delete( 0, cursor.getPosition() );
+        return comments;
+    }
+
+    /**
+     * This method checks the text at the given cursor to see if it is a comment the same way as
+     * the StringBuffer version of this method. The cursor is advanced past the comments found.
+     *
+     * @param txt The cursor to check.
+     * @param parent The parent (can be null).
+     * @param type The format type for parsing the comments.
+     * @return MarkupContent[]
+     * @throws IllegalMarkupException if the markup is not legal for comments.
+     * @throws UnsupportedFormatException if the format type is not supported.
+     */
+    public static MarkupContent[] checkForComments(ParseCursor txt, MarkupContent parent, FormatType type)
+    throws IllegalMarkupException, UnsupportedFormatException
     {
         MarkupContent[] comments = new MarkupContent[0];
         if (txt == null) return comments;
 
         Vector tmp = new Vector();
-        StringBuffer pre = removeLeadingSpaces(txt);
-        if ( pre.length() > 0 && parent != null && parent.preserveWhiteSpace() ) tmp.add( addWhiteSpace(pre.toString(), parent) );
+        boolean preserve = (parent != null && parent.preserveWhiteSpace());
+        CharSequence pre = skipLeadingSpaces(txt, preserve);
+        if (pre != null) tmp.add( addWhiteSpace(pre.toString(), parent) );
         while( txt.length() > 1 && txt.charAt(0) == '/' && (txt.charAt(1) == '/' || txt.charAt(1) == '*') )
         {
             Comment c = ( parent != null ? new Comment(parent) : new Comment() );
             c.parse(txt, type);
             tmp.add(c);
-            pre = removeLeadingSpaces(txt);
-            if ( pre.length() > 0 && parent != null && parent.preserveWhiteSpace() ) tmp.add( addWhiteSpace(pre.toString(), parent) );
+            pre = skipLeadingSpaces(txt, preserve);
+            if (pre != null) tmp.add( addWhiteSpace(pre.toString(), parent) );
         }
         comments = new MarkupContent[tmp.size()];
         tmp.copyInto(comments);
@@ -170,25 +192,25 @@ public class Comment extends MarkupContent
         }
     }
 
-    public void parseText(StringBuffer text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
+    public void parseText(ParseCursor text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
     {
         if (text == null) return;
 
-        removeLeadingSpaces(text);
+        skipLeadingSpaces(text);
         //The next two characters should be "//" or "/*". Error if not.
-        if (text.length() < 2 || text.charAt(0) != '/') throw new IllegalMarkupException("Invalid comment: "+text);
+        if (text.length() < 2 || text.charAt(0) != '/') throw new IllegalMarkupException("Invalid comment: "+text.peek(25));
         if (text.charAt(1) == '/') _type = SINGLE_LINE;
         else if (text.charAt(1) == '*') _type = WRAPPED;
-        else throw new IllegalMarkupException("Invalid comment: "+text);
+        else throw new IllegalMarkupException("Invalid comment: "+text.peek(25));
 
-        //Remove that
-        text.delete(0, 2);
+        //Skip that
+        text.skip(2);
         //Look for extra *
         while (text.length() > 0 && text.charAt(0) == '*')
         {
-            text.deleteCharAt(0);
+            text.skip(1);
         }
-        removeLeadingSpaces(text);
+        skipLeadingSpaces(text);
 
         //Set the comment
         StringBuffer comment = new StringBuffer();
@@ -199,37 +221,46 @@ public class Comment extends MarkupContent
             {
                 //At the end here...
                 setComment( comment.toString().trim() );
-                text.deleteCharAt(0);
-                if (text.charAt(0) == '\r' || text.charAt(0) == '\n') text.deleteCharAt(0);
+                text.skip(1);
+                if (text.charAt(0) == '\r' || text.charAt(0) == '\n') text.skip(1);
             }
             else if (c == '*')
             {
                 //If the current char is an asterisk, see if the next is the end or not
                 //and make sure that we don't just have a line of them to the end
-                StringBuffer asterisks = new StringBuffer();
-                asterisks.append(c);
-                text.deleteCharAt(0);
+                int asterisks = 1;
+                text.skip(1);
                 while (text.length() > 0 && (c=text.charAt(0)) == '*')
                 {
-                    asterisks.append(c);
-                    text.deleteCharAt(0);
+                    asterisks++;
+                    text.skip(1);
                 }
                 if (c == '/')
                 {
                     //At the end here...
-                    text.deleteCharAt(0);
+                    text.skip(1);
                     break;
                 }
                 else
                 {
-                    comment.append(asterisks);
+                    for (int i=0; i<asterisks; i++)
+                    {
+                        comment.append('*');
+                    }
                 }
             }
             else
             {
-                comment.append(c);
+                //Take the run of characters up to the next one that could end the comment at once
+                int i = 1;
+                while ( i < text.length() && (c=text.charAt(i)) != '*' && (_type != SINGLE_LINE || (c != '\r' && c != '\n')) )
+                {
+                    i++;
+                }
+                comment.append( text.consume(i) );
+                continue;
             }
-            text.deleteCharAt(0);
+            text.skip(1);
         }
         _comment = comment.toString().trim();
     }
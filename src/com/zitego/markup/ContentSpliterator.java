@@ -0,0 +1,177 @@
+package com.zitego.markup;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * This goes through the content under, in the body of, or above a piece of content one at a time
+ * as it is asked for. Nothing is copied up front, so a caller that stops early does not pay for the
+ * rest of the tree. The content under is gone through in the order it is in the document with a
+ * stack of its own rather then by recursion, so deep trees do not run out of stack. The document
+ * should not be changed while it is being gone through.<br>
+ * <br>
+ * The content under and in the body can be split to be gone through in parallel. The stack is split
+ * at the lowest body that has more then one content left to go through. The first half of what is
+ * left in that body and everything above it in the stack is split off, and the rest of that body and
+ * everything below it is kept. A document that is parsed lazily is not split, since going through
+ * it parses bodies into the document.
+ *
+ * @author John Glorioso
+ * @version $Id$
+ */
+class ContentSpliterator implements Spliterator<MarkupContent>
+{
+    /** Goes through all of the content under the content. */
+    static final int DESCENDANTS = 0;
+    /** Goes through the content in the body of the content. */
+    static final int CHILDREN = 1;
+    /** Goes through the parents of the content up to the top. */
+    static final int ANCESTORS = 2;
+
+    private int _kind;
+    /** The bodies being gone through with the top of the stack last. */
+    private MarkupBody[] _bodies;
+    /** The index of the next content in each of the bodies. */
+    private int[] _indexes;
+    /** The index just past the last content to go through in each of the bodies. */
+    private int[] _ends;
+    private int _depth = 0;
+    /** The next parent to return when going through the parents. */
+    private MarkupContent _next;
+    /** Whether the stack can be split. */
+    private boolean _splittable;
+
+    /**
+     * Creates a new spliterator of the given kind starting at the given content.
+     *
+     * @param content The content.
+     * @param kind The kind.
+     */
+    ContentSpliterator(MarkupContent content, int kind)
+    {
+        _kind = kind;
+        _splittable = ( kind != ANCESTORS && !content.isLazyParsing() );
+        if (kind == ANCESTORS)
+        {
+            _next = content.getParent();
+        }
+        else
+        {
+            _bodies = new MarkupBody[16];
+            _indexes = new int[16];
+            _ends = new int[16];
+            push( content.getBody() );
+        }
+    }
+
+    /**
+     * Creates a new spliterator with the given part of another's stack.
+     *
+     * @param kind The kind.
+     * @param bodies The bodies.
+     * @param indexes The index of the next content in each of the bodies.
+     * @param ends The index just past the last content in each of the bodies.
+     * @param depth The number of bodies in the stack.
+     */
+    private ContentSpliterator(int kind, MarkupBody[] bodies, int[] indexes, int[] ends, int depth)
+    {
+        _kind = kind;
+        _bodies = bodies;
+        _indexes = indexes;
+        _ends = ends;
+        _depth = depth;
+        _splittable = true;
+    }
+
+    public boolean tryAdvance(Consumer<? super MarkupContent> action)
+    {
+        if (_kind == ANCESTORS)
+        {
+            if (_next == null) return false;
+            MarkupContent ret = _next;
+            _next = ret.getParent();
+            action.accept(ret);
+            return true;
+        }
+        while (_depth > 0)
+        {
+            int top = _depth-1;
+            if (_indexes[top] < _ends[top])
+            {
+                MarkupContent ret = (MarkupContent)_bodies[top].get( _indexes[top]++ );
+                if (_kind == DESCENDANTS) push( ret.getBody() );
+                action.accept(ret);
+                return true;
+            }
+            _bodies[top] = null;
+            _depth--;
+        }
+        return false;
+    }
+
+    public Spliterator<MarkupContent> trySplit()
+    {
+        if (!_splittable) return null;
+        for (int i=0; i<_depth; i++)
+        {
+            int left = _ends[i] - _indexes[i];
+            if (left < 2) continue;
+            int mid = _indexes[i] + left/2;
+            //The bodies above this one come first, so they go with the first half
+            int depth = _depth - i;
+            MarkupBody[] bodies = new MarkupBody[Math.max(depth, 16)];
+            int[] indexes = new int[bodies.length];
+            int[] ends = new int[bodies.length];
+            System.arraycopy(_bodies, i, bodies, 0, depth);
+            System.arraycopy(_indexes, i, indexes, 0, depth);
+            System.arraycopy(_ends, i, ends, 0, depth);
+            ends[0] = mid;
+            for (int j=i+1; j<_depth; j++)
+            {
+                _bodies[j] = null;
+            }
+            _indexes[i] = mid;
+            _depth = i+1;
+            return new ContentSpliterator(_kind, bodies, indexes, ends, depth);
+        }
+        return null;
+    }
+
+    public long estimateSize()
+    {
+        if (_kind == CHILDREN) return (_depth > 0 ? _ends[0] - _indexes[0] : 0);
+        return Long.MAX_VALUE;
+    }
+
+    public int characteristics()
+    {
+        int ret = ORDERED | NONNULL;
+        if (_kind == CHILDREN) ret |= SIZED | SUBSIZED;
+        return ret;
+    }
+
+    /**
+     * Starts going through the given body.
+     *
+     * @param body The body.
+     */
+    private void push(MarkupBody body)
+    {
+        if (_depth == _bodies.length)
+        {
+            MarkupBody[] bodies = new MarkupBody[_depth*2];
+            int[] indexes = new int[_depth*2];
+            int[] ends = new int[_depth*2];
+            System.arraycopy(_bodies, 0, bodies, 0, _depth);
+            System.arraycopy(_indexes, 0, indexes, 0, _depth);
+            System.arraycopy(_ends, 0, ends, 0, _depth);
+            _bodies = bodies;
+            _indexes = indexes;
+            _ends = ends;
+        }
+        _bodies[_depth] = body;
+        _indexes[_depth] = 0;
+        _ends[_depth] = body.size();
+        _depth++;
+    }
+}
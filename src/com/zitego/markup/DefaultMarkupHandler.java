@@ -0,0 +1,23 @@
+package com.zitego.markup;
+
+/**
+ * A MarkupHandler that ignores every event. Extend this and override only the events
+ * that are needed.
+ *
+ * @author John Glorioso
+ * @version $Id$
+ */
+public class DefaultMarkupHandler implements MarkupHandler
+{
+    public void doctype(String text) { }
+
+    public void startTag(String name) { }
+
+    public void attribute(String name, CharSequence value, char quote) { }
+
+    public void text(String text) { }
+
+    public void comment(String text) { }
+
+    public void endTag(String name) { }
+}
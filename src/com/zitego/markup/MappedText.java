@@ -0,0 +1,176 @@
+package com.zitego.markup;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * This is a read-only CharSequence view of a memory mapped file. The file is never read into the
+ * heap. Only the pages of it that are looked at are loaded by the operating system, so very large
+ * documents can be parsed with a ParseCursor without the memory used growing with the size of
+ * the file. Sub sequences are views of the same mapping, so text and attribute values that are
+ * parsed from it point back into the file until they are modified. They are only decoded into
+ * Strings when asked for.<br>
+ * <br>
+ * Each byte of the file is one character in the sequence. This is correct for single byte charsets
+ * that share the ascii characters (such as ISO-8859-1 and windows-1252). For UTF-8, the ascii
+ * characters that make up markup are still found where they are, and the bytes of other characters
+ * only show up as characters above 127. The text is decoded with the file's charset when toString is
+ * called, so the Strings returned are always correct. Files in other charsets cannot be viewed this way
+ * and are decoded by <code>map(File, Charset)</code> instead.<br>
+ * <br>
+ * The file must not be changed while the mapping is in use.
+ *
+ * @author John Glorioso
+ * @version $Id$
+ */
+public class MappedText implements CharSequence
+{
+    /** The number of bytes to look for a meta charset tag in. */
+    private static final int SNIFF_SIZE = 1024;
+    /** The ascii characters that must be encoded as themselves for a charset to be viewed as bytes. */
+    private static final String ASCII;
+    static
+    {
+        StringBuffer ascii = new StringBuffer("\t\r\n");
+        for (char c=' '; c<127; c++)
+        {
+            ascii.append(c);
+        }
+        ASCII = ascii.toString();
+    }
+
+    /** The mapped bytes. */
+    private ByteBuffer _bytes;
+    /** The index in the bytes of the first character. */
+    private int _start;
+    /** The number of characters. */
+    private int _length;
+    /** The charset to decode the bytes with. */
+    private Charset _charset;
+
+    /**
+     * Creates a new view of the given bytes.
+     *
+     * @param bytes The bytes.
+     * @param start The index of the first byte.
+     * @param length The number of bytes.
+     * @param charset The charset to decode the bytes with.
+     */
+    private MappedText(ByteBuffer bytes, int start, int length, Charset charset)
+    {
+        _bytes = bytes;
+        _start = start;
+        _length = length;
+        _charset = charset;
+    }
+
+    /**
+     * Maps the given file into memory and returns its text. The charset is detected the same way
+     * as <code>CharStream.forInputStream(InputStream, Charset)</code>. A byte order mark is not
+     * part of the text. If the charset can be viewed a byte at a time, a MappedText is returned.
+     * Otherwise, the mapped file is decoded into a CharBuffer.
+     *
+     * @param f The file.
+     * @param charset The charset of the file or null to detect it.
+     * @return CharSequence
+     * @throws IOException if an error occurs mapping the file or it is too large to map.
+     * @throws IllegalArgumentException if the file is null.
+     */
+    public static CharSequence map(File f, Charset charset) throws IOException, IllegalArgumentException
+    {
+        if (f == null) throw new IllegalArgumentException("file cannot be null");
+        FileInputStream in = new FileInputStream(f);
+        try
+        {
+            FileChannel channel = in.getChannel();
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) throw new IOException(f+" is too large to map: "+size+" bytes");
+            //The mapping stays valid once the channel is closed
+            ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            byte[] head = new byte[ (int)Math.min(size, SNIFF_SIZE) ];
+            for (int i=0; i<head.length; i++)
+            {
+                head[i] = bytes.get(i);
+            }
+            charset = CharStream.detectCharset(head, head.length, charset);
+            int bom = CharStream.bomLength(head, head.length);
+
+            if ( isByteCompatible(charset) ) return new MappedText(bytes, bom, (int)size-bom, charset);
+            bytes.position(bom);
+            return charset.decode(bytes);
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    /**
+     * Returns whether text in the given charset can be viewed one byte per character. That is,
+     * the charset is UTF-8 or encodes each character as one byte with the ascii characters
+     * encoded as themselves.
+     *
+     * @param charset The charset.
+     * @return boolean
+     */
+    public static boolean isByteCompatible(Charset charset)
+    {
+        if ( "UTF-8".equals(charset.name()) ) return true;
+        if ( !charset.canEncode() || charset.newEncoder().maxBytesPerChar() != 1f ) return false;
+        return Arrays.equals( ASCII.getBytes(charset), ASCII.getBytes(Charset.forName("US-ASCII")) );
+    }
+
+    /**
+     * Returns the charset the text is decoded with.
+     *
+     * @return Charset
+     */
+    public Charset getCharset()
+    {
+        return _charset;
+    }
+
+    public int length()
+    {
+        return _length;
+    }
+
+    public char charAt(int index) throws IndexOutOfBoundsException
+    {
+        if (index < 0 || index >= _length) throw new IndexOutOfBoundsException("Invalid index: "+index);
+        return (char)(_bytes.get(_start+index) & 0xff);
+    }
+
+    /**
+     * Returns a view of the given range of the text. No bytes are copied.
+     *
+     * @param start The start index.
+     * @param end The end index.
+     * @return CharSequence
+     * @throws IndexOutOfBoundsException if the range is invalid.
+     */
+    public CharSequence subSequence(int start, int end) throws IndexOutOfBoundsException
+    {
+        if (start < 0 || end > _length || start > end) throw new IndexOutOfBoundsException("Invalid range: "+start+" to "+end);
+        return new MappedText(_bytes, _start+start, end-start, _charset);
+    }
+
+    /**
+     * Returns the text decoded with the charset.
+     *
+     * @return String
+     */
+    public String toString()
+    {
+        ByteBuffer bytes = _bytes.duplicate();
+        bytes.limit(_start+_length);
+        bytes.position(_start);
+        return _charset.decode(bytes).toString();
+    }
+}
@@ -3,20 +3,42 @@ package com.zitego.markup;
 import com.zitego.markup.MarkupContent;
 import com.zitego.markup.tag.SpecialChar;
 import com.zitego.format.*;
-import java.util.Vector;
+import java.util.AbstractList;
+import java.util.Enumeration;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
 
 /**
  * This class hold multiple MarkupContents that makeup the
  * body of a parent MarkupContent. Content can be added by calling
- * the <code>addContent(MarkupContent)</code> method.
+ * the <code>addContent(MarkupContent)</code> method.<br>
+ * <br>
+ * When the parent is parsed lazily (see <code>MarkupContent.setLazyParsing(boolean)</code>), the text of
+ * the body is kept as it was and parsed the first time the parent's body is asked for. Until then, the
+ * body formats as the text it was parsed from.<br>
+ * <br>
+ * The children are kept in an array without any locking. Each child keeps the index it is at in
+ * the body it was last added to, so finding or checking for a child does not have to search the
+ * body. Content is only meant to be in one body at a time. If it is in more then one, it is still
+ * found, but by searching the body. The Vector methods that a body used to
+ * have are still here, so code written against it does not have to change.
  *
  * @author John Glorioso
  * @version $Id: MarkupBody.java,v 1.1.1.1 2008/02/20 15:01:12 jglorioso Exp $
  */
-public class MarkupBody extends Vector implements Formattable
+public class MarkupBody extends AbstractList implements RandomAccess, Formattable
 {
+    private static final MarkupContent[] NO_CONTENT = new MarkupContent[0];
     /** The parent. */
     private MarkupContent _parent;
+    /** The children. */
+    private MarkupContent[] _content = NO_CONTENT;
+    /** The number of children. */
+    private int _size = 0;
+    /** The text of the body that has not been parsed yet or null if it has been. */
+    private ParseCursor _deferredText;
+    /** The format type to parse the deferred text as. */
+    private FormatType _deferredType;
 
     /**
      * Creates a new MarkupBody with a parent.
@@ -39,20 +61,400 @@ public class MarkupBody extends Vector implements Formattable
         return _parent;
     }
 
+    public int size()
+    {
+        return _size;
+    }
+
+    public Object get(int index)
+    {
+        checkIndex(index, _size);
+        return _content[index];
+    }
+
+    public Object set(int index, Object obj)
+    {
+        checkIndex(index, _size);
+        MarkupContent old = _content[index];
+        if (old != null) removed(old, index);
+        _content[index] = (MarkupContent)obj;
+        if (obj != null)
+        {
+            _content[index]._bodyIndex = index;
+            _content[index]._bodyCount++;
+        }
+        return old;
+    }
+
+    public boolean add(Object obj)
+    {
+        add(_size, obj);
+        return true;
+    }
+
+    public void add(int index, Object obj)
+    {
+        checkIndex(index, _size+1);
+        MarkupContent content = (MarkupContent)obj;
+        if (_size == _content.length)
+        {
+            MarkupContent[] tmp = new MarkupContent[(_size < 4 ? 4 : _size*2)];
+            System.arraycopy(_content, 0, tmp, 0, _size);
+            _content = tmp;
+        }
+        if (index < _size) System.arraycopy(_content, index, _content, index+1, _size-index);
+        _content[index] = content;
+        _size++;
+        modCount++;
+        if (content != null) content._bodyCount++;
+        updateIndexes(index);
+    }
+
+    public Object remove(int index)
+    {
+        checkIndex(index, _size);
+        MarkupContent ret = _content[index];
+        _size--;
+        if (index < _size) System.arraycopy(_content, index+1, _content, index, _size-index);
+        _content[_size] = null;
+        modCount++;
+        if (ret != null) removed(ret, index);
+        updateIndexes(index);
+        return ret;
+    }
+
+    public boolean remove(Object obj)
+    {
+        int index = indexOf(obj);
+        if (index == -1) return false;
+        remove(index);
+        return true;
+    }
+
+    public int indexOf(Object obj)
+    {
+        if (obj instanceof MarkupContent)
+        {
+            //The index the content keeps is right unless it has been added to another body since
+            MarkupContent content = (MarkupContent)obj;
+            if (content._bodyCount == 0) return -1;
+            int index = content._bodyIndex;
+            if (index > -1 && index < _size && _content[index] == obj) return index;
+        }
+        else if (obj != null)
+        {
+            return -1;
+        }
+        for (int i=0; i<_size; i++)
+        {
+            if (_content[i] == obj) return i;
+        }
+        return -1;
+    }
+
+    public int lastIndexOf(Object obj)
+    {
+        //Content is only ever in the body once
+        return indexOf(obj);
+    }
+
+    public boolean contains(Object obj)
+    {
+        return (indexOf(obj) > -1);
+    }
+
+    public void clear()
+    {
+        for (int i=0; i<_size; i++)
+        {
+            if (_content[i] != null) removed(_content[i], i);
+            _content[i] = null;
+        }
+        _size = 0;
+        modCount++;
+    }
+
+    /**
+     * Returns the child at the given index. This is the same as get(int).
+     *
+     * @param index The index.
+     * @return Object
+     * @throws IndexOutOfBoundsException if the index is not valid.
+     */
+    public Object elementAt(int index) throws IndexOutOfBoundsException
+    {
+        return get(index);
+    }
+
+    /**
+     * Returns the first child.
+     *
+     * @return Object
+     * @throws NoSuchElementException if the body is empty.
+     */
+    public Object firstElement() throws NoSuchElementException
+    {
+        if (_size == 0) throw new NoSuchElementException();
+        return _content[0];
+    }
+
+    /**
+     * Returns the last child.
+     *
+     * @return Object
+     * @throws NoSuchElementException if the body is empty.
+     */
+    public Object lastElement() throws NoSuchElementException
+    {
+        if (_size == 0) throw new NoSuchElementException();
+        return _content[_size-1];
+    }
+
+    /**
+     * Adds a child to the end. This is the same as add(Object).
+     *
+     * @param obj The child.
+     */
+    public void addElement(Object obj)
+    {
+        add(_size, obj);
+    }
+
+    /**
+     * Adds a child at the given index. This is the same as add(int, Object).
+     *
+     * @param obj The child.
+     * @param index The index.
+     * @throws IndexOutOfBoundsException if the index is not valid.
+     */
+    public void insertElementAt(Object obj, int index) throws IndexOutOfBoundsException
+    {
+        add(index, obj);
+    }
+
+    /**
+     * Removes the child at the given index. This is the same as remove(int).
+     *
+     * @param index The index.
+     * @throws IndexOutOfBoundsException if the index is not valid.
+     */
+    public void removeElementAt(int index) throws IndexOutOfBoundsException
+    {
+        remove(index);
+    }
+
+    /**
+     * Removes the given child and returns whether it was in the body. This is the same as
+     * remove(Object).
+     *
+     * @param obj The child.
+     * @return boolean
+     */
+    public boolean removeElement(Object obj)
+    {
+        return remove(obj);
+    }
+
+    /**
+     * Removes all of the children. This is the same as clear().
+     */
+    public void removeAllElements()
+    {
+        clear();
+    }
+
+    /**
+     * Copies the children into the given array.
+     *
+     * @param array The array.
+     */
+    public void copyInto(Object[] array)
+    {
+        System.arraycopy(_content, 0, array, 0, _size);
+    }
+
+    /**
+     * Returns an enumeration of the children.
+     *
+     * @return Enumeration
+     */
+    public Enumeration elements()
+    {
+        return new Enumeration()
+        {
+            private int _index = 0;
+
+            public boolean hasMoreElements()
+            {
+                return (_index < _size);
+            }
+
+            public Object nextElement()
+            {
+                if (_index >= _size) throw new NoSuchElementException();
+                return _content[_index++];
+            }
+        };
+    }
+
+    /**
+     * Updates what the given child keeps of where it is now that it has been taken out of the
+     * given index.
+     *
+     * @param content The child.
+     * @param index The index it was at.
+     */
+    private void removed(MarkupContent content, int index)
+    {
+        content._bodyCount--;
+        if (content._bodyIndex == index) content._bodyIndex = -1;
+    }
+
+    /**
+     * Sets the index each child from the given index on keeps of where it is in this body.
+     *
+     * @param from The index to start at.
+     */
+    private void updateIndexes(int from)
+    {
+        for (int i=from; i<_size; i++)
+        {
+            if (_content[i] != null) _content[i]._bodyIndex = i;
+        }
+    }
+
+    /**
+     * Makes sure the given index is at least zero and less then the given size.
+     *
+     * @param index The index.
+     * @param size The size.
+     * @throws IndexOutOfBoundsException if the index is not valid.
+     */
+    private void checkIndex(int index, int size) throws IndexOutOfBoundsException
+    {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index: "+index+", Size: "+_size);
+    }
+
     public String format(FormatType type) throws UnsupportedFormatException
     {
+        if (_deferredText != null) return _deferredText.toString();
         StringBuffer ret = new StringBuffer();
-        int size = size();
-        for (int i=0; i<size; i++)
+        for (int i=0; i<_size; i++)
         {
-            ret.append( ((MarkupContent)get(i)).format(type) );
+            ret.append( _content[i].format(type) );
         }
         return ret.toString();
     }
 
+    /**
+     * Parses the given text into the body and truncates the beginning of it up to where parsing
+     * stopped.
+     *
+     * @param text The text to parse.
+     * @param type The format type to parse as.
+     * @throws IllegalMarkupException if the content cannot be parsed.
+     * @throws UnsupportedFormatException if the format is not valid.
+     */
     public void parseText(StringBuffer text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
     {
         if (text == null) return;
+        ParseCursor cursor = new ParseCursor( text.toString() );
+        parseText(cursor, type);
+        text.delete( 0, cursor.getPosition() );
+    }
+
+    /**
+     * Parses the given text into the body and advances the cursor to where parsing stopped.
+     *
+     * @param text The text to parse.
+     * @param type The format type to parse as.
+     * @throws IllegalMarkupException if the content cannot be parsed.
+     * @throws UnsupportedFormatException if the format is not valid.
+     */
+    public void parseText(ParseCursor text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
+    {
+        if (text == null) return;
+        //Keep the text to parse later if the end of the body can be found without parsing it
+        if ( _parent != null && _parent.isLazyParsing() && _parent.canParseBodyLazily() && _deferredText == null && size() == 0 )
+        {
+            int end = getMarkupFactory().findBodyEnd(text, _parent);
+            if (end > -1)
+            {
+                _deferredText = new ParseCursor( text.getText(), text.getPosition(), end );
+                _deferredType = type;
+                text.setPosition(end);
+                return;
+            }
+        }
+        parseBody(text, type);
+    }
+
+    /**
+     * Returns whether the text of this body was kept when it was parsed lazily and has not been
+     * parsed yet.
+     *
+     * @return boolean
+     */
+    public boolean hasDeferredText()
+    {
+        return (_deferredText != null);
+    }
+
+    /**
+     * Points the text that was kept when this body was parsed lazily at the given source text. If it
+     * starts at or after the given index, it is moved by the given amount.
+     *
+     * @param source The new source text.
+     * @param from The index in the old source.
+     * @param delta The amount to move by.
+     */
+    void moveDeferredText(CharSequence source, int from, int delta)
+    {
+        if (_deferredText == null) return;
+        int start = _deferredText.getPosition();
+        int end = _deferredText.getEnd();
+        if (start >= from)
+        {
+            start += delta;
+            end += delta;
+        }
+        _deferredText = new ParseCursor(source, start, end);
+    }
+
+    /**
+     * Parses the text that was kept when this body was parsed lazily. This does nothing if there is
+     * none. It is called by the parent the first time its body is asked for.
+     *
+     * @throws IllegalMarkupException if the content cannot be parsed.
+     */
+    public void parseDeferredText() throws IllegalMarkupException
+    {
+        ParseCursor text = _deferredText;
+        if (text == null) return;
+        FormatType type = _deferredType;
+        _deferredText = null;
+        _deferredType = null;
+        try
+        {
+            parseBody(text, type);
+        }
+        catch (UnsupportedFormatException ufe)
+        {
+            throw new IllegalMarkupException("Could not parse the body", ufe);
+        }
+        if (_parent != null) _parent.setChanged();
+    }
+
+    /**
+     * Parses the given text into the body with the markup factory.
+     *
+     * @param text The text to parse.
+     * @param type The format type to parse as.
+     * @throws IllegalMarkupException if the content cannot be parsed.
+     * @throws UnsupportedFormatException if the format is not valid.
+     */
+    private void parseBody(ParseCursor text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
+    {
         getMarkupFactory().parse
         (
             text,
@@ -67,8 +469,9 @@ public class MarkupBody extends Vector implements Formattable
     public void parse(Object objToParse, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
     {
         if (objToParse == null) return;
+        else if (objToParse instanceof ParseCursor) parseText( (ParseCursor)objToParse, type );
         else if (objToParse instanceof StringBuffer) parseText( (StringBuffer)objToParse, type );
-        else if (objToParse instanceof String) parseText( new StringBuffer((String)objToParse), type );
+        else if (objToParse instanceof String) parseText( new ParseCursor((String)objToParse), type );
         else throw new IllegalMarkupException( "Unable to parse object type: "+objToParse.getClass() );
     }
 
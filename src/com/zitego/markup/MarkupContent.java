@@ -2,8 +2,16 @@ package com.zitego.markup;
 
 import com.zitego.format.FormatType;
 import com.zitego.format.UnsupportedFormatException;
+import com.zitego.markup.tag.MarkupTag;
 import com.zitego.util.TextUtils;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.StringTokenizer;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * This is an abstract class to represent a markup content component.
@@ -20,6 +28,14 @@ import java.util.Vector;
  */
 public abstract class MarkupContent extends com.zitego.util.CachedContent implements MarkupConverter
 {
+    /** The white space characters removed by removeLeadingSpaces. */
+    private static final char[] WHITE_SPACE = new char[] { ' ', '\r', '\n', '\t' };
+    /** Whether each class of content overrides the deprecated parseText method that takes a StringBuffer by class. */
+    private static final ConcurrentHashMap _legacyParseText = new ConcurrentHashMap();
+    /** Whether each class of content overrides getDeepness by class. */
+    private static final ConcurrentHashMap _depthOverrides = new ConcurrentHashMap();
+    /** Whether each class of content overrides getDeepness(FormatType) by class. */
+    private static final ConcurrentHashMap _typeDepthOverrides = new ConcurrentHashMap();
     /** An id for the element. */
     private int _mapId = -1;
     /** A markup map to store direct access to content. */
@@ -32,14 +48,78 @@ public abstract class MarkupContent extends com.zitego.util.CachedContent implem
     private boolean _hasNewline = true;
     /** The MarkupBody of this tag. */
     private MarkupBody _body;
+    /** The index of this content in the body it was last added to or -1 if it is not in one. */
+    int _bodyIndex = -1;
+    /** The number of places in bodies that this content is in. */
+    int _bodyCount = 0;
     /** The line breaks to append after the end tag. */
     private Vector _lineBreaks = new Vector();
     /** Whether we should format this as root or not. */
     private boolean _formatAsRoot = false;
+    /** A setting that is taken from the parent. */
+    private static final byte INHERITED = 0;
+    /** A setting that is set to true. */
+    private static final byte SET_TRUE = 1;
+    /** A setting that is set to false. */
+    private static final byte SET_FALSE = 2;
     /** Whether parsing should be done strictly. This is to be interpreted by the parse method. Default is true. */
-    private boolean _strict = true;
+    private byte _strict = INHERITED;
     /** Whether to preserve all white space while parsing and not format further. This is to be interpreted by the parse method. Default is false. */
-    private boolean _preserveWhiteSpace = false;
+    private byte _preserveWhiteSpace = INHERITED;
+    /** The settings version of the map that the resolved settings were worked out for or -1 if they have not been. */
+    private int _resolvedVersion = -1;
+    /** Whether parsing is strict as worked out from this content and its parents. */
+    private boolean _resolvedStrict = true;
+    /** Whether white space is preserved as worked out from this content and its parents. */
+    private boolean _resolvedPreserveWhiteSpace = false;
+    /** The settings version of the map that the depth was worked out for or -1 if it has not been. */
+    private int _depthVersion = -1;
+    /** The number of levels deep as worked out from the parents. */
+    private int _depth = 0;
+    /** The settings version of the map that the depth for _depthType was worked out for or -1 if it has not been. */
+    private int _typeDepthVersion = -1;
+    /** The format type that _typeDepth was worked out for. */
+    private FormatType _depthType;
+    /** The number of levels deep for _depthType as worked out from the parents. */
+    private int _typeDepth = 0;
+    /** Padding of each length up to the depth that content is usually nested to, built once and shared. */
+    private static final String[] PADDING = new String[64];
+    static
+    {
+        StringBuffer padding = new StringBuffer();
+        for (int i=0; i<PADDING.length; i++)
+        {
+            PADDING[i] = padding.toString();
+            padding.append(" ");
+        }
+    }
+    /**
+     * The stamp of the batch in the map that this content was last recorded as changed in or the
+     * negative of it once the change has been set on this content and its parents.
+     */
+    private int _batchStamp = 0;
+    /** Orders paths from getPathTo(MarkupContent) that are paired with their content in the order they are in the document. */
+    private static final Comparator<Object[]> DOCUMENT_ORDER = new Comparator<Object[]>()
+    {
+        public int compare(Object[] obj1, Object[] obj2)
+        {
+            int[] path1 = (int[])obj1[0];
+            int[] path2 = (int[])obj2[0];
+            int length = Math.min(path1.length, path2.length);
+            for (int i=0; i<length; i++)
+            {
+                if (path1[i] != path2[i]) return (path1[i] < path2[i] ? -1 : 1);
+            }
+            //Content comes before what is under it
+            return path1.length - path2.length;
+        }
+    };
+    /** Whether this content or content under it has been formatted since it was last set changed with its children. */
+    private boolean _formatted = false;
+    /** The index in the source text where this content starts or -1 if it was not parsed. */
+    private int _sourceStart = -1;
+    /** The index in the source text just past where this content ends or -1 if it was not parsed. */
+    private int _sourceEnd = -1;
 
     /**
      * Creates a new markup content without a parent.
@@ -79,21 +159,28 @@ public abstract class MarkupContent extends com.zitego.util.CachedContent implem
     protected void setMap(MarkupMap map)
     {
         if (map == null) throw new IllegalArgumentException("map cannot be null");
+        //Content that is already stored in the map was stored with everything under it
+        if (_map == map && _mapId > -1 && map.get(_mapId) == this) return;
 
         //Reset the map id if we have a new map
-        if (_map != map && _mapId > -1) _mapId = -1;
+        if (_map != map)
+        {
+            _mapId = -1;
+            forgetMapStamps();
+        }
         _map = map;
         _mapId = _map.store(this);
-        //Set all children to this map.
-        MarkupBody body = getBody();
-        if (body != null)
+        //Set all children and line breaks to this map.
+        MarkupBody body = getBodyAsParsed();
+        int size = body.size();
+        for (int i=0; i<size; i++)
         {
-            int size = body.size();
-            for (int i=0; i<size; i++)
-            {
-                MarkupContent c = getBodyContent(i);
-                c.setMap(_map);
-            }
+            ( (MarkupContent)body.get(i) ).setMap(_map);
+        }
+        size = _lineBreaks.size();
+        for (int i=0; i<size; i++)
+        {
+            ( (MarkupContent)_lineBreaks.get(i) ).setMap(_map);
         }
     }
 
@@ -154,21 +241,23 @@ public abstract class MarkupContent extends com.zitego.util.CachedContent implem
     /**
      * Sets whether parsing is strict or not. The meaning of this is implemented by subclasses. This
      * automatically sets all children as being non strict as well. Any content added to this content
-     * will in turn be marked according to this setting.
+     * will in turn be marked according to this setting. Content that does not have the setting set
+     * on it takes it from its parent when it is asked for, so content that is added later is not
+     * visited.
      *
      * @param strict The strict flag.
      */
     public void setStrict(boolean strict)
     {
-        _strict = strict;
-        //Set all children.
-        MarkupBody body = getBody();
+        _strict = (strict ? SET_TRUE : SET_FALSE);
+        //Children that were set on their own take it from this again
+        MarkupBody body = getBodyAsParsed();
         int size = body.size();
         for (int i=0; i<size; i++)
         {
-            MarkupContent c = getBodyContent(i);
-            c.setStrict(strict);
+            ( (MarkupContent)body.get(i) ).inheritSetting(true);
         }
+        settingsChanged();
     }
 
     /**
@@ -179,7 +268,402 @@ public abstract class MarkupContent extends com.zitego.util.CachedContent implem
      */
     public boolean isStrict()
     {
-        return _strict;
+        resolveSettings();
+        return _resolvedStrict;
+    }
+
+    /**
+     * Makes this content and all of its children take the strict (or the preserve white space)
+     * setting from their parents. The content is gone through with a stack of its own rather then by
+     * recursion, so deep trees do not run out of stack.
+     *
+     * @param strict Whether it is the strict setting or the preserve white space one.
+     */
+    private void inheritSetting(boolean strict)
+    {
+        MarkupContent[] stack = new MarkupContent[16];
+        int count = 0;
+        stack[count++] = this;
+        while (count > 0)
+        {
+            MarkupContent c = stack[--count];
+            stack[count] = null;
+            if (strict) c._strict = INHERITED;
+            else c._preserveWhiteSpace = INHERITED;
+            MarkupBody body = c.getBodyAsParsed();
+            int size = body.size();
+            for (int i=0; i<size; i++)
+            {
+                if (count == stack.length) stack = grow(stack);
+                stack[count++] = (MarkupContent)body.get(i);
+            }
+        }
+    }
+
+    /**
+     * Makes the settings and depth be worked out again for this content and anything under it. When
+     * there is nothing under it, the rest of the settings that have been worked out in the map are
+     * still good.
+     */
+    private void settingsChanged()
+    {
+        _resolvedVersion = -1;
+        _depthVersion = -1;
+        _typeDepthVersion = -1;
+        if ( _map != null && ((_body != null && _body.size() > 0) || _lineBreaks.size() > 0) )
+        {
+            _map._settingsVersion = (_map._settingsVersion+1) & Integer.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Returns the settings version of this content's map or -1 if settings and depths cannot be kept
+     * for this content. They cannot be kept without a map or when content in the map has been put
+     * under content that is not in a map, since the map does not see when that content changes.
+     *
+     * @return int
+     */
+    private int getSettingsVersion()
+    {
+        return (_map != null && !_map._hasUnmappedParent ? _map._settingsVersion : -1);
+    }
+
+    /**
+     * Forgets the settings versions and batch stamp that were taken from the map this content was in,
+     * since they mean nothing in another map.
+     */
+    private void forgetMapStamps()
+    {
+        _resolvedVersion = -1;
+        _depthVersion = -1;
+        _typeDepthVersion = -1;
+        _batchStamp = 0;
+    }
+
+    /**
+     * Works out the strict and preserve white space settings from this content and its parents
+     * unless they have been worked out since the last time any content in the map was moved or had
+     * its settings set. Content that has no setting and no parent is strict and does not preserve
+     * white space. The parents are gone up in a loop rather then by recursion, so deep trees do not
+     * run out of stack.
+     */
+    private void resolveSettings()
+    {
+        int version = getSettingsVersion();
+        if (version > -1 && _resolvedVersion == version) return;
+        //Go up to the first parent that is worked out or that does not need its parent, then work them out coming back down
+        boolean strict = true;
+        boolean preserve = false;
+        MarkupContent[] chain = new MarkupContent[16];
+        int count = 0;
+        for (MarkupContent c=this; c != null; c=c._parent)
+        {
+            if (c != this)
+            {
+                int v = c.getSettingsVersion();
+                if (v > -1 && c._resolvedVersion == v)
+                {
+                    strict = c._resolvedStrict;
+                    preserve = c._resolvedPreserveWhiteSpace;
+                    break;
+                }
+            }
+            if (count == chain.length) chain = grow(chain);
+            chain[count++] = c;
+            if (c._strict != INHERITED && c._preserveWhiteSpace != INHERITED) break;
+        }
+        while (count > 0)
+        {
+            MarkupContent c = chain[--count];
+            if (c._strict != INHERITED) strict = (c._strict == SET_TRUE);
+            if (c._preserveWhiteSpace != INHERITED) preserve = (c._preserveWhiteSpace == SET_TRUE);
+            c._resolvedStrict = strict;
+            c._resolvedPreserveWhiteSpace = preserve;
+            c._resolvedVersion = c.getSettingsVersion();
+        }
+    }
+
+    /**
+     * Returns a copy of the given array of content with twice the room.
+     *
+     * @param content The content.
+     * @return MarkupContent[]
+     */
+    private static MarkupContent[] grow(MarkupContent[] content)
+    {
+        MarkupContent[] ret = new MarkupContent[content.length*2];
+        System.arraycopy(content, 0, ret, 0, content.length);
+        return ret;
+    }
+
+    /**
+     * Sets the diagnostics that the content in this content's map records problems in while it is
+     * parsed. Content that is not strict is parsed leniently when there are diagnostics. That is,
+     * malformed markup that can be recovered from is recorded in the diagnostics rather then causing
+     * an IllegalMarkupException. Pass null to stop parsing leniently.
+     *
+     * @param diagnostics The diagnostics.
+     * @throws IllegalStateException if this content does not have a map.
+     */
+    public void setParseDiagnostics(ParseDiagnostics diagnostics) throws IllegalStateException
+    {
+        if (_map == null) throw new IllegalStateException("Content without a map cannot have diagnostics");
+        _map.setParseDiagnostics(diagnostics);
+    }
+
+    /**
+     * Returns the diagnostics that the content in this content's map records problems in or null if
+     * there are none.
+     *
+     * @return ParseDiagnostics
+     */
+    public ParseDiagnostics getParseDiagnostics()
+    {
+        return (_map != null ? _map.getParseDiagnostics() : null);
+    }
+
+    /**
+     * Returns whether this content is parsed leniently. That is, it is not strict and there are
+     * diagnostics to record problems in.
+     *
+     * @return boolean
+     */
+    public boolean isLenient()
+    {
+        return ( !isStrict() && getParseDiagnostics() != null );
+    }
+
+    /**
+     * Records a problem found at the cursor while parsing if this content is parsed leniently. Returns
+     * whether it was recorded. If it was not, the caller should throw an IllegalMarkupException.
+     *
+     * @param kind The kind of problem (see ParseDiagnostics).
+     * @param text The text being parsed.
+     * @param tag The tag name or null if there is not one.
+     * @return boolean
+     */
+    protected boolean recover(int kind, ParseCursor text, String tag)
+    {
+        if ( !isLenient() ) return false;
+        getParseDiagnostics().add( (text != null ? text.getPosition() : -1), kind, tag );
+        return true;
+    }
+
+    /**
+     * Sets whether the bodies of the tags in this content's map are parsed lazily. When they are, the
+     * text of a body is kept as it is and only parsed the first time the body is needed, such as by
+     * getBodyContent or search. A body that is never needed formats as the text it was parsed from.
+     * A body is only kept when the markup factory can find its end tag without parsing it and the
+     * tag can have its body parsed lazily (see canParseBodyLazily).
+     *
+     * @param lazy The lazy parsing flag.
+     * @throws IllegalStateException if this content does not have a map.
+     */
+    public void setLazyParsing(boolean lazy) throws IllegalStateException
+    {
+        if (_map == null) throw new IllegalStateException("Content without a map cannot be parsed lazily");
+        _map.setLazyParsing(lazy);
+    }
+
+    /**
+     * Returns whether the bodies of the tags in this content's map are parsed lazily.
+     *
+     * @return boolean
+     */
+    public boolean isLazyParsing()
+    {
+        return (_map != null && _map.isLazyParsing());
+    }
+
+    /**
+     * Sets the executor that large bodies parsed into the document this content is in are parsed on.
+     * The pieces of a body are parsed as separate tasks, so the executor should have more then one
+     * thread. Pass null to parse all bodies in one piece. This is the default. Only factories that
+     * split bodies (such as HtmlMarkupFactory) use it.
+     *
+     * @param executor The executor.
+     * @throws IllegalStateException if this content does not have a map.
+     */
+    public void setParallelExecutor(ExecutorService executor) throws IllegalStateException
+    {
+        if (_map == null) throw new IllegalStateException("Content without a map cannot be parsed in parallel");
+        _map.setParallelExecutor(executor);
+    }
+
+    /**
+     * Returns the executor that large bodies parsed into the document this content is in are parsed
+     * on or null if they are parsed in one piece.
+     *
+     * @return ExecutorService
+     */
+    public ExecutorService getParallelExecutor()
+    {
+        return (_map != null ? _map.getParallelExecutor() : null);
+    }
+
+    /**
+     * Sets whether the text that the document this content is in is parsed from is kept in the map. The
+     * text is needed to reparse part of the document after it has been edited (see
+     * <code>Html.reparse(int, int, String)</code>). Text that is streamed from a reader is never kept.
+     *
+     * @param keep The keep source flag.
+     * @throws IllegalStateException if this content does not have a map.
+     */
+    public void setKeepSource(boolean keep) throws IllegalStateException
+    {
+        if (_map == null) throw new IllegalStateException("Content without a map cannot keep its source");
+        _map.setKeepSource(keep);
+    }
+
+    /**
+     * Returns the text that the document this content is in was parsed from or null if it was not kept.
+     *
+     * @return CharSequence
+     */
+    public CharSequence getSource()
+    {
+        return (_map != null ? _map.getSource() : null);
+    }
+
+    /**
+     * Returns the index in the source text where this content starts or -1 if it was not parsed
+     * as a tag.
+     *
+     * @return int
+     */
+    public int getSourceStart()
+    {
+        return _sourceStart;
+    }
+
+    /**
+     * Returns the index in the source text just past where this content ends or -1 if it was not
+     * parsed as a tag.
+     *
+     * @return int
+     */
+    public int getSourceEnd()
+    {
+        return _sourceEnd;
+    }
+
+    /**
+     * Sets where this content was parsed from in the source text.
+     *
+     * @param start The index where it starts.
+     * @param end The index just past where it ends.
+     */
+    void setSourceSpan(int start, int end)
+    {
+        _sourceStart = start;
+        _sourceEnd = end;
+    }
+
+    /**
+     * Sets whether the text content and tag attributes parsed into the document this content is in
+     * are taken from a ParseArena. This is meant for documents that are parsed, used, and thrown away
+     * right away. Call release() on the document when done with it, so that the next document parsed
+     * on the thread can reuse them.
+     *
+     * @param pool The pooling flag.
+     * @throws IllegalStateException if this content does not have a map.
+     */
+    public void setPooling(boolean pool) throws IllegalStateException
+    {
+        if (_map == null) throw new IllegalStateException("Content without a map cannot be pooled");
+        if ( pool && _map.getParseArena() == null ) _map.setParseArena( new ParseArena() );
+        else if (!pool) _map.setParseArena(null);
+    }
+
+    /**
+     * Returns whether the content parsed into the document this content is in is pooled.
+     *
+     * @return boolean
+     */
+    public boolean isPooling()
+    {
+        return (_map != null && _map.getParseArena() != null);
+    }
+
+    /**
+     * Returns the arena that content parsed into the document this content is in is taken from
+     * or null if it is not pooled.
+     *
+     * @return ParseArena
+     */
+    public ParseArena getParseArena()
+    {
+        return (_map != null ? _map.getParseArena() : null);
+    }
+
+    /**
+     * Releases the document when pooling. All of the content is removed from it and everything that
+     * was taken from the arena is put back in the pool for this thread. Nothing that was in the
+     * document can be used afterward. The document itself can be parsed into again. This should
+     * only be called on the top of the document.
+     *
+     * @throws IllegalStateException if this content has a parent.
+     */
+    public void release() throws IllegalStateException
+    {
+        if (_parent != null) throw new IllegalStateException("Only the top of a document can be released");
+        clearContent();
+        if (_map != null)
+        {
+            //The content under the children is still in the map
+            _map.clear();
+            _mapId = -1;
+            _mapId = _map.store(this);
+            ParseArena arena = _map.getParseArena();
+            if (arena != null) arena.release();
+        }
+        setChanged();
+    }
+
+    /**
+     * Puts this content back the way it was when it was created without a parent, so that a
+     * ParseArena can hand it out again. Classes that are handed out by an arena must override this
+     * to clear their own state as well.
+     */
+    protected void recycle()
+    {
+        _mapId = -1;
+        _map = null;
+        _parent = null;
+        _bodyIndex = -1;
+        _bodyCount = 0;
+        _hasPadding = true;
+        _hasNewline = true;
+        if ( _body != null && !_body.hasDeferredText() ) _body.clear();
+        else _body = null;
+        _lineBreaks.clear();
+        _formatAsRoot = false;
+        _strict = INHERITED;
+        _preserveWhiteSpace = INHERITED;
+        forgetMapStamps();
+        _depthType = null;
+        _formatted = false;
+        _sourceStart = -1;
+        _sourceEnd = -1;
+        //Content cached while it was in the last document would otherwise be returned
+        Vector types = FormatType.HTML.getTypes();
+        for (int i=0; i<types.size(); i++)
+        {
+            cacheContent( types.get(i), null );
+        }
+        setChanged();
+    }
+
+    /**
+     * Returns whether this content's body can be kept as text and parsed when it is first needed
+     * when parsing lazily. Content that looks at its children as soon as it is parsed should override
+     * this to return false. This returns true.
+     *
+     * @return boolean
+     */
+    protected boolean canParseBodyLazily()
+    {
+        return true;
     }
 
     /**
@@ -192,15 +676,15 @@ public abstract class MarkupContent extends com.zitego.util.CachedContent implem
      */
     public void setPreserveWhiteSpace(boolean preserve)
     {
-        _preserveWhiteSpace = preserve;
-        //Set all children.
-        MarkupBody body = getBody();
+        _preserveWhiteSpace = (preserve ? SET_TRUE : SET_FALSE);
+        //Children that were set on their own take it from this again
+        MarkupBody body = getBodyAsParsed();
         int size = body.size();
         for (int i=0; i<size; i++)
         {
-            MarkupContent c = getBodyContent(i);
-            c.setPreserveWhiteSpace(preserve);
+            ( (MarkupContent)body.get(i) ).inheritSetting(false);
         }
+        settingsChanged();
     }
 
     /**
@@ -211,7 +695,8 @@ public abstract class MarkupContent extends com.zitego.util.CachedContent implem
      */
     public boolean preserveWhiteSpace()
     {
-        return _preserveWhiteSpace;
+        resolveSettings();
+        return _resolvedPreserveWhiteSpace;
     }
 
     /**
@@ -293,34 +778,122 @@ public abstract class MarkupContent extends com.zitego.util.CachedContent implem
 
     /**
      * Returns the number of levels deep which is the same as the
-     * number of parents this content has.
+     * number of parents this content has. It is only worked out
+     * from the parents again after content in the map has been moved.
+     * The parents are gone up in a loop rather then by recursion.
      *
      * @return int
      */
     public int getDeepness()
     {
         if (_parent == null || _formatAsRoot) return 0;
-        else return _parent.getDeepness()+1;
+        int version = getSettingsVersion();
+        if (version > -1 && _depthVersion == version) return _depth;
+        //Go up to the first parent whose depth is known, then work the depths out coming back down
+        MarkupContent[] chain = new MarkupContent[16];
+        int count = 0;
+        int depth = 0;
+        for (MarkupContent c=this; ; c=c._parent)
+        {
+            if (c != this)
+            {
+                int v = c.getSettingsVersion();
+                if ( overridesDeepness(c.getClass(), false) )
+                {
+                    depth = c.getDeepness();
+                    break;
+                }
+                else if (c._parent == null || c._formatAsRoot)
+                {
+                    break;
+                }
+                else if (v > -1 && c._depthVersion == v)
+                {
+                    depth = c._depth;
+                    break;
+                }
+            }
+            if (count == chain.length) chain = grow(chain);
+            chain[count++] = c;
+        }
+        while (count > 0)
+        {
+            MarkupContent c = chain[--count];
+            c._depth = ++depth;
+            c._depthVersion = c.getSettingsVersion();
+        }
+        return _depth;
     }
 
     /**
-     * Returns the number of levels deep for the specific format type.
+     * Returns the number of levels deep for the specific format type. The parents are gone up in a
+     * loop rather then by recursion.
      *
      * @param type The format type to count
      * @return int
      */
     public int getDeepness(FormatType type)
     {
-        if (_parent == null || _formatAsRoot)
+        if (_parent == null || _formatAsRoot) return 0;
+        int version = getSettingsVersion();
+        if (version > -1 && _typeDepthVersion == version && _depthType == type) return _typeDepth;
+        //Go up to the first parent whose depth is known, then work the depths out coming back down
+        MarkupContent[] chain = new MarkupContent[16];
+        int count = 0;
+        int depth = 0;
+        for (MarkupContent c=this; ; c=c._parent)
+        {
+            if (c != this)
+            {
+                int v = c.getSettingsVersion();
+                if ( overridesDeepness(c.getClass(), true) )
+                {
+                    depth = c.getDeepness(type);
+                    break;
+                }
+                else if (c._parent == null || c._formatAsRoot)
+                {
+                    break;
+                }
+                else if (v > -1 && c._typeDepthVersion == v && c._depthType == type)
+                {
+                    depth = c._typeDepth;
+                    break;
+                }
+            }
+            if (count == chain.length) chain = grow(chain);
+            chain[count++] = c;
+        }
+        while (count > 0)
         {
-            return 0;
+            MarkupContent c = chain[--count];
+            if ( c.countDeepness(type) ) depth++;
+            c._typeDepth = depth;
+            c._depthType = type;
+            c._typeDepthVersion = c.getSettingsVersion();
         }
-        else
+        return _typeDepth;
+    }
+
+    /**
+     * Returns whether the given class of content overrides getDeepness or getDeepness(FormatType).
+     * The depth of content that does is taken from the method rather then worked out.
+     *
+     * @param contentClass The class of content.
+     * @param typed Whether it is getDeepness(FormatType).
+     * @return boolean
+     */
+    private static boolean overridesDeepness(Class contentClass, boolean typed)
+    {
+        ConcurrentHashMap overrides = (typed ? _typeDepthOverrides : _depthOverrides);
+        Boolean ret = (Boolean)overrides.get(contentClass);
+        if (ret == null)
         {
-            int parentDeepness = _parent.getDeepness(type);
-            int selfDeepness = (countDeepness(type) ? 1 : 0);
-            return parentDeepness+selfDeepness;
+            Class[] params = (typed ? new Class[] {FormatType.class} : new Class[0]);
+            ret = Boolean.valueOf( declares(contentClass, MarkupContent.class, "getDeepness", params) );
+            overrides.put(contentClass, ret);
         }
+        return ret.booleanValue();
     }
 
     /**
@@ -360,16 +933,7 @@ public abstract class MarkupContent extends com.zitego.util.CachedContent implem
      */
     public String getPadding()
     {
-        StringBuffer ret = new StringBuffer();
-        if (_hasPadding)
-        {
-            int deepness = getDeepness();
-            for (int i=0; i<deepness; i++)
-            {
-                ret.append(" ");
-            }
-        }
-        return ret.toString();
+        return (_hasPadding ? getPadding( getDeepness() ) : "");
     }
 
     /**
@@ -381,8 +945,21 @@ public abstract class MarkupContent extends com.zitego.util.CachedContent implem
      */
     public String getPadding(FormatType type)
     {
-        StringBuffer ret = new StringBuffer();
-        int deepness = getDeepness(type);
+        return getPadding( getDeepness(type) );
+    }
+
+    /**
+     * Returns a string of the given number of spaces. Padding up to the depth that content is
+     * usually nested to is shared rather then built each time.
+     *
+     * @param deepness The number of spaces.
+     * @return String
+     */
+    private static String getPadding(int deepness)
+    {
+        if (deepness <= 0) return "";
+        if (deepness < PADDING.length) return PADDING[deepness];
+        StringBuffer ret = new StringBuffer(deepness);
         for (int i=0; i<deepness; i++)
         {
             ret.append(" ");
@@ -395,34 +972,141 @@ public abstract class MarkupContent extends com.zitego.util.CachedContent implem
      */
     protected void setChanged()
     {
+        //In a batch, the change is only recorded and set on the parents when the batch ends
+        if (_map != null && _map._batchDepth > 0)
+        {
+            if (_batchStamp != _map._batchStamp)
+            {
+                _batchStamp = _map._batchStamp;
+                _map.deferChange(this);
+            }
+            return;
+        }
         super.setChanged();
         if (_parent != null) _parent.setChanged();
     }
 
     /**
-     * Sets this and all children to be changed, but does not set parents as changed.
+     * Begins a batch of changes to the document this content is in. Until the batch is ended, content
+     * in the document that is changed is only recorded rather then setting each of its parents as
+     * changed. When the batch ends, each piece of content that was changed and its parents are set as
+     * changed once, so a page that is built or edited with many changes does not walk up to the top
+     * for each one. Batches can be nested. Only the outer batch sets the changes when it ends.<br>
+     * <br>
+     * Formatting content in a batch sets the changes recorded so far first, so it is formatted the
+     * same as it would be outside of one. hasChanged() may not be right for content in a batch.
+     *
+     * @throws IllegalStateException if this content does not have a map.
      */
-    protected void setChildrenChanged()
+    public void beginBatch() throws IllegalStateException
     {
-        super.setChanged();
-        MarkupBody body = getBody();
-        int size = body.size();
-        for (int i=0; i<size; i++)
-        {
-            ( (MarkupContent)body.get(i) ).setChildrenChanged();
-        }
+        if (_map == null) throw new IllegalStateException("Content without a map cannot be changed in a batch");
+        if (_map._batchDepth++ == 0) _map._batchStamp = _map.nextBatchStamp();
     }
 
     /**
-     * Adds text to the MarkupBody as TextContent and returns it. If the last MarkupBody element
-     * was text content, then it is appended to that. Otherwise, it will create
-     * a new TextContent and add that.
+     * Ends a batch of changes begun with beginBatch(). If it is the outer batch, the content that was
+     * changed in it and its parents are set as changed.
      *
-     * @param txt The content to add.
-     * @return TextContent
-     * @throws IllegalArgumentException if the content is null.
+     * @throws IllegalStateException if the document this content is in is not in a batch.
      */
-    public TextContent addBodyContent(String txt) throws IllegalArgumentException
+    public void endBatch() throws IllegalStateException
+    {
+        if (_map == null || _map._batchDepth == 0) throw new IllegalStateException("There is no batch to end");
+        if (--_map._batchDepth == 0) setDeferredChanges();
+    }
+
+    /**
+     * Runs the given changes in a batch (see beginBatch()). The batch is ended even if the changes
+     * throw an exception.
+     *
+     * @param changes The changes to run.
+     * @throws IllegalStateException if this content does not have a map.
+     */
+    public void batch(Runnable changes) throws IllegalStateException
+    {
+        beginBatch();
+        try
+        {
+            changes.run();
+        }
+        finally
+        {
+            endBatch();
+        }
+    }
+
+    /**
+     * Returns whether the document this content is in is in a batch of changes.
+     *
+     * @return boolean
+     */
+    public boolean isInBatch()
+    {
+        return (_map != null && _map._batchDepth > 0);
+    }
+
+    /**
+     * Sets the content that was recorded as changed in this content's map and its parents as changed.
+     * Parents in the map that have already been set are not walked up again, so each piece of content
+     * is only set once. Parents that are not in the map are always walked up, since their stamps are
+     * not from this map.
+     */
+    private void setDeferredChanges()
+    {
+        MarkupMap map = _map;
+        int done = -map._batchStamp;
+        MarkupContent[] changed = map._deferred;
+        int size = map._deferredSize;
+        map._deferredSize = 0;
+        for (int i=0; i<size; i++)
+        {
+            for (MarkupContent c=changed[i]; c != null && (c._batchStamp != done || c._map != map); c=c._parent)
+            {
+                c._batchStamp = done;
+                c.markChanged();
+            }
+            changed[i] = null;
+        }
+        //Content that is changed again in the batch has to be recorded again
+        map._batchStamp = (map._batchDepth > 0 ? map.nextBatchStamp() : 0);
+    }
+
+    /**
+     * Sets only this content as changed.
+     */
+    private void markChanged()
+    {
+        super.setChanged();
+    }
+
+    /**
+     * Sets this and all children to be changed, but does not set parents as changed.
+     */
+    protected void setChildrenChanged()
+    {
+        super.setChanged();
+        //Nothing under content that has not been formatted holds on to what it was formatted as
+        if (!_formatted) return;
+        _formatted = false;
+        MarkupBody body = getBodyAsParsed();
+        int size = body.size();
+        for (int i=0; i<size; i++)
+        {
+            ( (MarkupContent)body.get(i) ).setChildrenChanged();
+        }
+    }
+
+    /**
+     * Adds text to the MarkupBody as TextContent and returns it. If the last MarkupBody element
+     * was text content, then it is appended to that. Otherwise, it will create
+     * a new TextContent and add that.
+     *
+     * @param txt The content to add.
+     * @return TextContent
+     * @throws IllegalArgumentException if the content is null.
+     */
+    public TextContent addBodyContent(String txt) throws IllegalArgumentException
     {
         if (txt == null) throw new IllegalArgumentException("Text can not be null.");
         MarkupContent c = getLastBodyContent();
@@ -482,6 +1166,10 @@ public abstract class MarkupContent extends com.zitego.util.CachedContent implem
         //See if we already have this or not
         if ( body.contains(content) ) return content;
 
+        //Content that was removed from this document goes back in the map under the ids it had
+        if (_map != null && content._map == _map && _map.get(content._mapId) != content) content.setMap(_map);
+        //The index only knows about content that is under its parent
+        if ( _map != null && (content._parent != this || content._map != _map) ) _map._looseContent = true;
         body.add(index, content);
         setChanged();
 
@@ -490,7 +1178,9 @@ public abstract class MarkupContent extends com.zitego.util.CachedContent implem
 
     /**
      * Moves the content in the MarkupBody to the specified index and returns it. If the content
-     * does not exist in the body, then it is added at the specified index.
+     * does not exist in the body, then it is added at the specified index. The index is where it
+     * goes among the content in the body as it is now, so that it ends up just before the content
+     * that is at that index.
      *
      * @param index The index at which to add the content.
      * @param content The content to add.
@@ -502,15 +1192,20 @@ public abstract class MarkupContent extends com.zitego.util.CachedContent implem
         //Make sure it is not null
         if (content == null) throw new IllegalArgumentException("content cannot be null");
 
-        MarkupBody body = createMarkupBody();
+        MarkupBody body = getBody();
 
         //See if it is already in the spot asked for
-        if (body.indexOf(content) == index) return content;
+        int current = body.indexOf(content);
+        if (current == -1) return addBodyContentAt(index, content);
+        if (current == index || current+1 == index) return content;
 
-        //Remove it if it is in there
-        if ( body.contains(content) ) removeBodyContent(content);
+        //It stays in the map since it stays in the body
+        body.remove(current);
+        if (current < index) index--;
+        body.add(index, content);
+        setChanged();
 
-        return addBodyContentAt(index, content);
+        return content;
     }
 
     /**
@@ -575,7 +1270,7 @@ public abstract class MarkupContent extends com.zitego.util.CachedContent implem
         if (id > -1)
         {
             body.remove(content);
-            if (_map != null) _map.remove(content);
+            content.unmap();
             setChanged();
         }
         return id;
@@ -647,9 +1342,35 @@ public abstract class MarkupContent extends com.zitego.util.CachedContent implem
     protected MarkupBody getBody()
     {
         if (_body == null) _body = createMarkupBody();
+        else if ( _body.hasDeferredText() ) _body.parseDeferredText();
         return _body;
     }
 
+    /**
+     * Returns the body without parsing the text that was kept when it was parsed lazily. Content that
+     * is parsed from that text later takes its map and settings from this content at that time, so
+     * they only need to be passed on to the children that are already here. A body that has not been
+     * parsed formats as its text.
+     *
+     * @return MarkupBody
+     */
+    protected final MarkupBody getBodyAsParsed()
+    {
+        if (_body == null) _body = createMarkupBody();
+        return _body;
+    }
+
+    /**
+     * Returns whether the text of this content's body was kept when it was parsed lazily and has not
+     * been parsed yet. The body is parsed the first time it is asked for.
+     *
+     * @return boolean
+     */
+    protected boolean hasDeferredBody()
+    {
+        return (_body != null && _body.hasDeferredText());
+    }
+
     /**
      * Returns the number of elements in the body.
      *
@@ -693,11 +1414,14 @@ public abstract class MarkupContent extends com.zitego.util.CachedContent implem
     public String formatAsRoot(FormatType type) throws UnsupportedFormatException
     {
         _formatAsRoot = true;
+        //The content under this is not as deep while it is formatted
+        settingsChanged();
         //Set this and all children to changed to force it to format the way we want
         setChanged();
         setChildrenChanged();
         String ret = format(type);
         _formatAsRoot = false;
+        settingsChanged();
         //Set this and all children to changed again so next time we format, it will do what we want again.
         setChanged();
         setChildrenChanged();
@@ -707,6 +1431,7 @@ public abstract class MarkupContent extends com.zitego.util.CachedContent implem
     public final String format(FormatType type) throws UnsupportedFormatException
     {
         if (type == null) throw new UnsupportedFormatException("FormatType cannot be null.");
+        if (_map != null && _map._deferredSize > 0) setDeferredChanges();
         if (_debug) System.out.println(getClass()+": content has "+(hasChanged()?"":"not ")+"changed");
         if ( hasChanged() )
         {
@@ -722,6 +1447,11 @@ public abstract class MarkupContent extends com.zitego.util.CachedContent implem
             content = generateContent(type);
             cacheContent(type, content);
         }
+        //Let setChildrenChanged know that there is content to set changed under the parents
+        for (MarkupContent c=this; c != null && !c._formatted; c=c._parent)
+        {
+            c._formatted = true;
+        }
         return content;
     }
 
@@ -734,7 +1464,50 @@ public abstract class MarkupContent extends com.zitego.util.CachedContent implem
      */
     public static StringBuffer removeLeadingSpaces(StringBuffer in)
     {
-        return TextUtils.removeLeadingCharacters(in, new char[] { ' ', '\r', '\n', '\t' });
+        return TextUtils.removeLeadingCharacters(in, WHITE_SPACE);
+    }
+
+    /**
+     * Skips past the leading spaces, newlines, tabs, and carriage returns at the cursor and returns
+     * them as a String.
+     *
+     * @param in The cursor to advance.
+     * @return String
+     */
+    public static String removeLeadingSpaces(ParseCursor in)
+    {
+        return in.consume( in.countWhiteSpace() );
+    }
+
+    /**
+     * Skips past the leading spaces, newlines, tabs, and carriage returns at the cursor. Only the
+     * position of the cursor is moved, so use this rather then removeLeadingSpaces when the spaces
+     * are not needed.
+     *
+     * @param in The cursor to advance.
+     * @return int The number of characters skipped.
+     */
+    public static int skipLeadingSpaces(ParseCursor in)
+    {
+        return in.skipWhiteSpace();
+    }
+
+    /**
+     * Skips past the leading spaces, newlines, tabs, and carriage returns at the cursor. If keep is
+     * true and there were any, they are returned as a span of the text being parsed (see
+     * <code>ParseCursor.span(int, int)</code>). Otherwise, nothing is created and null is returned.
+     *
+     * @param in The cursor to advance.
+     * @param keep Whether to return the spaces.
+     * @return CharSequence
+     */
+    public static CharSequence skipLeadingSpaces(ParseCursor in, boolean keep)
+    {
+        int count = in.countWhiteSpace();
+        if (count == 0) return null;
+        CharSequence ret = (keep ? in.span(0, count) : null);
+        in.skip(count);
+        return ret;
     }
 
     /**
@@ -777,14 +1550,271 @@ public abstract class MarkupContent extends com.zitego.util.CachedContent implem
         if (_parent != null)
         {
             if (_parent.getMap() != null) setMap( _parent.getMap() );
+            else if (_map != null) _map._hasUnmappedParent = true;
             if ( addToParentOnInit() ) _parent.addBodyContent(this);
-            setStrict( _parent.isStrict() );
-            setPreserveWhiteSpace( _parent.preserveWhiteSpace() );
+            //The settings are taken from the new parent when they are asked for
+            _strict = INHERITED;
+            _preserveWhiteSpace = INHERITED;
         }
+        settingsChanged();
         setChanged();
         setChildrenChanged();
     }
 
+    /**
+     * Called by takeBodyContent after this content and the content around it have been given new ids
+     * in a new map. Content that keeps the ids of other content should update them here. This does
+     * nothing by default.
+     */
+    protected void mapIdsMoved() { }
+
+    /**
+     * Moves all of the body content of the given content to the end of this content's body. This is
+     * used to attach content that was parsed separately under a stand in parent, such as a piece of a
+     * large document that was parsed on another thread. The stand in must have a map of its own. All of
+     * the content that was stored in that map after the stand in is moved into this content's map with
+     * the ids it would have been given had it been parsed here, so nothing is stored again and the ids
+     * are the same as if the content had been parsed in place. Any content in it whose parent was the
+     * stand in (such as line breaks) gets this content as its parent. Each piece of content that is moved
+     * is told through mapIdsMoved.
+     *
+     * @param from The stand in parent.
+     * @throws IllegalArgumentException if the content is null, is this, or does not have a map of its own.
+     */
+    public void takeBodyContent(MarkupContent from) throws IllegalArgumentException
+    {
+        if (from == null || from == this) throw new IllegalArgumentException("content cannot be null or this content");
+        MarkupMap fromMap = from._map;
+        if (fromMap == null || fromMap == _map) throw new IllegalArgumentException("content must have a map of its own");
+
+        int first = from._mapId + 1;
+        int offset = (_map != null ? _map._nextId : 0) - first;
+        for (int id=first; id<fromMap._nextId; id++)
+        {
+            MarkupContent c = fromMap.get(id);
+            if (c == null) continue;
+            if (c._parent == from) c._parent = this;
+            c.forgetMapStamps();
+            c._map = _map;
+            c._mapId = (_map != null ? id+offset : -1);
+            if (_map != null) _map.put(c._mapId, c);
+        }
+        if (_map != null) _map._nextId += fromMap._nextId - first;
+        //Now that every id has been moved, let content that keeps ids know about it
+        for (int id=first; id<fromMap._nextId; id++)
+        {
+            MarkupContent c = fromMap.get(id);
+            if (c != null) c.mapIdsMoved();
+        }
+
+        MarkupBody fromBody = from.getBody();
+        MarkupBody body = getBody();
+        int size = fromBody.size();
+        for (int i=0; i<size; i++)
+        {
+            MarkupContent c = (MarkupContent)fromBody.get(i);
+            c._parent = this;
+            body.add(c);
+            c.setChildrenChanged();
+        }
+        fromBody.clear();
+        //The settings and depth of the moved content are taken from this content now
+        settingsChanged();
+        setChanged();
+    }
+
+    /**
+     * Returns whether content in this content's body can be reparsed and replaced on its own. This
+     * returns canParseBodyLazily(), since content that looks at its children when it is parsed would
+     * not know about the new child. Content that can update itself in bodyContentReplaced should
+     * override this to return true.
+     *
+     * @return boolean
+     */
+    protected boolean canReparseBodyContent()
+    {
+        return canParseBodyLazily();
+    }
+
+    /**
+     * Returns whether content anywhere below this content can be reparsed and replaced without
+     * reparsing this content. Content that keeps track of some of its descendants should override
+     * this to return false. This returns true.
+     *
+     * @return boolean
+     */
+    protected boolean canReparseDescendants()
+    {
+        return true;
+    }
+
+    /**
+     * Called after the given content in this content's body has been reparsed and replaced with the
+     * given content. This does nothing by default.
+     *
+     * @param old The content that was replaced.
+     * @param replacement The content that replaced it.
+     */
+    protected void bodyContentReplaced(MarkupContent old, MarkupContent replacement) { }
+
+    /**
+     * Reparses the smallest piece of content under this content that encloses the given range of
+     * the source text once it has been edited, and replaces the old content with it in place. This is
+     * meant to be called on the root of a document that kept its source. The content that encloses the
+     * range is the deepest tag that starts before it and ends after it. If that content or its parent
+     * cannot be reparsed on its own, or the new text does not parse into one whole tag, the parent is
+     * tried and so on. Content that has not been parsed yet (see setLazyParsing) is never looked into.<br>
+     * <br>
+     * Only the new content is given new map ids. The old content is removed from the map. The content
+     * after the range has its source span moved by the change in length and the new source is kept.
+     * Only the parent of the replaced content and the parents above it are set as changed. Null is
+     * returned if there is no content below this one that could be reparsed. In that case, nothing is
+     * changed and the whole document must be parsed again.
+     *
+     * @param source The whole source text after the edit.
+     * @param start The index in the old source where the edit starts.
+     * @param end The index in the old source where the edit ends.
+     * @param delta The change in length of the source.
+     * @param type The format type to parse as.
+     * @return MarkupContent
+     * @throws UnsupportedFormatException if the format type is not parsable.
+     */
+    protected MarkupContent reparseContent(CharSequence source, int start, int end, int delta, FormatType type)
+    throws UnsupportedFormatException
+    {
+        //The content that encloses the range and the content above it up to this. The body that content
+        //is in is used rather then its parent, since they are not always the same
+        Vector path = findSourceContent(start, end);
+        int depth = path.size()-1;
+        while (depth > 0)
+        {
+            MarkupContent content = (MarkupContent)path.get(depth);
+            MarkupContent parent = (MarkupContent)path.get(depth-1);
+            //Reparsing most of the source would take about as long as parsing all of it
+            if ( (content._sourceEnd-content._sourceStart)*2 > source.length() ) break;
+            //Move up to the parent or to the content above that keeps track of it
+            int up = -1;
+            if ( !parent.canReparseBodyContent() ) up = depth-1;
+            for (int i=depth-1; up == -1 && i>=0; i--)
+            {
+                if ( !((MarkupContent)path.get(i)).canReparseDescendants() ) up = i;
+            }
+            if (up != -1)
+            {
+                depth = up;
+                continue;
+            }
+
+            MarkupBody body = parent.getBody();
+            int index = body.indexOf(content);
+            MarkupContent replacement = body.getMarkupFactory().reparse( content, parent, source, content._sourceEnd+delta, type );
+            if (replacement != null)
+            {
+                body.remove(replacement);
+                shiftSourceSpans(content._sourceEnd, delta, source);
+                //Line breaks after the old content are outside of its source
+                Vector breaks = content._lineBreaks;
+                int size = breaks.size();
+                for (int i=0; i<size; i++)
+                {
+                    MarkupContent br = (MarkupContent)breaks.get(i);
+                    br._parent = replacement;
+                    replacement.addLineBreak(br);
+                }
+                breaks.clear();
+                body.set(index, replacement);
+                if (content._parent == parent) content._parent = null;
+                content.unmap();
+                //Only the content above the new content has to be formatted again
+                for (int i=depth-1; i>=0; i--)
+                {
+                    ( (MarkupContent)path.get(i) ).setChanged();
+                }
+                parent.bodyContentReplaced(content, replacement);
+                if (_map != null) _map.setSource(source);
+                return replacement;
+            }
+            depth--;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the path from this content down to the deepest content under it that was parsed from a
+     * source span that starts before the given range and ends after it. The path is just this if there
+     * is none. Bodies that have not been parsed yet are not looked into.
+     *
+     * @param start The index where the range starts.
+     * @param end The index where the range ends.
+     * @return Vector
+     */
+    private Vector findSourceContent(int start, int end)
+    {
+        Vector ret = new Vector();
+        MarkupContent content = this;
+        while (content != null)
+        {
+            ret.add(content);
+            MarkupBody body = content.getBodyAsParsed();
+            content = null;
+            int size = body.size();
+            for (int i=0; i<size && content == null; i++)
+            {
+                MarkupContent c = (MarkupContent)body.get(i);
+                if (c._sourceStart > -1 && c._sourceStart < start && end < c._sourceEnd) content = c;
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Moves the source span of this content and all of the content under it that ends at or after
+     * the given index by the given amount. Bodies that have not been parsed yet are moved to the new
+     * source text.
+     *
+     * @param from The index in the old source.
+     * @param delta The amount to move by.
+     * @param source The new source text.
+     */
+    private void shiftSourceSpans(int from, int delta, CharSequence source)
+    {
+        if (_sourceStart >= from) _sourceStart += delta;
+        if (_sourceEnd >= from) _sourceEnd += delta;
+        MarkupBody body = getBodyAsParsed();
+        body.moveDeferredText(source, from, delta);
+        int size = body.size();
+        for (int i=0; i<size; i++)
+        {
+            ( (MarkupContent)body.get(i) ).shiftSourceSpans(from, delta, source);
+        }
+        size = _lineBreaks.size();
+        for (int i=0; i<size; i++)
+        {
+            ( (MarkupContent)_lineBreaks.get(i) ).shiftSourceSpans(from, delta, source);
+        }
+    }
+
+    /**
+     * Removes this content and all of the content under it from the map. This is for content
+     * that is thrown away without being removed from a body (such as content a tag keeps in a
+     * field of its own).
+     */
+    public void unmap()
+    {
+        if (_map != null) _map.remove(this);
+        MarkupBody body = getBodyAsParsed();
+        int size = body.size();
+        for (int i=0; i<size; i++)
+        {
+            ( (MarkupContent)body.get(i) ).unmap();
+        }
+        size = _lineBreaks.size();
+        for (int i=0; i<size; i++)
+        {
+            ( (MarkupContent)_lineBreaks.get(i) ).unmap();
+        }
+    }
+
     /**
      * Returns this markup content as markup content.
      *
@@ -819,23 +1849,295 @@ public abstract class MarkupContent extends com.zitego.util.CachedContent implem
 
     /**
      * Searches through this content's body for the given markup content type and returns a
-     * Vector of matching tags. No heirarchy is kept.
+     * Vector of matching tags. No heirarchy is kept. The content is in the order it is in
+     * the document. If the document is indexed, it is found from the index rather then by
+     * looking through the body (see setIndexing(boolean)).
      *
      * @param c The class.
      * @return Vector
      */
     public Vector search(Class c)
     {
-        Vector ret = new Vector();
-        if (c != null)
+        return find(MarkupIndex.TYPE, c, false);
+    }
+
+    /**
+     * Returns the first tag in the document that is this content or under it with the given id
+     * or null if there is not one.
+     *
+     * @param id The id.
+     * @return MarkupTag
+     */
+    public MarkupTag getTagById(String id)
+    {
+        Vector<MarkupContent> found = find(MarkupIndex.ID, id, true);
+        return (found.size() > 0 ? (MarkupTag)found.get(0) : null);
+    }
+
+    /**
+     * Returns the tags that are this content or under it with the given tag name ignoring case in
+     * the order they are in the document.
+     *
+     * @param name The tag name.
+     * @return Vector
+     */
+    public Vector<MarkupContent> getTagsByName(String name)
+    {
+        return find(MarkupIndex.NAME, name, false);
+    }
+
+    /**
+     * Returns the tags that are this content or under it that have the given class in their class
+     * attribute in the order they are in the document. The class attribute can have more then one
+     * class separated by white space.
+     *
+     * @param cls The class.
+     * @return Vector
+     */
+    public Vector<MarkupContent> getTagsByClass(String cls)
+    {
+        return find(MarkupIndex.CLASS, cls, false);
+    }
+
+    /**
+     * Returns the tags that are this content or under it that match the given CSS selector in the
+     * order they are in the document. See Selector for the selectors that are supported.
+     *
+     * @param selector The selector.
+     * @return Vector
+     * @throws IllegalArgumentException if the selector is not valid.
+     */
+    public Vector<MarkupContent> select(String selector) throws IllegalArgumentException
+    {
+        return Selector.compile(selector).select(this);
+    }
+
+    /**
+     * Returns the first tag that is this content or under it that matches the given CSS selector or
+     * null if there is not one.
+     *
+     * @param selector The selector.
+     * @return MarkupTag
+     * @throws IllegalArgumentException if the selector is not valid.
+     */
+    public MarkupTag selectFirst(String selector) throws IllegalArgumentException
+    {
+        return Selector.compile(selector).selectFirst(this);
+    }
+
+    /**
+     * Returns the content under this content in the order it is in the document, not including
+     * this content. The content is found as it is asked for rather then copied into a Vector, so
+     * stopping early does not look through the rest of the body. The stream can be made parallel
+     * unless the document is parsed lazily. The document should not be changed while going
+     * through it.
+     *
+     * @return Stream
+     */
+    public Stream<MarkupContent> descendants()
+    {
+        return StreamSupport.stream( new ContentSpliterator(this, ContentSpliterator.DESCENDANTS), false );
+    }
+
+    /**
+     * Returns the content in this content's body as it is asked for.
+     *
+     * @return Stream
+     */
+    public Stream<MarkupContent> children()
+    {
+        return StreamSupport.stream( new ContentSpliterator(this, ContentSpliterator.CHILDREN), false );
+    }
+
+    /**
+     * Returns the parents of this content as it is asked for, starting with its parent and ending
+     * with the top of the document.
+     *
+     * @return Stream
+     */
+    public Stream<MarkupContent> ancestors()
+    {
+        return StreamSupport.stream( new ContentSpliterator(this, ContentSpliterator.ANCESTORS), false );
+    }
+
+    /**
+     * Sets whether the document this content is in keeps an index of its content by class and of
+     * its tags by tag name, id, and class. When it does, search(Class), getTagById(String),
+     * getTagsByName(String), and getTagsByClass(String) only look at the content in the index
+     * rather then through the whole body. The index is kept up to date as content is added and
+     * removed and as tag names and id and class attributes are set through the tag. Attributes
+     * that are changed through the AttributeList or a TagAttribute itself are not seen by the
+     * index. The tags that select(String) looks at are taken from the index as well. The index
+     * is not used while the bodies of tags are parsed lazily or once content has been added to
+     * a body without being given the content as its parent. The top of a document that does not
+     * have a map (such as an XmlTag) is given one to keep the index in.
+     *
+     * @param index The indexing flag.
+     * @throws IllegalStateException if this content has a parent, but does not have a map.
+     */
+    public void setIndexing(boolean index) throws IllegalStateException
+    {
+        if (_map == null)
         {
-            if ( c.isAssignableFrom(getClass()) ) ret.add(this);
-            //Go through the body
-            int size = getBodySize();
-            for (int i=0; i<size; i++)
+            if (!index) return;
+            if (_parent != null) throw new IllegalStateException("Content without a map cannot be indexed");
+            setMap( new MarkupMap() );
+        }
+        _map.setIndexing(index);
+    }
+
+    /**
+     * Returns whether the document this content is in keeps an index of its content.
+     *
+     * @return boolean
+     */
+    public boolean isIndexing()
+    {
+        return (_map != null && _map.getIndex() != null);
+    }
+
+    /**
+     * Lets the index of the document this content is in know that something this content is
+     * indexed under has changed. Tags call this when their name or their id or class attribute
+     * is set.
+     */
+    protected void indexChanged()
+    {
+        MarkupIndex index = (_map != null ? _map.getIndex() : null);
+        if (index != null) index.update(this);
+    }
+
+    /**
+     * Returns the index of the document this content is in or null if it is not indexed or the index
+     * cannot be used to find everything in it.
+     *
+     * @return MarkupIndex
+     */
+    MarkupIndex getUsableIndex()
+    {
+        if (_map == null || _map.isLazyParsing() || _map._looseContent) return null;
+        return _map.getIndex();
+    }
+
+    /**
+     * Returns the content that is this content or under it that matches the given key in the order
+     * it is in the document. See MarkupIndex for the kinds of keys.
+     *
+     * @param kind What to look by.
+     * @param key What to look for.
+     * @param first Whether to return only the first content that matches.
+     * @return Vector
+     */
+    Vector<MarkupContent> find(int kind, Object key, boolean first)
+    {
+        Vector<MarkupContent> ret = new Vector<MarkupContent>();
+        if (key == null) return ret;
+        MarkupIndex index = getUsableIndex();
+        Vector<MarkupContent> candidates = (index != null ? index.get(kind, key) : null);
+        //Putting a good part of the document in order takes longer then looking through it
+        if (candidates == null || candidates.size()*16 > _map.size())
+        {
+            find(kind, key, first, ret);
+            return ret;
+        }
+        //The index can have content that does not match anymore or is not under this
+        int size = candidates.size();
+        Object[][] found = new Object[size][];
+        int count = 0;
+        for (int i=0; i<size; i++)
+        {
+            MarkupContent c = candidates.get(i);
+            if ( !matches(c, kind, key) ) continue;
+            int[] path = getPathTo(c);
+            if (path != null) found[count++] = new Object[] { path, c };
+        }
+        if (first && count > 1)
+        {
+            for (int i=1; i<count; i++)
             {
-                ret.addAll( getBodyContent(i).search(c) );
+                if (DOCUMENT_ORDER.compare(found[i], found[0]) < 0) found[0] = found[i];
             }
+            count = 1;
+        }
+        Arrays.sort(found, 0, count, DOCUMENT_ORDER);
+        for (int i=0; i<count; i++)
+        {
+            ret.add( (MarkupContent)found[i][1] );
+        }
+        return ret;
+    }
+
+    /**
+     * Adds this content and the content under it that matches the given key to the given Vector
+     * in the order it is in the document. Returns whether it should stop looking.
+     *
+     * @param kind What to look by.
+     * @param key What to look for.
+     * @param first Whether to stop at the first content that matches.
+     * @param ret The Vector to add to.
+     * @return boolean
+     */
+    private boolean find(int kind, Object key, boolean first, Vector<MarkupContent> ret)
+    {
+        if ( matches(this, kind, key) )
+        {
+            ret.add(this);
+            if (first) return true;
+        }
+        int size = getBodySize();
+        for (int i=0; i<size; i++)
+        {
+            if ( getBodyContent(i).find(kind, key, first, ret) ) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether the given content matches the given key.
+     *
+     * @param content The content.
+     * @param kind What to look by.
+     * @param key What to look for.
+     * @return boolean
+     */
+    private static boolean matches(MarkupContent content, int kind, Object key)
+    {
+        if (kind == MarkupIndex.TYPE) return ( (Class)key ).isInstance(content);
+        if ( !(content instanceof MarkupTag) ) return false;
+        MarkupTag tag = (MarkupTag)content;
+        if (kind == MarkupIndex.NAME) return ( (String)key ).equalsIgnoreCase( tag.getTagName() );
+        else if (kind == MarkupIndex.ID) return key.equals( tag.getIdAttribute() );
+        String cls = tag.getCustomAttribute("class");
+        if (cls == null) return false;
+        StringTokenizer tokens = new StringTokenizer(cls);
+        while ( tokens.hasMoreTokens() )
+        {
+            if ( key.equals(tokens.nextToken()) ) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the index in each body from this content down to the given content or null if the
+     * content is not under this content.
+     *
+     * @param content The content.
+     * @return int[]
+     */
+    private int[] getPathTo(MarkupContent content)
+    {
+        int length = 0;
+        for (MarkupContent c=content; c != this; c=c._parent)
+        {
+            if (c == null) return null;
+            length++;
+        }
+        int[] ret = new int[length];
+        for (MarkupContent c=content; c != this; c=c._parent)
+        {
+            int index = c._parent.getBodyAsParsed().indexOf(c);
+            if (index == -1) return null;
+            ret[--length] = index;
         }
         return ret;
     }
@@ -851,18 +2153,117 @@ public abstract class MarkupContent extends com.zitego.util.CachedContent implem
     public void parse(Object objToParse, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
     {
         if (objToParse == null) return;
+        else if (objToParse instanceof ParseCursor) parseCursor( (ParseCursor)objToParse, type );
         else if (objToParse instanceof StringBuffer) parseText( (StringBuffer)objToParse, type );
-        else if (objToParse instanceof String) parseText(new StringBuffer((String)objToParse), type);
+        else if (objToParse instanceof String) parseCursor(new ParseCursor((String)objToParse), type);
         else throw new IllegalMarkupException( "Unable to parse object type: "+objToParse.getClass() );
     }
 
     /**
-     * Needs to be implemented by extending classes.
+     * Parses the text at the cursor with parseText or with the deprecated StringBuffer version of it if
+     * the class of this content still overrides that. The override is only given a copy of the text up
+     * to the end of the next tag. If it passes the copy on to the class it extends, the rest is parsed
+     * from the cursor.
+     *
+     * @param text The text to parse.
+     * @param type The format type to parse as.
+     * @throws IllegalMarkupException if the content cannot be parsed.
+     * @throws UnsupportedFormatException if the format is not valid.
+     */
+    private void parseCursor(ParseCursor text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
+    {
+        if ( !overridesLegacyParseText(getClass()) )
+        {
+            parseText(text, type);
+            return;
+        }
+        int index = text.indexOf('>');
+        StringBuffer copy = text.lend( index != -1 ? index+1 : text.length() );
+        try
+        {
+            parseText(copy, type);
+        }
+        finally
+        {
+            text.takeBack();
+        }
+    }
+
+    /**
+     * Parses the given text and truncates the beginning of it up to where parsing stopped. The
+     * text is parsed with a ParseCursor and is only truncated once when parsing is done.
      *
      * @param text The text to parse.
      * @param type The format type to parse as.
+     * @throws IllegalMarkupException if the content cannot be parsed.
+     * @throws UnsupportedFormatException if the format is not valid.
+     */
+    public void parseText(StringBuffer text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
+    {
+        if (text == null) return;
+        ParseCursor cursor = ParseCursor.borrow(text);
+        int start = cursor.getPosition();
+        parseText(cursor, type);
+        text.delete( 0, Math.min(text.length(), cursor.getPosition()-start) );
+    }
+
+    /**
+     * Needs to be implemented by extending classes. The cursor is to be advanced past the text
+     * that was parsed. Classes that still only override the deprecated StringBuffer version have
+     * it called with a copy of the text instead.
+     *
+     * @param text The text to parse.
+     * @param type The format type to parse as.
+     * @throws IllegalMarkupException if the content cannot be parsed.
+     * @throws UnsupportedFormatException if the class does not override either version.
      */
-    public abstract void parseText(StringBuffer text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException;
+    public void parseText(ParseCursor text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
+    {
+        if ( !overridesLegacyParseText(getClass()) ) throw new UnsupportedFormatException( getClass()+" does not parse text" );
+        parseCursor(text, type);
+    }
+
+    /**
+     * Returns whether the given class of content or a class between it and this one overrides the
+     * deprecated parseText method that takes a StringBuffer.
+     *
+     * @param contentClass The class of content.
+     * @return boolean
+     */
+    private static boolean overridesLegacyParseText(Class contentClass)
+    {
+        Boolean ret = (Boolean)_legacyParseText.get(contentClass);
+        if (ret == null)
+        {
+            ret = Boolean.valueOf( declares(contentClass, MarkupContent.class, "parseText", new Class[] {StringBuffer.class, FormatType.class}) );
+            _legacyParseText.put(contentClass, ret);
+        }
+        return ret.booleanValue();
+    }
+
+    /**
+     * Returns whether the given class or a class between it and the given top class declares a method
+     * with the given name and parameters.
+     *
+     * @param c The class.
+     * @param top The class to stop at.
+     * @param name The method name.
+     * @param params The parameter types.
+     * @return boolean
+     */
+    protected static boolean declares(Class c, Class top, String name, Class[] params)
+    {
+        for (; c != null && c != top; c=c.getSuperclass())
+        {
+            try
+            {
+                c.getDeclaredMethod(name, params);
+                return true;
+            }
+            catch (NoSuchMethodException nsme) { }
+        }
+        return false;
+    }
 
     /**
      * Adds the given whitespace to the parent and sets the preserve whitespace flag based on the parent.
@@ -895,6 +2296,6 @@ public abstract class MarkupContent extends com.zitego.util.CachedContent implem
      */
     public boolean trimChildText()
     {
-        return !_preserveWhiteSpace;
+        return !preserveWhiteSpace();
     }
 }
\ No newline at end of file
@@ -1,12 +1,19 @@
 package com.zitego.markup;
 
 import com.zitego.markup.tag.MarkupTag;
+import com.zitego.markup.tag.TagSymbol;
 import com.zitego.markup.tag.UnknownTag;
 import com.zitego.markup.tag.UnnecessaryEndTag;
 import com.zitego.format.FormatType;
 import com.zitego.format.UnsupportedFormatException;
 import com.zitego.util.StaticProperties;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * This is a factory for producing markup content from a raw string. Call getInstance to have an
@@ -22,14 +29,94 @@ import java.util.Vector;
  */
 public class MarkupFactory
 {
+    /** The characters that end a tag name when parsing with a MarkupHandler. */
+    private static final char[] TAG_NAME_END = new char[] {' ', '>', '<', '/', '\r', '\n', '\t'};
+    /** The class of MarkupFactory that getInstance returns on the current thread if it has been set. */
+    private static final ThreadLocal<Class<? extends MarkupFactory>> _threadFactoryClass = new ThreadLocal<Class<? extends MarkupFactory>>();
+    /** The deprecated createTag method that takes a StringBuffer. */
+    private static final int CREATE_TAG = 1;
+    /** The deprecated getTagName method that takes a StringBuffer. */
+    private static final int GET_TAG_NAME = 2;
+    /** The deprecated createTextContent method that takes a StringBuffer. */
+    private static final int CREATE_TEXT_CONTENT = 4;
+    /** The deprecated StringBuffer methods that each class of factory overrides by class. */
+    private static final ConcurrentHashMap _legacyOverrides = new ConcurrentHashMap();
+    /** The deprecated StringBuffer methods that the class of this factory overrides. */
+    private final int _overrides = getLegacyOverrides( getClass() );
+    /** The deprecated StringBuffer methods that are being called in place of the ParseCursor ones. */
+    private int _legacyCalls = 0;
+
     /**
      * Returns an instance of the MarkupFactory to use. See class notes for details on manipulation of
-     * the type of MarkupFactory returned.
+     * the type of MarkupFactory returned. If a factory class has been set for the current thread with
+     * setThreadFactoryClass, then an instance of it is returned without looking at the properties.
      *
      * @return MarkupFactory
      * @throws RuntimeException if an error occurs creating the markup factory.
      */
-    public static synchronized MarkupFactory getInstance()
+    public static MarkupFactory getInstance()
+    {
+        MarkupFactory ret = getThreadInstance();
+        return ( ret != null ? ret : createInstance() );
+    }
+
+    /**
+     * Sets the class of MarkupFactory that getInstance returns on the current thread. The System and
+     * StaticProperties properties are shared by all threads, so threads that parse many documents at
+     * once can set the class here to keep from waiting on each other every time a factory is needed.
+     * Pass null to go back to using the properties.
+     *
+     * @param factoryClass The MarkupFactory class.
+     * @throws IllegalArgumentException if the class is not a MarkupFactory.
+     */
+    public static void setThreadFactoryClass(Class<?> factoryClass) throws IllegalArgumentException
+    {
+        if ( factoryClass != null && !MarkupFactory.class.isAssignableFrom(factoryClass) )
+        {
+            throw new IllegalArgumentException(factoryClass+" is not a MarkupFactory");
+        }
+        _threadFactoryClass.set( (factoryClass != null ? factoryClass.asSubclass(MarkupFactory.class) : null) );
+    }
+
+    /**
+     * Returns the class of MarkupFactory that getInstance returns on the current thread or null if
+     * it has not been set.
+     *
+     * @return Class
+     */
+    public static Class<? extends MarkupFactory> getThreadFactoryClass()
+    {
+        return _threadFactoryClass.get();
+    }
+
+    /**
+     * Returns a new instance of the factory class set for the current thread or null if it has not
+     * been set.
+     *
+     * @return MarkupFactory
+     * @throws RuntimeException if an error occurs creating the markup factory.
+     */
+    protected static MarkupFactory getThreadInstance()
+    {
+        Class<? extends MarkupFactory> c = _threadFactoryClass.get();
+        if (c == null) return null;
+        try
+        {
+            return c.getDeclaredConstructor().newInstance();
+        }
+        catch (ReflectiveOperationException roe)
+        {
+            throw new RuntimeException("Could not create markup factory: "+c.getName(), roe);
+        }
+    }
+
+    /**
+     * Returns a new instance of the factory class named by the properties. See class notes.
+     *
+     * @return MarkupFactory
+     * @throws RuntimeException if an error occurs creating the markup factory.
+     */
+    private static synchronized MarkupFactory createInstance()
     {
         MarkupFactory ret = null;
         String cp = System.getProperty("markup_factory");
@@ -38,11 +125,15 @@ public class MarkupFactory
             if (cp == null) cp = MarkupFactory.class.getName();
             ClassLoader l = (ClassLoader)StaticProperties.getProperty("markup_factory_classloader");
             if (l == null) l = MarkupFactory.class.getClassLoader();
-            ret = (MarkupFactory)Class.forName(cp, true, l).newInstance();
+            ret = Class.forName(cp, true, l).asSubclass(MarkupFactory.class).getDeclaredConstructor().newInstance();
         }
-        catch (Exception e)
+        catch (ReflectiveOperationException roe)
+        {
+            throw new RuntimeException("Could not create markup factory: "+cp, roe);
+        }
+        catch (ClassCastException cce)
         {
-            throw new RuntimeException("Could not create markup factory: "+cp, e);
+            throw new RuntimeException("Could not create markup factory: "+cp, cce);
         }
         return ret;
     }
@@ -111,80 +202,460 @@ public class MarkupFactory
     throws IllegalMarkupException, UnsupportedFormatException
     {
         if (in == null) return null;
+        ParseCursor cursor = new ParseCursor( in.toString() );
+        try
+        {
+            return parse(cursor, parent, type, keepParsing, strict, preserveSpaces);
+        }
+        finally
+        {
+            in.delete( 0, cursor.getPosition() );
+        }
+    }
+
+    /**
+     * Parses markup content starting at the cursor position the same way as the StringBuffer
+     * version of this method. Instead of truncating the text, the cursor is advanced past the
+     * content that was parsed.
+     *
+     * @param in The cursor to parse from.
+     * @param parent The parent.
+     * @param type The type of format to parse.
+     * @param keepParsing Whether to continue parsing after we reach the end of the first content.
+     * @param strict Whether or not parsing should be strict.
+     * @param preserveSpaces Whether to preserve spaces and not do additional formatting.
+     * @return MarkupContent[]
+     */
+    public MarkupContent[] parse(ParseCursor in, MarkupContent parent, FormatType type, boolean keepParsing, boolean strict, boolean preserveSpaces)
+    throws IllegalMarkupException, UnsupportedFormatException
+    {
+        if (in == null) return null;
+        //Siblings are parsed in a loop rather then recursively so that the number of them is not limited
+        //by the stack. They are all collected into the one vector that is returned
         Vector retTags = new Vector();
-        //See if we are returning text or a tag
-        StringBuffer preContent = MarkupContent.removeLeadingSpaces(in);
-        if ( preContent.length() > 0 && (preserveSpaces || (parent != null && !parent.trimChildText())) ) retTags.add( createTextContent(preContent, parent, type, preserveSpaces) );
-
-        //If this is an end tag, we have to check to see if it is the end tag of the parent.
-        //If so, return and let the tag finish up. If not, skip past it because it is misplaced
-        //and continue parsing
-        while (in.length() > 1 && in.charAt(0) == '<' && in.charAt(1) == '/')
-        {
-            int index = in.indexOf(">");
-            if (index == -1) index = in.length();
-            //Check the tag
-            String tag = in.substring(2,index);
-            if ( parent != null && parent instanceof MarkupTag && ((MarkupTag)parent).getTagName().equalsIgnoreCase(tag) )
+        boolean more = true;
+        while (more)
+        {
+            //Nothing before the next sibling is needed anymore
+            in.discard();
+            //See if we are returning text or a tag
+            CharSequence preContent = MarkupContent.skipLeadingSpaces( in, (preserveSpaces || (parent != null && !parent.trimChildText())) );
+            if (preContent != null) retTags.add( newTextContent(new ParseCursor(preContent), parent, type, preserveSpaces) );
+
+            //If this is an end tag, we have to check to see if it is the end tag of the parent.
+            //If so, return and let the tag finish up. If not, skip past it because it is misplaced
+            //and continue parsing
+            while (in.length() > 1 && in.charAt(0) == '<' && in.charAt(1) == '/')
             {
-                return contentArray(retTags, null);
+                int index = in.indexOf('>');
+                if (index == -1) index = in.length();
+                //Check the tag
+                if ( parent instanceof MarkupTag && ((MarkupTag)parent).isTagName(in, 2, index) )
+                {
+                    return contentArray(retTags, null);
+                }
+                else
+                {
+                    if (preserveSpaces)
+                    {
+                        String endTag = in.substring(0, index+1);
+                        UnnecessaryEndTag end = ( parent != null ? new UnnecessaryEndTag(parent, endTag) : new UnnecessaryEndTag(endTag) );
+                        end.setStrict(strict);
+                        end.setPreserveWhiteSpace(preserveSpaces);
+                        retTags.add(end);
+                    }
+                    in.skip(index+1);
+                    preContent = MarkupContent.skipLeadingSpaces(in, preserveSpaces);
+                    if (preContent != null) retTags.add( newTextContent(new ParseCursor(preContent), parent, type, preserveSpaces) );
+                }
+            }
+            if (in.length() == 0) break;
+            if (in.charAt(0) == '<')
+            {
+                //Create the tag
+                retTags.add( newTag(in, parent, type, strict, preserveSpaces) );
             }
             else
             {
-                if (preserveSpaces)
-                {
-                    String endTag = in.substring(0, index+1);
-                    UnnecessaryEndTag end = ( parent != null ? new UnnecessaryEndTag(parent, endTag) : new UnnecessaryEndTag(endTag) );
-                    end.setStrict(strict);
-                    end.setPreserveWhiteSpace(preserveSpaces);
-                    retTags.add(end);
-                }
-                in.delete(0, index+1);
-                preContent = MarkupContent.removeLeadingSpaces(in);
-                if (preserveSpaces && preContent.length() > 0) retTags.add( createTextContent(preContent, parent, type, preserveSpaces) );
+                //Create the text content
+                retTags.add( newTextContent(in, parent, type, preserveSpaces) );
             }
+            more = (keepParsing && in.length() > 0);
         }
-        if (in.length() == 0) return contentArray(retTags, null);
-        if (in.charAt(0) == '<')
+
+        return contentArray(retTags, null);
+    }
+
+    /**
+     * Parses all of the markup content that can be read from the given reader. The text is read through a
+     * CharStream, so only a window of it is held in memory at a time rather then the whole document. The
+     * reader is not closed.
+     *
+     * @param in The reader.
+     * @param parent The parent.
+     * @param type The type of format to parse.
+     * @param strict Whether or not parsing should be strict.
+     * @param preserveSpaces Whether to preserve spaces and not do additional formatting.
+     * @return MarkupContent[]
+     * @throws IOException if an error occurs reading.
+     */
+    public MarkupContent[] parse(Reader in, MarkupContent parent, FormatType type, boolean strict, boolean preserveSpaces)
+    throws IOException, IllegalMarkupException, UnsupportedFormatException
+    {
+        if (in == null) return null;
+        CharStream stream = new CharStream(in);
+        MarkupContent[] ret = parse(new ParseCursor(stream), parent, type, true, strict, preserveSpaces);
+        stream.checkError();
+        return ret;
+    }
+
+    /**
+     * Parses all of the markup content that can be read from the given byte stream. See
+     * <code>CharStream.forInputStream(InputStream, Charset)</code> for how the charset is determined when it
+     * is null. The stream is not closed.
+     *
+     * @param in The byte stream.
+     * @param charset The charset or null to detect it.
+     * @param parent The parent.
+     * @param type The type of format to parse.
+     * @param strict Whether or not parsing should be strict.
+     * @param preserveSpaces Whether to preserve spaces and not do additional formatting.
+     * @return MarkupContent[]
+     * @throws IOException if an error occurs reading.
+     */
+    public MarkupContent[] parse(InputStream in, Charset charset, MarkupContent parent, FormatType type, boolean strict, boolean preserveSpaces)
+    throws IOException, IllegalMarkupException, UnsupportedFormatException
+    {
+        if (in == null) return null;
+        CharStream stream = CharStream.forInputStream(in, charset);
+        MarkupContent[] ret = parse(new ParseCursor(stream), parent, type, true, strict, preserveSpaces);
+        stream.checkError();
+        return ret;
+    }
+
+    /**
+     * Parses all of the markup content in the given file. The file is memory mapped rather then read
+     * into the heap (see <code>MappedText.map(File, Charset)</code>), so only the parts of it that are
+     * being parsed need to be loaded. Text and attribute values are kept as views of the mapped file
+     * until they are changed. See <code>CharStream.forInputStream(InputStream, Charset)</code> for how
+     * the charset is determined when it is null.
+     *
+     * @param f The file.
+     * @param charset The charset or null to detect it.
+     * @param parent The parent.
+     * @param type The type of format to parse.
+     * @param strict Whether or not parsing should be strict.
+     * @param preserveSpaces Whether to preserve spaces and not do additional formatting.
+     * @return MarkupContent[]
+     * @throws IOException if an error occurs mapping the file.
+     */
+    public MarkupContent[] parse(File f, Charset charset, MarkupContent parent, FormatType type, boolean strict, boolean preserveSpaces)
+    throws IOException, IllegalMarkupException, UnsupportedFormatException
+    {
+        if (f == null) return null;
+        return parse(new ParseCursor( MappedText.map(f, charset) ), parent, type, true, strict, preserveSpaces);
+    }
+
+    /**
+     * Parses the text from the given reader and passes the markup to the handler. See
+     * <code>parse(CharSequence, MarkupHandler)</code>. Only a window of the text is held in memory
+     * at a time. The reader is not closed.
+     *
+     * @param in The reader.
+     * @param handler The handler to pass the markup to.
+     * @throws IOException if an error occurs reading.
+     */
+    public void parse(Reader in, MarkupHandler handler) throws IOException, IllegalMarkupException
+    {
+        if (in == null) return;
+        CharStream stream = new CharStream(in);
+        parse(new ParseCursor(stream), handler);
+        stream.checkError();
+    }
+
+    /**
+     * Parses the text from the given byte stream and passes the markup to the handler. See
+     * <code>CharStream.forInputStream(InputStream, Charset)</code> for how the charset is determined when it
+     * is null. The stream is not closed.
+     *
+     * @param in The byte stream.
+     * @param charset The charset or null to detect it.
+     * @param handler The handler to pass the markup to.
+     * @throws IOException if an error occurs reading.
+     */
+    public void parse(InputStream in, Charset charset, MarkupHandler handler) throws IOException, IllegalMarkupException
+    {
+        if (in == null) return;
+        CharStream stream = CharStream.forInputStream(in, charset);
+        parse(new ParseCursor(stream), handler);
+        stream.checkError();
+    }
+
+    /**
+     * Parses the given file and passes the markup to the handler. The file is memory mapped rather then
+     * read into the heap. See <code>parse(File, Charset, MarkupContent, FormatType, boolean, boolean)</code>.
+     *
+     * @param f The file.
+     * @param charset The charset or null to detect it.
+     * @param handler The handler to pass the markup to.
+     * @throws IOException if an error occurs mapping the file.
+     */
+    public void parse(File f, Charset charset, MarkupHandler handler) throws IOException, IllegalMarkupException
+    {
+        if (f == null) return;
+        parse(new ParseCursor( MappedText.map(f, charset) ), handler);
+    }
+
+    /**
+     * Parses the given text and passes each doctype, start tag, attribute, piece of text, comment, and end
+     * tag to the handler in the order they are found. No markup content is created, so the memory used does
+     * not grow with the size of the document. Tags are reported exactly as they appear. That is, they are not
+     * checked against the tags this factory knows about and end tags are not implied. The given text is not
+     * modified.
+     *
+     * @param in The text to parse.
+     * @param handler The handler to pass the markup to.
+     * @throws IllegalMarkupException if the handler throws one.
+     */
+    public void parse(CharSequence in, MarkupHandler handler) throws IllegalMarkupException
+    {
+        if (in == null) return;
+        parse(new ParseCursor(in), handler);
+    }
+
+    /**
+     * Parses the text at the given cursor and passes each doctype, start tag, attribute, piece of text,
+     * comment, and end tag to the handler in the order they are found. See <code>parse(CharSequence,
+     * MarkupHandler)</code>. The cursor is left at the end of the text.
+     *
+     * @param in The cursor to parse from.
+     * @param handler The handler to pass the markup to.
+     * @throws IllegalMarkupException if the handler throws one.
+     */
+    public void parse(ParseCursor in, MarkupHandler handler) throws IllegalMarkupException
+    {
+        if (in == null || handler == null) return;
+
+        while (in.length() > 0)
         {
-            //Create the tag
-            retTags.add( createTag(in, parent, type, strict, preserveSpaces) );
+            in.discard();
+            int index = indexOfMarkup(in, 0);
+            if (index != 0)
+            {
+                //Everything up to the next tag is text
+                if (index == -1) index = in.length();
+                handler.text( in.consume(index) );
+            }
+            else if ( in.startsWith("<!--") )
+            {
+                in.skip(4);
+                index = in.indexOf("-->");
+                if (index == -1) index = in.length();
+                handler.comment( in.consume(index) );
+                in.skip(3);
+            }
+            else if (in.charAt(1) == '!' || in.charAt(1) == '?')
+            {
+                index = in.indexOf('>');
+                if (index == -1) index = in.length();
+                handler.doctype( in.substring(2, index) );
+                in.skip(index+1);
+            }
+            else if (in.charAt(1) == '/')
+            {
+                index = in.indexOf('>');
+                if (index == -1) index = in.length();
+                handler.endTag( in.substring(2, index).trim() );
+                in.skip(index+1);
+            }
+            else
+            {
+                in.skip(1);
+                String name = in.getTextUpTo(TAG_NAME_END);
+                handler.startTag(name);
+                if ( MarkupTag.parseAttributes(in, handler) )
+                {
+                    handler.endTag(name);
+                }
+                else if ( hasRawTextBody(name) )
+                {
+                    //The body is not markup, so it is all text up to the end tag
+                    index = in.indexOfIgnoreCase("</"+name, 0);
+                    if (index == -1) index = in.length();
+                    if (index > 0) handler.text( in.consume(index) );
+                }
+            }
         }
-        else
+    }
+
+    /**
+     * Returns the index of the next &lt; that starts a tag, comment, or declaration relative to the cursor
+     * position. A &lt; that is followed by anything else is just text. -1 is returned if there is not one.
+     *
+     * @param in The cursor.
+     * @param from The index to start looking at.
+     * @return int
+     */
+    private static int indexOfMarkup(ParseCursor in, int from)
+    {
+        int index = in.indexOf('<', from);
+        while (index != -1 && index+1 < in.length())
         {
-            //Create the text content
-            retTags.add( createTextContent(in, parent, type, preserveSpaces) );
+            char c = in.charAt(index+1);
+            if ( Character.isLetter(c) || c == '/' || c == '!' || c == '?' ) return index;
+            index = in.indexOf('<', index+1);
         }
-        MarkupContent[] more = new MarkupContent[0];
-        if (keepParsing && in.length() > 0) more = parse(in, parent, type, keepParsing, strict, preserveSpaces);
+        return -1;
+    }
 
-        return contentArray(retTags, more);
+    /**
+     * Returns whether the body of the given tag is raw text rather then markup, such as a script.
+     * This is used when parsing with a MarkupHandler. The default is false for all tags.
+     *
+     * @param name The tag name.
+     * @return boolean
+     */
+    protected boolean hasRawTextBody(String name)
+    {
+        return false;
     }
 
     /**
-     * Returns a markup content array of the vector of markup content.
+     * Returns a markup content array of the vector of markup content. Any null content
+     * is left out.
      *
+     * @param content The content.
+     * @param more Additional content to add to the end.
      * @return MarkupContent[]
      */
     protected MarkupContent[] contentArray(Vector content, MarkupContent[] more)
     {
-        if (content == null) content = new Vector();
-        if (more == null) more = new MarkupContent[0];
-        //Add more content to the content vector
-        for (int i=0; i<more.length; i++)
+        int size = (content != null ? content.size() : 0);
+        int moreSize = (more != null ? more.length : 0);
+        MarkupContent[] ret = new MarkupContent[size+moreSize];
+        int count = 0;
+        for (int i=0; i<size; i++)
         {
-            if (more[i] != null) content.add(more[i]);
+            MarkupContent c = (MarkupContent)content.get(i);
+            if (c != null) ret[count++] = c;
         }
-        //Remove any null content
-        for (int i=0; i<content.size(); i++)
+        for (int i=0; i<moreSize; i++)
         {
-            if (content.get(i) == null) content.remove(i--);
+            if (more[i] != null) ret[count++] = more[i];
+        }
+        if (count < ret.length)
+        {
+            MarkupContent[] tmp = new MarkupContent[count];
+            System.arraycopy(ret, 0, tmp, 0, count);
+            ret = tmp;
         }
-        MarkupContent[] ret = new MarkupContent[content.size()];
-        content.copyInto(ret);
         return ret;
     }
 
+    /**
+     * Returns the absolute index in the text of the end tag of the given parent whose body is being
+     * parsed at the cursor or -1 if it cannot be found without parsing the body. A body is only kept
+     * to be parsed later when its end is found (see <code>MarkupContent.setLazyParsing(boolean)</code>).
+     * This returns -1, since it does not know which tags have end tags. Subclasses that do can override
+     * it. The cursor is not moved.
+     *
+     * @param in The text.
+     * @param parent The parent.
+     * @return int
+     */
+    protected int findBodyEnd(ParseCursor in, MarkupContent parent)
+    {
+        return -1;
+    }
+
+    /**
+     * Parses the content at the old content's source start in the given source as new content for the
+     * parent the old content is in. The new content is left at the end of the parent's body and returned.
+     * The text is not cut off at the given end, so an edit that opens a quote, comment, or attribute is
+     * read past it the same as it would be when parsing the whole source. The new content is only
+     * returned when it parses into one tag that stops exactly at the given end with its own end tag (if
+     * it has one), so the text after it would be parsed the same as before. Otherwise, anything that was
+     * added to the parent is taken back out and null is returned.
+     *
+     * @param old The content being reparsed.
+     * @param parent The content the old content is in.
+     * @param source The source text.
+     * @param end The index in the source where the new content should end.
+     * @param type The format type to parse as.
+     * @return MarkupContent
+     * @throws UnsupportedFormatException if the format type is not parsable.
+     */
+    protected MarkupContent reparse(MarkupContent old, MarkupContent parent, CharSequence source, int end, FormatType type)
+    throws UnsupportedFormatException
+    {
+        int start = old.getSourceStart();
+        if (parent == null || start < 0 || end <= start || end > source.length()) return null;
+        MarkupBody body = parent.getBody();
+        int size = body.size();
+        MarkupContent last = (MarkupContent)body.get(size-1);
+        int breaks = last.getLineBreaks().size();
+        ParseCursor in = new ParseCursor( source, start, source.length() );
+        MarkupContent[] content = null;
+        try
+        {
+            content = parse( in, parent, type, false, parent.isStrict(), parent.preserveWhiteSpace() );
+        }
+        catch (IllegalMarkupException ime)
+        {
+            content = null;
+        }
+
+        if ( content != null && content.length == 1 && in.getPosition() == end && body.size() == size+1 &&
+             body.get(size) == content[0] && content[0].getSourceStart() == start && content[0].getSourceEnd() == end &&
+             isClosed(content[0], source, start, end) )
+        {
+            return content[0];
+        }
+
+        //Take back what was added
+        while (body.size() > size)
+        {
+            ( (MarkupContent)body.remove(body.size()-1) ).unmap();
+        }
+        Vector lineBreaks = last.getLineBreaks();
+        while (lineBreaks.size() > breaks)
+        {
+            ( (MarkupContent)lineBreaks.remove(lineBreaks.size()-1) ).unmap();
+        }
+        return null;
+    }
+
+    /**
+     * Returns whether the given content that was parsed from the given range of the source ends with
+     * its own end tag if it has one. It does if all of the tags in its body end before the last end tag
+     * in the range and that end tag has its name.
+     *
+     * @param content The content.
+     * @param source The source text.
+     * @param start The index where the content starts.
+     * @param end The index where the content ends.
+     * @return boolean
+     */
+    private boolean isClosed(MarkupContent content, CharSequence source, int start, int end)
+    {
+        if ( !(content instanceof MarkupTag) ) return false;
+        MarkupTag tag = (MarkupTag)content;
+        if ( !tag.hasEndTag() ) return true;
+        int index = end-1;
+        while (index > start && source.charAt(index) != '<')
+        {
+            index--;
+        }
+        if ( index == start || source.charAt(index+1) != '/' || source.charAt(end-1) != '>' || !tag.isTagName(source, index+2, end-1) ) return false;
+        MarkupBody body = content.getBodyAsParsed();
+        int size = body.size();
+        for (int i=0; i<size; i++)
+        {
+            if ( ((MarkupContent)body.get(i)).getSourceEnd() > index ) return false;
+        }
+        return true;
+    }
+
     /**
      * Creates a markup content given the tag name. This method expects that the first character is
      * always a <. If it isn't then bad things may happen.
@@ -198,10 +669,11 @@ public class MarkupFactory
      * @throws IllegalMarkupException if the text is invalid.
      * @throws UnsupportedFormatException if the format type is not parsable.
      */
-    protected MarkupTag createTag(StringBuffer in, MarkupContent parent, FormatType type, boolean strict, boolean preserveSpaces)
+    protected MarkupTag createTag(ParseCursor in, MarkupContent parent, FormatType type, boolean strict, boolean preserveSpaces)
     throws IllegalMarkupException, UnsupportedFormatException
     {
         MarkupTag ret = null;
+        int start = in.getPosition();
         String tag = getTagName(in);
         try
         {
@@ -210,43 +682,70 @@ public class MarkupFactory
         }
         catch (Exception e)
         {
-            throw new IllegalMarkupException("Illegal markup tag: "+tag+" could not be created: ", e);
+            //When lenient, keep it as an unknown tag
+            ParseDiagnostics diagnostics = ( parent != null && !strict ? parent.getParseDiagnostics() : null );
+            if (diagnostics == null) throw new IllegalMarkupException("Illegal markup tag: "+tag+" could not be created: ", e);
+            diagnostics.add(in.getPosition(), ParseDiagnostics.TAG_NOT_CREATED, tag);
+            ret = createUnknownTag(tag, parent);
         }
         if (parent == null)
         {
             ret.setStrict(strict);
             ret.setPreserveWhiteSpace(preserveSpaces);
         }
+        else if (ret.getMap() == null && parent.isLenient())
+        {
+            //Tags created without a parent need the map to record problems parsing them
+            ret.setMap( parent.getMap() );
+            ret.setStrict(false);
+        }
         ret.parse(in, type);
+        ( (MarkupContent)ret ).setSourceSpan( start, in.getPosition() );
         return ret;
     }
 
     /**
      * Returns the tag name given the content string. This will not delete the tag
-     * name from the text string.
+     * name from the text string. The name is returned as it is spelled in the text. If it
+     * is spelled the same as the name of its TagSymbol, then the symbol's name is returned
+     * rather then a new String.
      *
      * @param in The content.
      * @return String
      * @throws IllegalMarkupException if the tag is invalid.
      */
-    protected String getTagName(StringBuffer in) throws IllegalMarkupException
+    protected String getTagName(ParseCursor in) throws IllegalMarkupException
     {
         if (in == null) return null;
+        if ( (_overrides & GET_TAG_NAME) != 0 && (_legacyCalls & GET_TAG_NAME) == 0 )
+        {
+            //The override is only given the start tag
+            StringBuffer text = in.lend( getStartTagLength(in) );
+            try
+            {
+                return getTagName(text);
+            }
+            finally
+            {
+                in.takeBack();
+            }
+        }
 
-        MarkupContent.removeLeadingSpaces(in);
-        if (in.charAt(0) != '<') throw new IllegalMarkupException("Invalid tag: "+in);
+        MarkupContent.skipLeadingSpaces(in);
+        if (in.charAt(0) != '<') throw new IllegalMarkupException("Invalid tag: "+in.peek(25));
 
-        StringBuffer tag = new StringBuffer();
         int size = in.length();
         //Special case comment tag
-        if (in.indexOf("<!--") == 0) return "!--";
-        for (int i=1; i<size; i++)
+        if ( in.startsWith("<!--") ) return "!--";
+        int i = 1;
+        for (; i<size; i++)
         {
             char c = in.charAt(i);
             if (c == ' ' || c == '>' || c == '<' || c == '\r' || c == '\n') break;
-            else tag.append(c);
         }
-        return tag.toString();
+        //Known names spelled in lower case use their symbol's name so that no String is created for them
+        TagSymbol symbol = TagSymbol.lookup(in, 1, i);
+        return ( symbol != null && symbol.isSpelledBy(in, 1, i) ? symbol.getName() : in.substring(1, i) );
     }
 
     /**
@@ -272,17 +771,232 @@ public class MarkupFactory
      * @param preserveSpaces Whether or not to preserve spaces.
      * @return TextContent
      */
-    protected TextContent createTextContent(StringBuffer in, MarkupContent parent, FormatType type, boolean preserveSpaces)
+    protected TextContent createTextContent(ParseCursor in, MarkupContent parent, FormatType type, boolean preserveSpaces)
     throws IllegalMarkupException, UnsupportedFormatException
     {
         if (in == null) return null;
 
-        TextContent ret = ( parent != null ? new TextContent(parent) : new TextContent() );
+        ParseArena arena = (parent != null ? parent.getParseArena() : null);
+        TextContent ret = (arena != null ? (TextContent)arena.take(TextContent.class) : null);
+        if (ret != null)
+        {
+            ret.setParent(parent);
+        }
+        else
+        {
+            ret = ( parent != null ? new TextContent(parent) : new TextContent() );
+            if (arena != null) arena.add(ret);
+        }
         ret.setPreserveWhiteSpace(preserveSpaces);
         ret.parse(in, type);
         return ret;
     }
 
+    /**
+     * Creates a markup content given the tag name and deletes the text it was parsed from.
+     *
+     * @param in The content.
+     * @param parent The parent content.
+     * @param type The type of format to use when parsing.
+     * @param strict Whether the parsing done should be strict.
+     * @param preserveSpaces Whether to preserve spaces and not do additional formatting.
+     * @return MarkupTag
+     * @throws IllegalMarkupException if the text is invalid.
+     * @throws UnsupportedFormatException if the format type is not parsable.
+     * @deprecated Override createTag(ParseCursor, MarkupContent, FormatType, boolean, boolean) instead.
+     *             Subclasses that still override this have it called in place of that method.
+     */
+    protected MarkupTag createTag(StringBuffer in, MarkupContent parent, FormatType type, boolean strict, boolean preserveSpaces)
+    throws IllegalMarkupException, UnsupportedFormatException
+    {
+        ParseCursor cursor = ParseCursor.borrow(in);
+        int start = cursor.getPosition();
+        try
+        {
+            return createTag(cursor, parent, type, strict, preserveSpaces);
+        }
+        finally
+        {
+            in.delete( 0, Math.min(in.length(), cursor.getPosition()-start) );
+        }
+    }
+
+    /**
+     * Returns the tag name given the content string. Leading spaces are deleted from the text.
+     *
+     * @param in The content.
+     * @return String
+     * @throws IllegalMarkupException if the tag is invalid.
+     * @deprecated Override getTagName(ParseCursor) instead. Subclasses that still override this have
+     *             it called in place of that method.
+     */
+    protected String getTagName(StringBuffer in) throws IllegalMarkupException
+    {
+        if (in == null) return null;
+        ParseCursor cursor = ParseCursor.borrow(in);
+        int start = cursor.getPosition();
+        int calls = _legacyCalls;
+        _legacyCalls |= GET_TAG_NAME;
+        try
+        {
+            return getTagName(cursor);
+        }
+        finally
+        {
+            _legacyCalls = calls;
+            in.delete( 0, Math.min(in.length(), cursor.getPosition()-start) );
+        }
+    }
+
+    /**
+     * Creates and returns an TextContent given the content string and a parent and deletes the text
+     * it was parsed from.
+     *
+     * @param in The content.
+     * @param parent The parent tag.
+     * @param type The type of format to parse.
+     * @param preserveSpaces Whether or not to preserve spaces.
+     * @return TextContent
+     * @deprecated Override createTextContent(ParseCursor, MarkupContent, FormatType, boolean) instead.
+     *             Subclasses that still override this have it called in place of that method.
+     */
+    protected TextContent createTextContent(StringBuffer in, MarkupContent parent, FormatType type, boolean preserveSpaces)
+    throws IllegalMarkupException, UnsupportedFormatException
+    {
+        if (in == null) return null;
+        ParseCursor cursor = ParseCursor.borrow(in);
+        int start = cursor.getPosition();
+        try
+        {
+            return createTextContent(cursor, parent, type, preserveSpaces);
+        }
+        finally
+        {
+            in.delete( 0, Math.min(in.length(), cursor.getPosition()-start) );
+        }
+    }
+
+    /**
+     * Creates a tag at the cursor with createTag or with the deprecated StringBuffer version of it if
+     * the class of this factory still overrides that. The override is only given a copy of the start tag.
+     * If it passes the copy on to this class, the tag and its body are parsed from the cursor.
+     *
+     * @param in The content.
+     * @param parent The parent content.
+     * @param type The type of format to use when parsing.
+     * @param strict Whether the parsing done should be strict.
+     * @param preserveSpaces Whether to preserve spaces and not do additional formatting.
+     * @return MarkupTag
+     * @throws IllegalMarkupException if the text is invalid.
+     * @throws UnsupportedFormatException if the format type is not parsable.
+     */
+    private MarkupTag newTag(ParseCursor in, MarkupContent parent, FormatType type, boolean strict, boolean preserveSpaces)
+    throws IllegalMarkupException, UnsupportedFormatException
+    {
+        if ( (_overrides & CREATE_TAG) == 0 ) return createTag(in, parent, type, strict, preserveSpaces);
+        StringBuffer text = in.lend( getStartTagLength(in) );
+        try
+        {
+            return createTag(text, parent, type, strict, preserveSpaces);
+        }
+        finally
+        {
+            in.takeBack();
+        }
+    }
+
+    /**
+     * Creates text content at the cursor with createTextContent or with the deprecated StringBuffer
+     * version of it if the class of this factory still overrides that. The override is only given a
+     * copy of the text up to the next tag.
+     *
+     * @param in The content.
+     * @param parent The parent tag.
+     * @param type The type of format to parse.
+     * @param preserveSpaces Whether or not to preserve spaces.
+     * @return TextContent
+     */
+    private TextContent newTextContent(ParseCursor in, MarkupContent parent, FormatType type, boolean preserveSpaces)
+    throws IllegalMarkupException, UnsupportedFormatException
+    {
+        if ( (_overrides & CREATE_TEXT_CONTENT) == 0 ) return createTextContent(in, parent, type, preserveSpaces);
+        int index = in.indexOf('<');
+        StringBuffer text = in.lend( index != -1 ? index : in.length() );
+        try
+        {
+            return createTextContent(text, parent, type, preserveSpaces);
+        }
+        finally
+        {
+            in.takeBack();
+        }
+    }
+
+    /**
+     * Returns the number of characters at the cursor up to and including the next &gt; or the rest
+     * of the text if there is not one.
+     *
+     * @param in The content.
+     * @return int
+     */
+    private static int getStartTagLength(ParseCursor in)
+    {
+        int index = in.indexOf('>');
+        return (index != -1 ? index+1 : in.length());
+    }
+
+    /**
+     * Returns the deprecated StringBuffer methods that the given class of factory or a class between
+     * it and this one overrides.
+     *
+     * @param factoryClass The class of factory.
+     * @return int
+     */
+    private static int getLegacyOverrides(Class factoryClass)
+    {
+        Integer ret = (Integer)_legacyOverrides.get(factoryClass);
+        if (ret == null)
+        {
+            int overrides = 0;
+            for (Class c=factoryClass; c != MarkupFactory.class; c=c.getSuperclass())
+            {
+                if ( declares(c, "createTag", new Class[] {StringBuffer.class, MarkupContent.class, FormatType.class, boolean.class, boolean.class}) )
+                {
+                    overrides |= CREATE_TAG;
+                }
+                if ( declares(c, "getTagName", new Class[] {StringBuffer.class}) ) overrides |= GET_TAG_NAME;
+                if ( declares(c, "createTextContent", new Class[] {StringBuffer.class, MarkupContent.class, FormatType.class, boolean.class}) )
+                {
+                    overrides |= CREATE_TEXT_CONTENT;
+                }
+            }
+            ret = Integer.valueOf(overrides);
+            _legacyOverrides.put(factoryClass, ret);
+        }
+        return ret.intValue();
+    }
+
+    /**
+     * Returns whether the given class declares a method with the given name and parameters.
+     *
+     * @param c The class.
+     * @param name The method name.
+     * @param params The parameter types.
+     * @return boolean
+     */
+    private static boolean declares(Class c, String name, Class[] params)
+    {
+        try
+        {
+            c.getDeclaredMethod(name, params);
+            return true;
+        }
+        catch (NoSuchMethodException nsme)
+        {
+            return false;
+        }
+    }
+
     /**
      * Creates and returns an UnknownTag given the tag name and parent.
      *
@@ -0,0 +1,65 @@
+package com.zitego.markup;
+
+/**
+ * This interface is notified of the markup found in a document as it is being parsed by
+ * the MarkupFactory's <code>parse(ParseCursor, MarkupHandler)</code> method. No markup content is
+ * created when parsing this way, so it can be used to pull links, meta data, etc out of
+ * a document without building the entire tree. The events are received in document order.
+ * Text and attribute values are passed as they appear in the document. Attribute values
+ * are passed as spans of the document text (see <code>ParseCursor.span(int, int)</code>), so
+ * call toString on them to keep them.
+ *
+ * @author John Glorioso
+ * @version $Id$
+ * @see DefaultMarkupHandler
+ */
+public interface MarkupHandler
+{
+    /**
+     * Called when a doctype or other declaration is found. The text is everything between
+     * the &lt;! (or &lt;?) and the closing &gt;.
+     *
+     * @param text The declaration text.
+     */
+    public void doctype(String text);
+
+    /**
+     * Called when a start tag is found. Each attribute is then passed to attribute before
+     * the next event.
+     *
+     * @param name The tag name as it appears in the document.
+     */
+    public void startTag(String name);
+
+    /**
+     * Called for each attribute in the last start tag. The value is null if the attribute
+     * has only a name.
+     *
+     * @param name The attribute name.
+     * @param value The attribute value without the quotes.
+     * @param quote The quote character around the value or 0 if it was not quoted.
+     */
+    public void attribute(String name, CharSequence value, char quote);
+
+    /**
+     * Called when text is found between tags.
+     *
+     * @param text The text.
+     */
+    public void text(String text);
+
+    /**
+     * Called when a comment is found. The text is everything between the &lt;!-- and --&gt;.
+     *
+     * @param text The comment.
+     */
+    public void comment(String text);
+
+    /**
+     * Called when an end tag is found. This is also called right after the start tag for
+     * tags that are closed in the start tag (such as &lt;br /&gt;).
+     *
+     * @param name The tag name as it appears in the document.
+     */
+    public void endTag(String name);
+}
@@ -0,0 +1,216 @@
+package com.zitego.markup;
+
+import com.zitego.markup.tag.MarkupTag;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.StringTokenizer;
+import java.util.Vector;
+
+/**
+ * This keeps the content stored in a MarkupMap by class and the tags by lower cased tag name, id,
+ * and each token in their class attributes. The map adds and removes content as it is stored and
+ * removed. Tags let the index know when their name or their id or class attribute is set (see
+ * <code>MarkupContent.indexChanged()</code>). A document keeps an index when indexing is turned on
+ * for it (see <code>MarkupContent.setIndexing(boolean)</code>).<br>
+ * <br>
+ * The index only narrows down where to look. It can still have content that was moved out of the
+ * document or whose attributes were changed without the tag knowing, so whatever is found has to be
+ * checked by the one asking.
+ *
+ * @author John Glorioso
+ * @version $Id$
+ */
+public class MarkupIndex
+{
+    /** Looks for content by class. */
+    static final int TYPE = 0;
+    /** Looks for tags by tag name. */
+    static final int NAME = 1;
+    /** Looks for tags by id. */
+    static final int ID = 2;
+    /** Looks for tags by a token in the class attribute. */
+    static final int CLASS = 3;
+
+    /** The content by class. */
+    private HashMap<Object, HashSet<MarkupContent>> _byType = new HashMap<Object, HashSet<MarkupContent>>();
+    /** The tags by lower cased tag name. */
+    private HashMap<Object, HashSet<MarkupContent>> _byName = new HashMap<Object, HashSet<MarkupContent>>();
+    /** The tags by id. */
+    private HashMap<Object, HashSet<MarkupContent>> _byId = new HashMap<Object, HashSet<MarkupContent>>();
+    /** The tags by each token in their class attributes. */
+    private HashMap<Object, HashSet<MarkupContent>> _byClass = new HashMap<Object, HashSet<MarkupContent>>();
+    /** The name, id, and class tokens that each tag is kept under. */
+    private HashMap<MarkupContent, String[]> _keys = new HashMap<MarkupContent, String[]>();
+
+    /**
+     * Creates a new index of the content that is stored in the given map.
+     *
+     * @param map The map.
+     */
+    MarkupIndex(MarkupMap map)
+    {
+        MarkupContent[] content = map.getContent();
+        for (int i=0; i<content.length; i++)
+        {
+            add(content[i]);
+        }
+    }
+
+    /**
+     * Adds content to the index.
+     *
+     * @param content The content.
+     */
+    void add(MarkupContent content)
+    {
+        add( _byType, content.getClass(), content );
+        if (content instanceof MarkupTag)
+        {
+            MarkupTag tag = (MarkupTag)content;
+            String[] keys = getKeys(tag);
+            _keys.put(tag, keys);
+            addKeys(tag, keys);
+        }
+    }
+
+    /**
+     * Removes content from the index.
+     *
+     * @param content The content.
+     */
+    void remove(MarkupContent content)
+    {
+        remove( _byType, content.getClass(), content );
+        String[] keys = _keys.remove(content);
+        if (keys != null) removeKeys(content, keys);
+    }
+
+    /**
+     * Indexes a tag under its current name, id, and class tokens. This does nothing if the content
+     * is not a tag in the index.
+     *
+     * @param content The content.
+     */
+    void update(MarkupContent content)
+    {
+        String[] keys = _keys.get(content);
+        if (keys == null) return;
+        removeKeys(content, keys);
+        keys = getKeys( (MarkupTag)content );
+        _keys.put(content, keys);
+        addKeys(content, keys);
+    }
+
+    /**
+     * Removes everything from the index.
+     */
+    void clear()
+    {
+        _byType.clear();
+        _byName.clear();
+        _byId.clear();
+        _byClass.clear();
+        _keys.clear();
+    }
+
+    /**
+     * Returns the content that is kept under the given key in no particular order. The key is a
+     * Class when looking by TYPE and a String otherwise. Looking by TYPE returns the content of that
+     * class and of every class that extends it.
+     *
+     * @param kind What to look by.
+     * @param key What to look for.
+     * @return Vector
+     */
+    Vector<MarkupContent> get(int kind, Object key)
+    {
+        Vector<MarkupContent> ret = new Vector<MarkupContent>();
+        if (kind == TYPE)
+        {
+            Class<?> type = (Class<?>)key;
+            for (Iterator<Map.Entry<Object, HashSet<MarkupContent>>> i=_byType.entrySet().iterator(); i.hasNext();)
+            {
+                Map.Entry<Object, HashSet<MarkupContent>> entry = i.next();
+                if ( type.isAssignableFrom((Class<?>)entry.getKey()) ) ret.addAll( entry.getValue() );
+            }
+        }
+        else
+        {
+            if (kind == NAME) key = ( (String)key ).toLowerCase();
+            HashSet<MarkupContent> found = getTable(kind).get(key);
+            if (found != null) ret.addAll(found);
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the name, id, and class tokens of the tag. The name and id are null if it does not
+     * have them.
+     *
+     * @param tag The tag.
+     * @return String[]
+     */
+    private static String[] getKeys(MarkupTag tag)
+    {
+        String name = tag.getTagName();
+        String cls = tag.getCustomAttribute("class");
+        StringTokenizer tokens = new StringTokenizer( (cls != null ? cls : "") );
+        String[] ret = new String[2+tokens.countTokens()];
+        ret[0] = (name != null ? name.toLowerCase() : null);
+        ret[1] = tag.getIdAttribute();
+        for (int i=2; i<ret.length; i++)
+        {
+            ret[i] = tokens.nextToken();
+        }
+        return ret;
+    }
+
+    private void addKeys(MarkupContent content, String[] keys)
+    {
+        if (keys[0] != null) add(_byName, keys[0], content);
+        if (keys[1] != null) add(_byId, keys[1], content);
+        for (int i=2; i<keys.length; i++)
+        {
+            add(_byClass, keys[i], content);
+        }
+    }
+
+    private void removeKeys(MarkupContent content, String[] keys)
+    {
+        if (keys[0] != null) remove(_byName, keys[0], content);
+        if (keys[1] != null) remove(_byId, keys[1], content);
+        for (int i=2; i<keys.length; i++)
+        {
+            remove(_byClass, keys[i], content);
+        }
+    }
+
+    private static void add(HashMap<Object, HashSet<MarkupContent>> table, Object key, MarkupContent content)
+    {
+        HashSet<MarkupContent> set = table.get(key);
+        if (set == null)
+        {
+            set = new HashSet<MarkupContent>();
+            table.put(key, set);
+        }
+        set.add(content);
+    }
+
+    private static void remove(HashMap<Object, HashSet<MarkupContent>> table, Object key, MarkupContent content)
+    {
+        HashSet<MarkupContent> set = table.get(key);
+        if (set == null) return;
+        set.remove(content);
+        if ( set.isEmpty() ) table.remove(key);
+    }
+
+    private HashMap<Object, HashSet<MarkupContent>> getTable(int kind)
+    {
+        if (kind == NAME) return _byName;
+        else if (kind == ID) return _byId;
+        else if (kind == CLASS) return _byClass;
+        else return _byType;
+    }
+}
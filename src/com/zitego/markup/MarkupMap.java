@@ -1,27 +1,75 @@
 package com.zitego.markup;
 
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * This is just a simple class that maps MarkupContent to
- * an integer id for the markup content class itself.
+ * an integer id for the markup content class itself.<br>
+ * <br>
+ * The ids are kept in an open addressed hash table of ints, so they are never boxed. The table is
+ * kept at most half full. It shrinks again as content is removed, so a document that is edited for
+ * a long time only takes up room for the content that is still in it.
  *
  * @author John Glorioso
  * @version $Id: MarkupMap.java,v 1.1.1.1 2008/02/20 15:01:12 jglorioso Exp $
  */
-public class MarkupMap extends java.util.HashMap
+public class MarkupMap
 {
-    protected static int ID_COUNTER = 0;
+    private static final int MIN_CAPACITY = 16;
+    protected static final AtomicInteger ID_COUNTER = new AtomicInteger();
     /** This map's id. */
-    protected int _id = ID_COUNTER++;
+    protected int _id = ID_COUNTER.getAndIncrement();
     /** The next id to give out. */
     protected int _nextId = 0;
+    /** The id in each slot of the table or -1 if the slot is empty. */
+    private int[] _ids = newIds(MIN_CAPACITY);
+    /** The content in each slot of the table. */
+    private MarkupContent[] _content = new MarkupContent[MIN_CAPACITY];
+    /** The number of content stored. */
+    private int _size = 0;
+    /** The problems found while parsing leniently or null if parsing is not lenient. */
+    private ParseDiagnostics _diagnostics;
+    /** Whether the bodies of tags in this map are parsed when they are first needed. */
+    private boolean _lazyParsing = false;
+    /** Whether to keep the source text the document is parsed from. */
+    private boolean _keepSource = false;
+    /** The source text the document was parsed from or null if it is not kept. */
+    private CharSequence _source;
+    /** The arena that content in this map is taken from or null if it is not pooled. */
+    private ParseArena _arena;
+    /** The executor that large bodies in this map are parsed on or null to parse them in one piece. */
+    private ExecutorService _parallelExecutor;
+    /** The index of the content in this map or null if it is not indexed. */
+    private MarkupIndex _index;
+    /**
+     * Whether content was put in the body of content in this map without being given that content
+     * as its parent. The index cannot find all of the content when there is.
+     */
+    boolean _looseContent = false;
+    /** The number of batches of changes that have been begun and not ended. */
+    int _batchDepth = 0;
+    /** The stamp that content changed in the current batch is recorded with or 0 if there is no batch. */
+    int _batchStamp = 0;
+    /** The last stamp given to a batch. */
+    private int _lastBatchStamp = 0;
+    /**
+     * Goes up each time content in the map is given a new parent, has its settings set, or is formatted
+     * as root, so that settings and depths worked out from the parents before then are worked out again.
+     */
+    int _settingsVersion = 0;
+    /** Whether content in the map has been given a parent that is not in a map. */
+    boolean _hasUnmappedParent = false;
+    /** The content that has been recorded as changed in the current batch. */
+    MarkupContent[] _deferred;
+    /** The number of content recorded as changed in the current batch. */
+    int _deferredSize = 0;
 
     /**
      * Creates a new MarkupMap.
      */
-    protected MarkupMap()
-    {
-        super();
-    }
+    protected MarkupMap() { }
 
     /**
      * Creates a new MarkupMap using the given MarkupMap.
@@ -30,11 +78,209 @@ public class MarkupMap extends java.util.HashMap
      */
     public MarkupMap(MarkupMap map)
     {
-        super(map);
+        if (map != null)
+        {
+            _ids = map._ids.clone();
+            _content = map._content.clone();
+            _size = map._size;
+            _nextId = map._nextId;
+            _diagnostics = map._diagnostics;
+            _lazyParsing = map._lazyParsing;
+            _keepSource = map._keepSource;
+            _source = map._source;
+            _arena = map._arena;
+            _parallelExecutor = map._parallelExecutor;
+            _index = map._index;
+            _hasUnmappedParent = map._hasUnmappedParent;
+        }
+    }
+
+    /**
+     * Sets the diagnostics that content in this map records problems in when it is parsed leniently.
+     * Content that is not strict is parsed leniently when this is set. Pass null to stop.
+     *
+     * @param diagnostics The diagnostics.
+     */
+    public void setParseDiagnostics(ParseDiagnostics diagnostics)
+    {
+        _diagnostics = diagnostics;
+    }
+
+    /**
+     * Returns the diagnostics that content in this map records problems in or null if there are none.
+     *
+     * @return ParseDiagnostics
+     */
+    public ParseDiagnostics getParseDiagnostics()
+    {
+        return _diagnostics;
+    }
+
+    /**
+     * Sets whether the bodies of tags in this map are kept as text when they are parsed and only parsed
+     * once they are first needed.
+     *
+     * @param lazy The lazy parsing flag.
+     */
+    public void setLazyParsing(boolean lazy)
+    {
+        _lazyParsing = lazy;
+    }
+
+    /**
+     * Returns whether the bodies of tags in this map are parsed when they are first needed.
+     *
+     * @return boolean
+     */
+    public boolean isLazyParsing()
+    {
+        return _lazyParsing;
+    }
+
+    /**
+     * Sets whether the source text the document is parsed from is kept. Setting it to false lets go
+     * of the source if there is one.
+     *
+     * @param keep The keep source flag.
+     */
+    public void setKeepSource(boolean keep)
+    {
+        _keepSource = keep;
+        if (!keep) _source = null;
+    }
+
+    /**
+     * Returns whether the source text the document is parsed from is kept.
+     *
+     * @return boolean
+     */
+    public boolean isKeepingSource()
+    {
+        return _keepSource;
+    }
+
+    /**
+     * Sets the source text the document was parsed from. This does nothing if the source is not kept.
+     *
+     * @param source The source text.
+     */
+    public void setSource(CharSequence source)
+    {
+        if (_keepSource) _source = source;
+    }
+
+    /**
+     * Returns the source text the document was parsed from or null if it is not kept.
+     *
+     * @return CharSequence
+     */
+    public CharSequence getSource()
+    {
+        return _source;
+    }
+
+    /**
+     * Sets the arena that text content and tag attributes parsed into this map are taken from. Pass
+     * null to stop pooling them.
+     *
+     * @param arena The arena.
+     */
+    public void setParseArena(ParseArena arena)
+    {
+        _arena = arena;
+    }
+
+    /**
+     * Returns the arena that text content and tag attributes parsed into this map are taken from or
+     * null if they are not pooled.
+     *
+     * @return ParseArena
+     */
+    public ParseArena getParseArena()
+    {
+        return _arena;
     }
 
     /**
-     * Stores a MarkupContent and returns the id it was stored under.
+     * Sets the executor that large bodies parsed into this map are split up and parsed on. Pass null
+     * to parse them in one piece.
+     *
+     * @param executor The executor.
+     */
+    public void setParallelExecutor(ExecutorService executor)
+    {
+        _parallelExecutor = executor;
+    }
+
+    /**
+     * Returns the executor that large bodies parsed into this map are parsed on or null if they are
+     * parsed in one piece.
+     *
+     * @return ExecutorService
+     */
+    public ExecutorService getParallelExecutor()
+    {
+        return _parallelExecutor;
+    }
+
+    /**
+     * Sets whether the content in this map is indexed by class and its tags by tag name, id, and
+     * class. Turning it on indexes the content that is already stored.
+     *
+     * @param index The indexing flag.
+     */
+    public void setIndexing(boolean index)
+    {
+        if (index && _index == null) _index = new MarkupIndex(this);
+        else if (!index) _index = null;
+    }
+
+    /**
+     * Returns the index of the content in this map or null if it is not indexed.
+     *
+     * @return MarkupIndex
+     */
+    public MarkupIndex getIndex()
+    {
+        return _index;
+    }
+
+    /**
+     * Records content that was changed in a batch, so that it and its parents can be set as changed
+     * when the batch ends.
+     *
+     * @param content The content.
+     */
+    void deferChange(MarkupContent content)
+    {
+        if (_deferred == null)
+        {
+            _deferred = new MarkupContent[MIN_CAPACITY];
+        }
+        else if (_deferredSize == _deferred.length)
+        {
+            MarkupContent[] deferred = new MarkupContent[_deferredSize*2];
+            System.arraycopy(_deferred, 0, deferred, 0, _deferredSize);
+            _deferred = deferred;
+        }
+        _deferred[_deferredSize++] = content;
+    }
+
+    /**
+     * Returns a stamp for a batch that has not been given to another batch in this map recently. It
+     * is never 0.
+     *
+     * @return int
+     */
+    int nextBatchStamp()
+    {
+        _lastBatchStamp = (_lastBatchStamp == Integer.MAX_VALUE ? 1 : _lastBatchStamp+1);
+        return _lastBatchStamp;
+    }
+
+    /**
+     * Stores a MarkupContent and returns the id it was stored under. Content that was removed from
+     * this map is stored under the id it had before if no other content has taken it.
      *
      * @param MarkupContent
      * @return int
@@ -43,15 +289,19 @@ public class MarkupMap extends java.util.HashMap
     public int store(MarkupContent content)
     {
         if (content == null) throw new IllegalArgumentException("Content cannot be null");
-        if (get( content.getMapId() ) != null)
-        {
-            return content.getMapId();
-        }
-        else
+        int id = content.getMapId();
+        if (id > -1 && id < _nextId)
         {
-            put(new Integer(_nextId), content);
-            return _nextId++;
+            MarkupContent current = get(id);
+            if (current == content) return id;
+            if (current == null)
+            {
+                put(id, content);
+                return id;
+            }
         }
+        put(_nextId, content);
+        return _nextId++;
     }
 
     /**
@@ -72,14 +322,13 @@ public class MarkupMap extends java.util.HashMap
         if (oldContent != null && get( oldContent.getMapId() ) != null)
         {
             id = oldContent.getMapId();
-            remove( new Integer(id) );
         }
         else
         {
             id = _nextId++;
         }
 
-        put(new Integer(id), newContent);
+        put(id, newContent);
         return id;
     }
 
@@ -91,6 +340,193 @@ public class MarkupMap extends java.util.HashMap
      */
     public MarkupContent get(int id)
     {
-        return (MarkupContent)super.get( new Integer(id) );
+        if (id < 0) return null;
+        int mask = _ids.length-1;
+        for (int i=slot(id, mask); _ids[i] != -1; i=(i+1) & mask)
+        {
+            if (_ids[i] == id) return _content[i];
+        }
+        return null;
+    }
+
+    /**
+     * Removes the content stored under the given id and returns it or null if there is none.
+     *
+     * @param id The id.
+     * @return MarkupContent
+     */
+    public MarkupContent remove(int id)
+    {
+        if (id < 0) return null;
+        int mask = _ids.length-1;
+        int i = slot(id, mask);
+        while (_ids[i] != id)
+        {
+            if (_ids[i] == -1) return null;
+            i = (i+1) & mask;
+        }
+        MarkupContent ret = _content[i];
+        if (_index != null) _index.remove(ret);
+        //Shift back the entries after it that would not be found past the empty slot
+        int empty = i;
+        for (i=(i+1) & mask; _ids[i] != -1; i=(i+1) & mask)
+        {
+            //It has to stay if the slot it is first looked for at is after the empty one
+            int home = slot(_ids[i], mask);
+            boolean stays = ( empty <= i ? (home > empty && home <= i) : (home > empty || home <= i) );
+            if (!stays)
+            {
+                _ids[empty] = _ids[i];
+                _content[empty] = _content[i];
+                empty = i;
+            }
+        }
+        _ids[empty] = -1;
+        _content[empty] = null;
+        _size--;
+        if (_size*8 < _ids.length && _ids.length > MIN_CAPACITY) resize(_ids.length/2);
+        return ret;
+    }
+
+    /**
+     * Removes the given content if it is stored under its id. Returns whether it was.
+     *
+     * @param content The content.
+     * @return boolean
+     */
+    public boolean remove(MarkupContent content)
+    {
+        if (content == null || get( content.getMapId() ) != content) return false;
+        remove( content.getMapId() );
+        return true;
+    }
+
+    /**
+     * Returns the number of content stored.
+     *
+     * @return int
+     */
+    public int size()
+    {
+        return _size;
+    }
+
+    /**
+     * Returns whether there is no content stored.
+     *
+     * @return boolean
+     */
+    public boolean isEmpty()
+    {
+        return (_size == 0);
+    }
+
+    /**
+     * Removes all of the content. Ids that were given out are not given out again.
+     */
+    public void clear()
+    {
+        _ids = newIds(MIN_CAPACITY);
+        _content = new MarkupContent[MIN_CAPACITY];
+        _size = 0;
+        _looseContent = false;
+        if (_index != null) _index.clear();
+    }
+
+    /**
+     * Returns all of the content stored in no particular order.
+     *
+     * @return MarkupContent[]
+     */
+    public MarkupContent[] getContent()
+    {
+        MarkupContent[] ret = new MarkupContent[_size];
+        int count = 0;
+        for (int i=0; i<_ids.length; i++)
+        {
+            if (_ids[i] != -1) ret[count++] = _content[i];
+        }
+        return ret;
+    }
+
+    /**
+     * Stores the content under the given id replacing what is there.
+     *
+     * @param id The id.
+     * @param content The content.
+     */
+    void put(int id, MarkupContent content)
+    {
+        int mask = _ids.length-1;
+        int i = slot(id, mask);
+        for (; _ids[i] != -1; i=(i+1) & mask)
+        {
+            if (_ids[i] == id)
+            {
+                if (_index != null && _content[i] != content)
+                {
+                    _index.remove(_content[i]);
+                    _index.add(content);
+                }
+                _content[i] = content;
+                return;
+            }
+        }
+        _ids[i] = id;
+        _content[i] = content;
+        if (_index != null) _index.add(content);
+        _size++;
+        if (_size*2 > _ids.length) resize(_ids.length*2);
+    }
+
+    /**
+     * Moves all of the content into a table with the given number of slots.
+     *
+     * @param capacity The number of slots.
+     */
+    private void resize(int capacity)
+    {
+        int[] ids = _ids;
+        MarkupContent[] content = _content;
+        _ids = newIds(capacity);
+        _content = new MarkupContent[capacity];
+        int mask = capacity-1;
+        for (int i=0; i<ids.length; i++)
+        {
+            if (ids[i] == -1) continue;
+            int j = slot(ids[i], mask);
+            while (_ids[j] != -1)
+            {
+                j = (j+1) & mask;
+            }
+            _ids[j] = ids[i];
+            _content[j] = content[i];
+        }
+    }
+
+    /**
+     * Returns the slot the given id is looked for at first.
+     *
+     * @param id The id.
+     * @param mask The number of slots less one.
+     * @return int
+     */
+    private static int slot(int id, int mask)
+    {
+        int hash = id * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    /**
+     * Returns a new array of empty slots.
+     *
+     * @param capacity The number of slots.
+     * @return int[]
+     */
+    private static int[] newIds(int capacity)
+    {
+        int[] ret = new int[capacity];
+        Arrays.fill(ret, -1);
+        return ret;
     }
-}
\ No newline at end of file
+}
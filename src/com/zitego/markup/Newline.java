@@ -54,17 +54,18 @@ public class Newline extends MarkupContent
         return CHARACTER;
     }
 
-    public void parseText(StringBuffer text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
+    public void parseText(ParseCursor text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
     {
         //Does nothing except strips off the first char if it is \r\n
-        if (text != null && text.length() > 2 && text.charAt(0) == '\r' && text.charAt(1) == '\n') text.delete(0, 2);
+        if (text != null && text.length() > 2 && text.charAt(0) == '\r' && text.charAt(1) == '\n') text.skip(2);
     }
 
     public void parse(Object objToParse, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
     {
         if (objToParse == null) return;
+        else if (objToParse instanceof ParseCursor) parseText( (ParseCursor)objToParse, type );
         else if (objToParse instanceof StringBuffer) parseText( (StringBuffer)objToParse, type );
-        else if (objToParse instanceof String) parseText( new StringBuffer((String)objToParse), type );
+        else if (objToParse instanceof String) parseText( new ParseCursor((String)objToParse), type );
         else throw new IllegalMarkupException( "Unable to parse object type: "+objToParse.getClass() );
     }
 
@@ -0,0 +1,112 @@
+package com.zitego.markup;
+
+import com.zitego.markup.tag.TagAttribute;
+import java.util.HashMap;
+import java.util.Vector;
+
+/**
+ * This hands out the small objects that a document is mostly made of (text content, tag attributes,
+ * and attribute values) for a document that is parsed, used, and thrown away right away. A document
+ * uses an arena when pooling is turned on for it (see <code>MarkupContent.setPooling(boolean)</code>).
+ * Every object the arena hands out is recorded. When the document is released (see
+ * <code>MarkupContent.release()</code>), they are all cleared and put in a pool for the thread that
+ * released them. The next document parsed on that thread takes them from the pool rather then
+ * creating new ones.<br>
+ * <br>
+ * Nothing from a released document can be used afterward, since it may already be part of another
+ * document. Content that is moved out of the document must not come from the arena.
+ *
+ * @author John Glorioso
+ * @version $Id$
+ */
+public class ParseArena
+{
+    /** The most objects of one class kept in the pool of a thread. */
+    private static final int MAX_POOLED = 8192;
+    /** The pool of each thread. It maps each class to a Vector of the free objects of that class. */
+    private static final ThreadLocal _pools = new ThreadLocal()
+    {
+        protected Object initialValue()
+        {
+            return new HashMap();
+        }
+    };
+
+    /** The objects that have been handed out. */
+    private Object[] _taken = new Object[64];
+    /** The number of objects that have been handed out. */
+    private int _size = 0;
+
+    /**
+     * Returns a free object of exactly the given class from this thread's pool or null if there is
+     * not one. The object is recorded as handed out.
+     *
+     * @param type The class.
+     * @return Object
+     */
+    public Object take(Class type)
+    {
+        Vector free = (Vector)( (HashMap)_pools.get() ).get(type);
+        if (free == null || free.size() == 0) return null;
+        Object ret = free.remove(free.size()-1);
+        add(ret);
+        return ret;
+    }
+
+    /**
+     * Records an object that was created for the document because there was not a free one. It is
+     * put in the pool when the document is released. Only objects that can be cleared are allowed:
+     * MarkupContent that clears all of its state in recycle() and TagAttribute.
+     *
+     * @param obj The object.
+     * @throws IllegalArgumentException if the object is not a type that can be cleared.
+     */
+    public synchronized void add(Object obj) throws IllegalArgumentException
+    {
+        if ( !(obj instanceof MarkupContent) && !(obj instanceof TagAttribute) )
+        {
+            throw new IllegalArgumentException( "Cannot pool "+(obj != null ? obj.getClass().getName() : null) );
+        }
+        if (_size == _taken.length)
+        {
+            Object[] taken = new Object[_size*2];
+            System.arraycopy(_taken, 0, taken, 0, _size);
+            _taken = taken;
+        }
+        _taken[_size++] = obj;
+    }
+
+    /**
+     * Returns the number of objects that have been handed out since the arena was last released.
+     *
+     * @return int
+     */
+    public synchronized int size()
+    {
+        return _size;
+    }
+
+    /**
+     * Clears every object that has been handed out and puts it in this thread's pool.
+     */
+    public synchronized void release()
+    {
+        HashMap pools = (HashMap)_pools.get();
+        for (int i=0; i<_size; i++)
+        {
+            Object obj = _taken[i];
+            _taken[i] = null;
+            if (obj instanceof MarkupContent) ( (MarkupContent)obj ).recycle();
+            else ( (TagAttribute)obj ).recycle();
+
+            Vector free = (Vector)pools.get( obj.getClass() );
+            if (free == null)
+            {
+                free = new Vector();
+                pools.put(obj.getClass(), free);
+            }
+            if (free.size() < MAX_POOLED) free.add(obj);
+        }
+        _size = 0;
+    }
+}
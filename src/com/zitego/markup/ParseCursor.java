@@ -0,0 +1,602 @@
+package com.zitego.markup;
+
+/**
+ * This is a read cursor over an immutable sequence of characters that is shared by all of the
+ * parseText methods. Consuming text only advances the position of the cursor, so the text that is
+ * left does not need to be shifted every time a piece of markup is parsed off of the front of it.
+ * All index based methods are relative to the current position. That is, charAt(0) is always the
+ * next character to be parsed and length() is the number of characters left to parse. This allows
+ * the parsers to be written the same way they were against a StringBuffer that was truncated as it
+ * was parsed.<br>
+ * <br>
+ * If the text is a CharStream, then the end of the text is not known until it has been read. The
+ * cursor reads from the stream as characters are asked for. length() is then the number of characters
+ * that have been read ahead of the cursor, which is always more then zero until the end of the stream.
+ * Call discard to let the stream drop the text that has been parsed.
+ *
+ * @author John Glorioso
+ * @version $Id$
+ */
+public class ParseCursor implements CharSequence
+{
+    /** The text being parsed. */
+    private CharSequence _text;
+    /** The absolute position of the next character to parse. */
+    private int _pos;
+    /** The absolute index just past the last character that can be parsed. */
+    private int _end;
+    /** The stream being read if the text is a CharStream. */
+    private CharStream _stream;
+    /** The text that cursors on each thread have lent to deprecated StringBuffer methods with lend(int). */
+    private static final ThreadLocal _loans = new ThreadLocal();
+
+    /**
+     * Creates a new cursor over the given text starting at the beginning.
+     *
+     * @param text The text to parse.
+     * @throws IllegalArgumentException if the text is null.
+     */
+    public ParseCursor(CharSequence text) throws IllegalArgumentException
+    {
+        this(text, 0, (text != null ? text.length() : 0));
+        if (text instanceof CharStream) _stream = (CharStream)text;
+    }
+
+    /**
+     * Creates a new cursor over the given range of the text.
+     *
+     * @param text The text to parse.
+     * @param start The index of the first character to parse.
+     * @param end The index just past the last character to parse.
+     * @throws IllegalArgumentException if the text is null or the range is invalid.
+     */
+    public ParseCursor(CharSequence text, int start, int end) throws IllegalArgumentException
+    {
+        if (text == null) throw new IllegalArgumentException("text cannot be null");
+        if (start < 0 || end > text.length() || start > end)
+        {
+            throw new IllegalArgumentException("Invalid range: "+start+" to "+end);
+        }
+        _text = text;
+        _pos = start;
+        _end = end;
+    }
+
+    /**
+     * Returns the underlying text of this cursor.
+     *
+     * @return CharSequence
+     */
+    public CharSequence getText()
+    {
+        return _text;
+    }
+
+    /**
+     * Returns the absolute position of the cursor in the underlying text.
+     *
+     * @return int
+     */
+    public int getPosition()
+    {
+        return _pos;
+    }
+
+    /**
+     * Sets the absolute position of the cursor in the underlying text. This can be used to
+     * back up to a position that was previously saved with getPosition.
+     *
+     * @param pos The position.
+     * @throws IndexOutOfBoundsException if the position is outside of the text.
+     */
+    public void setPosition(int pos) throws IndexOutOfBoundsException
+    {
+        if ( pos < 0 || (pos > 0 && !has(pos-1)) ) throw new IndexOutOfBoundsException("Invalid position: "+pos);
+        _pos = pos;
+    }
+
+    /**
+     * Returns the absolute index just past the last character that can be parsed.
+     *
+     * @return int
+     */
+    public int getEnd()
+    {
+        return end();
+    }
+
+    /**
+     * Returns the number of characters left to parse.
+     *
+     * @return int
+     */
+    public int length()
+    {
+        if (_stream != null)
+        {
+            _stream.ensure(_pos);
+            return _stream.length() - _pos;
+        }
+        return _end - _pos;
+    }
+
+    /**
+     * Returns the character at the given index relative to the current position.
+     *
+     * @param index The index.
+     * @return char
+     * @throws StringIndexOutOfBoundsException if the index is not in the text left to parse.
+     */
+    public char charAt(int index) throws StringIndexOutOfBoundsException
+    {
+        if ( index < 0 || !has(_pos+index) ) throw new StringIndexOutOfBoundsException(index);
+        return _text.charAt(_pos+index);
+    }
+
+    public CharSequence subSequence(int start, int end)
+    {
+        return substring(start, end);
+    }
+
+    /**
+     * Returns the text from the given index relative to the current position to the end. This
+     * does not consume the text.
+     *
+     * @param start The start index.
+     * @return String
+     */
+    public String substring(int start)
+    {
+        return substring(start, end()-_pos);
+    }
+
+    /**
+     * Returns the text between the given indexes relative to the current position. This does not
+     * consume the text.
+     *
+     * @param start The start index.
+     * @param end The end index.
+     * @return String
+     * @throws StringIndexOutOfBoundsException if the indexes are invalid.
+     */
+    public String substring(int start, int end) throws StringIndexOutOfBoundsException
+    {
+        if ( start < 0 || start > end || (end > 0 && !has(_pos+end-1)) )
+        {
+            throw new StringIndexOutOfBoundsException("Invalid range: "+start+" to "+end);
+        }
+        return _text.subSequence(_pos+start, _pos+end).toString();
+    }
+
+    /**
+     * Returns up to the given number of characters at the current position without consuming them.
+     * This is mostly useful for error messages.
+     *
+     * @param len The maximum number of characters.
+     * @return String
+     */
+    public String peek(int len)
+    {
+        return substring( 0, Math.min(len, length()) );
+    }
+
+    /**
+     * Consumes the given number of characters. If there are less characters than that left, then
+     * the rest of the text is consumed.
+     *
+     * @param count The number of characters to skip.
+     */
+    public void skip(int count)
+    {
+        if (count > 0) _pos = ( has(_pos+count-1) ? _pos+count : end() );
+    }
+
+    /**
+     * Returns the number of spaces, newlines, tabs, and carriage returns at the current position
+     * without consuming them.
+     *
+     * @return int
+     */
+    public int countWhiteSpace()
+    {
+        int index = _pos;
+        char c = (char)0;
+        while ( has(index) && ((c=_text.charAt(index)) == ' ' || c == '\r' || c == '\n' || c == '\t') )
+        {
+            index++;
+        }
+        return index-_pos;
+    }
+
+    /**
+     * Consumes the spaces, newlines, tabs, and carriage returns at the current position. Only the
+     * position is moved. Nothing is copied.
+     *
+     * @return int The number of characters consumed.
+     */
+    public int skipWhiteSpace()
+    {
+        int count = countWhiteSpace();
+        _pos += count;
+        return count;
+    }
+
+    /**
+     * Returns whether the text left to parse starts with the given string.
+     *
+     * @param str The string.
+     * @return boolean
+     */
+    public boolean startsWith(String str)
+    {
+        int len = str.length();
+        if ( len > 0 && !has(_pos+len-1) ) return false;
+        for (int i=0; i<len; i++)
+        {
+            if (_text.charAt(_pos+i) != str.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether the text left to parse starts with the given string ignoring case.
+     *
+     * @param str The string.
+     * @return boolean
+     */
+    public boolean startsWithIgnoreCase(String str)
+    {
+        int len = str.length();
+        if ( len > 0 && !has(_pos+len-1) ) return false;
+        for (int i=0; i<len; i++)
+        {
+            char c1 = _text.charAt(_pos+i);
+            char c2 = str.charAt(i);
+            if ( c1 != c2 && Character.toLowerCase(c1) != Character.toLowerCase(c2) ) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the index of the given character relative to the current position or -1 if it
+     * is not found.
+     *
+     * @param c The character.
+     * @return int
+     */
+    public int indexOf(char c)
+    {
+        return indexOf(c, 0);
+    }
+
+    /**
+     * Returns the index of the given character relative to the current position starting the
+     * search at the given relative index. -1 is returned if it is not found.
+     *
+     * @param c The character.
+     * @param from The index to start searching from.
+     * @return int
+     */
+    public int indexOf(char c, int from)
+    {
+        for (int i=_pos+Math.max(from, 0); has(i); i++)
+        {
+            if (_text.charAt(i) == c) return i-_pos;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index of the given string relative to the current position or -1 if it
+     * is not found.
+     *
+     * @param str The string.
+     * @return int
+     */
+    public int indexOf(String str)
+    {
+        return indexOf(str, 0);
+    }
+
+    /**
+     * Returns the index of the given string relative to the current position starting the
+     * search at the given relative index. -1 is returned if it is not found.
+     *
+     * @param str The string.
+     * @param from The index to start searching from.
+     * @return int
+     */
+    public int indexOf(String str, int from)
+    {
+        int start = _pos + Math.max(from, 0);
+        int len = str.length();
+        int index = -1;
+        if (_text instanceof String)
+        {
+            index = ( (String)_text ).indexOf(str, start);
+        }
+        else
+        {
+            for (int i=start; has(i+len-1) && index == -1; i++)
+            {
+                int j = 0;
+                while (j < len && _text.charAt(i+j) == str.charAt(j))
+                {
+                    j++;
+                }
+                if (j == len) index = i;
+            }
+        }
+        if ( index == -1 || !has(index+len-1) ) return -1;
+        else return index-_pos;
+    }
+
+    /**
+     * Returns the index of the given string ignoring case relative to the current position
+     * starting the search at the given relative index. -1 is returned if it is not found.
+     *
+     * @param str The string.
+     * @param from The index to start searching from.
+     * @return int
+     */
+    public int indexOfIgnoreCase(String str, int from)
+    {
+        int len = str.length();
+        for (int i=_pos+Math.max(from, 0); has(i+len-1); i++)
+        {
+            int j = 0;
+            while (j < len)
+            {
+                char c1 = _text.charAt(i+j);
+                char c2 = str.charAt(j);
+                if ( c1 != c2 && Character.toLowerCase(c1) != Character.toLowerCase(c2) ) break;
+                j++;
+            }
+            if (j == len) return i-_pos;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the text up to, but not including, the given character and consumes it. The
+     * cursor is left on the character. If the character is not found, then the rest of the
+     * text is returned and consumed.
+     *
+     * @param c The character to stop at.
+     * @return String
+     */
+    public String getTextUpTo(char c)
+    {
+        int index = indexOf(c);
+        if (index == -1) index = end()-_pos;
+        return consume(index);
+    }
+
+    /**
+     * Returns the text up to, but not including, the first of any of the given characters and
+     * consumes it. The cursor is left on the character. If none of the characters are found,
+     * then the rest of the text is returned and consumed.
+     *
+     * @param chars The characters to stop at.
+     * @return String
+     */
+    public String getTextUpTo(char[] chars)
+    {
+        int index = indexOfAny(chars);
+        if (index == -1) index = end()-_pos;
+        return consume(index);
+    }
+
+    /**
+     * Returns the index of the first of any of the given characters relative to the current
+     * position or -1 if none of them are found.
+     *
+     * @param chars The characters to look for.
+     * @return int
+     */
+    public int indexOfAny(char[] chars)
+    {
+        for (int i=_pos; has(i); i++)
+        {
+            char c = _text.charAt(i);
+            for (int j=0; j<chars.length; j++)
+            {
+                if (c == chars[j]) return i-_pos;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the text up to, but not including, the given string and consumes it. The cursor
+     * is left at the beginning of the string. If the string is not found, then the rest of the
+     * text is returned and consumed.
+     *
+     * @param str The string to stop at.
+     * @return String
+     */
+    public String getTextUpTo(String str)
+    {
+        int index = indexOf(str);
+        if (index == -1) index = end()-_pos;
+        return consume(index);
+    }
+
+    /**
+     * Returns the given number of characters from the current position and consumes them.
+     *
+     * @param count The number of characters.
+     * @return String
+     */
+    public String consume(int count)
+    {
+        String ret = substring(0, count);
+        _pos += count;
+        return ret;
+    }
+
+    /**
+     * Returns the given range of the text as a sequence of the underlying text rather then a String.
+     * When the text is a MappedText, the span is a view of it and nothing is copied or decoded
+     * until it is turned into a String.
+     *
+     * @param start The start index.
+     * @param end The end index.
+     * @return CharSequence
+     * @throws StringIndexOutOfBoundsException if the range is invalid.
+     */
+    public CharSequence span(int start, int end) throws StringIndexOutOfBoundsException
+    {
+        if ( start < 0 || start > end || (end > 0 && !has(_pos+end-1)) )
+        {
+            throw new StringIndexOutOfBoundsException("Invalid range: "+start+" to "+end);
+        }
+        return _text.subSequence(_pos+start, _pos+end);
+    }
+
+    /**
+     * Returns the text up to the given character as a span (see <code>span(int, int)</code>) and
+     * consumes it. If the character is not found, the rest of the text is returned.
+     *
+     * @param c The character.
+     * @return CharSequence
+     */
+    public CharSequence getSpanUpTo(char c)
+    {
+        int index = indexOf(c);
+        if (index == -1) index = end()-_pos;
+        CharSequence ret = span(0, index);
+        _pos += index;
+        return ret;
+    }
+
+    /**
+     * Returns the text that is left to parse without consuming it.
+     *
+     * @return String
+     */
+    public String toString()
+    {
+        return _text.subSequence( _pos, end() ).toString();
+    }
+
+    /**
+     * Returns a copy of the given number of characters at the cursor for a deprecated method that takes
+     * a StringBuffer, so that only the text the method looks at is copied. The cursor is not moved. If
+     * the method passes the copy on unchanged, borrow(StringBuffer) gives back this cursor for it, so the
+     * text after the copy can still be parsed. takeBack must be called when the method returns.
+     *
+     * @param count The number of characters to copy.
+     * @return StringBuffer
+     * @throws StringIndexOutOfBoundsException if there are not that many characters left.
+     */
+    public StringBuffer lend(int count) throws StringIndexOutOfBoundsException
+    {
+        Loan loan = new Loan( this, new StringBuffer(substring(0, count)), (Loan)_loans.get() );
+        _loans.set(loan);
+        return loan._text;
+    }
+
+    /**
+     * Ends the loan of the text that this cursor last lent with lend(int). If the text was not borrowed
+     * back and parsed from this cursor, the cursor is moved past what the method deleted from the front
+     * of the copy.
+     */
+    public void takeBack()
+    {
+        Loan loan = (Loan)_loans.get();
+        if (loan == null || loan._cursor != this) return;
+        _loans.set(loan._outer);
+        if (!loan._borrowed) skip( loan._length-loan._text.length() );
+    }
+
+    /**
+     * Returns a cursor to parse the given text from. If the text was lent by a cursor with lend(int) and
+     * has not been changed, that cursor is returned at the start of the text, so the text after the copy
+     * is parsed as well. It is only returned once for each loan. Otherwise, a new cursor over the text is
+     * returned.
+     *
+     * @param text The text.
+     * @return ParseCursor
+     */
+    public static ParseCursor borrow(StringBuffer text)
+    {
+        Loan loan = (Loan)_loans.get();
+        if ( loan != null && loan._text == text && !loan._borrowed && loan._cursor._pos == loan._start &&
+             text.length() == loan._length && loan._cursor.startsWith(text.toString()) )
+        {
+            loan._borrowed = true;
+            return loan._cursor;
+        }
+        return new ParseCursor( text.toString() );
+    }
+
+    /**
+     * Lets the underlying CharStream drop the text before the cursor. The cursor cannot be set back
+     * before this point afterwards. This does nothing if the text is not a stream.
+     */
+    public void discard()
+    {
+        if (_stream != null) _stream.release(_pos);
+    }
+
+    /**
+     * Returns whether there is a character at the given absolute index. For a stream, it is read if
+     * it has not been yet.
+     *
+     * @param index The index.
+     * @return boolean
+     */
+    private boolean has(int index)
+    {
+        if (_stream != null) return _stream.ensure(index);
+        else return (index < _end);
+    }
+
+    /**
+     * Returns the absolute index just past the last character. For a stream, the rest of the stream is read.
+     *
+     * @return int
+     */
+    private int end()
+    {
+        if (_stream != null)
+        {
+            int len = _stream.length();
+            while ( _stream.ensure(len) )
+            {
+                len = _stream.length();
+            }
+            return len;
+        }
+        return _end;
+    }
+
+    /**
+     * A copy of text that a cursor has lent to a deprecated StringBuffer method.
+     */
+    private static class Loan
+    {
+        /** The cursor the text was copied from. */
+        private ParseCursor _cursor;
+        /** The copy. */
+        private StringBuffer _text;
+        /** The number of characters that were copied. */
+        private int _length;
+        /** The position of the cursor when the text was copied. */
+        private int _start;
+        /** The loan that was made on this thread before this one or null if there was not one. */
+        private Loan _outer;
+        /** Whether the cursor was borrowed back to parse the text from. */
+        private boolean _borrowed = false;
+
+        private Loan(ParseCursor cursor, StringBuffer text, Loan outer)
+        {
+            _cursor = cursor;
+            _text = text;
+            _length = text.length();
+            _start = cursor._pos;
+            _outer = outer;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.zitego.markup;
+
+/**
+ * This is a list of the problems found while parsing a document leniently. A document is parsed
+ * leniently when it is not strict and its map has a ParseDiagnostics (see
+ * <code>MarkupContent.setParseDiagnostics(ParseDiagnostics)</code>). Instead of throwing an
+ * IllegalMarkupException for malformed markup that can be recovered from, the content records the
+ * position in the text, the kind of problem, and the tag name here and carries on. Each problem is
+ * kept as a few array entries. No message is built unless one is asked for.
+ *
+ * @author John Glorioso
+ * @version $Id$
+ */
+public class ParseDiagnostics
+{
+    /** A tag could not be created, so it was kept as an unknown tag. */
+    public static final int TAG_NOT_CREATED = 1;
+    /** The tag name in the text is not the name of the tag that was created for it. */
+    public static final int WRONG_TAG_NAME = 2;
+    /** The text of a tag, comment, or doctype is not formed right, so what could be read was kept. */
+    public static final int INVALID_TAG = 3;
+    private static final String[] KIND_NAMES = new String[] { null, "Tag could not be created", "Wrong tag name", "Invalid tag" };
+
+    private int[] _positions = new int[8];
+    private int[] _kinds = new int[8];
+    private String[] _tags = new String[8];
+    private int _size = 0;
+
+    /**
+     * Adds a problem.
+     *
+     * @param position The position in the text being parsed.
+     * @param kind The kind of problem.
+     * @param tag The tag name or null if there is not one.
+     */
+    public void add(int position, int kind, String tag)
+    {
+        if (_size == _kinds.length)
+        {
+            int[] positions = new int[_size*2];
+            int[] kinds = new int[_size*2];
+            String[] tags = new String[_size*2];
+            System.arraycopy(_positions, 0, positions, 0, _size);
+            System.arraycopy(_kinds, 0, kinds, 0, _size);
+            System.arraycopy(_tags, 0, tags, 0, _size);
+            _positions = positions;
+            _kinds = kinds;
+            _tags = tags;
+        }
+        _positions[_size] = position;
+        _kinds[_size] = kind;
+        _tags[_size] = tag;
+        _size++;
+    }
+
+    /**
+     * Adds all of the problems in the given diagnostics to the end of this one.
+     *
+     * @param diagnostics The diagnostics.
+     */
+    public void addAll(ParseDiagnostics diagnostics)
+    {
+        if (diagnostics == null) return;
+        for (int i=0; i<diagnostics._size; i++)
+        {
+            add( diagnostics._positions[i], diagnostics._kinds[i], diagnostics._tags[i] );
+        }
+    }
+
+    /**
+     * Returns the number of problems.
+     *
+     * @return int
+     */
+    public int size()
+    {
+        return _size;
+    }
+
+    /**
+     * Returns whether there are no problems.
+     *
+     * @return boolean
+     */
+    public boolean isEmpty()
+    {
+        return (_size == 0);
+    }
+
+    /**
+     * Removes all of the problems.
+     */
+    public void clear()
+    {
+        for (int i=0; i<_size; i++)
+        {
+            _tags[i] = null;
+        }
+        _size = 0;
+    }
+
+    /**
+     * Returns the position in the text of the problem at the given index.
+     *
+     * @param index The index.
+     * @return int
+     * @throws IndexOutOfBoundsException if the index is not valid.
+     */
+    public int getPosition(int index) throws IndexOutOfBoundsException
+    {
+        checkIndex(index);
+        return _positions[index];
+    }
+
+    /**
+     * Returns the kind of the problem at the given index.
+     *
+     * @param index The index.
+     * @return int
+     * @throws IndexOutOfBoundsException if the index is not valid.
+     */
+    public int getKind(int index) throws IndexOutOfBoundsException
+    {
+        checkIndex(index);
+        return _kinds[index];
+    }
+
+    /**
+     * Returns the tag name of the problem at the given index or null if there is not one.
+     *
+     * @param index The index.
+     * @return String
+     * @throws IndexOutOfBoundsException if the index is not valid.
+     */
+    public String getTag(int index) throws IndexOutOfBoundsException
+    {
+        checkIndex(index);
+        return _tags[index];
+    }
+
+    /**
+     * Returns a message describing the problem at the given index.
+     *
+     * @param index The index.
+     * @return String
+     * @throws IndexOutOfBoundsException if the index is not valid.
+     */
+    public String getMessage(int index) throws IndexOutOfBoundsException
+    {
+        checkIndex(index);
+        int kind = _kinds[index];
+        StringBuffer ret = new StringBuffer()
+            .append( (kind > 0 && kind < KIND_NAMES.length ? KIND_NAMES[kind] : "Unknown problem "+kind) );
+        if (_tags[index] != null) ret.append(" <").append(_tags[index]).append(">");
+        return ret.append(" at ").append(_positions[index]).toString();
+    }
+
+    public String toString()
+    {
+        StringBuffer ret = new StringBuffer();
+        for (int i=0; i<_size; i++)
+        {
+            ret.append( getMessage(i) ).append("\n");
+        }
+        return ret.toString();
+    }
+
+    /**
+     * Makes sure the given index is valid.
+     *
+     * @param index The index.
+     * @throws IndexOutOfBoundsException if the index is not valid.
+     */
+    private void checkIndex(int index) throws IndexOutOfBoundsException
+    {
+        if (index < 0 || index >= _size) throw new IndexOutOfBoundsException("Invalid index: "+index);
+    }
+}
@@ -0,0 +1,637 @@
+package com.zitego.markup;
+
+import com.zitego.markup.tag.AttributeList;
+import com.zitego.markup.tag.MarkupTag;
+import com.zitego.markup.tag.TagAttribute;
+import java.util.Hashtable;
+import java.util.Vector;
+
+/**
+ * This is a compiled CSS selector that finds tags in a document. The selectors that are supported
+ * are type selectors (div) and the universal selector (*), ids (#main), classes (.item), attributes
+ * ([href], [type=text], [class~=a], [href^=http], [href$=.gif], [title*=x], and [lang|=en]), the
+ * descendant and child combinators (div p and ul &gt; li), the :nth-child(an+b), :first-child, and
+ * :last-child pseudo classes, and groups of selectors separated by commas. Tag and attribute names
+ * are matched ignoring case. Only tags are matched. Text and other content is skipped.<br>
+ * <br>
+ * A selector is compiled once with compile(String) and kept by its text, so the same selector
+ * can be used over and over without parsing it again. Each tag is matched from the right most part
+ * of the selector to the left by going up the parents of the tag. When the document is indexed (see
+ * <code>MarkupContent.setIndexing(boolean)</code>), the tags that are matched are taken from the
+ * index by the id, class, or tag name in the right most part rather then by looking through the
+ * document.
+ *
+ * @author John Glorioso
+ * @version $Id$
+ */
+public class Selector
+{
+    /** The most selectors kept by their text. */
+    private static final int MAX_CACHED = 256;
+    /** The compiled selectors by their text. */
+    private static final Hashtable<String, Selector> _cache = new Hashtable<String, Selector>();
+
+    /** The text of the selector. */
+    private String _text;
+    /**
+     * The parts of each selector in the group from right to left. The combinator in front of each
+     * part is kept in the part.
+     */
+    private Part[][] _selectors;
+
+    /**
+     * Returns the compiled selector for the given text. Selectors that have been compiled before
+     * are not compiled again.
+     *
+     * @param selector The selector text.
+     * @return Selector
+     * @throws IllegalArgumentException if the selector is null or not valid.
+     */
+    public static Selector compile(String selector) throws IllegalArgumentException
+    {
+        if (selector == null) throw new IllegalArgumentException("selector cannot be null");
+        Selector ret = _cache.get(selector);
+        if (ret == null)
+        {
+            ret = new Selector(selector);
+            if (_cache.size() >= MAX_CACHED) _cache.clear();
+            _cache.put(selector, ret);
+        }
+        return ret;
+    }
+
+    /**
+     * Creates a new selector from the given text.
+     *
+     * @param selector The selector text.
+     * @throws IllegalArgumentException if the selector is not valid.
+     */
+    private Selector(String selector) throws IllegalArgumentException
+    {
+        _text = selector;
+        Vector<Part[]> selectors = new Vector<Part[]>();
+        Parser parser = new Parser(selector);
+        do
+        {
+            selectors.add( parser.parseSelector() );
+        }
+        while ( parser.skip(',') );
+        if ( !parser.atEnd() ) throw parser.invalid();
+        _selectors = new Part[selectors.size()][];
+        selectors.copyInto(_selectors);
+    }
+
+    /**
+     * Returns whether the given content matches this selector.
+     *
+     * @param content The content.
+     * @return boolean
+     */
+    public boolean matches(MarkupContent content)
+    {
+        for (int i=0; i<_selectors.length; i++)
+        {
+            if ( matches(_selectors[i], 0, content) ) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the tags that are the given content or under it that match this selector in the
+     * order they are in the document.
+     *
+     * @param content The content to look in.
+     * @return Vector
+     */
+    public Vector<MarkupContent> select(MarkupContent content)
+    {
+        Vector<MarkupContent> ret = new Vector<MarkupContent>();
+        select(content, false, ret);
+        return ret;
+    }
+
+    /**
+     * Returns the first tag that is the given content or under it that matches this selector or
+     * null if there is not one.
+     *
+     * @param content The content to look in.
+     * @return MarkupTag
+     */
+    public MarkupTag selectFirst(MarkupContent content)
+    {
+        Vector<MarkupContent> ret = new Vector<MarkupContent>();
+        select(content, true, ret);
+        return (ret.size() > 0 ? (MarkupTag)ret.get(0) : null);
+    }
+
+    public String toString()
+    {
+        return _text;
+    }
+
+    /**
+     * Adds the tags that are the given content or under it that match this selector to the given
+     * Vector in the order they are in the document.
+     *
+     * @param content The content to look in.
+     * @param first Whether to stop at the first tag that matches.
+     * @param ret The Vector to add to.
+     */
+    private void select(MarkupContent content, boolean first, Vector<MarkupContent> ret)
+    {
+        if (content == null) return;
+        //The tags are only narrowed down for one selector, since the tags found for each would have to be put in order
+        Part last = (_selectors.length == 1 ? _selectors[0][0] : null);
+        int kind = -1;
+        String key = null;
+        if (last != null && content.getUsableIndex() != null)
+        {
+            content = getScope(content, _selectors[0]);
+            if (last._id != null)
+            {
+                kind = MarkupIndex.ID;
+                key = last._id;
+            }
+            else if (last._classes != null)
+            {
+                kind = MarkupIndex.CLASS;
+                key = last._classes[0];
+            }
+            else if (last._name != null)
+            {
+                kind = MarkupIndex.NAME;
+                key = last._name;
+            }
+        }
+        if (kind == -1)
+        {
+            walk(content, first, ret);
+            return;
+        }
+        Vector<MarkupContent> found = content.find(kind, key, false);
+        int size = found.size();
+        for (int i=0; i<size; i++)
+        {
+            MarkupContent c = found.get(i);
+            if ( matches(_selectors[0], 0, c) )
+            {
+                ret.add(c);
+                if (first) return;
+            }
+        }
+    }
+
+    /**
+     * Returns the content to look under for the tags that match the given selector using the index.
+     * If a part to the left of the right most part has an id and there is only one tag with it, then
+     * every tag that matches is under that tag, so only it has to be looked under. Otherwise, the
+     * given content is returned.
+     *
+     * @param content The content to look in.
+     * @param parts The parts of the selector from right to left.
+     * @return MarkupContent
+     */
+    private static MarkupContent getScope(MarkupContent content, Part[] parts)
+    {
+        for (int i=1; i<parts.length; i++)
+        {
+            String id = parts[i]._id;
+            if (id == null) continue;
+            //The tag with the id could be above the content instead
+            for (MarkupContent c=content.getParent(); c != null; c=c.getParent())
+            {
+                if ( c instanceof MarkupTag && id.equals(((MarkupTag)c).getIdAttribute()) ) return content;
+            }
+            Vector<MarkupContent> found = content.find(MarkupIndex.ID, id, false);
+            if ( found.size() == 1 && parts[i].matches(found.get(0)) ) return found.get(0);
+            return content;
+        }
+        return content;
+    }
+
+    /**
+     * Adds the given content and the content under it that match this selector to the given Vector
+     * in the order they are in the document. Returns whether it should stop looking.
+     *
+     * @param content The content.
+     * @param first Whether to stop at the first tag that matches.
+     * @param ret The Vector to add to.
+     * @return boolean
+     */
+    private boolean walk(MarkupContent content, boolean first, Vector<MarkupContent> ret)
+    {
+        if ( matches(content) )
+        {
+            ret.add(content);
+            if (first) return true;
+        }
+        int size = content.getBodySize();
+        for (int i=0; i<size; i++)
+        {
+            if ( walk(content.getBodyContent(i), first, ret) ) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether the given content matches the parts of a selector from the given index to the
+     * left most part.
+     *
+     * @param parts The parts from right to left.
+     * @param index The index of the part the content has to match.
+     * @param content The content.
+     * @return boolean
+     */
+    private static boolean matches(Part[] parts, int index, MarkupContent content)
+    {
+        Part part = parts[index];
+        if ( !part.matches(content) ) return false;
+        if (index == parts.length-1) return true;
+        MarkupContent parent = content.getParent();
+        if (part._combinator == '>') return ( parent != null && matches(parts, index+1, parent) );
+        for (; parent != null; parent=parent.getParent())
+        {
+            if ( matches(parts, index+1, parent) ) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the position of the given tag among the tags in its parent's body starting at 1. If
+     * fromEnd is true, it is counted from the last tag. Returns 0 if the tag does not have a parent.
+     *
+     * @param tag The tag.
+     * @param fromEnd Whether to count from the end.
+     * @return int
+     */
+    private static int getPosition(MarkupContent tag, boolean fromEnd)
+    {
+        MarkupContent parent = tag.getParent();
+        if (parent == null) return 0;
+        int size = parent.getBodySize();
+        int position = 0;
+        for (int i=0; i<size; i++)
+        {
+            MarkupContent c = parent.getBodyContent( (fromEnd ? size-1-i : i) );
+            if (c instanceof MarkupTag) position++;
+            if (c == tag) return position;
+        }
+        return 0;
+    }
+
+    /**
+     * This is a type selector with the ids, classes, attributes, and pseudo classes that go with it.
+     */
+    private static class Part
+    {
+        /** The combinator between this part and the part to the left of it. */
+        private char _combinator = ' ';
+        /** The tag name or null for any tag. */
+        private String _name;
+        private String _id;
+        private String[] _classes;
+        /** The name, operator, and value of each attribute. The operator is (char)0 if there is no value. */
+        private String[] _attributeNames;
+        private char[] _attributeOperators;
+        private String[] _attributeValues;
+        /** The a and b of each :nth-child(an+b) and whether it is counted from the last child. */
+        private int[] _nthA;
+        private int[] _nthB;
+        private boolean[] _nthFromEnd;
+
+        private boolean matches(MarkupContent content)
+        {
+            if ( !(content instanceof MarkupTag) ) return false;
+            MarkupTag tag = (MarkupTag)content;
+            if ( _name != null && !_name.equalsIgnoreCase(tag.getTagName()) ) return false;
+            if ( _id != null && !_id.equals(tag.getIdAttribute()) ) return false;
+            if (_classes != null)
+            {
+                String cls = tag.getCustomAttribute("class");
+                if (cls == null) return false;
+                for (int i=0; i<_classes.length; i++)
+                {
+                    if ( !hasWord(cls, _classes[i]) ) return false;
+                }
+            }
+            if (_attributeNames != null)
+            {
+                for (int i=0; i<_attributeNames.length; i++)
+                {
+                    if ( !matchesAttribute(tag, i) ) return false;
+                }
+            }
+            if (_nthA != null)
+            {
+                for (int i=0; i<_nthA.length; i++)
+                {
+                    int position = getPosition(tag, _nthFromEnd[i]);
+                    if (position == 0) return false;
+                    int a = _nthA[i];
+                    int diff = position - _nthB[i];
+                    if (a == 0 ? diff != 0 : (diff/a < 0 || diff % a != 0)) return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean matchesAttribute(MarkupTag tag, int index)
+        {
+            AttributeList attributes = tag.getAttributes();
+            TagAttribute attribute = null;
+            int size = attributes.size();
+            for (int i=0; i<size && attribute == null; i++)
+            {
+                TagAttribute a = (TagAttribute)attributes.get(i);
+                if ( _attributeNames[index].equalsIgnoreCase(a.getName()) ) attribute = a;
+            }
+            if (attribute == null) return false;
+            char operator = _attributeOperators[index];
+            if (operator == (char)0) return true;
+            String value = attribute.getValue();
+            if (value == null) return false;
+            String expected = _attributeValues[index];
+            switch (operator)
+            {
+                case '=': return value.equals(expected);
+                case '~': return hasWord(value, expected);
+                case '^': return ( expected.length() > 0 && value.startsWith(expected) );
+                case '$': return ( expected.length() > 0 && value.endsWith(expected) );
+                case '*': return ( expected.length() > 0 && value.indexOf(expected) > -1 );
+                case '|': return ( value.equals(expected) || value.startsWith(expected+"-") );
+                default: return false;
+            }
+        }
+
+        /**
+         * Returns whether the word is one of the words separated by white space.
+         *
+         * @param words The words.
+         * @param word The word.
+         * @return boolean
+         */
+        private static boolean hasWord(String words, String word)
+        {
+            if (word.length() == 0) return false;
+            for (int i=words.indexOf(word); i > -1; i=words.indexOf(word, i+1))
+            {
+                int end = i+word.length();
+                if ( (i == 0 || Character.isWhitespace(words.charAt(i-1))) &&
+                     (end == words.length() || Character.isWhitespace(words.charAt(end))) ) return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Parses the text of a selector into parts.
+     */
+    private static class Parser
+    {
+        private String _text;
+        private int _pos = 0;
+
+        private Parser(String text)
+        {
+            _text = text;
+        }
+
+        /**
+         * Parses one selector up to a comma or the end and returns its parts from right to left.
+         *
+         * @return Part[]
+         */
+        private Part[] parseSelector() throws IllegalArgumentException
+        {
+            Vector<Part> parts = new Vector<Part>();
+            skipSpaces();
+            parts.add( parsePart() );
+            while (true)
+            {
+                boolean spaces = skipSpaces();
+                char combinator = ' ';
+                if ( skip('>') )
+                {
+                    combinator = '>';
+                    skipSpaces();
+                }
+                else if ( !spaces || atEnd() || peek() == ',' )
+                {
+                    break;
+                }
+                //The combinator is kept with the part on the right of it
+                Part part = parsePart();
+                part._combinator = combinator;
+                parts.add(part);
+            }
+            Part[] ret = new Part[parts.size()];
+            for (int i=0; i<ret.length; i++)
+            {
+                ret[i] = parts.get(ret.length-1-i);
+            }
+            return ret;
+        }
+
+        private Part parsePart() throws IllegalArgumentException
+        {
+            Part ret = new Part();
+            Vector<String> classes = new Vector<String>();
+            Vector<String[]> attributes = new Vector<String[]>();
+            Vector<int[]> nth = new Vector<int[]>();
+            int start = _pos;
+            if ( !skip('*') && isNameChar(peek()) ) ret._name = parseName();
+            while ( !atEnd() )
+            {
+                char c = peek();
+                if (c == '#')
+                {
+                    _pos++;
+                    ret._id = parseName();
+                }
+                else if (c == '.')
+                {
+                    _pos++;
+                    classes.add( parseName() );
+                }
+                else if (c == '[')
+                {
+                    _pos++;
+                    attributes.add( parseAttribute() );
+                }
+                else if (c == ':')
+                {
+                    _pos++;
+                    nth.add( parsePseudoClass() );
+                }
+                else
+                {
+                    break;
+                }
+            }
+            if (_pos == start) throw invalid();
+            if (classes.size() > 0)
+            {
+                ret._classes = new String[classes.size()];
+                classes.copyInto(ret._classes);
+            }
+            if (attributes.size() > 0)
+            {
+                int size = attributes.size();
+                ret._attributeNames = new String[size];
+                ret._attributeOperators = new char[size];
+                ret._attributeValues = new String[size];
+                for (int i=0; i<size; i++)
+                {
+                    String[] attribute = attributes.get(i);
+                    ret._attributeNames[i] = attribute[0];
+                    ret._attributeOperators[i] = (attribute[1] != null ? attribute[1].charAt(0) : (char)0);
+                    ret._attributeValues[i] = attribute[2];
+                }
+            }
+            if (nth.size() > 0)
+            {
+                int size = nth.size();
+                ret._nthA = new int[size];
+                ret._nthB = new int[size];
+                ret._nthFromEnd = new boolean[size];
+                for (int i=0; i<size; i++)
+                {
+                    int[] n = nth.get(i);
+                    ret._nthA[i] = n[0];
+                    ret._nthB[i] = n[1];
+                    ret._nthFromEnd[i] = (n[2] == 1);
+                }
+            }
+            return ret;
+        }
+
+        /**
+         * Parses an attribute after the [ and returns its name, operator, and value.
+         *
+         * @return String[]
+         */
+        private String[] parseAttribute() throws IllegalArgumentException
+        {
+            skipSpaces();
+            String[] ret = new String[3];
+            ret[0] = parseName();
+            skipSpaces();
+            if ( skip(']') ) return ret;
+            char c = peek();
+            if (c == '~' || c == '^' || c == '$' || c == '*' || c == '|')
+            {
+                _pos++;
+                ret[1] = String.valueOf(c);
+                if ( !skip('=') ) throw invalid();
+            }
+            else if ( skip('=') )
+            {
+                ret[1] = "=";
+            }
+            else
+            {
+                throw invalid();
+            }
+            skipSpaces();
+            c = peek();
+            if (c == '"' || c == '\'')
+            {
+                int end = _text.indexOf(c, _pos+1);
+                if (end == -1) throw invalid();
+                ret[2] = _text.substring(_pos+1, end);
+                _pos = end+1;
+            }
+            else
+            {
+                ret[2] = parseName();
+            }
+            skipSpaces();
+            if ( !skip(']') ) throw invalid();
+            return ret;
+        }
+
+        /**
+         * Parses a pseudo class after the : and returns the a and b of it as :nth-child(an+b) and 1
+         * if it is counted from the end.
+         *
+         * @return int[]
+         */
+        private int[] parsePseudoClass() throws IllegalArgumentException
+        {
+            String name = parseName().toLowerCase();
+            if ( name.equals("first-child") ) return new int[] { 0, 1, 0 };
+            if ( name.equals("last-child") ) return new int[] { 0, 1, 1 };
+            if ( !name.equals("nth-child") || !skip('(') ) throw invalid();
+            int end = _text.indexOf(')', _pos);
+            if (end == -1) throw invalid();
+            String arg = _text.substring(_pos, end).replaceAll("\\s", "").toLowerCase();
+            _pos = end+1;
+            if ( arg.equals("odd") ) return new int[] { 2, 1, 0 };
+            if ( arg.equals("even") ) return new int[] { 2, 0, 0 };
+            try
+            {
+                int n = arg.indexOf('n');
+                if (n == -1) return new int[] { 0, Integer.parseInt(arg), 0 };
+                String a = arg.substring(0, n);
+                String b = arg.substring(n+1);
+                //A sign after the n has to have a number after it
+                if ( b.length() > 0 && (b.length() == 1 || !Character.isDigit(b.charAt(1))) ) throw invalid();
+                if ( b.startsWith("+") ) b = b.substring(1);
+                int aValue = ( a.equals("") || a.equals("+") ? 1 : (a.equals("-") ? -1 : Integer.parseInt(a)) );
+                return new int[] { aValue, (b.equals("") ? 0 : Integer.parseInt(b)), 0 };
+            }
+            catch (NumberFormatException nfe)
+            {
+                throw invalid();
+            }
+        }
+
+        private String parseName() throws IllegalArgumentException
+        {
+            int start = _pos;
+            while ( !atEnd() && isNameChar(peek()) )
+            {
+                _pos++;
+            }
+            if (_pos == start) throw invalid();
+            return _text.substring(start, _pos);
+        }
+
+        private static boolean isNameChar(char c)
+        {
+            return ( Character.isLetterOrDigit(c) || c == '-' || c == '_' );
+        }
+
+        private boolean skipSpaces()
+        {
+            int start = _pos;
+            while ( !atEnd() && Character.isWhitespace(peek()) )
+            {
+                _pos++;
+            }
+            return (_pos > start);
+        }
+
+        private boolean skip(char c)
+        {
+            if (atEnd() || peek() != c) return false;
+            _pos++;
+            return true;
+        }
+
+        private char peek()
+        {
+            return (atEnd() ? (char)0 : _text.charAt(_pos));
+        }
+
+        private boolean atEnd()
+        {
+            return (_pos >= _text.length());
+        }
+
+        private IllegalArgumentException invalid()
+        {
+            return new IllegalArgumentException("Invalid selector at "+_pos+": "+_text);
+        }
+    }
+}
@@ -1,9 +1,9 @@
 package com.zitego.markup;
 
 import com.zitego.markup.tag.MarkupTag;
+import com.zitego.markup.tag.Entities;
 import com.zitego.format.FormatType;
 import com.zitego.format.UnsupportedFormatException;
-import com.zitego.util.TextUtils;
 import java.util.Vector;
 
 /**
@@ -16,6 +16,8 @@ public class TextContent extends MarkupContent
 {
     /** The text. */
     protected StringBuffer _text;
+    /** The text in the parsed document until this is changed. */
+    private CharSequence _source;
 
     /**
      * Creates new text content with no parent.
@@ -68,6 +70,7 @@ public class TextContent extends MarkupContent
      */
     public void setText(String text)
     {
+        _source = null;
         _text.setLength(0);
         appendText(text);
     }
@@ -79,7 +82,19 @@ public class TextContent extends MarkupContent
      */
     public String getText()
     {
-        return _text.toString();
+        return ( _source != null ? _source.toString() : _text.toString() );
+    }
+
+    /**
+     * Returns the text with its character references (such as &amp;amp; and &amp;#160;) replaced
+     * with the characters they stand for. The text is decoded in one pass straight from the parsed
+     * document if it has not been changed.
+     *
+     * @return String
+     */
+    public String getDecodedText()
+    {
+        return Entities.decode( (_source != null ? _source : _text) );
     }
 
     /**
@@ -89,10 +104,23 @@ public class TextContent extends MarkupContent
      */
     public void appendText(String text)
     {
+        if (_source != null)
+        {
+            _text.append( _source.toString() );
+            _source = null;
+        }
         if (text != null) _text.append(text);
         setChanged();
     }
 
+    protected void recycle()
+    {
+        //Text content is handed out by ParseArena
+        super.recycle();
+        _text.setLength(0);
+        _source = null;
+    }
+
     /**
      * Returns a String representation of this.
      *
@@ -101,7 +129,7 @@ public class TextContent extends MarkupContent
     public String toString()
     {
         boolean preserve = preserveWhiteSpace();
-        String txt = _text.toString();
+        String txt = getText();
         MarkupContent parent = getParent();
         if ( !preserve && (parent == null || parent.trimChildText()) ) txt = txt.trim();
         StringBuffer ret = new StringBuffer( (!preserve ? getPadding() : "") ).append(txt);
@@ -147,16 +175,19 @@ public class TextContent extends MarkupContent
     }
 
     /**
-     * Parses the given string and sets the text until it reaches a < character.
+     * Parses the given string and sets the text until it reaches a < character. The text is kept
+     * as a span of the parsed document (see <code>ParseCursor.span(int, int)</code>) until it is
+     * changed, so text parsed from a MappedText is not decoded until it is needed.
      *
      * @param text The text.
      * @param type The format type.
      * @throws IllegalMarkupException if the text is invalid.
      * @throws UnsupportedFormatException if the format is not supported.
      */
-    public void parseText(StringBuffer text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
+    public void parseText(ParseCursor text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
     {
-        String content = TextUtils.getTextUpTo(text, '<');
-        setText(content);
+        _text.setLength(0);
+        _source = text.getSpanUpTo('<');
+        setChanged();
     }
 }
\ No newline at end of file
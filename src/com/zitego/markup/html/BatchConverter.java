@@ -0,0 +1,299 @@
+package com.zitego.markup.html;
+
+import com.zitego.markup.MarkupFactory;
+import com.zitego.markup.ParseCursor;
+import com.zitego.markup.html.tag.Html;
+import com.zitego.format.FormatType;
+import java.io.File;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * This parses and formats many html documents at once. Each document is parsed, passed to the
+ * Transformer if there is one, and formatted as a separate task on an executor. The result of each
+ * one is given to a ResultHandler on the thread that converted it. No more then the given number of
+ * documents are in flight at a time, so the inputs can be read from a stream of any size without
+ * them all being held in memory. The time each document took and the totals for the batch are
+ * kept in a BatchStats.<br>
+ * <br>
+ * The class of MarkupFactory to use is looked up once for the batch and set on each task's thread
+ * with <code>MarkupFactory.setThreadFactoryClass(Class)</code>, so the tasks do not wait on each other
+ * for the System or StaticProperties properties while parsing. Documents are not shared between
+ * tasks, so the Transformer and ResultHandler need only be thread safe themselves.<br>
+ * <br>
+ * An input can be a File, an InputStream, a Reader, or any CharSequence (such as a String). Streams
+ * and readers are not closed.
+ *
+ * @author John Glorioso
+ * @version $Id$
+ */
+public class BatchConverter
+{
+    /** The executor to convert on or null to create one for each batch. */
+    private ExecutorService _executor;
+    /** The most documents to convert at a time. */
+    private int _maxInFlight;
+    private Transformer _transformer;
+    /** The format type to format the documents as. */
+    private FormatType _outputType = FormatType.HTML;
+    /** The charset of streams and files or null to detect it. */
+    private Charset _charset;
+
+    /**
+     * Creates a new batch converter that creates a thread for each processor for each batch and
+     * converts up to twice that many documents at a time.
+     */
+    public BatchConverter()
+    {
+        this( null, Runtime.getRuntime().availableProcessors()*2 );
+    }
+
+    /**
+     * Creates a new batch converter that runs on the given executor. The executor is not shut down.
+     *
+     * @param executor The executor or null to create one for each batch.
+     * @param maxInFlight The most documents to convert at a time.
+     * @throws IllegalArgumentException if the max in flight is less then 1.
+     */
+    public BatchConverter(ExecutorService executor, int maxInFlight) throws IllegalArgumentException
+    {
+        if (maxInFlight < 1) throw new IllegalArgumentException("Invalid max in flight: "+maxInFlight);
+        _executor = executor;
+        _maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Sets the transformer that is given each document after it is parsed.
+     *
+     * @param transformer The transformer or null for none.
+     */
+    public void setTransformer(Transformer transformer)
+    {
+        _transformer = transformer;
+    }
+
+    /**
+     * Returns the transformer that is given each document after it is parsed.
+     *
+     * @return Transformer
+     */
+    public Transformer getTransformer()
+    {
+        return _transformer;
+    }
+
+    /**
+     * Sets the format type the documents are formatted as. If it is null, the documents are
+     * parsed and transformed, but not formatted. The default is html.
+     *
+     * @param type The format type.
+     */
+    public void setOutputType(FormatType type)
+    {
+        _outputType = type;
+    }
+
+    /**
+     * Returns the format type the documents are formatted as.
+     *
+     * @return FormatType
+     */
+    public FormatType getOutputType()
+    {
+        return _outputType;
+    }
+
+    /**
+     * Sets the charset of files and byte streams. If it is null, it is detected from each one.
+     * See <code>CharStream.forInputStream(InputStream, Charset)</code>.
+     *
+     * @param charset The charset.
+     */
+    public void setCharset(Charset charset)
+    {
+        _charset = charset;
+    }
+
+    /**
+     * Returns the charset of files and byte streams or null if it is detected.
+     *
+     * @return Charset
+     */
+    public Charset getCharset()
+    {
+        return _charset;
+    }
+
+    /**
+     * Converts each of the inputs and gives the results to the handler. This returns once every
+     * document has been converted. The inputs are only read on this thread. A document that fails
+     * does not stop the batch. Its result has the error instead.
+     *
+     * @param inputs The inputs.
+     * @param handler The handler to give the results to or null to only keep the stats.
+     * @return BatchStats
+     * @throws InterruptedException if this thread is interrupted while waiting.
+     * @throws IllegalArgumentException if the inputs are null.
+     * @throws RejectedExecutionException if the executor will not take a document.
+     */
+    public BatchStats convert(Iterator<?> inputs, ResultHandler handler)
+    throws InterruptedException, IllegalArgumentException, RejectedExecutionException
+    {
+        if (inputs == null) throw new IllegalArgumentException("inputs cannot be null");
+        ExecutorService executor = _executor;
+        if (executor == null) executor = Executors.newFixedThreadPool( Runtime.getRuntime().availableProcessors() );
+        Class<? extends MarkupFactory> factoryClass = HtmlMarkupFactory.getInstance().getClass();
+        BatchStats stats = new BatchStats();
+        Semaphore inFlight = new Semaphore(_maxInFlight);
+        try
+        {
+            while ( inputs.hasNext() )
+            {
+                Object input = inputs.next();
+                inFlight.acquire();
+                try
+                {
+                    executor.execute( new Conversion(input, factoryClass, handler, stats, inFlight) );
+                }
+                catch (RejectedExecutionException ree)
+                {
+                    inFlight.release();
+                    throw ree;
+                }
+            }
+            //Wait for the ones in flight to finish
+            inFlight.acquire(_maxInFlight);
+            inFlight.release(_maxInFlight);
+        }
+        finally
+        {
+            if (_executor == null) executor.shutdown();
+        }
+        stats.finish();
+        return stats;
+    }
+
+    /**
+     * Parses, transforms, and formats one input and returns the result.
+     *
+     * @param input The input.
+     * @return BatchResult
+     */
+    protected BatchResult convert(Object input)
+    {
+        long start = System.nanoTime();
+        Html doc = null;
+        String output = null;
+        Exception error = null;
+        try
+        {
+            doc = parse(input);
+            if (_transformer != null) _transformer.transform(doc);
+            if (_outputType != null) output = doc.format(_outputType);
+        }
+        catch (Exception e)
+        {
+            error = e;
+        }
+        return new BatchResult( input, doc, output, error, System.nanoTime()-start );
+    }
+
+    /**
+     * Parses the given input into an html document.
+     *
+     * @param input The input.
+     * @return Html
+     * @throws Exception if an error occurs parsing or the input is not a type that can be parsed.
+     */
+    protected Html parse(Object input) throws Exception
+    {
+        Html ret = new Html();
+        if (input instanceof File) ret.parse( (File)input, _charset );
+        else if (input instanceof InputStream) ret.parse( (InputStream)input, _charset );
+        else if (input instanceof Reader) ret.parse( (Reader)input );
+        else if (input instanceof CharSequence) ret.parse( new ParseCursor((CharSequence)input), FormatType.HTML );
+        else throw new IllegalArgumentException( "Unable to parse input type: "+(input != null ? input.getClass().getName() : null) );
+        return ret;
+    }
+
+    /**
+     * Converts one input on an executor thread.
+     */
+    private class Conversion implements Runnable
+    {
+        private Object _input;
+        private Class<? extends MarkupFactory> _factoryClass;
+        private ResultHandler _handler;
+        private BatchStats _stats;
+        private Semaphore _inFlight;
+
+        /**
+         * Creates a new conversion.
+         *
+         * @param input The input.
+         * @param factoryClass The class of MarkupFactory to parse with.
+         * @param handler The handler to give the result to.
+         * @param stats The stats to add the result to.
+         * @param inFlight The permit to release when done.
+         */
+        private Conversion(Object input, Class<? extends MarkupFactory> factoryClass, ResultHandler handler, BatchStats stats, Semaphore inFlight)
+        {
+            _input = input;
+            _factoryClass = factoryClass;
+            _handler = handler;
+            _stats = stats;
+            _inFlight = inFlight;
+        }
+
+        public void run()
+        {
+            Class<? extends MarkupFactory> previous = MarkupFactory.getThreadFactoryClass();
+            MarkupFactory.setThreadFactoryClass(_factoryClass);
+            try
+            {
+                BatchResult result = convert(_input);
+                _stats.add(result);
+                if (_handler != null) _handler.converted(result);
+            }
+            finally
+            {
+                MarkupFactory.setThreadFactoryClass(previous);
+                _inFlight.release();
+            }
+        }
+    }
+
+    /**
+     * This is given each document after it is parsed and before it is formatted.
+     */
+    public interface Transformer
+    {
+        /**
+         * Changes the document.
+         *
+         * @param doc The document.
+         * @throws Exception if an error occurs.
+         */
+        public void transform(Html doc) throws Exception;
+    }
+
+    /**
+     * This is given the result of each document once it has been converted. It is called on the
+     * thread that converted the document.
+     */
+    public interface ResultHandler
+    {
+        /**
+         * Called with the result of a document.
+         *
+         * @param result The result.
+         */
+        public void converted(BatchResult result);
+    }
+}
@@ -0,0 +1,107 @@
+package com.zitego.markup.html;
+
+import com.zitego.markup.html.tag.Html;
+
+/**
+ * This is the result of converting one document with a BatchConverter.
+ *
+ * @author John Glorioso
+ * @version $Id$
+ */
+public class BatchResult
+{
+    private Object _input;
+    private Html _document;
+    private String _output;
+    private Exception _error;
+    /** The time it took to convert the document in nanoseconds. */
+    private long _nanos;
+
+    /**
+     * Creates a new result.
+     *
+     * @param input The input.
+     * @param document The parsed document or null if it could not be parsed.
+     * @param output The formatted document or null if it was not formatted.
+     * @param error The error or null if there was not one.
+     * @param nanos The time it took in nanoseconds.
+     */
+    BatchResult(Object input, Html document, String output, Exception error, long nanos)
+    {
+        _input = input;
+        _document = document;
+        _output = output;
+        _error = error;
+        _nanos = nanos;
+    }
+
+    /**
+     * Returns the input that was converted.
+     *
+     * @return Object
+     */
+    public Object getInput()
+    {
+        return _input;
+    }
+
+    /**
+     * Returns the parsed document or null if it could not be parsed.
+     *
+     * @return Html
+     */
+    public Html getDocument()
+    {
+        return _document;
+    }
+
+    /**
+     * Returns the formatted document or null if it was not formatted.
+     *
+     * @return String
+     */
+    public String getOutput()
+    {
+        return _output;
+    }
+
+    /**
+     * Returns the error that stopped the conversion or null if there was not one.
+     *
+     * @return Exception
+     */
+    public Exception getError()
+    {
+        return _error;
+    }
+
+    /**
+     * Returns whether the document was converted without an error.
+     *
+     * @return boolean
+     */
+    public boolean isSuccessful()
+    {
+        return (_error == null);
+    }
+
+    /**
+     * Returns the time it took to convert the document in nanoseconds.
+     *
+     * @return long
+     */
+    public long getNanos()
+    {
+        return _nanos;
+    }
+
+    /**
+     * Returns the time it took to convert the document in milliseconds.
+     *
+     * @return double
+     */
+    public double getMillis()
+    {
+        return _nanos / 1000000d;
+    }
+}
@@ -0,0 +1,120 @@
+package com.zitego.markup.html;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This keeps the totals for a batch of documents converted by a BatchConverter. Results are added
+ * from many threads at once without a lock.
+ *
+ * @author John Glorioso
+ * @version $Id$
+ */
+public class BatchStats
+{
+    private AtomicLong _documents = new AtomicLong();
+    private AtomicLong _failures = new AtomicLong();
+    /** The total time spent converting documents in nanoseconds. */
+    private AtomicLong _totalNanos = new AtomicLong();
+    /** The longest time spent converting one document in nanoseconds. */
+    private AtomicLong _maxNanos = new AtomicLong();
+    /** When the batch started. */
+    private long _start = System.nanoTime();
+    /** When the batch finished or zero if it has not yet. */
+    private volatile long _end = 0;
+
+    /**
+     * Adds the given result to the totals.
+     *
+     * @param result The result.
+     */
+    void add(BatchResult result)
+    {
+        _documents.incrementAndGet();
+        if ( !result.isSuccessful() ) _failures.incrementAndGet();
+        long nanos = result.getNanos();
+        _totalNanos.addAndGet(nanos);
+        long max = _maxNanos.get();
+        while ( nanos > max && !_maxNanos.compareAndSet(max, nanos) )
+        {
+            max = _maxNanos.get();
+        }
+    }
+
+    /**
+     * Marks the batch as finished.
+     */
+    void finish()
+    {
+        _end = System.nanoTime();
+    }
+
+    /**
+     * Returns the number of documents converted so far including the ones that failed.
+     *
+     * @return long
+     */
+    public long getDocuments()
+    {
+        return _documents.get();
+    }
+
+    /**
+     * Returns the number of documents that failed.
+     *
+     * @return long
+     */
+    public long getFailures()
+    {
+        return _failures.get();
+    }
+
+    /**
+     * Returns the average time it took to convert a document in milliseconds.
+     *
+     * @return double
+     */
+    public double getAverageMillis()
+    {
+        long docs = _documents.get();
+        return ( docs > 0 ? _totalNanos.get() / 1000000d / docs : 0d );
+    }
+
+    /**
+     * Returns the longest time it took to convert a document in milliseconds.
+     *
+     * @return double
+     */
+    public double getMaxMillis()
+    {
+        return _maxNanos.get() / 1000000d;
+    }
+
+    /**
+     * Returns the time from the start of the batch until it finished (or now if it has not) in
+     * milliseconds.
+     *
+     * @return double
+     */
+    public double getElapsedMillis()
+    {
+        long end = _end;
+        return ( (end != 0 ? end : System.nanoTime()) - _start ) / 1000000d;
+    }
+
+    /**
+     * Returns the number of documents converted per second.
+     *
+     * @return double
+     */
+    public double getDocumentsPerSecond()
+    {
+        double elapsed = getElapsedMillis();
+        return ( elapsed > 0 ? _documents.get() * 1000d / elapsed : 0d );
+    }
+
+    public String toString()
+    {
+        return getDocuments()+" documents ("+getFailures()+" failed) in "+getElapsedMillis()+"ms, "+
+               getDocumentsPerSecond()+" per second, "+getAverageMillis()+"ms average, "+getMaxMillis()+"ms max";
+    }
+}
@@ -4,17 +4,17 @@ import com.zitego.markup.MarkupContent;
 import com.zitego.markup.MarkupBody;
 import com.zitego.markup.Comment;
 import com.zitego.markup.IllegalMarkupException;
+import com.zitego.markup.ParseCursor;
+import com.zitego.markup.CharStream;
+import com.zitego.markup.MappedText;
 import com.zitego.format.FormatType;
 import com.zitego.format.UnsupportedFormatException;
 import com.zitego.markup.html.tag.Style;
-import com.zitego.util.TextUtils;
 import java.util.Vector;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.FileInputStream;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
+import java.nio.charset.Charset;
 import java.net.URL;
 
 /**
@@ -62,7 +62,8 @@ public class CascadingStyleSheet extends MarkupContent
     }
 
     /**
-     * Creates a new CascadingStyleSheet based on a file path to the actual style sheet.
+     * Creates a new CascadingStyleSheet based on a file path to the actual style sheet. The
+     * file is memory mapped rather then read into the heap.
      *
      * @param f The file.
      * @throws IOException if an io error occurs.
@@ -70,7 +71,8 @@ public class CascadingStyleSheet extends MarkupContent
      */
     public CascadingStyleSheet(File f) throws IOException, UnsupportedFormatException
     {
-        this( new FileInputStream(f) );
+        super();
+        parse(new ParseCursor( MappedText.map(f, Charset.defaultCharset()) ), FormatType.HTML);
     }
 
     /**
@@ -95,14 +97,9 @@ public class CascadingStyleSheet extends MarkupContent
     public CascadingStyleSheet(InputStream in) throws IOException, UnsupportedFormatException
     {
         super();
-        BufferedReader reader = new BufferedReader( new InputStreamReader(in) );
-        String line = null;
-        StringBuffer ret = new StringBuffer();
-        while ( (line=reader.readLine()) != null )
-        {
-            ret.append(line).append("\n");
-        }
-        parse(ret.toString(), FormatType.HTML);
+        CharStream stream = CharStream.forInputStream( in, Charset.defaultCharset() );
+        parse(new ParseCursor(stream), FormatType.HTML);
+        stream.checkError();
     }
 
     /**
@@ -271,13 +268,14 @@ public class CascadingStyleSheet extends MarkupContent
         }
     }
 
-    public void parseText(StringBuffer text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
+    public void parseText(ParseCursor text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
     {
         if (text == null) return;
 
         while (text.length() > 0)
         {
-            removeLeadingSpaces(text);
+            text.discard();
+            skipLeadingSpaces(text);
             //TO DO - integrate this to print back out
             //See if we have a comment here or a style declaration. Comment will begin with either a //
             // or a /*
@@ -287,14 +285,19 @@ public class CascadingStyleSheet extends MarkupContent
             {
                 Comment comment = new Comment(this);
                 comment.parseText(text, type);
-                removeLeadingSpaces(text);
+                skipLeadingSpaces(text);
                 if (text.length() == 0) continue;
             }
             StyleDeclaration d = new StyleDeclaration(this);
-            d.parseText(new StringBuffer( TextUtils.getTextUpTo(text, '}') ), type);
+            //Parse the declaration up to the } without copying it
+            int start = text.getPosition();
+            int index = text.indexOf('}');
+            if (index == -1) index = text.length();
+            d.parseText(new ParseCursor(text.getText(), start, start+index), type);
+            text.setPosition(start+index);
             _styleDeclarations.add(d);
             //Get rid of the }
-            text.deleteCharAt(0);
+            text.skip(1);
             //TO DO - handle single line styles not in { } (low priority)
         }
     }
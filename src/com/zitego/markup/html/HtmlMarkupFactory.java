@@ -1,23 +1,44 @@
 package com.zitego.markup.html;
 
+import com.zitego.markup.CharStream;
+import com.zitego.markup.DefaultMarkupHandler;
 import com.zitego.markup.MarkupContent;
 import com.zitego.markup.TextContent;
 import com.zitego.markup.IllegalMarkupException;
 import com.zitego.markup.MarkupFactory;
+import com.zitego.markup.ParseCursor;
+import com.zitego.markup.ParseDiagnostics;
+import com.zitego.markup.ParseArena;
 import com.zitego.markup.tag.MarkupTag;
 import com.zitego.markup.tag.Doctype;
+import com.zitego.markup.tag.TagSymbol;
+import com.zitego.markup.tag.TagCreator;
+import com.zitego.markup.tag.ConstructorTagCreator;
+import com.zitego.markup.tag.StartTagScan;
 import com.zitego.markup.html.tag.HtmlMarkupTag;
 import com.zitego.markup.html.tag.UnknownHtmlTag;
 import com.zitego.markup.html.tag.HtmlCommentTag;
 import com.zitego.markup.html.tag.Html;
+import com.zitego.markup.html.tag.Body;
+import com.zitego.markup.html.tag.Header;
+import com.zitego.markup.html.tag.BR;
+import com.zitego.markup.html.tag.form.FormElement;
 import com.zitego.markup.html.javascript.Statement;
 import com.zitego.format.FormatType;
 import com.zitego.format.UnsupportedFormatException;
 import com.zitego.util.StaticProperties;
-import java.util.Hashtable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Vector;
-import java.util.regex.Pattern;
-import java.util.regex.Matcher;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.lang.reflect.Constructor;
 
 /**
@@ -27,116 +48,213 @@ import java.lang.reflect.Constructor;
  * the class name of this class. If you want a subclass of this to be returned, you must set the property
  * with the class name of MarkupFactory to instantiate. Additionally, the ClassLoader of this class will
  * be used unless the StaticProperties property "markup_factory_classloader" is set with with the
- * ClassLoader that can instantiate the MarkupFactory.
+ * ClassLoader that can instantiate the MarkupFactory.<br>
+ * <br>
+ * Large document bodies can be parsed on more then one thread by setting an executor on the document with
+ * <code>MarkupContent.setParallelExecutor(ExecutorService)</code>. See
+ * <code>parse(ParseCursor, MarkupContent, FormatType, boolean, boolean, boolean)</code>.
  *
  * @author John Glorioso
  * @version $Id: HtmlMarkupFactory.java,v 1.4 2013/04/04 02:06:41 jglorioso Exp $
  */
 public class HtmlMarkupFactory extends MarkupFactory
 {
-    private static Hashtable _tags = new Hashtable();
+    private static final TagSymbol INPUT = TagSymbol.intern("input");
+    private static final TagSymbol SCRIPT = TagSymbol.intern("script");
+    private static final TagSymbol STYLE = TagSymbol.intern("style");
+    private static final TagSymbol LINE_BREAK = TagSymbol.intern("br");
+    private static final TagSymbol FORM = TagSymbol.intern("form");
+    /** The least number of characters in each piece of a body that is parsed in parallel. */
+    public static final int PARALLEL_SEGMENT_LENGTH = 32768;
+    /**
+     * Whether tags of each class have an end tag by class. It is read without a lock while bodies are
+     * scanned, so it is never changed. A copy with the new class is put in its place instead.
+     */
+    private static volatile HashMap _hasEndTag = new HashMap();
+    /** The handler given the attributes of tags that are only scanned. */
+    private static final DefaultMarkupHandler SCAN_HANDLER = new DefaultMarkupHandler();
+    /** The tag creators by TagSymbol. This is only changed while the class is loaded. */
+    private static IdentityHashMap _tags = new IdentityHashMap();
     static
     {
         try
         {
-            _tags.put( "!--", Class.forName("com.zitego.markup.html.tag.HtmlCommentTag") );
-            _tags.put( "!doctype", Class.forName("com.zitego.markup.tag.Doctype") );
-            _tags.put( "a", Class.forName("com.zitego.markup.html.tag.Anchor") );
-            _tags.put( "applet", Class.forName("com.zitego.markup.html.tag.Applet") );
-            _tags.put( "area", Class.forName("com.zitego.markup.html.tag.Area") );
-            _tags.put( "base", Class.forName("com.zitego.markup.html.tag.Base") );
-            _tags.put( "body", Class.forName("com.zitego.markup.html.tag.Body") );
-            _tags.put( "br", Class.forName("com.zitego.markup.html.tag.BR") );
-            _tags.put( "frame", Class.forName("com.zitego.markup.html.tag.Frame") );
-            _tags.put( "frameset", Class.forName("com.zitego.markup.html.tag.FrameSet") );
-            _tags.put( "head", Class.forName("com.zitego.markup.html.tag.Head") );
-            _tags.put( "h1", Class.forName("com.zitego.markup.html.tag.Header") );
-            _tags.put( "h2", Class.forName("com.zitego.markup.html.tag.Header") );
-            _tags.put( "h3", Class.forName("com.zitego.markup.html.tag.Header") );
-            _tags.put( "h4", Class.forName("com.zitego.markup.html.tag.Header") );
-            _tags.put( "h5", Class.forName("com.zitego.markup.html.tag.Header") );
-            _tags.put( "h6", Class.forName("com.zitego.markup.html.tag.Header") );
-            _tags.put( "hr", Class.forName("com.zitego.markup.html.tag.HR") );
-            _tags.put( "html", Class.forName("com.zitego.markup.html.tag.Html") );
-            _tags.put( "iframe", Class.forName("com.zitego.markup.html.tag.Iframe") );
-            _tags.put( "img", Class.forName("com.zitego.markup.html.tag.Img") );
-            _tags.put( "link", Class.forName("com.zitego.markup.html.tag.Link") );
-            _tags.put( "map", Class.forName("com.zitego.markup.html.tag.Map") );
-            _tags.put( "meta", Class.forName("com.zitego.markup.html.tag.Meta") );
-            _tags.put( "nobr", Class.forName("com.zitego.markup.html.tag.NoBR") );
-            _tags.put( "noframes", Class.forName("com.zitego.markup.html.tag.NoFrames") );
-            _tags.put( "noscript", Class.forName("com.zitego.markup.html.tag.NoScript") );
-            _tags.put( "object", Class.forName("com.zitego.markup.html.tag.ObjectTag") );
-            _tags.put( "param", Class.forName("com.zitego.markup.html.tag.Param") );
-            _tags.put( "script", Class.forName("com.zitego.markup.html.tag.Script") );
-            _tags.put( "style", Class.forName("com.zitego.markup.html.tag.Style") );
-            _tags.put( "title", Class.forName("com.zitego.markup.html.tag.Title") );
-            _tags.put( "address", Class.forName("com.zitego.markup.html.tag.block.Address") );
-            _tags.put( "blockquote", Class.forName("com.zitego.markup.html.tag.block.BlockQuote") );
-            _tags.put( "div", Class.forName("com.zitego.markup.html.tag.block.Div") );
-            _tags.put( "p", Class.forName("com.zitego.markup.html.tag.block.Paragraph") );
-            _tags.put( "span", Class.forName("com.zitego.markup.html.tag.block.Span") );
-            _tags.put( "button", Class.forName("com.zitego.markup.html.tag.form.Button") );
-            _tags.put( "checkbox", Class.forName("com.zitego.markup.html.tag.form.Checkbox") );
-            _tags.put( "fieldset", Class.forName("com.zitego.markup.html.tag.form.FieldSet") );
-            _tags.put( "file", Class.forName("com.zitego.markup.html.tag.form.File") );
-            _tags.put( "form", Class.forName("com.zitego.markup.html.tag.form.Form") );
-            _tags.put( "hidden", Class.forName("com.zitego.markup.html.tag.form.Hidden") );
-            _tags.put( "image", Class.forName("com.zitego.markup.html.tag.form.Image") );
-            _tags.put( "label", Class.forName("com.zitego.markup.html.tag.form.Label") );
-            _tags.put( "legend", Class.forName("com.zitego.markup.html.tag.form.Legend") );
-            _tags.put( "optgroup", Class.forName("com.zitego.markup.html.tag.form.OptGroup") );
-            _tags.put( "option", Class.forName("com.zitego.markup.html.tag.form.Option") );
-            _tags.put( "password", Class.forName("com.zitego.markup.html.tag.form.Password") );
-            _tags.put( "radio", Class.forName("com.zitego.markup.html.tag.form.Radio") );
-            _tags.put( "reset", Class.forName("com.zitego.markup.html.tag.form.Reset") );
-            _tags.put( "select", Class.forName("com.zitego.markup.html.tag.form.Select") );
-            _tags.put( "submit", Class.forName("com.zitego.markup.html.tag.form.Submit") );
-            _tags.put( "text", Class.forName("com.zitego.markup.html.tag.form.Text") );
-            _tags.put( "textarea", Class.forName("com.zitego.markup.html.tag.form.TextArea") );
-            _tags.put( "dd", Class.forName("com.zitego.markup.html.tag.list.Dd") );
-            _tags.put( "dl", Class.forName("com.zitego.markup.html.tag.list.Dl") );
-            _tags.put( "dt", Class.forName("com.zitego.markup.html.tag.list.Dt") );
-            _tags.put( "li", Class.forName("com.zitego.markup.html.tag.list.Li") );
-            _tags.put( "ol", Class.forName("com.zitego.markup.html.tag.list.Ol") );
-            _tags.put( "ul", Class.forName("com.zitego.markup.html.tag.list.Ul") );
-            _tags.put( "caption", Class.forName("com.zitego.markup.html.tag.table.Caption") );
-            _tags.put( "table", Class.forName("com.zitego.markup.html.tag.table.Table") );
-            _tags.put( "tbody", Class.forName("com.zitego.markup.html.tag.table.Tbody") );
-            _tags.put( "td", Class.forName("com.zitego.markup.html.tag.table.Td") );
-            _tags.put( "tfoot", Class.forName("com.zitego.markup.html.tag.table.Tfoot") );
-            _tags.put( "th", Class.forName("com.zitego.markup.html.tag.table.Th") );
-            _tags.put( "thead", Class.forName("com.zitego.markup.html.tag.table.Thead") );
-            _tags.put( "tr", Class.forName("com.zitego.markup.html.tag.table.Tr") );
-            _tags.put( "big", Class.forName("com.zitego.markup.html.tag.textEffect.Big") );
-            _tags.put( "b", Class.forName("com.zitego.markup.html.tag.textEffect.Bold") );
-            _tags.put( "cite", Class.forName("com.zitego.markup.html.tag.textEffect.Cite") );
-            _tags.put( "code", Class.forName("com.zitego.markup.html.tag.textEffect.Code") );
-            _tags.put( "del", Class.forName("com.zitego.markup.html.tag.textEffect.Del") );
-            _tags.put( "dfn", Class.forName("com.zitego.markup.html.tag.textEffect.Dfn") );
-            _tags.put( "em", Class.forName("com.zitego.markup.html.tag.textEffect.Em") );
-            _tags.put( "font", Class.forName("com.zitego.markup.html.tag.textEffect.Font") );
-            _tags.put( "ins", Class.forName("com.zitego.markup.html.tag.textEffect.Ins") );
-            _tags.put( "i", Class.forName("com.zitego.markup.html.tag.textEffect.Italic") );
-            _tags.put( "kbd", Class.forName("com.zitego.markup.html.tag.textEffect.Kbd") );
-            _tags.put( "pre", Class.forName("com.zitego.markup.html.tag.textEffect.Pre") );
-            _tags.put( "samp", Class.forName("com.zitego.markup.html.tag.textEffect.Samp") );
-            _tags.put( "small", Class.forName("com.zitego.markup.html.tag.textEffect.Small") );
-            _tags.put( "strike", Class.forName("com.zitego.markup.html.tag.textEffect.Strike") );
-            _tags.put( "strong", Class.forName("com.zitego.markup.html.tag.textEffect.Strong") );
-            _tags.put( "sub", Class.forName("com.zitego.markup.html.tag.textEffect.Sub") );
-            _tags.put( "sup", Class.forName("com.zitego.markup.html.tag.textEffect.Sup") );
-            _tags.put( "tt", Class.forName("com.zitego.markup.html.tag.textEffect.Tt") );
-            _tags.put( "u", Class.forName("com.zitego.markup.html.tag.textEffect.Underline") );
-            _tags.put( "var", Class.forName("com.zitego.markup.html.tag.textEffect.Var") );
-            _tags.put( "xmp", Class.forName("com.zitego.markup.html.tag.textEffect.Xmp") );
+            register( "!--", new TagCreator()
+            {
+                public Class getTagClass()
+                {
+                    return HtmlCommentTag.class;
+                }
+
+                public MarkupTag createTag(MarkupContent parent)
+                {
+                    if (parent instanceof HtmlMarkupTag) return new HtmlCommentTag( (HtmlMarkupTag)parent );
+                    else if (parent instanceof Statement) return new HtmlCommentTag( (Statement)parent );
+                    else return new HtmlCommentTag();
+                }
+            } );
+            register( "!doctype", new TagCreator()
+            {
+                public Class getTagClass()
+                {
+                    return Doctype.class;
+                }
+
+                public MarkupTag createTag(MarkupContent parent)
+                {
+                    return new Doctype();
+                }
+            } );
+            register( "a", "com.zitego.markup.html.tag.Anchor" );
+            register( "applet", "com.zitego.markup.html.tag.Applet" );
+            register( "area", "com.zitego.markup.html.tag.Area" );
+            register( "base", "com.zitego.markup.html.tag.Base" );
+            register( "body", "com.zitego.markup.html.tag.Body" );
+            register( "br", new ConstructorTagCreator(BR.class)
+            {
+                public MarkupTag createTag(MarkupContent parent) throws Exception
+                {
+                    MarkupTag ret = super.createTag(parent);
+                    //A br needs to be added to the last body content in the parent
+                    if (ret != null && parent != null)
+                    {
+                        int size = parent.getBodySize();
+                        if (size == 0)
+                        {
+                            parent.addBodyContent(ret);
+                        }
+                        else
+                        {
+                            MarkupContent c = parent.getBodyContent(size-1);
+                            if (c instanceof HtmlMarkupTag)
+                            {
+                                //The br that was created is not used, so it cannot stay in the map
+                                ret.unmap();
+                                ret = ( (HtmlMarkupTag)c ).createLineBreak();
+                            }
+                            else
+                            {
+                                parent.addBodyContent(ret);
+                            }
+                        }
+                    }
+                    return ret;
+                }
+            } );
+            register( "frame", "com.zitego.markup.html.tag.Frame" );
+            register( "frameset", "com.zitego.markup.html.tag.FrameSet" );
+            register( "head", "com.zitego.markup.html.tag.Head" );
+            register( "h1", new ConstructorTagCreator(Header.class, new Object[] { Integer.valueOf(1) }) );
+            register( "h2", new ConstructorTagCreator(Header.class, new Object[] { Integer.valueOf(2) }) );
+            register( "h3", new ConstructorTagCreator(Header.class, new Object[] { Integer.valueOf(3) }) );
+            register( "h4", new ConstructorTagCreator(Header.class, new Object[] { Integer.valueOf(4) }) );
+            register( "h5", new ConstructorTagCreator(Header.class, new Object[] { Integer.valueOf(5) }) );
+            register( "h6", new ConstructorTagCreator(Header.class, new Object[] { Integer.valueOf(6) }) );
+            register( "hr", "com.zitego.markup.html.tag.HR" );
+            register( "html", "com.zitego.markup.html.tag.Html" );
+            register( "iframe", "com.zitego.markup.html.tag.Iframe" );
+            register( "img", "com.zitego.markup.html.tag.Img" );
+            register( "link", "com.zitego.markup.html.tag.Link" );
+            register( "map", "com.zitego.markup.html.tag.Map" );
+            register( "meta", "com.zitego.markup.html.tag.Meta" );
+            register( "nobr", "com.zitego.markup.html.tag.NoBR" );
+            register( "noframes", "com.zitego.markup.html.tag.NoFrames" );
+            register( "noscript", "com.zitego.markup.html.tag.NoScript" );
+            register( "object", "com.zitego.markup.html.tag.ObjectTag" );
+            register( "param", "com.zitego.markup.html.tag.Param" );
+            register( "script", "com.zitego.markup.html.tag.Script" );
+            register( "style", "com.zitego.markup.html.tag.Style" );
+            register( "title", "com.zitego.markup.html.tag.Title" );
+            register( "address", "com.zitego.markup.html.tag.block.Address" );
+            register( "blockquote", "com.zitego.markup.html.tag.block.BlockQuote" );
+            register( "div", "com.zitego.markup.html.tag.block.Div" );
+            register( "p", "com.zitego.markup.html.tag.block.Paragraph" );
+            register( "span", "com.zitego.markup.html.tag.block.Span" );
+            register( "button", "com.zitego.markup.html.tag.form.Button" );
+            register( "checkbox", "com.zitego.markup.html.tag.form.Checkbox" );
+            register( "fieldset", "com.zitego.markup.html.tag.form.FieldSet" );
+            register( "file", "com.zitego.markup.html.tag.form.File" );
+            register( "form", "com.zitego.markup.html.tag.form.Form" );
+            register( "hidden", "com.zitego.markup.html.tag.form.Hidden" );
+            register( "image", "com.zitego.markup.html.tag.form.Image" );
+            register( "label", "com.zitego.markup.html.tag.form.Label" );
+            register( "legend", "com.zitego.markup.html.tag.form.Legend" );
+            register( "optgroup", "com.zitego.markup.html.tag.form.OptGroup" );
+            register( "option", "com.zitego.markup.html.tag.form.Option" );
+            register( "password", "com.zitego.markup.html.tag.form.Password" );
+            register( "radio", "com.zitego.markup.html.tag.form.Radio" );
+            register( "reset", "com.zitego.markup.html.tag.form.Reset" );
+            register( "select", "com.zitego.markup.html.tag.form.Select" );
+            register( "submit", "com.zitego.markup.html.tag.form.Submit" );
+            register( "text", "com.zitego.markup.html.tag.form.Text" );
+            register( "textarea", "com.zitego.markup.html.tag.form.TextArea" );
+            register( "dd", "com.zitego.markup.html.tag.list.Dd" );
+            register( "dl", "com.zitego.markup.html.tag.list.Dl" );
+            register( "dt", "com.zitego.markup.html.tag.list.Dt" );
+            register( "li", "com.zitego.markup.html.tag.list.Li" );
+            register( "ol", "com.zitego.markup.html.tag.list.Ol" );
+            register( "ul", "com.zitego.markup.html.tag.list.Ul" );
+            register( "caption", "com.zitego.markup.html.tag.table.Caption" );
+            register( "table", "com.zitego.markup.html.tag.table.Table" );
+            register( "tbody", "com.zitego.markup.html.tag.table.Tbody" );
+            register( "td", "com.zitego.markup.html.tag.table.Td" );
+            register( "tfoot", "com.zitego.markup.html.tag.table.Tfoot" );
+            register( "th", "com.zitego.markup.html.tag.table.Th" );
+            register( "thead", "com.zitego.markup.html.tag.table.Thead" );
+            register( "tr", "com.zitego.markup.html.tag.table.Tr" );
+            register( "big", "com.zitego.markup.html.tag.textEffect.Big" );
+            register( "b", "com.zitego.markup.html.tag.textEffect.Bold" );
+            register( "cite", "com.zitego.markup.html.tag.textEffect.Cite" );
+            register( "code", "com.zitego.markup.html.tag.textEffect.Code" );
+            register( "del", "com.zitego.markup.html.tag.textEffect.Del" );
+            register( "dfn", "com.zitego.markup.html.tag.textEffect.Dfn" );
+            register( "em", "com.zitego.markup.html.tag.textEffect.Em" );
+            register( "font", "com.zitego.markup.html.tag.textEffect.Font" );
+            register( "ins", "com.zitego.markup.html.tag.textEffect.Ins" );
+            register( "i", "com.zitego.markup.html.tag.textEffect.Italic" );
+            register( "kbd", "com.zitego.markup.html.tag.textEffect.Kbd" );
+            register( "pre", "com.zitego.markup.html.tag.textEffect.Pre" );
+            register( "samp", "com.zitego.markup.html.tag.textEffect.Samp" );
+            register( "small", "com.zitego.markup.html.tag.textEffect.Small" );
+            register( "strike", "com.zitego.markup.html.tag.textEffect.Strike" );
+            register( "strong", "com.zitego.markup.html.tag.textEffect.Strong" );
+            register( "sub", "com.zitego.markup.html.tag.textEffect.Sub" );
+            register( "sup", "com.zitego.markup.html.tag.textEffect.Sup" );
+            register( "tt", "com.zitego.markup.html.tag.textEffect.Tt" );
+            register( "u", "com.zitego.markup.html.tag.textEffect.Underline" );
+            register( "var", "com.zitego.markup.html.tag.textEffect.Var" );
+            register( "xmp", "com.zitego.markup.html.tag.textEffect.Xmp" );
         }
         catch (ClassNotFoundException cnfe)
         {
             throw new RuntimeException("Could initialize class tag map: "+cnfe);
         }
     }
-    private static Hashtable _allowableInputTypes = new Hashtable();
+
+    /**
+     * Registers a creator for the given tag name that calls the constructors of the given class.
+     *
+     * @param name The tag name.
+     * @param className The name of the tag class.
+     * @throws ClassNotFoundException if the class does not exist.
+     */
+    private static void register(String name, String className) throws ClassNotFoundException
+    {
+        register( name, new ConstructorTagCreator(Class.forName(className)) );
+    }
+
+    /**
+     * Registers the creator for the given tag name.
+     *
+     * @param name The tag name.
+     * @param creator The creator.
+     */
+    private static void register(String name, TagCreator creator)
+    {
+        _tags.put(TagSymbol.intern(name), creator);
+    }
+    /** The input types. It is only read once the class is loaded, so it is not synchronized. */
+    private static HashMap _allowableInputTypes = new HashMap();
     static
     {
         _allowableInputTypes.put("button", "1");
@@ -150,6 +268,8 @@ public class HtmlMarkupFactory extends MarkupFactory
         _allowableInputTypes.put("submit", "1");
         _allowableInputTypes.put("text", "1");
     }
+    /** The start tag scanned by getTagName for the tag that createTagByName creates next. */
+    private StartTagScan _startTagScan;
 
     public static void main(String[] args) throws Exception
     {
@@ -158,9 +278,8 @@ public class HtmlMarkupFactory extends MarkupFactory
             System.out.println("Usage: java com.zitego.markup.html.HtmlMarkupFactory <html file path> [<preserve whitespace flag>]");
             System.exit(1);
         }
-        String contents = com.zitego.util.FileUtils.getFileContents( new java.io.File(args[0]) );
         boolean preserve = (args.length > 1 ? new Boolean(args[1]).booleanValue() : false);
-        MarkupContent[] content = getInstance().parse(new StringBuffer(contents), null, FormatType.HTML, true, false, preserve);
+        MarkupContent[] content = getInstance().parse(new File(args[0]), null, null, FormatType.HTML, false, preserve);
         for (int i=0; i<content.length; i++)
         {
             System.out.print( content[i].format(com.zitego.format.FormatType.HTML) );
@@ -169,13 +288,16 @@ public class HtmlMarkupFactory extends MarkupFactory
 
     /**
      * Returns an instance of the HtmlMarkupFactory to use. See class notes for details on manipulation of
-     * the type of MarkupFactory returned.
+     * the type of MarkupFactory returned. A factory class set for the current thread with
+     * setThreadFactoryClass is returned without looking at the properties.
      *
      * @return MarkupFactory
      * @throws RuntimeException if an error occurs creating the markup factory.
      */
     public static MarkupFactory getInstance()
     {
+        MarkupFactory ret = getThreadInstance();
+        if (ret != null) return ret;
         String cp = System.getProperty("markup_factory");
         if (cp == null) System.setProperty( "markup_factory", HtmlMarkupFactory.class.getName() );
         ClassLoader l = (ClassLoader)StaticProperties.getProperty("markup_factory_classloader");
@@ -196,51 +318,504 @@ public class HtmlMarkupFactory extends MarkupFactory
         return html;
     }
 
+    /**
+     * Creates an html document given some text, parsing it leniently. Malformed markup that can
+     * be recovered from is recorded in the given diagnostics instead of causing an exception.
+     * See <code>MarkupContent.setParseDiagnostics(ParseDiagnostics)</code>.
+     *
+     * @param in The content to parse.
+     * @param diagnostics The diagnostics to record problems in.
+     * @return Html
+     * @throws IllegalArgumentException if the diagnostics are null.
+     */
+    public static Html parseDocument(CharSequence in, ParseDiagnostics diagnostics)
+    throws IllegalMarkupException, UnsupportedFormatException, IllegalArgumentException
+    {
+        if (diagnostics == null) throw new IllegalArgumentException("diagnostics cannot be null");
+        Html html = new Html();
+        html.setStrict(false);
+        html.setParseDiagnostics(diagnostics);
+        if (in != null) html.parse(new ParseCursor(in), FormatType.HTML);
+        return html;
+    }
+
+    /**
+     * Creates an html document from the text that can be read from the given reader. The
+     * reader is not closed.
+     *
+     * @param in The reader.
+     * @return Html
+     * @throws IOException if an error occurs reading.
+     */
+    public static Html parseDocument(Reader in) throws IOException, IllegalMarkupException, UnsupportedFormatException
+    {
+        Html html = new Html();
+        html.parse(in);
+        return html;
+    }
+
+    /**
+     * Creates an html document from the given byte stream. If the charset is null, it is detected
+     * from the byte order mark or the meta tags at the start of the document. The stream is not
+     * closed.
+     *
+     * @param in The byte stream.
+     * @param charset The charset or null to detect it.
+     * @return Html
+     * @throws IOException if an error occurs reading.
+     */
+    public static Html parseDocument(InputStream in, Charset charset) throws IOException, IllegalMarkupException, UnsupportedFormatException
+    {
+        Html html = new Html();
+        html.parse(in, charset);
+        return html;
+    }
+
+    /**
+     * Creates an html document from the given file. The file is memory mapped rather then read
+     * into the heap.
+     *
+     * @param f The file.
+     * @return Html
+     * @throws IOException if an error occurs mapping the file.
+     */
+    public static Html parseDocument(File f) throws IOException, IllegalMarkupException, UnsupportedFormatException
+    {
+        Html html = new Html();
+        html.parse(f);
+        return html;
+    }
+
+    /**
+     * Parses the markup content in the given text. If the parent's document has a parallel executor and
+     * the parent is a body with at least twice PARALLEL_SEGMENT_LENGTH characters left to parse, then the body is split
+     * into pieces between its top level tags that are parsed on the executor at the same time. Each piece
+     * is parsed by a new factory of this class under a body of its own and moved to the parent in order once they are all done, so the
+     * content and map ids are the same as if it had all been parsed here. The body is only split where
+     * the tags before the split are all closed and the text after it starts with a tag that does not
+     * depend on what comes before it. If there is no such place, the body is parsed in one piece. Text
+     * that is being streamed from a reader is always parsed in one piece.
+     *
+     * @param in The text to parse.
+     * @param parent The parent.
+     * @param type The type of format to parse.
+     * @param keepParsing Whether to keep parsing after the first piece of content.
+     * @param strict Whether or not parsing should be strict.
+     * @param preserveSpaces Whether to preserve spaces and not do additional formatting.
+     * @return MarkupContent[]
+     * @throws IllegalMarkupException if the text is invalid.
+     * @throws UnsupportedFormatException if the format type is not parsable.
+     */
+    public MarkupContent[] parse(ParseCursor in, MarkupContent parent, FormatType type, boolean keepParsing, boolean strict, boolean preserveSpaces)
+    throws IllegalMarkupException, UnsupportedFormatException
+    {
+        ExecutorService executor = ( parent != null ? parent.getParallelExecutor() : null );
+        if ( executor != null && keepParsing && parent instanceof Body && in != null &&
+             !(in.getText() instanceof CharStream) && in.length() >= PARALLEL_SEGMENT_LENGTH*2 )
+        {
+            int[] splits = findSplitPoints( in, (Body)parent );
+            if (splits.length > 1) return parseSegments( in, splits, (Body)parent, type, strict, preserveSpaces, executor );
+        }
+        return super.parse(in, parent, type, keepParsing, strict, preserveSpaces);
+    }
+
+    /**
+     * Returns the absolute indexes in the text that the body being parsed at the given cursor can be
+     * split at. Each piece is at least PARALLEL_SEGMENT_LENGTH characters long. The text is scanned the
+     * same way it is parsed. A split is only made just after a top level tag is closed when the next
+     * thing in the body is a start tag (other then a br, which is added to the tag before it). Splits
+     * stop at the first top level form, since form elements after it look for it in the body. An empty
+     * array is returned if the body cannot be split. The cursor is not moved.
+     *
+     * @param in The text.
+     * @param parent The body being parsed.
+     * @return int[]
+     */
+    protected int[] findSplitPoints(ParseCursor in, MarkupTag parent)
+    {
+        Vector splits = new Vector();
+        scanBody(in, parent, splits);
+        int[] ret = new int[splits.size()];
+        for (int i=0; i<ret.length; i++)
+        {
+            ret[i] = ( (Integer)splits.get(i) ).intValue();
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the absolute index in the text of the end tag of the given parent whose body is being
+     * parsed at the cursor. The text is scanned the same way it is parsed. -1 is returned if the end tag
+     * is not found, if the parent is a script or style tag, if the text is being streamed from a reader,
+     * or if the body has a form element that is not in a form of its own (since it would look for one
+     * around the parent). The cursor is not moved.
+     *
+     * @param in The text.
+     * @param parent The parent.
+     * @return int
+     */
+    protected int findBodyEnd(ParseCursor in, MarkupContent parent)
+    {
+        if ( !(parent instanceof MarkupTag) || in.getText() instanceof CharStream ) return -1;
+        MarkupTag tag = (MarkupTag)parent;
+        if ( hasRawTextBody(tag.getTagName()) ) return -1;
+        return scanBody(in, tag, null);
+    }
+
+    /**
+     * Scans the body being parsed at the given cursor the same way it is parsed and returns the absolute
+     * index in the text of the parent's end tag or -1 if the scan stopped before it. When given a vector,
+     * the split points for findSplitPoints are added to it and the scan stops at the first top level
+     * form. Otherwise, the scan stops at a form element that is not in a form.
+     *
+     * @param in The text.
+     * @param parent The parent.
+     * @param splits The vector to add split points to or null to only find the end.
+     * @return int
+     */
+    private int scanBody(ParseCursor in, MarkupTag parent, Vector splits)
+    {
+        ParseCursor scan = new ParseCursor( in.getText(), in.getPosition(), in.getEnd() );
+        Vector open = new Vector();
+        int last = scan.getPosition();
+        //The index just past the last top level tag that was closed if only white space has come after it
+        int closedAt = -1;
+        boolean canSplit = true;
+        while (canSplit)
+        {
+            int index = scan.indexOf('<');
+            if (index == -1) return -1;
+            for (int i=0; i<index && closedAt != -1; i++)
+            {
+                if ( !Character.isWhitespace(scan.charAt(i)) ) closedAt = -1;
+            }
+            scan.skip(index);
+            if (scan.length() < 2) return -1;
+            char c = scan.charAt(1);
+            if ( scan.startsWith("<!--") )
+            {
+                index = scan.indexOf("-->");
+                if (index == -1) return -1;
+                scan.skip(index+3);
+                closedAt = -1;
+            }
+            else if (c == '/')
+            {
+                index = scan.indexOf('>');
+                if (index == -1) return -1;
+                int depth = open.size();
+                //The end of the body
+                if ( depth == 0 && parent.isTagName(scan, 2, index) ) return scan.getPosition();
+                closedAt = -1;
+                //Any other end tag that is not for the open tag is skipped by the parser
+                if ( depth > 0 && ((TagSymbol)open.lastElement()).matches(scan, 2, index) )
+                {
+                    open.remove(depth-1);
+                    if (depth == 1) closedAt = scan.getPosition() + index + 1;
+                }
+                scan.skip(index+1);
+            }
+            else if ( Character.isLetter(c) )
+            {
+                int end = 1;
+                for (; end<scan.length(); end++)
+                {
+                    c = scan.charAt(end);
+                    if (c == ' ' || c == '>' || c == '<' || c == '\r' || c == '\n') break;
+                }
+                String name = getTagName(scan);
+                _startTagScan = null;
+                TagSymbol symbol = TagSymbol.lookup(name);
+                if (splits == null)
+                {
+                    if ( !open.contains(FORM) && isFormElement(name) ) return -1;
+                }
+                else if (open.size() == 0)
+                {
+                    if ( closedAt != -1 && symbol != LINE_BREAK && closedAt-last >= PARALLEL_SEGMENT_LENGTH )
+                    {
+                        splits.add( Integer.valueOf(closedAt) );
+                        last = closedAt;
+                    }
+                    if (symbol == FORM) canSplit = false;
+                }
+                closedAt = -1;
+
+                scan.skip(end);
+                boolean closed = MarkupTag.parseAttributes(scan, SCAN_HANDLER);
+                Boolean hasEndTag = hasEndTag(name);
+                if ( hasEndTag == null || (hasEndTag.booleanValue() && symbol == null) ) return -1;
+                if ( !closed && hasEndTag.booleanValue() )
+                {
+                    //Script and style bodies are not markup
+                    if ( hasRawTextBody(name) )
+                    {
+                        index = scan.indexOfIgnoreCase("</"+name, 0);
+                        if (index == -1) return -1;
+                        scan.skip(index);
+                    }
+                    open.add(symbol);
+                }
+                else if (open.size() == 0)
+                {
+                    closedAt = scan.getPosition();
+                }
+            }
+            else
+            {
+                //Anything else is parsed as an odd tag, so do not try to go passed it
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns whether the tag with the given name is a form element.
+     *
+     * @param name The tag name.
+     * @return boolean
+     */
+    private boolean isFormElement(String name)
+    {
+        Class tagClass = getTagClass(name);
+        return ( tagClass != null && FormElement.class.isAssignableFrom(tagClass) );
+    }
+
+    /**
+     * Returns whether tags with the given name have an end tag when they are created or null if
+     * a tag cannot be created for it.
+     *
+     * @param name The tag name.
+     * @return Boolean
+     */
+    private Boolean hasEndTag(String name)
+    {
+        Class tagClass = getTagClass(name);
+        //Unknown tags never have an end tag
+        if (tagClass == null) return Boolean.FALSE;
+        Boolean ret = (Boolean)_hasEndTag.get(tagClass);
+        if (ret == null)
+        {
+            try
+            {
+                MarkupTag tag = createTagByName(name, null);
+                if (tag == null) return null;
+                ret = Boolean.valueOf( tag.hasEndTag() );
+                putHasEndTag(tagClass, ret);
+            }
+            catch (Exception e)
+            {
+                return null;
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Puts a copy of the end tag flags with the given flag for the given class in their place.
+     *
+     * @param tagClass The class of the tag.
+     * @param hasEndTag Whether it has an end tag.
+     */
+    private static synchronized void putHasEndTag(Class tagClass, Boolean hasEndTag)
+    {
+        HashMap copy = new HashMap(_hasEndTag);
+        copy.put(tagClass, hasEndTag);
+        _hasEndTag = copy;
+    }
+
+    /**
+     * Parses the body at the given cursor in pieces. The first piece is parsed into the parent on this
+     * thread while the rest are parsed on the executor. Everything after the last split is parsed once
+     * the pieces have been moved to the parent. The cursor is left where parsing stopped.
+     *
+     * @param in The text to parse.
+     * @param splits The indexes to split the text at.
+     * @param parent The body.
+     * @param type The type of format to parse.
+     * @param strict Whether or not parsing should be strict.
+     * @param preserveSpaces Whether to preserve spaces and not do additional formatting.
+     * @param executor The executor.
+     * @return MarkupContent[]
+     * @throws IllegalMarkupException if the text is invalid.
+     * @throws UnsupportedFormatException if the format type is not parsable.
+     */
+    private MarkupContent[] parseSegments(ParseCursor in, int[] splits, Body parent, FormatType type, boolean strict,
+                                          boolean preserveSpaces, ExecutorService executor)
+    throws IllegalMarkupException, UnsupportedFormatException
+    {
+        String basePath = ( parent.getMap() instanceof HtmlMarkupMap ? ((HtmlMarkupMap)parent.getMap()).getBasePath() : null );
+        ParseDiagnostics diagnostics = parent.getParseDiagnostics();
+        Body[] bodies = new Body[splits.length-1];
+        Future[] results = new Future[bodies.length];
+        Vector ret = new Vector();
+        try
+        {
+            for (int i=0; i<bodies.length; i++)
+            {
+                HtmlMarkupMap map = new HtmlMarkupMap();
+                map.setBasePath(basePath);
+                if (diagnostics != null) map.setParseDiagnostics( new ParseDiagnostics() );
+                bodies[i] = new Body( new Html(map) );
+                bodies[i].setStrict(strict);
+                bodies[i].setPreserveWhiteSpace(preserveSpaces);
+                results[i] = executor.submit
+                (
+                    new SegmentParser( newSegmentFactory(), new ParseCursor(in.getText(), splits[i], splits[i+1]), bodies[i], type, strict, preserveSpaces )
+                );
+            }
+
+            addContent( ret, super.parse(new ParseCursor(in.getText(), in.getPosition(), splits[0]), parent, type, true, strict, preserveSpaces) );
+            for (int i=0; i<bodies.length; i++)
+            {
+                addContent( ret, (MarkupContent[])results[i].get() );
+                if (diagnostics != null) diagnostics.addAll( bodies[i].getParseDiagnostics() );
+                parent.takeBodyContent(bodies[i]);
+            }
+        }
+        catch (InterruptedException ie)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalMarkupException("Interrupted while parsing the body", ie);
+        }
+        catch (ExecutionException ee)
+        {
+            Throwable cause = ee.getCause();
+            if (cause instanceof IllegalMarkupException) throw (IllegalMarkupException)cause;
+            else if (cause instanceof UnsupportedFormatException) throw (UnsupportedFormatException)cause;
+            else if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+            else if (cause instanceof Error) throw (Error)cause;
+            else throw new IllegalMarkupException("Could not parse the body", ee);
+        }
+        finally
+        {
+            for (int i=0; i<results.length; i++)
+            {
+                if (results[i] != null) results[i].cancel(true);
+            }
+        }
+
+        in.setPosition(splits[splits.length-1]);
+        return contentArray( ret, super.parse(in, parent, type, true, strict, preserveSpaces) );
+    }
+
+    /**
+     * Adds the given content to the vector.
+     *
+     * @param v The vector.
+     * @param content The content.
+     */
+    private static void addContent(Vector v, MarkupContent[] content)
+    {
+        for (int i=0; i<content.length; i++)
+        {
+            v.add(content[i]);
+        }
+    }
+
+    /**
+     * Returns a new factory of the same class as this one to parse a piece of a body with. A factory keeps
+     * what it is in the middle of while it parses, so one cannot be shared by the threads that parse the
+     * pieces.
+     *
+     * @return MarkupFactory
+     * @throws RuntimeException if an error occurs creating the markup factory.
+     */
+    private MarkupFactory newSegmentFactory()
+    {
+        try
+        {
+            return getClass().getDeclaredConstructor().newInstance();
+        }
+        catch (ReflectiveOperationException roe)
+        {
+            throw new RuntimeException("Could not create markup factory: "+getClass().getName(), roe);
+        }
+    }
+
+    /**
+     * Parses a piece of a body under a body of its own on an executor thread. The body has a map of its
+     * own without an executor, so bodies inside the piece are not split again.
+     */
+    private static class SegmentParser implements Callable
+    {
+        private MarkupFactory _factory;
+        private ParseCursor _in;
+        private Body _body;
+        private FormatType _type;
+        private boolean _strict;
+        private boolean _preserveSpaces;
+
+        /**
+         * Creates a new parser for a piece of a body.
+         *
+         * @param factory The factory to parse with.
+         * @param in The piece of text.
+         * @param body The body to parse into.
+         * @param type The type of format to parse.
+         * @param strict Whether or not parsing should be strict.
+         * @param preserveSpaces Whether to preserve spaces and not do additional formatting.
+         */
+        private SegmentParser(MarkupFactory factory, ParseCursor in, Body body, FormatType type, boolean strict, boolean preserveSpaces)
+        {
+            _factory = factory;
+            _in = in;
+            _body = body;
+            _type = type;
+            _strict = strict;
+            _preserveSpaces = preserveSpaces;
+        }
+
+        public Object call() throws Exception
+        {
+            return _factory.parse(_in, _body, _type, true, _strict, _preserveSpaces);
+        }
+    }
+
     /**
      * Returns the tag name given the start and end index in the content string.
      * This method handles special tags such as the input tag where
      * the tag name is always input, but the class is retrieved based on the
-     * type attribute.
+     * type attribute. The start tag of an input tag is scanned once and the scan is given to the
+     * tag that is created for it by createTagByName.
      *
      * @param in The content.
      * @return String
      */
-    protected String getTagName(StringBuffer in) throws IllegalMarkupException
+    protected String getTagName(ParseCursor in) throws IllegalMarkupException
     {
         String tag = super.getTagName(in);
-        if ( "input".equals(tag) )
+        if (TagSymbol.lookup(tag) == INPUT)
         {
-            //Set the name to the type attribute
-            //Look for the closing > and make sure it is not in quotes in an attribute
-            //Count the quotes up to the > and if it is even, then it is the closing >
-            //If it is odd, then we are inside a quote
-            int endIndex = in.indexOf(">");
-            int quoteIndex = -1;
-            int quoteCount = 0;
-            while ( (quoteIndex=in.indexOf("\"", quoteIndex+1)) < endIndex && quoteIndex != -1 && endIndex != -1)
-            {
-                quoteCount++;
-                // Advance quote index until it is -1 or after end index
-                while ( (quoteIndex=in.indexOf("\"", quoteIndex+1)) < endIndex && quoteIndex != -1 )
-                {
-                    quoteCount++;
-                }
-                // Even number of quotes means we found the end index
-                if (quoteCount % 2 == 0) break;
-                // No more quotes, then increment it after end index so it doesn't start over again
-                else quoteIndex = endIndex + 1;
-                endIndex = in.indexOf(">", endIndex + 1);
-            }
-            if (endIndex == -1) return tag;
-            String tmp = in.substring(0, endIndex);
-            Matcher m = Pattern.compile("type=\"?'?([a-zA-Z]+)\"?'?", Pattern.CASE_INSENSITIVE).matcher(tmp);
-            //If there is no match or it is invalid, then it is a text field
-            if ( m.find() ) tag = m.group(1);
+            //Set the name to the type attribute. The start tag is scanned once to find it and the
+            //scan is handed to the tag so that it does not have to tokenize its attributes again
+            int start = in.getPosition();
+            in.skip( 1+tag.length() );
+            StartTagScan scan = new StartTagScan(in);
+            in.setPosition(start);
+            if ( !scan.isTerminated() ) return tag;
+            CharSequence inputType = scan.getValue("type");
+            //If there is no type or it is invalid, then it is a text field
+            tag = ( inputType != null ? inputType.toString().trim() : null );
             if (tag == null || _allowableInputTypes.get(tag.toLowerCase()) == null) tag = "text";
+            _startTagScan = scan;
         }
         return tag;
     }
 
+    /**
+     * Returns true for script and style tags.
+     *
+     * @param name The tag name.
+     * @return boolean
+     */
+    protected boolean hasRawTextBody(String name)
+    {
+        TagSymbol symbol = TagSymbol.lookup(name);
+        return (symbol == SCRIPT || symbol == STYLE);
+    }
+
     /**
      * Returns a markup content given the name and parent.
      *
@@ -251,58 +826,44 @@ public class HtmlMarkupFactory extends MarkupFactory
      */
     protected MarkupTag createTagByName(String name, MarkupContent parent) throws Exception
     {
+        StartTagScan scan = _startTagScan;
+        _startTagScan = null;
         if (name == null) return null;
-        name = name.toLowerCase();
         Class tagClass = getTagClass(name);
         if (tagClass == null) return null;
 
-        //TO DO - figure a more eloquent way of handling special cases like br and h1-h6
-        if ( tagClass == _tags.get("!--") )
-        {
-            //Comment tag
-            if (parent != null)
-            {
-                if (parent instanceof HtmlMarkupTag) return new HtmlCommentTag( (HtmlMarkupTag)parent );
-                else if (parent instanceof Statement) return new HtmlCommentTag( (Statement)parent );
-                else return new HtmlCommentTag();
-            }
-            else return new HtmlCommentTag();
-        }
-        else if ( tagClass == _tags.get("!doctype") )
-        {
-            //Doctype tag
-            return new Doctype();
-        }
-        Object[] args = (tagClass == _tags.get("h1") ? new Object[] { new Integer(name.substring(1)) } : null);
-
-        HtmlMarkupTag ret = (HtmlMarkupTag)createTagInstance(tagClass, parent, args);
-        //If this is a br, it needs to be added to the last body content in the parent
-        if (ret instanceof com.zitego.markup.html.tag.BR && parent != null)
-        {
-            int size = parent.getBodySize();
-            if (size == 0)
-            {
-                parent.addBodyContent(ret);
-            }
-            else
-            {
-                MarkupContent c = parent.getBodyContent(size-1);
-                if (c instanceof HtmlMarkupTag) ret = ( (HtmlMarkupTag)c ).createLineBreak();
-                else parent.addBodyContent(ret);
-            }
-        }
+        //Use the registered creator unless the name has been mapped to another class
+        MarkupTag ret = null;
+        TagCreator creator = getTagCreator(name);
+        if (creator != null && creator.getTagClass() == tagClass) ret = creator.createTag(parent);
+        else ret = createTagInstance(tagClass, parent);
+        if (ret != null && scan != null) ret.setStartTagScan(scan);
         return ret;
     }
 
     /**
-     * Returns the class for the given tag name.
+     * Returns the class for the given tag name. The name is not case sensitive.
      *
      * @param name The tag name.
      * @return Class
      */
     protected Class getTagClass(String name)
     {
-        return (Class)_tags.get(name);
+        TagCreator creator = getTagCreator(name);
+        return ( creator != null ? creator.getTagClass() : null );
+    }
+
+    /**
+     * Returns the creator for the given tag name or null if there is not one. The name is not
+     * case sensitive.
+     *
+     * @param name The tag name.
+     * @return TagCreator
+     */
+    protected TagCreator getTagCreator(String name)
+    {
+        TagSymbol symbol = TagSymbol.lookup(name);
+        return ( symbol != null ? (TagCreator)_tags.get(symbol) : null );
     }
 
     /**
@@ -393,12 +954,22 @@ public class HtmlMarkupFactory extends MarkupFactory
      * @param preserveSpaces Whether or not to preserve spaces.
      * @return TextContent
      */
-    protected TextContent createTextContent(StringBuffer in, MarkupContent parent, FormatType type, boolean preserveSpaces)
+    protected TextContent createTextContent(ParseCursor in, MarkupContent parent, FormatType type, boolean preserveSpaces)
     throws IllegalMarkupException, UnsupportedFormatException
     {
         if (in == null) return null;
 
-        HtmlTextContent ret = ( parent != null ? new HtmlTextContent(parent) : new HtmlTextContent() );
+        ParseArena arena = (parent != null ? parent.getParseArena() : null);
+        HtmlTextContent ret = (arena != null ? (HtmlTextContent)arena.take(HtmlTextContent.class) : null);
+        if (ret != null)
+        {
+            ret.setParent(parent);
+        }
+        else
+        {
+            ret = ( parent != null ? new HtmlTextContent(parent) : new HtmlTextContent() );
+            if (arena != null) arena.add(ret);
+        }
         ret.setPreserveWhiteSpace(preserveSpaces);
         ret.parse(in, type);
         return ret;
@@ -3,8 +3,6 @@ package com.zitego.markup.html;
 import com.zitego.markup.MarkupMap;
 import com.zitego.markup.MarkupContent;
 import com.zitego.markup.html.tag.*;
-import java.util.Iterator;
-import java.util.Map;
 
 /**
  * This is an extension of the MarkupMap and keeps track of major pieces of the
@@ -98,10 +96,10 @@ public class HtmlMarkupMap extends MarkupMap
     public void setBasePath(String path)
     {
         _basePath = path;
-        for (Iterator i=entrySet().iterator(); i.hasNext();)
+        MarkupContent[] content = getContent();
+        for (int i=0; i<content.length; i++)
         {
-            MarkupContent c = (MarkupContent)get( i.next() );
-            if (c instanceof BasePath) ( (BasePath)c ).setBasePath(path);
+            if (content[i] instanceof BasePath) ( (BasePath)content[i] ).setBasePath(path);
         }
     }
 
@@ -5,7 +5,6 @@ import com.zitego.markup.tag.CommentTag;
 import com.zitego.format.FormatType;
 import com.zitego.format.UnsupportedFormatException;
 import com.zitego.markup.html.tag.Style;
-import com.zitego.util.TextUtils;
 import java.util.Vector;
 
 /**
@@ -285,14 +284,14 @@ public class StyleDeclaration extends MarkupContent
         }
     }
 
-    public void parseText(StringBuffer text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
+    public void parseText(ParseCursor text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
     {
         if (text == null) return;
 
         MarkupContent parent = getParent();
         boolean preserve = preserveWhiteSpace();
-        StringBuffer pre = removeLeadingSpaces(text);
-        if (preserve && pre.length() > 0)
+        CharSequence pre = skipLeadingSpaces(text, preserve);
+        if (pre != null)
         {
             TextContent content = addWhiteSpace(pre.toString(), parent);
             if (parent != null) parent.moveBodyContentToBefore(this, content);
@@ -311,7 +310,7 @@ public class StyleDeclaration extends MarkupContent
                     parent.moveBodyContentToAfter(comments[i-1], comments[i]);
                 }
             }
-            String tag = TextUtils.getTextUpTo(text, '{');
+            String tag = text.getTextUpTo('{');
             if (!preserve)
             {
                 //Strip out any newlines
@@ -322,11 +321,11 @@ public class StyleDeclaration extends MarkupContent
             //See if we have a .
             if (text.length() > 0 && text.charAt(0) == '.')
             {
-                text.deleteCharAt(0);
-                setClassAttributeName( TextUtils.getTextUpTo(text, new char[] {' ', '\r', '\n', '{'}) );
+                text.skip(1);
+                setClassAttributeName( text.getTextUpTo(new char[] {' ', '\r', '\n', '{'}) );
             }
-            pre = removeLeadingSpaces(text);
-            if (preserve && pre.length() > 0) addWhiteSpace(pre.toString(), this);
+            pre = skipLeadingSpaces(text, preserve);
+            if (pre != null) addWhiteSpace(pre.toString(), this);
         }
         while (text.length() > 0 && text.charAt(0) != '}')
         {
@@ -334,23 +333,23 @@ public class StyleDeclaration extends MarkupContent
             if (commentParent) Comment.checkForComments(text, this, type);
             //Remove the first char cause it is '\r','\n',or '{'
             char c = (char)0;
-            pre = new StringBuffer();
-            while ( text.length() > 0 && ((c=text.charAt(0)) == '\r' || c == '\n' || c == '{') )
+            int count = 0;
+            while ( count < text.length() && ((c=text.charAt(count)) == '\r' || c == '\n' || c == '{') )
             {
-                pre.append(c);
-                text.deleteCharAt(0);
+                count++;
             }
-            if (preserve && pre.length() > 0) addWhiteSpace(pre.toString(), this);
-            pre = removeLeadingSpaces(text);
-            if (preserve && pre.length() > 0) addWhiteSpace(pre.toString(), this);
+            if (preserve && count > 0) addWhiteSpace(text.substring(0, count), this);
+            text.skip(count);
+            pre = skipLeadingSpaces(text, preserve);
+            if (pre != null) addWhiteSpace(pre.toString(), this);
 
             if (text.length() > 0 && text.charAt(0) == '{')
             {
-                text.deleteCharAt(0);
+                text.skip(1);
                 if (preserve) addWhiteSpace("{", this);
             }
-            pre = removeLeadingSpaces(text);
-            if (preserve && pre.length() > 0) addWhiteSpace(pre.toString(), this);
+            pre = skipLeadingSpaces(text, preserve);
+            if (pre != null) addWhiteSpace(pre.toString(), this);
             if (text.length() > 0)
             {
                 StyleDeclarationElement elem = new StyleDeclarationElement(this);
@@ -361,10 +360,10 @@ public class StyleDeclaration extends MarkupContent
                 }
                 elem.parse(text, type);
             }
-            pre = removeLeadingSpaces(text);
-            if (preserve && pre.length() > 0) addWhiteSpace(pre.toString(), this);
+            pre = skipLeadingSpaces(text, preserve);
+            if (pre != null) addWhiteSpace(pre.toString(), this);
         }
         //Chop off the }
-        if (text.length() > 0) text.deleteCharAt(0);
+        if (text.length() > 0) text.skip(1);
     }
 }
\ No newline at end of file
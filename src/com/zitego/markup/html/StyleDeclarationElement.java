@@ -7,7 +7,7 @@ import com.zitego.markup.Newline;
 import com.zitego.markup.IllegalMarkupException;
 import com.zitego.format.FormatType;
 import com.zitego.format.UnsupportedFormatException;
-import com.zitego.util.TextUtils;
+import com.zitego.markup.ParseCursor;
 
 /**
  * A class used in conjunction with StyleDeclaration to build a style definition. The declaration
@@ -81,14 +81,14 @@ class StyleDeclarationElement extends MarkupContent
         }
     }
 
-    public void parseText(StringBuffer text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
+    public void parseText(ParseCursor text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
     {
         if (text == null) return;
 
         MarkupContent parent = getParent();
         boolean preserve = preserveWhiteSpace();
-        StringBuffer pre = removeLeadingSpaces(text);
-        if (preserve && pre.length() > 0)
+        CharSequence pre = skipLeadingSpaces(text, preserve);
+        if (pre != null)
         {
             TextContent content = addWhiteSpace(pre.toString(), parent);
             if (parent != null) parent.moveBodyContentToBefore(this, content);
@@ -100,15 +100,15 @@ class StyleDeclarationElement extends MarkupContent
         {
             parent.moveBodyContentToAfter(comments[i-1], comments[i]);
         }
-        String prop = TextUtils.getTextUpTo(text, ':');
+        String prop = text.getTextUpTo(':');
         setProperty( (preserve ? prop : prop.trim()) );
-        if (text.length() > 0) text.deleteCharAt(0);
-        pre = removeLeadingSpaces(text);
-        if (preserve) _postColonWhiteSpace = pre.toString();
+        if (text.length() > 0) text.skip(1);
+        pre = skipLeadingSpaces(text, preserve);
+        if (preserve) _postColonWhiteSpace = (pre != null ? pre.toString() : "");
         char[] chars = new char[0];
         if (parent.getParent() == null) chars = new char[] {';', '\r', '\n', '"', '>'};
         else chars = new char[] {';', '\r', '\n', '}'};
-        String val = TextUtils.getTextUpTo(text, chars);
+        String val = text.getTextUpTo(chars);
         if (val != null)
         {
             if (!preserve) val = val.replaceAll("\"", "'").trim();
@@ -116,25 +116,14 @@ class StyleDeclarationElement extends MarkupContent
         }
         //See if there was a semi-colon
         if ( !preserve || (text.length() > 0 && text.charAt(0) == ';') ) _semiColon = true;
-        pre = new StringBuffer();
+        int count = 0;
         //Gotta remove that last char
-        if (text.length() > 0 && text.charAt(0) != '>' && text.charAt(0) != '}')
-        {
-            pre.append( text.charAt(0) );
-            text.deleteCharAt(0);
-        }
+        if (text.length() > 0 && text.charAt(0) != '>' && text.charAt(0) != '}') count++;
         //See if the next char is a \r \n
-        if ( text.length() > 0 && (text.charAt(0) == '\r' || text.charAt(0) == '\n') )
-        {
-            pre.append( text.charAt(0) );
-            text.deleteCharAt(0);
-        }
+        if ( text.length() > count && (text.charAt(count) == '\r' || text.charAt(count) == '\n') ) count++;
         //Check once more for safety
-        if ( text.length() > 0 && (text.charAt(0) == '\r' || text.charAt(0) == '\n') )
-        {
-            pre.append( text.charAt(0) );
-            text.deleteCharAt(0);
-        }
-        if (preserve && pre.length() > 0) _endText = pre.toString();
+        if ( text.length() > count && (text.charAt(count) == '\r' || text.charAt(count) == '\n') ) count++;
+        if (preserve && count > 0) _endText = text.substring(0, count);
+        text.skip(count);
     }
 }
\ No newline at end of file
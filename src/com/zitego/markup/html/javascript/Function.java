@@ -2,6 +2,7 @@ package com.zitego.markup.html.javascript;
 
 import com.zitego.markup.MarkupContent;
 import com.zitego.markup.MarkupBody;
+import com.zitego.markup.ParseCursor;
 import com.zitego.markup.Newline;
 import com.zitego.markup.IllegalMarkupException;
 import com.zitego.markup.html.tag.Script;
@@ -238,50 +239,55 @@ public class Function extends Statement
         return ret;
     }
 
-    public void parseText(StringBuffer text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
+    public void parseText(ParseCursor text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
     {
         if (text == null) return;
 
         boolean preserve = preserveWhiteSpace();
         //Clean leading spaces
-        if (!preserve) removeLeadingSpaces(text);
+        if (!preserve) skipLeadingSpaces(text);
         //Get past the function term
-        TextUtils.getTextUpTo(text, ' ');
+        text.getTextUpTo(' ');
 
-        if (!preserve) removeLeadingSpaces(text);
-        setName( TextUtils.getTextUpTo(text, '(') );
-        text.deleteCharAt(0);
+        if (!preserve) skipLeadingSpaces(text);
+        setName( text.getTextUpTo('(') );
+        text.skip(1);
 
         //Set args
-        String argstr = TextUtils.getTextUpTo(text, ')');
-        text.deleteCharAt(0);
+        String argstr = text.getTextUpTo(')');
+        text.skip(1);
         String[] args = TextUtils.split(argstr, ',');
         for (int i=0; i<args.length; i++)
         {
             _arguments.add( (!preserve ? args[i].trim() : args[i]) );
         }
-        _spaceAfterArgs = removeLeadingSpaces(text);
+        //The space after the arguments is only written out when preserving white space
+        CharSequence space = skipLeadingSpaces(text, preserve);
+        _spaceAfterArgs.setLength(0);
+        if (space != null) _spaceAfterArgs.append(space);
 
         //Step through looking for balanced {} and find the end of the function
         //If they are unbalanced, then this will fail. We start with a {, so the
         //left brace will be more then right by default
-        StringBuffer text2 = new StringBuffer();
         int leftBrace = 0;
         int rightBrace = 0;
-        boolean done = (text.length() == 0);
+        int len = text.length();
+        int nextBrace = text.indexOf('}');
+        int i = 0;
+        boolean done = (len == 0);
         while (!done)
         {
-            char c = text.charAt(0);
-            text.deleteCharAt(0);
+            char c = text.charAt(i++);
             if (c == '{') leftBrace++;
             else if (c == '}') rightBrace++;
-            text2.append(c);
-            done = (text.length() == 0 || text.indexOf("}") == -1 || rightBrace == leftBrace);
+            if (nextBrace != -1 && nextBrace < i) nextBrace = text.indexOf('}', i);
+            done = (i == len || nextBrace == -1 || rightBrace == leftBrace);
         }
+        StringBuffer text2 = new StringBuffer( text.consume(i) );
         //Remove the first { and the last }
         text2.deleteCharAt( text2.indexOf("{") );
         text2.deleteCharAt( text2.lastIndexOf("}") );
-        JavascriptBody.parseJs(text2, this, type);
+        JavascriptBody.parseJs(new ParseCursor( text2.toString() ), this, type);
     }
 
     protected MarkupBody createMarkupBody()
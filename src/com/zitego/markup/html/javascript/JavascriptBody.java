@@ -8,6 +8,7 @@ import com.zitego.markup.html.javascript.Statement;
 import com.zitego.markup.MarkupContent;
 import com.zitego.markup.TextContent;
 import com.zitego.markup.MarkupBody;
+import com.zitego.markup.ParseCursor;
 import com.zitego.markup.IllegalMarkupException;
 import com.zitego.format.FormatType;
 import com.zitego.format.UnsupportedFormatException;
@@ -44,7 +45,7 @@ public class JavascriptBody extends MarkupBody
         super(func);
     }
 
-    public void parseText(StringBuffer text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
+    public void parseText(ParseCursor text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
     {
         if (text == null) return;
 
@@ -52,7 +53,8 @@ public class JavascriptBody extends MarkupBody
     }
 
     /**
-     * Parses javascript content from the given text and parent.
+     * Parses javascript content from the given text and parent. The parsed text is removed
+     * from the buffer.
      *
      * @param text The text.
      * @param parent The parent.
@@ -62,51 +64,79 @@ public class JavascriptBody extends MarkupBody
      */
     public static void parseJs(StringBuffer text, MarkupContent parent, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
     {
-        StringBuffer preSpace = MarkupContent.removeLeadingSpaces(text);
-        if ( preSpace.length() > 0 && parent != null && parent.preserveWhiteSpace() )
+        ParseCursor in = new ParseCursor( text.toString() );
+        try
         {
-            Statement txt = null;
-            if (parent instanceof Function) txt = new Statement( (Function)parent );
-            else if (parent instanceof Script) txt = new Statement( (Script)parent );
-            else if (parent instanceof HtmlCommentTag) txt = new Statement( (HtmlCommentTag)parent );
-            else txt = new Statement();
-            txt.setPreserveWhiteSpace(true);
-            txt.addBodyContent( preSpace.toString() );
+            parseJs(in, parent, type);
         }
-        //See if this is the end of a script tag
-        if ( text.length() > 8 && text.substring(0, 9).equalsIgnoreCase("</script>") ) return;
-
-        //See if this is a function. If not, it is a Statement
-        if ( text.length() > 7 && text.substring(0, 8).equalsIgnoreCase("function") )
+        finally
         {
-            Function f = null;
-            if (parent instanceof Script) f = new Function( (Script)parent );
-            else if (parent instanceof HtmlCommentTag) f = new Function( (HtmlCommentTag)parent );
-            else throw new IllegalMarkupException("Invalid parent: "+(parent != null ? parent.getClass() : null));
-            f.parse(text, type);
+            text.delete( 0, in.getPosition() );
         }
-        else
+    }
+
+    /**
+     * Parses javascript content from the given cursor and parent.
+     *
+     * @param text The text.
+     * @param parent The parent.
+     * @param type The format type (ignored).
+     * @throws IllegalMarkupException
+     * @throws UnsupportedFormatException
+     */
+    public static void parseJs(ParseCursor text, MarkupContent parent, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
+    {
+        //Each statement or function is parsed in turn rather then recursively so that long scripts
+        //are not limited by the stack
+        int pos = -1;
+        do
         {
-            Statement s = null;
-            //Check for tags here. This is generally unexpected, however overriding
-            //special tags may be present in Javascript code
-            if (text.length() > 0 && text.charAt(0) == '<')
+            pos = text.getPosition();
+            CharSequence preSpace = MarkupContent.skipLeadingSpaces( text, (parent != null && parent.preserveWhiteSpace()) );
+            if (preSpace != null)
             {
-                Statement newP = null;
-                if (parent instanceof Function) newP = new Statement( (Function)parent );
-                else if (parent instanceof HtmlCommentTag) newP = new Statement( (HtmlCommentTag)parent );
-                else newP = new Statement( (Script)parent );
-                HtmlMarkupFactory.getInstance().parse( text, newP, type, false, newP.isStrict(), newP.preserveWhiteSpace() );
+                Statement txt = null;
+                if (parent instanceof Function) txt = new Statement( (Function)parent );
+                else if (parent instanceof Script) txt = new Statement( (Script)parent );
+                else if (parent instanceof HtmlCommentTag) txt = new Statement( (HtmlCommentTag)parent );
+                else txt = new Statement();
+                txt.setPreserveWhiteSpace(true);
+                txt.addBodyContent( preSpace.toString() );
+            }
+            //See if this is the end of a script tag
+            if ( text.startsWithIgnoreCase("</script>") ) return;
+
+            //See if this is a function. If not, it is a Statement
+            if ( text.startsWithIgnoreCase("function") )
+            {
+                Function f = null;
+                if (parent instanceof Script) f = new Function( (Script)parent );
+                else if (parent instanceof HtmlCommentTag) f = new Function( (HtmlCommentTag)parent );
+                else throw new IllegalMarkupException("Invalid parent: "+(parent != null ? parent.getClass() : null));
+                f.parse(text, type);
             }
             else
             {
-                if (parent instanceof Function) s = new Statement( (Function)parent );
-                else if (parent instanceof HtmlCommentTag) s = new Statement( (HtmlCommentTag)parent );
-                else s = new Statement( (Script)parent );
-                s.parse(text, type);
+                Statement s = null;
+                //Check for tags here. This is generally unexpected, however overriding
+                //special tags may be present in Javascript code
+                if (text.length() > 0 && text.charAt(0) == '<')
+                {
+                    Statement newP = null;
+                    if (parent instanceof Function) newP = new Statement( (Function)parent );
+                    else if (parent instanceof HtmlCommentTag) newP = new Statement( (HtmlCommentTag)parent );
+                    else newP = new Statement( (Script)parent );
+                    HtmlMarkupFactory.getInstance().parse( text, newP, type, false, newP.isStrict(), newP.preserveWhiteSpace() );
+                }
+                else
+                {
+                    if (parent instanceof Function) s = new Statement( (Function)parent );
+                    else if (parent instanceof HtmlCommentTag) s = new Statement( (HtmlCommentTag)parent );
+                    else s = new Statement( (Script)parent );
+                    s.parse(text, type);
+                }
             }
         }
-
-        if (text.length() > 0) parseJs(text, parent, type);
+        while ( text.length() > 0 && text.getPosition() != pos );
     }
 }
\ No newline at end of file
@@ -10,7 +10,7 @@ import com.zitego.markup.html.tag.HtmlCommentTag;
 import com.zitego.markup.IllegalMarkupException;
 import com.zitego.format.FormatType;
 import com.zitego.format.UnsupportedFormatException;
-import com.zitego.util.TextUtils;
+import com.zitego.markup.ParseCursor;
 
 /**
  * This class represents a generic javascript statement that exists within a script tag.
@@ -101,37 +101,36 @@ public class Statement extends HtmlTextContent
         super.setText(text);
     }
 
-    public void parseText(StringBuffer text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
+    public void parseText(ParseCursor text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
     {
         if (text == null) return;
 
         boolean preserve = preserveWhiteSpace();
         //Clean leading spaces
-        if (!preserve) removeLeadingSpaces(text);
+        if (!preserve) skipLeadingSpaces(text);
 
-        String txt = TextUtils.getTextUpTo(text, '\n');
-        if (txt == null) txt = "";
+        int start = text.getPosition();
+        String txt = text.getTextUpTo('\n');
         if (text.length() > 0)
         {
             if (text.charAt(0) == ';')
             {
                 txt += ";";
-                text.deleteCharAt(0);
+                text.skip(1);
             }
             else if (text.charAt(0) == '\n' && !preserve)
             {
-                text.deleteCharAt(0);
-            }
-            //Make sure this is not passed the end of a script tag
-            int index = txt.indexOf("</script>");
-            if (index > -1)
-            {
-                text.insert( 0, txt.substring(index) );
-                txt = txt.substring(0, index);
+                text.skip(1);
             }
         }
+        //Make sure this is not passed the end of a script tag
+        if (txt.indexOf("</script>") > -1)
+        {
+            text.setPosition(start);
+            txt = text.getTextUpTo("</script>");
+        }
         if (!preserve) txt = txt.trim();
-        MarkupContent[] content = HtmlMarkupFactory.getInstance().parse(new StringBuffer(txt), this, type, true, isStrict(), preserve);
+        MarkupContent[] content = HtmlMarkupFactory.getInstance().parse(new ParseCursor(txt), this, type, true, isStrict(), preserve);
         clearContent();
         StringBuffer buf = new StringBuffer();
         MarkupContent last = getLastBodyContent();
@@ -160,7 +159,7 @@ public class Statement extends HtmlTextContent
         }
         if (buf.length() > 0) addBodyContent( buf.toString() );
         if (!preserve && last != null) last.setHasNewline(false);
-        if (!preserve) removeLeadingSpaces(text);
+        if (!preserve) skipLeadingSpaces(text);
     }
 
     public String getText()
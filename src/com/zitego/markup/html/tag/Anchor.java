@@ -1,5 +1,6 @@
 package com.zitego.markup.html.tag;
 
+import com.zitego.markup.ParseCursor;
 import com.zitego.markup.MarkupContent;
 import com.zitego.markup.IllegalMarkupException;
 import com.zitego.markup.Newline;
@@ -258,7 +259,7 @@ public class Anchor extends EventDrivenTag implements BasePath
         return _toolTip;
     }
 
-    public void parseText(StringBuffer text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
+    public void parseText(ParseCursor text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
     {
         super.parseText(text, type);
         //Set tool tip and underline
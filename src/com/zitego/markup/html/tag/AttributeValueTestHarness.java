@@ -0,0 +1,73 @@
+package com.zitego.markup.html.tag;
+
+import com.zitego.markup.MarkupFactory;
+import com.zitego.markup.ParseCursor;
+import com.zitego.markup.html.HtmlMarkupFactory;
+import com.zitego.markup.tag.TagAttributeValue;
+import com.zitego.format.FormatType;
+
+/**
+ * Checks that attribute values without markup in them format the same as when they are parsed as
+ * markup. Values with spaces around and inside them, quotes, entities, line breaks, and a &gt; are
+ * parsed as plain text and compared to the same value parsed through the MarkupFactory, with white
+ * space preserved and not, as html and as text. Values that do have markup in them are compared the
+ * same way. This exits with a non zero status if anything is different.
+ *
+ * @author John Glorioso
+ * @version $Id$
+ */
+public class AttributeValueTestHarness
+{
+    private static final String[] VALUES =
+    {
+        "", "a", "  a  b  ", " ", "a\"b", "\"quoted\"", "it's", "a &amp; b", "&lt;b&gt;", "line\r\nbreak",
+        "tab\there", "x > y", "100%", "javascript:go('a', \"b\")", "<b>bold</b>", "a < b", " <i>x</i> y "
+    };
+    private static final FormatType[] TYPES = { FormatType.HTML, FormatType.TEXT };
+
+    public static void main(String[] args) throws Exception
+    {
+        int failures = 0;
+        //Values with markup in them are parsed by the html factory as they are in a document
+        MarkupFactory.setThreadFactoryClass(HtmlMarkupFactory.class);
+        try
+        {
+            for (int i=0; i<VALUES.length; i++)
+            {
+                for (int preserve=0; preserve<2; preserve++)
+                {
+                    TagAttributeValue plain = new TagAttributeValue();
+                    plain.setPreserveWhiteSpace(preserve == 1);
+                    plain.parseText(new ParseCursor(VALUES[i]), FormatType.HTML);
+
+                    TagAttributeValue parsed = new TagAttributeValue();
+                    parsed.setPreserveWhiteSpace(preserve == 1);
+                    parsed.setValue
+                    (
+                        MarkupFactory.getInstance().parse(new ParseCursor(VALUES[i]), null, FormatType.HTML, true, false, preserve == 1)
+                    );
+                    for (int j=0; j<TYPES.length; j++)
+                    {
+                        String got = plain.format(TYPES[j]);
+                        String expected = parsed.format(TYPES[j]);
+                        if ( !got.equals(expected) )
+                        {
+                            System.out.println
+                            (
+                                "FAIL: [" + VALUES[i] + "] formatted as [" + got + "] rather then [" + expected + "]" +
+                                (preserve == 1 ? " preserving white space" : "")
+                            );
+                            failures++;
+                        }
+                    }
+                }
+            }
+        }
+        finally
+        {
+            MarkupFactory.setThreadFactoryClass(null);
+        }
+        System.out.println( (failures == 0 ? "PASS" : failures + " failure(s)") );
+        if (failures > 0) System.exit(1);
+    }
+}
@@ -0,0 +1,145 @@
+package com.zitego.markup.html.tag;
+
+import com.zitego.markup.TextContent;
+import com.zitego.markup.html.tag.block.Div;
+import com.zitego.format.FormatType;
+
+/**
+ * Checks that changes made in a batch come out the same as changes made one at a time. The same
+ * document is built with and without a batch, changed after it has been formatted within nested
+ * batches and through batch(Runnable), and has content moved into it from another document that is
+ * in a batch of its own. The formatted html has to be the same each way and include every change.
+ * This exits with a non zero status if anything is different.
+ *
+ * @author John Glorioso
+ * @version $Id$
+ */
+public class BatchTestHarness
+{
+    /** The deepest div of the last document that was built. */
+    private static Div _leaf;
+
+    public static void main(String[] args) throws Exception
+    {
+        int failures = 0;
+        String expected = build(false, 20, 50).format(FormatType.HTML);
+        if ( !build(true, 20, 50).format(FormatType.HTML).equals(expected) )
+        {
+            System.out.println("FAIL: a document built in a batch formats differently");
+            failures++;
+        }
+
+        //Changes after formatting with a format and a nested batch in the middle
+        Html plain = build(false, 20, 5);
+        plain.format(FormatType.HTML);
+        _leaf.addBodyContent("new");
+        _leaf.addBodyContent("more");
+        _leaf.setHasNewline(false);
+        expected = plain.format(FormatType.HTML);
+
+        Html batched = build(false, 20, 5);
+        final Div leaf = _leaf;
+        batched.format(FormatType.HTML);
+        batched.beginBatch();
+        leaf.addBodyContent("new");
+        if (batched.format(FormatType.HTML).indexOf("new") == -1)
+        {
+            System.out.println("FAIL: formatting in a batch does not show the changes made in it");
+            failures++;
+        }
+        leaf.addBodyContent("more");
+        batched.beginBatch();
+        leaf.setHasNewline(false);
+        batched.endBatch();
+        if ( !batched.isInBatch() )
+        {
+            System.out.println("FAIL: ending a nested batch ended the outer one");
+            failures++;
+        }
+        batched.endBatch();
+        if ( batched.isInBatch() || !batched.format(FormatType.HTML).equals(expected) )
+        {
+            System.out.println("FAIL: changes made in nested batches format differently");
+            failures++;
+        }
+
+        Html run = build(false, 20, 5);
+        final Div runLeaf = _leaf;
+        run.format(FormatType.HTML);
+        run.batch
+        (
+            new Runnable()
+            {
+                public void run()
+                {
+                    runLeaf.addBodyContent("new");
+                    runLeaf.addBodyContent("more");
+                    runLeaf.setHasNewline(false);
+                }
+            }
+        );
+        if ( !run.format(FormatType.HTML).equals(expected) )
+        {
+            System.out.println("FAIL: changes made through batch(Runnable) format differently");
+            failures++;
+        }
+
+        //Content moved between documents that are each in a batch
+        for (int i=0; i<20; i++)
+        {
+            Html to = build(false, 3, 1);
+            Div target = _leaf;
+            Html from = build(false, 3, 1);
+            Div moved = _leaf;
+            to.format(FormatType.HTML);
+            from.format(FormatType.HTML);
+            for (int j=0; j<i%5; j++)
+            {
+                to.beginBatch();
+                to.endBatch();
+            }
+            from.beginBatch();
+            TextContent text = moved.addBodyContent("x");
+            moved.setParent(target);
+            to.beginBatch();
+            text.setText("changed " + i);
+            from.endBatch();
+            to.endBatch();
+            if (to.format(FormatType.HTML).indexOf("changed " + i) == -1)
+            {
+                System.out.println("FAIL: a change to content moved between batches is missing in round " + i);
+                failures++;
+            }
+        }
+        System.out.println( (failures == 0 ? "PASS" : failures + " failure(s)") );
+        if (failures > 0) System.exit(1);
+    }
+
+    /**
+     * Builds a document with a chain of divs of the given depth and the given number of text content
+     * added to the deepest one, which is kept in _leaf.
+     *
+     * @param batch Whether to build it in a batch.
+     * @param depth The number of divs.
+     * @param edits The number of text content to add.
+     * @return Html
+     */
+    private static Html build(boolean batch, int depth, int edits)
+    {
+        Html ret = new Html();
+        if (batch) ret.beginBatch();
+        Div div = new Div( ret.getBodyTag() );
+        for (int i=0; i<depth; i++)
+        {
+            div = new Div(div);
+            div.addBodyContent("t" + i);
+        }
+        for (int i=0; i<edits; i++)
+        {
+            div.addBodyContent("x").setHasNewline(i%2 == 0);
+        }
+        if (batch) ret.endBatch();
+        _leaf = div;
+        return ret;
+    }
+}
@@ -0,0 +1,200 @@
+package com.zitego.markup.html.tag;
+
+import com.zitego.markup.CharStream;
+import com.zitego.markup.ParseCursor;
+import com.zitego.format.FormatType;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+
+/**
+ * Checks the window that a CharStream reads text through. A text many times longer then the window
+ * has to read back the same with and without releasing what has been read, the window has to stay
+ * small when text is released, and released text, text passed the end, and a reader that throws an
+ * error have to be reported. The sample document has to parse the same through a small window as it
+ * does from a string, and the charset has to be taken from a byte order mark, a meta tag, or what is
+ * given. This exits with a non zero status if anything is different.
+ *
+ * @author John Glorioso
+ * @version $Id$
+ */
+public class CharStreamTestHarness
+{
+    public static void main(String[] args) throws Exception
+    {
+        int failures = 0;
+        StringBuffer buf = new StringBuffer();
+        for (int i=0; buf.length()<100000; i++)
+        {
+            buf.append("line ").append(i).append('\n');
+        }
+        String text = buf.toString();
+
+        //Read it all without releasing anything
+        CharStream stream = new CharStream(new StringReader(text), 64);
+        if ( !stream.ensure(text.length()-1) || stream.ensure(text.length()) || !stream.isEof() )
+        {
+            System.out.println("FAIL: ensure did not find the end of the text");
+            failures++;
+        }
+        if ( stream.length() != text.length() || !text.equals(stream.subSequence(0, text.length()).toString()) )
+        {
+            System.out.println("FAIL: the text read back with " + stream.length() + " characters rather then " + text.length());
+            failures++;
+        }
+        try
+        {
+            stream.charAt( text.length() );
+            System.out.println("FAIL: a character passed the end was returned");
+            failures++;
+        }
+        catch (IndexOutOfBoundsException ioobe) { }
+
+        //Read it one character at a time releasing as it goes
+        stream = new CharStream(new StringReader(text), 64);
+        int largest = 0;
+        boolean same = true;
+        for (int i=0; i<text.length(); i++)
+        {
+            same &= ( stream.charAt(i) == text.charAt(i) );
+            stream.release(i);
+            largest = Math.max( largest, stream.toString().length() );
+        }
+        if (!same)
+        {
+            System.out.println("FAIL: the text read back different when it was released");
+            failures++;
+        }
+        if (largest > 4096)
+        {
+            System.out.println("FAIL: the window grew to " + largest + " characters when the text was released");
+            failures++;
+        }
+        try
+        {
+            stream.charAt(0);
+            System.out.println("FAIL: released text was returned");
+            failures++;
+        }
+        catch (IllegalStateException ise) { }
+        stream.checkError();
+
+        //A reader that fails part way through
+        IOException error = new IOException("broken");
+        stream = new CharStream(new FailingReader(text, 5000, error), 64);
+        if ( stream.ensure(text.length()-1) || !stream.isEof() || stream.length() != 5000 )
+        {
+            System.out.println("FAIL: the stream did not end at the error, it has " + stream.length() + " characters");
+            failures++;
+        }
+        if (thrown(stream) != error)
+        {
+            System.out.println("FAIL: checkError did not throw the error from the reader");
+            failures++;
+        }
+
+        //The sample document through a small window and through a reader that fails
+        String doc = SampleDocument.build(50);
+        String expected = parse(doc).format(FormatType.HTML);
+        stream = new CharStream(new StringReader(doc), 64);
+        Html html = parse(stream);
+        stream.checkError();
+        if ( !html.format(FormatType.HTML).equals(expected) )
+        {
+            System.out.println("FAIL: the sample document parses differently through a small window");
+            failures++;
+        }
+        stream = new CharStream(new FailingReader(doc, doc.length()/2, error), 64);
+        try
+        {
+            parse(stream);
+        }
+        catch (Exception e) { }
+        if (thrown(stream) != error)
+        {
+            System.out.println("FAIL: the error from the reader was lost while parsing");
+            failures++;
+        }
+
+        //Charset detection
+        String word = "caf\u00e9 \u00fcber";
+        String meta = "<meta charset=\"UTF-8\">" + word;
+        String[][] charsets =
+        {
+            { meta, "UTF-8", null, meta },
+            { "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + word, "UTF-8", null, "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + word },
+            { "\ufeff" + word, "UTF-8", "ISO-8859-1", word },
+            { "\ufeff" + word, "UTF-16LE", null, word },
+            { "\ufeff" + word, "UTF-16BE", null, word },
+            { word, "UTF-8", "UTF-8", word },
+            { word, "ISO-8859-1", null, word },
+            { "<meta charset=nothing>" + word, "ISO-8859-1", null, "<meta charset=nothing>" + word }
+        };
+        for (int i=0; i<charsets.length; i++)
+        {
+            byte[] bytes = charsets[i][0].getBytes(charsets[i][1]);
+            Charset given = ( charsets[i][2] != null ? Charset.forName(charsets[i][2]) : null );
+            stream = CharStream.forInputStream(new ByteArrayInputStream(bytes), given);
+            stream.ensure(0);
+            if ( !stream.toString().equals(charsets[i][3]) )
+            {
+                System.out.println("FAIL: " + charsets[i][1] + " case " + i + " read as " + stream);
+                failures++;
+            }
+        }
+        System.out.println( (failures == 0 ? "PASS" : failures + " failure(s)") );
+        if (failures > 0) System.exit(1);
+    }
+
+    private static Html parse(CharSequence doc) throws Exception
+    {
+        Html ret = new Html();
+        ret.setStrict(false);
+        ret.parse(new ParseCursor(doc), FormatType.HTML);
+        return ret;
+    }
+
+    private static IOException thrown(CharStream stream)
+    {
+        try
+        {
+            stream.checkError();
+            return null;
+        }
+        catch (IOException ioe)
+        {
+            return ioe;
+        }
+    }
+
+    /**
+     * A reader that throws the given error once the given number of characters have been read.
+     */
+    private static class FailingReader extends Reader
+    {
+        private String _text;
+        private int _failAt;
+        private IOException _error;
+        private int _pos = 0;
+
+        private FailingReader(String text, int failAt, IOException error)
+        {
+            _text = text;
+            _failAt = failAt;
+            _error = error;
+        }
+
+        public int read(char[] buf, int off, int len) throws IOException
+        {
+            if (_pos >= _failAt) throw _error;
+            int count = Math.min( len, _failAt-_pos );
+            _text.getChars(_pos, _pos+count, buf, off);
+            _pos += count;
+            return count;
+        }
+
+        public void close() { }
+    }
+}
@@ -0,0 +1,244 @@
+package com.zitego.markup.html.tag;
+
+import com.zitego.markup.ParseCursor;
+import com.zitego.markup.html.BatchConverter;
+import com.zitego.markup.html.BatchResult;
+import com.zitego.markup.html.BatchStats;
+import com.zitego.format.FormatType;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks that a BatchConverter never has more documents in flight then it is allowed and that its
+ * stats add up. Strings, readers, streams, and files are converted on an executor with more threads
+ * then the limit while a transformer counts how many are running at once. Inputs that cannot be
+ * parsed and a transformer that fails have to be counted as failures without stopping the batch, and
+ * every other document has to format the same as when it is parsed by itself. This exits with a non
+ * zero status if anything is different.
+ *
+ * @author John Glorioso
+ * @version $Id$
+ */
+public class ConverterTestHarness
+{
+    private static final int THREADS = 8;
+    private static final int MAX_IN_FLIGHT = 3;
+    /** The marker in a document that makes the transformer fail. */
+    private static final String FAIL = "<!-- fail -->";
+
+    private static AtomicInteger _running = new AtomicInteger();
+    private static AtomicInteger _mostRunning = new AtomicInteger();
+    private static AtomicInteger _taken = new AtomicInteger();
+    private static AtomicInteger _done = new AtomicInteger();
+    private static AtomicInteger _mostPending = new AtomicInteger();
+
+    public static void main(String[] args) throws Exception
+    {
+        int failures = 0;
+        File f = File.createTempFile("converter", ".html");
+        f.deleteOnExit();
+        String fileDoc = SampleDocument.build(3);
+        FileOutputStream out = new FileOutputStream(f);
+        out.write( fileDoc.getBytes("ISO-8859-1") );
+        out.close();
+
+        //The inputs and what they have to format as or null if they have to fail
+        final Map<Object, String> expected = new IdentityHashMap<Object, String>();
+        List<Object> inputs = new ArrayList<Object>();
+        int bad = 0;
+        for (int i=0; i<40; i++)
+        {
+            String doc = SampleDocument.build(1 + i%5) + "<!-- " + i + " -->";
+            Object input = null;
+            if (i % 10 == 7)
+            {
+                input = Integer.valueOf(i);
+                doc = null;
+            }
+            else if (i % 10 == 9)
+            {
+                input = doc + FAIL;
+                doc = null;
+            }
+            else if (i % 4 == 1)
+            {
+                input = new StringReader(doc);
+            }
+            else if (i % 4 == 2)
+            {
+                input = new ByteArrayInputStream( doc.getBytes("ISO-8859-1") );
+            }
+            else if (i % 4 == 3)
+            {
+                input = f;
+                doc = fileDoc;
+            }
+            else
+            {
+                input = doc;
+            }
+            if (doc == null) bad++;
+            inputs.add(input);
+            expected.put(input, (doc != null ? format(doc) : null) );
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        BatchConverter converter = new BatchConverter(executor, MAX_IN_FLIGHT);
+        converter.setTransformer( new BatchConverter.Transformer()
+        {
+            public void transform(Html doc) throws Exception
+            {
+                int running = _running.incrementAndGet();
+                try
+                {
+                    raise(_mostRunning, running);
+                    Thread.sleep(5);
+                    if (doc.format(FormatType.HTML).indexOf(FAIL) != -1) throw new Exception("failed on purpose");
+                }
+                finally
+                {
+                    _running.decrementAndGet();
+                }
+            }
+        } );
+        final List<BatchResult> results = new ArrayList<BatchResult>();
+        BatchStats stats = converter.convert( new Counter(inputs.iterator()), new BatchConverter.ResultHandler()
+        {
+            public void converted(BatchResult result)
+            {
+                _done.incrementAndGet();
+                synchronized (results)
+                {
+                    results.add(result);
+                }
+            }
+        } );
+
+        if (_mostRunning.get() > MAX_IN_FLIGHT)
+        {
+            System.out.println("FAIL: " + _mostRunning.get() + " documents were converted at once rather then " + MAX_IN_FLIGHT);
+            failures++;
+        }
+        //An input is taken before it waits for room, so one more can be pending
+        if (_mostPending.get() > MAX_IN_FLIGHT+1)
+        {
+            System.out.println("FAIL: " + _mostPending.get() + " inputs were read before they were converted");
+            failures++;
+        }
+        if ( results.size() != inputs.size() || stats.getDocuments() != inputs.size() || stats.getFailures() != bad )
+        {
+            System.out.println
+            (
+                "FAIL: " + results.size() + " results, " + stats.getDocuments() + " documents, and " + stats.getFailures() +
+                " failures rather then " + inputs.size() + " and " + bad
+            );
+            failures++;
+        }
+        for (int i=0; i<results.size(); i++)
+        {
+            BatchResult result = results.get(i);
+            String output = expected.get( result.getInput() );
+            if ( (output == null) == result.isSuccessful() || (output != null && !output.equals(result.getOutput())) )
+            {
+                System.out.println("FAIL: the result for " + describe(result.getInput()) + " is wrong: " + result.getError());
+                failures++;
+            }
+        }
+        if ( stats.getAverageMillis() <= 0 || stats.getMaxMillis() < stats.getAverageMillis() || stats.getElapsedMillis() <= 0 ||
+             stats.getDocumentsPerSecond() <= 0 )
+        {
+            System.out.println("FAIL: the stats do not add up: " + stats);
+            failures++;
+        }
+
+        //The executor has to be left running and a converter without one has to make its own
+        stats = new BatchConverter().convert(inputs.subList(0, 1).iterator(), null);
+        if ( executor.isShutdown() || stats.getDocuments() != 1 || stats.getFailures() != 0 )
+        {
+            System.out.println("FAIL: a converter without an executor gave " + stats);
+            failures++;
+        }
+        executor.shutdown();
+        try
+        {
+            converter.convert(inputs.subList(0, 1).iterator(), null);
+            System.out.println("FAIL: a shut down executor took a document");
+            failures++;
+        }
+        catch (RejectedExecutionException ree) { }
+        try
+        {
+            new BatchConverter(null, 0);
+            System.out.println("FAIL: a max in flight of 0 was allowed");
+            failures++;
+        }
+        catch (IllegalArgumentException iae) { }
+        f.delete();
+        System.out.println( (failures == 0 ? "PASS" : failures + " failure(s)") );
+        if (failures > 0) System.exit(1);
+    }
+
+    private static String format(String doc) throws Exception
+    {
+        Html html = new Html();
+        html.parse(new ParseCursor(doc), FormatType.HTML);
+        return html.format(FormatType.HTML);
+    }
+
+    private static String describe(Object input)
+    {
+        return ( input instanceof String ? "a string" : input.getClass().getName() );
+    }
+
+    /**
+     * Raises the given value to the given number if it is less.
+     */
+    private static void raise(AtomicInteger value, int to)
+    {
+        int current = value.get();
+        while ( to > current && !value.compareAndSet(current, to) )
+        {
+            current = value.get();
+        }
+    }
+
+    /**
+     * An iterator that keeps track of the most inputs that have been read but not converted.
+     */
+    private static class Counter implements Iterator<Object>
+    {
+        private Iterator<Object> _it;
+
+        private Counter(Iterator<Object> it)
+        {
+            _it = it;
+        }
+
+        public boolean hasNext()
+        {
+            return _it.hasNext();
+        }
+
+        public Object next()
+        {
+            raise( _mostPending, _taken.incrementAndGet()-_done.get() );
+            return _it.next();
+        }
+
+        public void remove()
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
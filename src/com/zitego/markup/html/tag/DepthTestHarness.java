@@ -0,0 +1,212 @@
+package com.zitego.markup.html.tag;
+
+import com.zitego.markup.MarkupContent;
+import com.zitego.markup.html.tag.block.Div;
+import com.zitego.format.FormatType;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks that content works out how deep it is from the right parents. A tree of divs, some of which
+ * count towards the html depth and some of which add to the depth themselves, is changed at random
+ * by moving divs under other divs, and every div has to have the depth that its parents give it.
+ * Divs at the same depth have to share their padding. A chain of 20000 nested divs has to work out
+ * its depth without running out of stack. This exits with a non zero status if anything is
+ * different.
+ *
+ * @author John Glorioso
+ * @version $Id$
+ */
+public class DepthTestHarness
+{
+    private static final int DIVS = 3000;
+    private static final int CHAIN = 20000;
+    private static int _failures = 0;
+    /** The parent of each div. */
+    private static IdentityHashMap<MarkupContent, MarkupContent> _parents = new IdentityHashMap<MarkupContent, MarkupContent>();
+
+    public static void main(String[] args) throws Exception
+    {
+        Html html = new Html();
+        html.parse("<html><body></body></html>", FormatType.HTML);
+        Body body = html.getBodyTag();
+        _parents.put(body, html);
+
+        Random random = new Random(21);
+        List<Div> divs = new ArrayList<Div>();
+        for (int i=0; i<DIVS; i++)
+        {
+            HtmlMarkupTag parent = (i == 0 ? body : divs.get( random.nextInt(i) ));
+            divs.add( newDiv(parent, random.nextInt(10)) );
+        }
+        check(divs, "after they were added");
+
+        for (int i=0; i<2000 && _failures < 10; i++)
+        {
+            Div div = divs.get( random.nextInt(DIVS) );
+            if (random.nextInt(3) < 2)
+            {
+                //Move it under a div that is not under it
+                MarkupContent parent = divs.get( random.nextInt(DIVS) );
+                if ( isUnder(parent, div) ) parent = body;
+                div.setParent(parent);
+                _parents.put(div, parent);
+            }
+            else
+            {
+                check(div, "after " + i + " moves");
+            }
+            if (i % 250 == 249) check(divs, "after " + (i+1) + " moves");
+        }
+
+        //Padding is shared by content at the same depth
+        String padding = null;
+        for (Div div : divs)
+        {
+            if (div.getDeepness(FormatType.HTML) != 2) continue;
+            if (padding == null) padding = div.getPadding(FormatType.HTML);
+            else if ( div.getPadding(FormatType.HTML) != padding ) fail("divs at the same depth did not share their padding");
+        }
+
+        //A deep chain, built in a batch so each div does not set all of the ones above it as changed
+        html.beginBatch();
+        Div top = new Div(body);
+        _parents.put(top, body);
+        Div leaf = top;
+        Div middle = null;
+        for (int i=0; i<CHAIN; i++)
+        {
+            leaf = newDiv(leaf, i % 10);
+            if (i == CHAIN/2) middle = leaf;
+        }
+        html.endBatch();
+        try
+        {
+            check(leaf, "at the end of the chain");
+            if ( leaf.getPadding(FormatType.HTML).length() != leaf.getDeepness(FormatType.HTML) ) fail("the padding at the end of the chain is wrong");
+            check(middle, "in the middle of the chain");
+        }
+        catch (StackOverflowError e)
+        {
+            fail("a chain of " + CHAIN + " divs ran out of stack");
+        }
+
+        System.out.println( (_failures == 0 ? "PASS" : _failures + " failure(s)") );
+        if (_failures > 0) System.exit(1);
+    }
+
+    /**
+     * Returns a new div under the given parent. The kind of div depends on the given number.
+     */
+    private static Div newDiv(HtmlMarkupTag parent, int kind)
+    {
+        Div ret = null;
+        if (kind < 3) ret = new CountedDiv(parent);
+        else if (kind == 3) ret = new ShiftedDiv(parent);
+        else ret = new Div(parent);
+        _parents.put(ret, parent);
+        return ret;
+    }
+
+    /**
+     * Returns whether the content is the given parent or is somewhere under it.
+     */
+    private static boolean isUnder(MarkupContent content, MarkupContent parent)
+    {
+        for (MarkupContent c=content; c != null; c=_parents.get(c))
+        {
+            if (c == parent) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the depth the given content should have. Each parent adds one and each shifted div
+     * adds ten more.
+     */
+    private static int expected(MarkupContent content)
+    {
+        int ret = 0;
+        for (MarkupContent c=content; _parents.get(c) != null; c=_parents.get(c))
+        {
+            ret += (c instanceof ShiftedDiv ? 11 : 1);
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the html depth the given content should have, which is the number of counted divs it
+     * is in or is.
+     */
+    private static int expectedHtml(MarkupContent content)
+    {
+        int ret = 0;
+        for (MarkupContent c=content; _parents.get(c) != null; c=_parents.get(c))
+        {
+            if (c instanceof CountedDiv) ret++;
+        }
+        return ret;
+    }
+
+    private static void check(MarkupContent content, String when)
+    {
+        if ( content.getDeepness() != expected(content) )
+        {
+            fail(content + " was " + content.getDeepness() + " deep rather then " + expected(content) + " " + when);
+        }
+        if ( content.getDeepness(FormatType.HTML) != expectedHtml(content) )
+        {
+            fail(content + " was " + content.getDeepness(FormatType.HTML) + " deep in html rather then " + expectedHtml(content) + " " + when);
+        }
+    }
+
+    private static void check(List<Div> divs, String when)
+    {
+        int wrong = 0;
+        for (Div div : divs)
+        {
+            if ( div.getDeepness() != expected(div) || div.getDeepness(FormatType.HTML) != expectedHtml(div) ) wrong++;
+        }
+        if (wrong > 0) fail(wrong + " divs had the wrong depth " + when);
+    }
+
+    private static void fail(String msg)
+    {
+        System.out.println("FAIL: " + msg);
+        _failures++;
+    }
+
+    /**
+     * A div that counts towards the html depth.
+     */
+    public static class CountedDiv extends Div
+    {
+        public CountedDiv(HtmlMarkupTag parent)
+        {
+            super(parent);
+        }
+
+        public boolean countDeepness(FormatType type)
+        {
+            return (type == FormatType.HTML);
+        }
+    }
+
+    /**
+     * A div that is ten deeper than its parents make it.
+     */
+    public static class ShiftedDiv extends Div
+    {
+        public ShiftedDiv(HtmlMarkupTag parent)
+        {
+            super(parent);
+        }
+
+        public int getDeepness()
+        {
+            return super.getDeepness() + 10;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.zitego.markup.html.tag;
+
+import com.zitego.markup.IllegalMarkupException;
+import com.zitego.markup.MarkupContent;
+import com.zitego.markup.MarkupFactory;
+import com.zitego.markup.ParseCursor;
+import com.zitego.markup.ParseDiagnostics;
+import com.zitego.markup.html.HtmlMarkupFactory;
+import com.zitego.markup.html.tag.block.Div;
+import com.zitego.markup.tag.MarkupTag;
+import com.zitego.format.FormatType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Checks that a lenient parse records problems rather then throwing them. Tags given the wrong tag,
+ * a header with a size that does not exist, a tag given text, and a broken comment have to throw when
+ * strict and record one problem of the right kind at the right place when lenient. A tag that cannot
+ * be created has to be kept as an unknown tag and recorded, and a large document parsed in parallel
+ * has to record its problems in document order at the same places as when it is parsed in one piece.
+ * A document without problems has to record none. This exits with a non zero status if anything is
+ * different.
+ *
+ * @author John Glorioso
+ * @version $Id$
+ */
+public class DiagnosticsTestHarness
+{
+    /** Tag names, the text they are given, the kind of problem, the tag, and the position recorded. */
+    private static final Object[][] TAGS =
+    {
+        { "div", "<span>x</span>", Integer.valueOf(ParseDiagnostics.WRONG_TAG_NAME), "span", Integer.valueOf(1) },
+        { "h1", "<h9>x</h9>", Integer.valueOf(ParseDiagnostics.WRONG_TAG_NAME), "h9", Integer.valueOf(3) },
+        { "div", "x y", Integer.valueOf(ParseDiagnostics.INVALID_TAG), "div", Integer.valueOf(0) },
+        { "!--", "<!- x ->", Integer.valueOf(ParseDiagnostics.INVALID_TAG), "!--", Integer.valueOf(0) }
+    };
+    /** The tag that the factory cannot create. */
+    private static final String BROKEN = "<blink>x</blink>";
+    private static int _failures = 0;
+
+    public static void main(String[] args) throws Exception
+    {
+        for (int i=0; i<TAGS.length; i++)
+        {
+            String what = "<" + TAGS[i][0] + "> given " + TAGS[i][1];
+            try
+            {
+                parseTag( (String)TAGS[i][0], (String)TAGS[i][1], null );
+                fail(what + " did not throw when strict");
+            }
+            catch (IllegalMarkupException ime) { }
+            ParseDiagnostics diagnostics = new ParseDiagnostics();
+            parseTag( (String)TAGS[i][0], (String)TAGS[i][1], diagnostics );
+            if ( diagnostics.size() != 1 || diagnostics.getKind(0) != ((Integer)TAGS[i][2]).intValue() ||
+                 !TAGS[i][3].equals(diagnostics.getTag(0)) || diagnostics.getPosition(0) != ((Integer)TAGS[i][4]).intValue() )
+            {
+                fail(what + " recorded " + diagnostics);
+            }
+        }
+
+        String sample = SampleDocument.build(400);
+        ParseDiagnostics diagnostics = new ParseDiagnostics();
+        Html html = HtmlMarkupFactory.parseDocument(sample, diagnostics);
+        if ( !diagnostics.isEmpty() ) fail("the sample document recorded " + diagnostics);
+        if ( !html.format(FormatType.HTML).equals(parse(sample, null, null).format(FormatType.HTML)) )
+        {
+            fail("the sample document formats differently when lenient");
+        }
+
+        //Tags that cannot be created in sections all through the document
+        StringBuffer buf = new StringBuffer(sample);
+        int broken = 0;
+        for (int i=390; i>=0; i-=30)
+        {
+            int index = buf.indexOf("<div id=\"s" + i + "\"");
+            buf.insert(index, BROKEN);
+            broken++;
+        }
+        String doc = buf.toString();
+        MarkupFactory.setThreadFactoryClass(BrokenFactory.class);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try
+        {
+            try
+            {
+                parse(doc, null, null);
+                fail("a tag that could not be created did not throw when strict");
+            }
+            catch (IllegalMarkupException ime) { }
+            ParseDiagnostics sequential = new ParseDiagnostics();
+            html = parse(doc, sequential, null);
+            if ( sequential.size() != broken || html.getTagsByName("blink").size() != broken )
+            {
+                fail(broken + " tags that could not be created recorded " + sequential.size() + " problems");
+            }
+            for (int i=0; i<sequential.size(); i++)
+            {
+                if ( sequential.getKind(i) != ParseDiagnostics.TAG_NOT_CREATED || !"blink".equals(sequential.getTag(i)) ||
+                     (i > 0 && sequential.getPosition(i) <= sequential.getPosition(i-1)) )
+                {
+                    fail("problem " + i + " is " + sequential.getMessage(i));
+                }
+            }
+            ParseDiagnostics parallel = new ParseDiagnostics();
+            parse(doc, parallel, executor);
+            if ( !parallel.toString().equals(sequential.toString()) )
+            {
+                fail("a parallel parse recorded\n" + parallel + "rather then\n" + sequential);
+            }
+        }
+        finally
+        {
+            MarkupFactory.setThreadFactoryClass(null);
+            executor.shutdown();
+        }
+
+        //The diagnostics themselves
+        diagnostics = new ParseDiagnostics();
+        for (int i=0; i<100; i++)
+        {
+            diagnostics.add(i, ParseDiagnostics.INVALID_TAG, "t" + i);
+        }
+        ParseDiagnostics all = new ParseDiagnostics();
+        all.addAll(diagnostics);
+        all.addAll(diagnostics);
+        if ( all.size() != 200 || all.getPosition(199) != 99 || !"t99".equals(all.getTag(199)) || all.getMessage(199).indexOf("t99") == -1 )
+        {
+            fail("adding 200 problems gave " + all.size());
+        }
+        all.clear();
+        if ( !all.isEmpty() ) fail("clear left " + all.size() + " problems");
+        try
+        {
+            diagnostics.getKind(100);
+            fail("a problem passed the end was returned");
+        }
+        catch (IndexOutOfBoundsException ioobe) { }
+        System.out.println( (_failures == 0 ? "PASS" : _failures + " failure(s)") );
+        if (_failures > 0) System.exit(1);
+    }
+
+    private static void fail(String msg)
+    {
+        System.out.println("FAIL: " + msg);
+        _failures++;
+    }
+
+    /**
+     * Creates the given tag in the body of a document and parses the text into it. It is strict
+     * unless there are diagnostics.
+     *
+     * @param name The tag name.
+     * @param text The text to parse.
+     * @param diagnostics The diagnostics or null to be strict.
+     * @throws Exception if an error occurs parsing.
+     */
+    private static void parseTag(String name, String text, ParseDiagnostics diagnostics) throws Exception
+    {
+        Html html = parse("<html><body></body></html>", null, null);
+        Body body = html.getBodyTag();
+        MarkupTag tag = null;
+        if ( "h1".equals(name) ) tag = new Header(body, 1);
+        else if ( "!--".equals(name) ) tag = new HtmlCommentTag(body);
+        else tag = new Div(body);
+        html.setStrict(diagnostics == null);
+        if (diagnostics != null) html.setParseDiagnostics(diagnostics);
+        tag.parse(new ParseCursor(text), FormatType.HTML);
+    }
+
+    private static Html parse(String doc, ParseDiagnostics diagnostics, ExecutorService executor) throws Exception
+    {
+        Html ret = new Html();
+        ret.setStrict(diagnostics == null);
+        if (diagnostics != null) ret.setParseDiagnostics(diagnostics);
+        ret.setParallelExecutor(executor);
+        ret.parse(new ParseCursor(doc), FormatType.HTML);
+        return ret;
+    }
+
+    /**
+     * A factory that cannot create blink tags.
+     */
+    public static class BrokenFactory extends HtmlMarkupFactory
+    {
+        protected MarkupTag createTagByName(String name, MarkupContent parent) throws Exception
+        {
+            if ( "blink".equalsIgnoreCase(name) ) throw new Exception("blink cannot be created");
+            return super.createTagByName(name, parent);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.zitego.markup.html.tag;
+
+import com.zitego.markup.tag.Entities;
+import com.zitego.markup.tag.SpecialChar;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Random;
+
+/**
+ * Checks that entity references decode and encode correctly. Every SpecialChar has to be found by
+ * its name and its character, and text made of every special character along with other text has
+ * to come back the same after it is encoded and decoded. Numeric references have to decode in
+ * decimal and hex, and references that are not valid, such as ones without a semicolon, numbers
+ * that are zero, surrogates, or passed the last code point, and names in the wrong case, have to be
+ * left as they are. This exits with a non zero status if anything is different.
+ *
+ * @author John Glorioso
+ * @version $Id$
+ */
+public class EntitiesTestHarness
+{
+    /** References and the text they decode as. */
+    private static final String[][] DECODED =
+    {
+        { "&#65;", "A" },
+        { "&#x41;&#X41;&#x0041;", "AAA" },
+        { "a&#x1F600;b", "a\ud83d\ude00b" },
+        { "&#128512;", "\ud83d\ude00" },
+        { "&#x10FFFF;", "\udbff\udfff" },
+        { "&lt;b&gt; &amp;amp; &quot;", "<b> &amp; \"" },
+        { "&nbsp;&euro;&Dagger;&dagger;", "\u00a0\u20ac\u2021\u2020" }
+    };
+    /** Text with references that are not valid. */
+    private static final String[] INVALID =
+    {
+        "&", "&&;", "&;", "&#;", "&#x;", "&#", "&#x", "&#65", "&#0;", "&#xD800;", "&#xDFFF;", "&#x110000;",
+        "&#99999999999;", "&#xZZ;", "&#6 5;", "&bogus;", "&amp", "&AMP;", "&Nbsp;", "a & b", "&thisnameismuchtoolong;", "x&am"
+    };
+
+    public static void main(String[] args) throws Exception
+    {
+        int failures = 0;
+        StringBuffer all = new StringBuffer();
+        Field[] fields = SpecialChar.class.getFields();
+        int count = 0;
+        for (int i=0; i<fields.length; i++)
+        {
+            if ( fields[i].getType() != SpecialChar.class || !Modifier.isStatic(fields[i].getModifiers()) ) continue;
+            SpecialChar c = (SpecialChar)fields[i].get(null);
+            String symbol = c.getSymbol();
+            count++;
+            all.append( c.getChar() ).append(' ');
+            if ( SpecialChar.evaluate(symbol) != c || Entities.lookup(symbol, 1, symbol.length()-1) != c )
+            {
+                System.out.println("FAIL: " + symbol + " was not found by its name");
+                failures++;
+            }
+            if (SpecialChar.forChar(c.getChar()) == null || SpecialChar.forChar(c.getChar()).getChar() != c.getChar())
+            {
+                System.out.println("FAIL: " + symbol + " was not found by its character");
+                failures++;
+            }
+            if ( !Entities.decode(symbol).equals(String.valueOf(c.getChar())) )
+            {
+                System.out.println("FAIL: " + symbol + " decoded as " + Entities.decode(symbol));
+                failures++;
+            }
+        }
+        if (count < 100)
+        {
+            System.out.println("FAIL: only " + count + " special characters were found");
+            failures++;
+        }
+
+        //Every special character mixed with other text, including characters outside the basic plane
+        Random random = new Random(15);
+        for (int i=0; i<200; i++)
+        {
+            all.append( (char)('a' + random.nextInt(26)) );
+            if (i % 7 == 0) all.append("&#x1F600;");
+            if (i % 11 == 0) all.appendCodePoint(0x1F600 + i);
+            if (i % 13 == 0) all.append("&amp;");
+        }
+        String text = all.toString();
+        for (int named=0; named<2; named++)
+        {
+            String encoded = Entities.encode(text, named == 1);
+            if ( !Entities.decode(encoded).equals(text) )
+            {
+                System.out.println("FAIL: the text did not come back the same when encoded" + (named == 1 ? " with names" : ""));
+                failures++;
+            }
+            if ( encoded.indexOf('<') != -1 || encoded.indexOf('>') != -1 || (named == 1 && encoded.indexOf('\u20ac') != -1) )
+            {
+                System.out.println("FAIL: the text was not encoded" + (named == 1 ? " with names" : ""));
+                failures++;
+            }
+        }
+
+        for (int i=0; i<DECODED.length; i++)
+        {
+            String decoded = Entities.decode(DECODED[i][0]);
+            if ( !decoded.equals(DECODED[i][1]) )
+            {
+                System.out.println("FAIL: " + DECODED[i][0] + " decoded as " + decoded);
+                failures++;
+            }
+        }
+        for (int i=0; i<INVALID.length; i++)
+        {
+            String decoded = Entities.decode(INVALID[i]);
+            if ( !decoded.equals(INVALID[i]) )
+            {
+                System.out.println("FAIL: " + INVALID[i] + " decoded as " + decoded);
+                failures++;
+            }
+        }
+
+        //A reference is not read passed the end it is given
+        long reference = Entities.readReference("&amp;x", 0, 5);
+        if ( Entities.getCodePoint(reference) != '&' || Entities.getLength(reference) != 5 || Entities.readReference("&amp;x", 0, 4) != -1 )
+        {
+            System.out.println("FAIL: a reference was read passed its end");
+            failures++;
+        }
+        StringBuffer out = new StringBuffer();
+        Entities.decode("x&lt;y&gt;z", 1, 10, out);
+        if ( !out.toString().equals("<y>") )
+        {
+            System.out.println("FAIL: a range decoded as " + out);
+            failures++;
+        }
+
+        //Text that does not change is returned as it is
+        String plain = "nothing to change here";
+        if (Entities.decode(plain) != plain || Entities.encode(plain, true) != plain)
+        {
+            System.out.println("FAIL: text without references was copied");
+            failures++;
+        }
+        System.out.println( (failures == 0 ? "PASS" : failures + " failure(s)") );
+        if (failures > 0) System.exit(1);
+    }
+}
@@ -302,7 +302,7 @@ public class FrameSet extends HtmlMarkupTag
         return _noframes;
     }
 
-    public void parseText(StringBuffer text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
+    public void parseText(ParseCursor text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
     {
         super.parseText(text, type);
 
@@ -313,4 +313,10 @@ public class FrameSet extends HtmlMarkupTag
             if (c instanceof NoFrames) _noframes = (NoFrames)c;
         }
     }
+
+    protected boolean canParseBodyLazily()
+    {
+        //The noframes tag is looked for as soon as it is parsed
+        return false;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,157 @@
+package com.zitego.markup.html.tag;
+
+import com.zitego.markup.CharStream;
+import com.zitego.markup.MarkupHandler;
+import com.zitego.markup.MarkupFactory;
+import com.zitego.markup.ParseCursor;
+import com.zitego.markup.html.HtmlMarkupFactory;
+import java.io.StringReader;
+
+/**
+ * Checks the events that a MarkupHandler is given when a document is parsed without building a tree.
+ * Small documents, most of them broken, such as a comment or a start tag that never ends, an open
+ * quote in an attribute, a &lt; in text, and a stray end tag, have to give exactly the events that
+ * are expected. The sample document has to give the same events when it is read from a reader as
+ * when it is parsed from a string. This exits with a non zero status if anything is different.
+ *
+ * @author John Glorioso
+ * @version $Id$
+ */
+public class HandlerTestHarness
+{
+    /** Documents and the events they give with each event on a line of its own. */
+    private static final String[][] DOCS =
+    {
+        {
+            "<!DOCTYPE html><p class=\"a\" id=b>Hi<br/></p><!-- c -->",
+            "doctype DOCTYPE html\nstart p\nattribute class=a \"\nattribute id=b\ntext Hi\nstart br\nend br\nend p\ncomment  c \n"
+        },
+        {
+            "a < b and c<d",
+            "text a < b and c\nstart d\n"
+        },
+        {
+            "<div><!-- never ends",
+            "start div\ncomment  never ends\n"
+        },
+        {
+            "<b",
+            "start b\n"
+        },
+        {
+            "</",
+            "end \n"
+        },
+        {
+            "<a href=\"x>y</a>",
+            "start a\n"
+        },
+        {
+            "<p title='it\\'s'>x</p>",
+            "start p\nattribute title=it\\'s '\ntext x\nend p\n"
+        },
+        {
+            "<ul><li>a</ul></span>",
+            "start ul\nstart li\ntext a\nend ul\nend span\n"
+        },
+        {
+            "<i><b>x</i></b>",
+            "start i\nstart b\ntext x\nend i\nend b\n"
+        },
+        {
+            "<script>if (a<b && c>d) x(\"</p>\");</script>",
+            "start script\ntext if (a<b && c>d) x(\"</p>\");\nend script\n"
+        },
+        {
+            "<style>p > b { color: red }</style>",
+            "start style\ntext p > b { color: red }\nend style\n"
+        },
+        {
+            "<p\nclass=a\r\nid=\"b\nc\">",
+            "start p\nattribute class=a\nattribute id=bc \"\n"
+        },
+        {
+            "<?xml version=\"1.0\"?><br clear=all/>",
+            "doctype xml version=\"1.0\"?\nstart br\nattribute clear=all/\nend br\n"
+        }
+    };
+
+    public static void main(String[] args) throws Exception
+    {
+        int failures = 0;
+        MarkupFactory factory = HtmlMarkupFactory.getInstance();
+        for (int i=0; i<DOCS.length; i++)
+        {
+            Recorder got = new Recorder();
+            factory.parse(DOCS[i][0], got);
+            if ( !got.toString().equals(DOCS[i][1]) )
+            {
+                System.out.println("FAIL: " + DOCS[i][0] + " gave\n" + got);
+                failures++;
+            }
+        }
+
+        //The document is many times the size of the window that a reader is read through
+        String doc = SampleDocument.build(50);
+        Recorder expected = new Recorder();
+        factory.parse(doc, expected);
+        Recorder got = new Recorder();
+        factory.parse(new StringReader(doc), got);
+        Recorder small = new Recorder();
+        CharStream stream = new CharStream(new StringReader(doc), 64);
+        factory.parse(new ParseCursor(stream), small);
+        stream.checkError();
+        if ( !got.toString().equals(expected.toString()) || !small.toString().equals(expected.toString()) )
+        {
+            System.out.println("FAIL: the sample document gives different events from a reader");
+            failures++;
+        }
+        System.out.println( (failures == 0 ? "PASS" : failures + " failure(s)") );
+        if (failures > 0) System.exit(1);
+    }
+
+    /**
+     * Records each event on a line of its own.
+     */
+    private static class Recorder implements MarkupHandler
+    {
+        private StringBuffer _events = new StringBuffer();
+
+        public void doctype(String text)
+        {
+            _events.append("doctype ").append(text).append('\n');
+        }
+
+        public void startTag(String name)
+        {
+            _events.append("start ").append(name).append('\n');
+        }
+
+        public void attribute(String name, CharSequence value, char quote)
+        {
+            _events.append("attribute ").append(name).append('=').append(value);
+            if (quote != 0) _events.append(' ').append(quote);
+            _events.append('\n');
+        }
+
+        public void text(String text)
+        {
+            _events.append("text ").append(text).append('\n');
+        }
+
+        public void comment(String text)
+        {
+            _events.append("comment ").append(text).append('\n');
+        }
+
+        public void endTag(String name)
+        {
+            _events.append("end ").append(name).append('\n');
+        }
+
+        public String toString()
+        {
+            return _events.toString();
+        }
+    }
+}
@@ -465,7 +465,7 @@ public class Head extends HtmlMarkupTag
         return false;
     }
 
-    public void parseText(StringBuffer text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
+    public void parseText(ParseCursor text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
     {
         super.parseText(text, type);
 
@@ -488,4 +488,10 @@ public class Head extends HtmlMarkupTag
             }
         }
     }
+
+    protected boolean canParseBodyLazily()
+    {
+        //The title, style, scripts, and meta tags are looked for as soon as it is parsed
+        return false;
+    }
 }
\ No newline at end of file
@@ -1,7 +1,8 @@
 package com.zitego.markup.html.tag;
 
+import com.zitego.markup.ParseCursor;
 import com.zitego.markup.IllegalMarkupException;
-import com.zitego.util.TextUtils;
+import com.zitego.markup.ParseDiagnostics;
 
 /**
  * This class represents an html header (H1-H6) tag. Header tags have no attributes, however
@@ -96,10 +97,10 @@ public class Header extends EventDrivenTag
         return _size;
     }
 
-    protected void validateTagName(StringBuffer text)
+    protected void validateTagName(ParseCursor text)
     {
         boolean err = false;
-        String tag = TextUtils.getTextUpTo(text, new char[]{' ','>','<','\r','\n'});
+        String tag = text.getTextUpTo(new char[]{' ','>','<','\r','\n'});
         //String tag = (text != null && text.length() >= 2 ? text.substring(0,2) : "");
         tag = tag.toLowerCase();
         if (tag.length() >= 2)
@@ -115,9 +116,9 @@ public class Header extends EventDrivenTag
                 err = true;
             }
         }
-        if (err) throw new IllegalMarkupException
+        if ( err && !recover(ParseDiagnostics.WRONG_TAG_NAME, text, tag) ) throw new IllegalMarkupException
         (
-            "Header tag <"+tag+"> is not valid at "+TextUtils.trunc(text.toString(), 25)
+            "Header tag <"+tag+"> is not valid at "+text.peek(25)
         );
     }
 }
\ No newline at end of file
@@ -6,6 +6,11 @@ import com.zitego.markup.html.HtmlMarkupMap;
 import com.zitego.markup.html.HtmlMarkupFactory;
 import com.zitego.format.FormatType;
 import com.zitego.format.UnsupportedFormatException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
 
 /**
  * This class represents an html tag. An html tag cannot have a parent
@@ -27,6 +32,8 @@ public class Html extends HtmlMarkupTag
     private FrameSet _frameset;
     /** The base path if any for this html document. There will be an associated Base tag with this. */
     private String _basePath;
+    /** Whether the body content was parsed without this as its parent, because there were tags before the html tag. */
+    private boolean _parsedBeforeHtml = false;
 
     public static void main(String[] args) throws Exception
     {
@@ -36,15 +43,20 @@ public class Html extends HtmlMarkupTag
         java.io.File f = new java.io.File(in);
         if (f.exists())
         {
-            java.io.BufferedReader filein = new java.io.BufferedReader( new java.io.FileReader(in) );
-            StringBuffer instr = new StringBuffer();
-            while ( (in=filein.readLine()) != null )
+            InputStream filein = new java.io.FileInputStream(f);
+            try
             {
-                instr.append(in).append("\n");
+                html.parse(filein);
             }
-            in = instr.toString();
+            finally
+            {
+                filein.close();
+            }
+        }
+        else
+        {
+            html.parseText(new StringBuffer(in), FormatType.HTML);
         }
-        html.parseText(new StringBuffer(in), FormatType.HTML);
         System.out.println(html.format(FormatType.HTML));
     }
 
@@ -166,64 +178,276 @@ public class Html extends HtmlMarkupTag
         return ret.toString();
     }
 
-    public void parseText(StringBuffer text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
+    /**
+     * Parses the html document that can be read from the given reader. Only a window of the text is
+     * held in memory while it is parsed. The reader is not closed.
+     *
+     * @param in The reader.
+     * @throws IOException if an error occurs reading.
+     * @throws IllegalMarkupException if the html is invalid.
+     * @throws UnsupportedFormatException if the html cannot be parsed.
+     */
+    public void parse(Reader in) throws IOException, IllegalMarkupException, UnsupportedFormatException
+    {
+        if (in == null) return;
+        CharStream stream = new CharStream(in);
+        parseText(new ParseCursor(stream), FormatType.HTML);
+        stream.checkError();
+    }
+
+    /**
+     * Parses the html document that can be read from the given byte stream. The charset is detected
+     * from the byte order mark or the meta tags at the start of the document. The stream is not closed.
+     *
+     * @param in The byte stream.
+     * @throws IOException if an error occurs reading.
+     * @throws IllegalMarkupException if the html is invalid.
+     * @throws UnsupportedFormatException if the html cannot be parsed.
+     */
+    public void parse(InputStream in) throws IOException, IllegalMarkupException, UnsupportedFormatException
+    {
+        parse( in, (Charset)null );
+    }
+
+    /**
+     * Parses the html document that can be read from the given byte stream. If the charset is null, it
+     * is detected from the byte order mark or the meta tags at the start of the document. The stream is
+     * not closed.
+     *
+     * @param in The byte stream.
+     * @param charset The charset or null to detect it.
+     * @throws IOException if an error occurs reading.
+     * @throws IllegalMarkupException if the html is invalid.
+     * @throws UnsupportedFormatException if the html cannot be parsed.
+     */
+    public void parse(InputStream in, Charset charset) throws IOException, IllegalMarkupException, UnsupportedFormatException
+    {
+        if (in == null) return;
+        CharStream stream = CharStream.forInputStream(in, charset);
+        parseText(new ParseCursor(stream), FormatType.HTML);
+        stream.checkError();
+    }
+
+    /**
+     * Parses the html document in the given file. The file is memory mapped rather then read into
+     * the heap. The charset is detected from the byte order mark or the meta tags at the start of
+     * the document.
+     *
+     * @param f The file.
+     * @throws IOException if an error occurs mapping the file.
+     * @throws IllegalMarkupException if the html is invalid.
+     * @throws UnsupportedFormatException if the html cannot be parsed.
+     */
+    public void parse(File f) throws IOException, IllegalMarkupException, UnsupportedFormatException
+    {
+        parse( f, (Charset)null );
+    }
+
+    /**
+     * Parses the html document in the given file. The file is memory mapped rather then read into
+     * the heap. If the charset is null, it is detected from the byte order mark or the meta tags at
+     * the start of the document.
+     *
+     * @param f The file.
+     * @param charset The charset or null to detect it.
+     * @throws IOException if an error occurs mapping the file.
+     * @throws IllegalMarkupException if the html is invalid.
+     * @throws UnsupportedFormatException if the html cannot be parsed.
+     */
+    public void parse(File f, Charset charset) throws IOException, IllegalMarkupException, UnsupportedFormatException
+    {
+        if (f == null) return;
+        parseText(new ParseCursor( MappedText.map(f, charset) ), FormatType.HTML);
+    }
+
+    public void parseText(ParseCursor text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
     {
         if (text == null) return;
 
+        //Keep the source if asked to so that edits to it can be reparsed
+        if ( getParent() == null && !(text.getText() instanceof CharStream) ) getMap().setSource( text.getText() );
+
         //Clean leading spaces
-        removeLeadingSpaces(text);
+        skipLeadingSpaces(text);
 
+        _parsedBeforeHtml = false;
         if (text.length() < 5) return;
         String tag = text.substring(1, 5);
         if ( tag.equalsIgnoreCase("html") )
         {
-            super.parseText(text, type);
-            int size = getBodySize();
-            for (int i=0; i<size; i++)
-            {
-                MarkupContent c = getBodyContent(i);
-                if (c instanceof Body) _body = (Body)c;
-                else if (c instanceof Head) _head = (Head)c;
-                else if (c instanceof FrameSet) _frameset = (FrameSet)c;
-            }
+            parseHtmlTag(text, type);
         }
         else
         {
             //We use the html markup factory in the case where there are tags before the opening html tag. The only
-            //one we possibly expect is a doctype tag, but sometimes comments come before as well
-            MarkupContent[] contents = HtmlMarkupFactory.getInstance().parse
-            (
-                text, null, FormatType.HTML, true, isStrict(), preserveWhiteSpace()
-            );
-            if (contents == null) contents = new MarkupContent[0];
-            for (int i=0; i<contents.length; i++)
+            //one we possibly expect is a doctype tag, but sometimes comments come before as well. They are parsed
+            //one at a time so that the html tag itself is parsed into this with the rest of the document's settings
+            _parsedBeforeHtml = true;
+            MarkupFactory factory = HtmlMarkupFactory.getInstance();
+            while (text.length() > 0)
             {
-                if (contents[i] instanceof Doctype)
+                int spaces = text.countWhiteSpace();
+                if ( text.length() >= spaces+5 && text.charAt(spaces) == '<' && text.substring(spaces+1, spaces+5).equalsIgnoreCase("html") )
                 {
-                    _docType = (Doctype)contents[i];
-                    _docType.setParent(this);
-                }
-                else if (contents[i] instanceof Html)
-                {
-                    int size = contents[i].getBodySize();
-                    for (int j=0; j<size; j++)
+                    CharSequence space = skipLeadingSpaces( text, preserveWhiteSpace() );
+                    if (space != null)
                     {
-                        MarkupContent c = contents[i].getBodyContent(j);
-                        addBodyContent(c);
-                        if (c instanceof Body) _body = (Body)c;
-                        else if (c instanceof Head) _head = (Head)c;
-                        else if (c instanceof FrameSet) _frameset = (FrameSet)c;
+                        addParsedContent( factory.parse(new ParseCursor(space), null, FormatType.HTML, false, isStrict(), true) );
                     }
+                    //What came before the html tag stays ahead of the head, which puts itself first when it is created
+                    MarkupContent[] leading = new MarkupContent[getBodySize()];
+                    for (int i=0; i<leading.length; i++)
+                    {
+                        leading[i] = getBodyContent(i);
+                    }
+                    parseHtmlTag(text, type);
+                    for (int i=0; i<leading.length; i++)
+                    {
+                        moveBodyContentTo(i, leading[i]);
+                    }
+                    //Anything after the html tag is kept as it was before
+                    addParsedContent( factory.parse(text, null, FormatType.HTML, true, isStrict(), preserveWhiteSpace()) );
+                    break;
                 }
-                else if (contents[i] instanceof CommentTag)
-                {
-                    addComment( ((CommentTag)contents[i]).getComment() );
-                }
-                else
+                addParsedContent( factory.parse(text, null, FormatType.HTML, false, isStrict(), preserveWhiteSpace()) );
+            }
+        }
+    }
+
+    /**
+     * Parses the html tag at the start of the given text into this and finds the head, body, and frameset.
+     *
+     * @param text The text.
+     * @param type The format type.
+     * @throws IllegalMarkupException if the html is invalid.
+     * @throws UnsupportedFormatException if the format type cannot be parsed.
+     */
+    private void parseHtmlTag(ParseCursor text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
+    {
+        super.parseText(text, type);
+        int size = getBodySize();
+        for (int i=0; i<size; i++)
+        {
+            MarkupContent c = getBodyContent(i);
+            if (c instanceof Body) _body = (Body)c;
+            else if (c instanceof Head) _head = (Head)c;
+            else if (c instanceof FrameSet) _frameset = (FrameSet)c;
+        }
+    }
+
+    /**
+     * Adds content that was parsed on its own without a parent. A doctype replaces this document's
+     * doctype, a comment is added as a comment, and the body of an html tag is moved into this.
+     *
+     * @param contents The content.
+     */
+    private void addParsedContent(MarkupContent[] contents)
+    {
+        if (contents == null) return;
+        for (int i=0; i<contents.length; i++)
+        {
+            if (contents[i] instanceof Doctype)
+            {
+                if (_docType != contents[i]) _docType.unmap();
+                _docType = (Doctype)contents[i];
+                _docType.setParent(this);
+            }
+            else if (contents[i] instanceof Html)
+            {
+                int size = contents[i].getBodySize();
+                for (int j=0; j<size; j++)
                 {
-                    addBodyContent(contents[i]);
+                    MarkupContent c = contents[i].getBodyContent(j);
+                    addBodyContent(c);
+                    if (c instanceof Body) _body = (Body)c;
+                    else if (c instanceof Head) _head = (Head)c;
+                    else if (c instanceof FrameSet) _frameset = (FrameSet)c;
                 }
             }
+            else if (contents[i] instanceof CommentTag)
+            {
+                addComment( ((CommentTag)contents[i]).getComment() );
+            }
+            else
+            {
+                addBodyContent(contents[i]);
+            }
         }
     }
+
+    public void release() throws IllegalStateException
+    {
+        //The head, body, and frameset are gone with the rest of the content
+        super.release();
+        _head = null;
+        _body = null;
+        _frameset = null;
+        _docType.unmap();
+        _docType = new Doctype(this);
+    }
+
+    protected boolean canParseBodyLazily()
+    {
+        //The head, body, and frameset are looked for as soon as it is parsed
+        return false;
+    }
+
+    protected boolean canReparseBodyContent()
+    {
+        //The head, body, and frameset are updated in bodyContentReplaced. Content parsed before
+        //the html tag would not be parsed the same way again under this
+        return !_parsedBeforeHtml;
+    }
+
+    protected void bodyContentReplaced(MarkupContent old, MarkupContent replacement)
+    {
+        if (old == _head) _head = null;
+        else if (old == _body) _body = null;
+        else if (old == _frameset) _frameset = null;
+        if (replacement instanceof Body) _body = (Body)replacement;
+        else if (replacement instanceof Head) _head = (Head)replacement;
+        else if (replacement instanceof FrameSet) _frameset = (FrameSet)replacement;
+    }
+
+    /**
+     * Reparses the document after the given range of its source has been replaced with the given
+     * text. The document must have been parsed with its source kept (see setKeepSource). Only the
+     * smallest tag that encloses the range and can be reparsed on its own is parsed again. It replaces
+     * the old tag in place, so the rest of the document keeps its content and map ids and only the
+     * tags above it have to be formatted again. If nothing smaller then the whole document encloses the
+     * range, the whole document is parsed again. Either way, the new source is kept.
+     *
+     * @param start The index in the source where the range starts.
+     * @param end The index in the source where the range ends.
+     * @param replacement The text to replace the range with.
+     * @return MarkupContent The content that was reparsed or this document if all of it was.
+     * @throws IllegalStateException if the source was not kept.
+     * @throws IndexOutOfBoundsException if the range is not in the source.
+     * @throws IllegalMarkupException if the document cannot be parsed.
+     * @throws UnsupportedFormatException if the document cannot be parsed.
+     */
+    public MarkupContent reparse(int start, int end, String replacement)
+    throws IllegalStateException, IndexOutOfBoundsException, IllegalMarkupException, UnsupportedFormatException
+    {
+        CharSequence source = getSource();
+        if (source == null) throw new IllegalStateException("The source of the document was not kept");
+        if (start < 0 || start > end || end > source.length()) throw new IndexOutOfBoundsException("Invalid range: "+start+" to "+end);
+        if (replacement == null) replacement = "";
+
+        String text = new StringBuffer( source.length()-(end-start)+replacement.length() )
+            .append(source, 0, start).append(replacement).append( source, end, source.length() ).toString();
+        MarkupContent ret = reparseContent( text, start, end, replacement.length()-(end-start), FormatType.HTML );
+        if (ret != null) return ret;
+
+        //Nothing smaller then the document encloses the range
+        clearContent();
+        getAttributes().clear();
+        _head = null;
+        _body = null;
+        _frameset = null;
+        _docType.unmap();
+        _docType = new Doctype(this);
+        parseText( new ParseCursor(text), FormatType.HTML );
+        return this;
+    }
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package com.zitego.markup.html.tag;
 
 import com.zitego.markup.MarkupContent;
+import com.zitego.markup.ParseCursor;
 import com.zitego.markup.tag.CommentTag;
 import com.zitego.markup.html.StyleDeclaration;
 import com.zitego.markup.html.javascript.Statement;
@@ -90,17 +91,16 @@ public class HtmlCommentTag extends CommentTag
      */
     public void setComment(String comment)
     {
-        StringBuffer tmp = new StringBuffer(comment);
         MarkupContent parent = getParent();
         if (parent instanceof Style)
         {
-            Style.parseForStyleDeclarations(tmp, this);
+            Style.parseForStyleDeclarations(new ParseCursor(comment), this);
         }
         else if (parent instanceof Statement)
         {
             try
             {
-                JavascriptBody.parseJs(new StringBuffer(comment), this, FormatType.HTML);
+                JavascriptBody.parseJs(new ParseCursor(comment), this, FormatType.HTML);
             }
             catch (UnsupportedFormatException ufe)
             {
@@ -393,7 +393,7 @@ public class HtmlMarkupTag extends MarkupTag
         super.setMap(map);
     }
 
-    public void parseText(StringBuffer text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
+    public void parseText(ParseCursor text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
     {
         super.parseText(text, type);
         String style = getStyle();
@@ -401,7 +401,7 @@ public class HtmlMarkupTag extends MarkupTag
         {
             _styleDeclaration = new StyleDeclaration();
             _styleDeclaration.setPreserveWhiteSpace( preserveWhiteSpace() );
-            _styleDeclaration.parseText(new StringBuffer(style), type);
+            _styleDeclaration.parseText(new ParseCursor(style), type);
             setAttribute( "style", _styleDeclaration.format(FormatType.HTML) );
         }
     }
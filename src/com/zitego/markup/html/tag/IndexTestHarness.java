@@ -0,0 +1,200 @@
+package com.zitego.markup.html.tag;
+
+import com.zitego.markup.MarkupContent;
+import com.zitego.markup.TextContent;
+import com.zitego.markup.tag.MarkupTag;
+import com.zitego.markup.html.tag.block.Div;
+import com.zitego.format.FormatType;
+import java.util.Iterator;
+import java.util.StringTokenizer;
+import java.util.TreeSet;
+import java.util.Vector;
+
+/**
+ * Checks that looking up tags through a document index finds the same tags as walking the document.
+ * Every tag name, id, and class in the sample document is looked up, as are a few classes of
+ * content, on a document indexed from the start, the same document after tags have been added,
+ * moved, removed, and given new ids and classes, and a document that is indexed after it was parsed.
+ * This exits with a non zero status if anything is different.
+ *
+ * @author John Glorioso
+ * @version $Id$
+ */
+public class IndexTestHarness
+{
+    private static final int CLASS = 0;
+    private static final int NAME = 1;
+    private static final int ID = 2;
+    private static final int CSS_CLASS = 3;
+
+    private static int _failures = 0;
+
+    public static void main(String[] args) throws Exception
+    {
+        String doc = SampleDocument.build(10);
+        Html page = new Html();
+        page.setIndexing(true);
+        page.parse(doc, FormatType.HTML);
+
+        TreeSet names = new TreeSet();
+        TreeSet ids = new TreeSet();
+        TreeSet classes = new TreeSet();
+        Vector tags = page.search(MarkupTag.class);
+        for (int i=0; i<tags.size(); i++)
+        {
+            MarkupTag tag = (MarkupTag)tags.get(i);
+            if (tag.getTagName() != null) names.add( tag.getTagName() );
+            if (tag.getIdAttribute() != null) ids.add( tag.getIdAttribute() );
+            String css = tag.getCustomAttribute("class");
+            if (css != null)
+            {
+                StringTokenizer st = new StringTokenizer(css);
+                while ( st.hasMoreTokens() )
+                {
+                    classes.add( st.nextToken() );
+                }
+            }
+        }
+        names.add("DIV");
+        ids.add("added");
+        classes.add("added");
+        classes.add("moved");
+        compare("indexed from the start", page, names, ids, classes);
+
+        Body body = page.getBodyTag();
+        Div added = new Div(body);
+        added.setIdAttribute("added");
+        added.setCustomAttribute("class", "added moved");
+        Div first = new Div(body);
+        first.setCustomAttribute("class", "added");
+        body.moveBodyContentTo(0, first);
+        for (int i=0; i<tags.size(); i+=7)
+        {
+            MarkupTag tag = (MarkupTag)tags.get(i);
+            if (tag.getParent() != null && tag.getParent() != page) tag.setCustomAttribute("class", "moved item");
+        }
+        for (int i=3; i<tags.size(); i+=11)
+        {
+            MarkupTag tag = (MarkupTag)tags.get(i);
+            if ( tag.getParent() != null && !(tag instanceof Body) && !(tag instanceof Head) ) tag.getParent().removeBodyContent(tag);
+        }
+        added.setParent(first);
+        added.removeAttribute("id");
+        first.setIdAttribute("added");
+        compare("changed", page, names, ids, classes);
+        compare("looked up from the body", body, names, ids, classes);
+
+        Html late = new Html();
+        late.parse(doc, FormatType.HTML);
+        late.setIndexing(true);
+        compare("indexed after parsing", late, names, ids, classes);
+
+        System.out.println( (_failures == 0 ? "PASS" : _failures + " failure(s)") );
+        if (_failures > 0) System.exit(1);
+    }
+
+    /**
+     * Looks up every given name, id, and class under the given content through the index and by
+     * walking it and reports the ones that are different.
+     *
+     * @param desc What is being compared.
+     * @param root The content to look under.
+     * @param names The tag names.
+     * @param ids The ids.
+     * @param classes The css classes.
+     */
+    private static void compare(String desc, MarkupContent root, TreeSet names, TreeSet ids, TreeSet classes)
+    {
+        Class[] types = new Class[] { MarkupContent.class, MarkupTag.class, TextContent.class, Div.class };
+        for (int i=0; i<types.length; i++)
+        {
+            compare(desc, root, CLASS, types[i]);
+        }
+        for (Iterator i=names.iterator(); i.hasNext();)
+        {
+            compare( desc, root, NAME, i.next() );
+        }
+        for (Iterator i=ids.iterator(); i.hasNext();)
+        {
+            compare( desc, root, ID, i.next() );
+        }
+        for (Iterator i=classes.iterator(); i.hasNext();)
+        {
+            compare( desc, root, CSS_CLASS, i.next() );
+        }
+    }
+
+    private static void compare(String desc, MarkupContent root, int kind, Object key)
+    {
+        Vector found = null;
+        if (kind == CLASS)
+        {
+            found = root.search( (Class)key );
+        }
+        else if (kind == NAME)
+        {
+            found = root.getTagsByName( (String)key );
+        }
+        else if (kind == CSS_CLASS)
+        {
+            found = root.getTagsByClass( (String)key );
+        }
+        else
+        {
+            found = new Vector();
+            MarkupTag tag = root.getTagById( (String)key );
+            if (tag != null) found.add(tag);
+        }
+        Vector walked = new Vector();
+        walk(root, kind, key, walked);
+        if (kind == ID && walked.size() > 1) walked.setSize(1);
+        if ( !found.equals(walked) )
+        {
+            System.out.println("FAIL: " + desc + " found " + found.size() + " instead of " + walked.size() + " for " + key);
+            _failures++;
+        }
+    }
+
+    /**
+     * Adds the given content and everything under it that matches the key to the given vector in
+     * the order they are in the document.
+     *
+     * @param content The content.
+     * @param kind What the key is.
+     * @param key The key.
+     * @param ret The vector to add to.
+     */
+    private static void walk(MarkupContent content, int kind, Object key, Vector ret)
+    {
+        boolean matches = false;
+        if (kind == CLASS)
+        {
+            matches = ( (Class)key ).isInstance(content);
+        }
+        else if (content instanceof MarkupTag)
+        {
+            MarkupTag tag = (MarkupTag)content;
+            if (kind == NAME)
+            {
+                matches = ( (String)key ).equalsIgnoreCase( tag.getTagName() );
+            }
+            else if (kind == ID)
+            {
+                matches = key.equals( tag.getIdAttribute() );
+            }
+            else if (tag.getCustomAttribute("class") != null)
+            {
+                StringTokenizer st = new StringTokenizer( tag.getCustomAttribute("class") );
+                while ( st.hasMoreTokens() && !matches )
+                {
+                    matches = key.equals( st.nextToken() );
+                }
+            }
+        }
+        if (matches) ret.add(content);
+        for (int i=0; i<content.getBodySize(); i++)
+        {
+            walk(content.getBodyContent(i), kind, key, ret);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.zitego.markup.html.tag;
+
+import com.zitego.markup.MarkupContent;
+import com.zitego.markup.html.tag.form.Form;
+import com.zitego.format.FormatType;
+
+/**
+ * Checks the class that is created for each input tag. The type attribute has to decide the class
+ * in any case, with or without quotes and spaces, and after attributes whose values hold a &gt; or
+ * the word type. An input without a type or with one that is not known is a text field. The other
+ * attributes of the tag have to be kept, and an input that never ends has to finish parsing. This
+ * exits with a non zero status if anything is different.
+ *
+ * @author John Glorioso
+ * @version $Id$
+ */
+public class InputTypeTestHarness
+{
+    /** Input tags, the class they create, and text that has to be in the formatted tag. */
+    private static final String[][] INPUTS =
+    {
+        { "<input type=\"checkbox\" name=a>", "form.Checkbox", "name=\"a\"" },
+        { "<INPUT TYPE=RADIO NAME=a>", "form.Radio", "NAME=\"a\"" },
+        { "<Input Type='Submit' value=go>", "form.Submit", "value=\"go\"" },
+        { "<input type=\" hidden \" value=x>", "form.Hidden", "value=\"x\"" },
+        { "<input name=a>", "form.Text", "name=\"a\"" },
+        { "<input type=bogus name=a>", "form.Text", "name=\"a\"" },
+        { "<input data-type=radio name=a>", "form.Text", "name=\"a\"" },
+        { "<input value=\"a>b\" type=hidden>", "form.Hidden", "value=\"a>b\"" },
+        { "<input title='type=radio' name=a>", "form.Text", "name=\"a\"" },
+        { "<input\r\ntype=password\r\nname=p\r\n/>", "form.Password", "name=\"p\"" },
+        { "<input type=image src=\"x.gif\">", "form.Image", "src=\"x.gif\"" },
+        { "<input type=file name=f>", "form.File", "name=\"f\"" },
+        { "<input type=reset>", "form.Reset", "reset" },
+        { "<input type=button value=b>", "form.Button", "value=\"b\"" }
+    };
+
+    public static void main(String[] args) throws Exception
+    {
+        int failures = 0;
+        for (int i=0; i<INPUTS.length; i++)
+        {
+            Html html = parse("<html><body><form>" + INPUTS[i][0] + "</form></body></html>");
+            MarkupContent form = (MarkupContent)html.search(Form.class).get(0);
+            MarkupContent input = ( form.getBodySize() > 0 ? form.getBodyContent(0) : null );
+            String name = ( input != null ? input.getClass().getName() : "null" );
+            if ( !name.equals("com.zitego.markup.html.tag." + INPUTS[i][1]) )
+            {
+                System.out.println("FAIL: " + INPUTS[i][0] + " created " + name);
+                failures++;
+            }
+            else if (input.format(FormatType.HTML).indexOf(INPUTS[i][2]) == -1)
+            {
+                System.out.println("FAIL: " + INPUTS[i][0] + " formatted as " + input.format(FormatType.HTML));
+                failures++;
+            }
+        }
+
+        //Inputs that never end
+        String[] broken = { "<input type=radio", "<input type=\"radio", "<input value='x>" };
+        for (int i=0; i<broken.length; i++)
+        {
+            try
+            {
+                parse("<html><body><form>" + broken[i]);
+            }
+            catch (Exception e)
+            {
+                System.out.println("FAIL: " + broken[i] + " threw " + e);
+                failures++;
+            }
+        }
+        System.out.println( (failures == 0 ? "PASS" : failures + " failure(s)") );
+        if (failures > 0) System.exit(1);
+    }
+
+    private static Html parse(String doc) throws Exception
+    {
+        Html ret = new Html();
+        ret.setStrict(false);
+        ret.parse(doc, FormatType.HTML);
+        return ret;
+    }
+}
@@ -0,0 +1,142 @@
+package com.zitego.markup.html.tag;
+
+import com.zitego.markup.MarkupContent;
+import com.zitego.format.FormatType;
+
+/**
+ * Checks that a document parsed lazily comes out the same as one parsed all at once. Before any
+ * body is needed the lazy document has to map less content and format the bodies as the text they
+ * were parsed from. After every body has been gone through, which parses them, it has to have the
+ * same content and format the same as the document that was parsed all at once. Broken documents,
+ * such as ones with tags that are never closed, end tags without a start tag, an open quote in an
+ * attribute, or a comment that never ends, are parsed leniently both ways. Once their bodies are
+ * gone through they have to come out the same, and a document that fails to parse one way has to
+ * fail the other way too, either when it is parsed or when its bodies are. This exits with a non
+ * zero status if anything is different.
+ *
+ * @author John Glorioso
+ * @version $Id$
+ */
+public class LazyParseTestHarness
+{
+    /** Broken markup put into a section of the sample document. */
+    private static final String[] BROKEN =
+    {
+        "<div><b><i>never closed", "</div></span></td>", "<div>a<li COLSPAN=\"3>b</li></div>", "<div><b<<br>x</b></div>",
+        "<table><tr><td><div>cell</table>", "<ul><li>a<ul><li>b</ul>", "<div title='x>y</div>", "<div><!-- never ends"
+    };
+    /** Broken documents. */
+    private static final String[] BROKEN_DOCS =
+    {
+        "<html><body><div><p>a</div></p></body></html>",
+        "<html><body><div><div></body></html>",
+        "<html><body></div><div>x</body></html>",
+        "<html><body><div id=\"a>b</div></body></html>",
+        "<html><body><div><!-- x </div></body></html>"
+    };
+
+    public static void main(String[] args) throws Exception
+    {
+        String doc = SampleDocument.build(20);
+        int failures = 0;
+        for (int i=0; i<2; i++)
+        {
+            boolean preserve = (i == 1);
+            Html eager = parse(doc, false, preserve);
+            String expected = eager.format(FormatType.HTML);
+            Html lazy = parse(doc, true, preserve);
+
+            if ( lazy.getMap().size() >= eager.getMap().size() )
+            {
+                System.out.println("FAIL: bodies were not left unparsed with preserve white space " + preserve);
+                failures++;
+            }
+            //The body of the body tag has not been needed so it formats as the text it was parsed from
+            String kept = doc.substring( doc.indexOf("<div"), doc.lastIndexOf("</div>")+6 );
+            if (lazy.format(FormatType.HTML).indexOf(kept) == -1)
+            {
+                System.out.println("FAIL: unparsed bodies do not format as their text with preserve white space " + preserve);
+                failures++;
+            }
+            int count = touch(lazy);
+            if ( count != touch(eager) || lazy.getMap().size() != eager.getMap().size() )
+            {
+                System.out.println("FAIL: parsed bodies have different content with preserve white space " + preserve);
+                failures++;
+            }
+            if ( !lazy.format(FormatType.HTML).equals(expected) )
+            {
+                System.out.println("FAIL: parsed bodies format differently with preserve white space " + preserve);
+                failures++;
+            }
+        }
+
+        int index = doc.indexOf("<h2 id=\"h10\">");
+        for (int i=0; i<BROKEN.length+BROKEN_DOCS.length; i++)
+        {
+            String broken = ( i < BROKEN.length ? doc.substring(0, index) + BROKEN[i] + doc.substring(index) : BROKEN_DOCS[i-BROKEN.length] );
+            String what = ( i < BROKEN.length ? BROKEN[i] : broken );
+            String expected = null;
+            String got = null;
+            try
+            {
+                Html eager = parse(broken, false, false, false);
+                touch(eager);
+                expected = eager.getMap().size() + "\n" + eager.format(FormatType.HTML);
+            }
+            catch (Exception e)
+            {
+                expected = e.getClass().getName();
+            }
+            try
+            {
+                Html lazy = parse(broken, true, false, false);
+                touch(lazy);
+                got = lazy.getMap().size() + "\n" + lazy.format(FormatType.HTML);
+            }
+            catch (Exception e)
+            {
+                got = e.getClass().getName();
+            }
+            if ( !got.equals(expected) )
+            {
+                System.out.println("FAIL: a document with " + what + " comes out differently when parsed lazily");
+                failures++;
+            }
+        }
+        System.out.println( (failures == 0 ? "PASS" : failures + " failure(s)") );
+        if (failures > 0) System.exit(1);
+    }
+
+    private static Html parse(String doc, boolean lazy, boolean preserve) throws Exception
+    {
+        return parse(doc, lazy, preserve, true);
+    }
+
+    private static Html parse(String doc, boolean lazy, boolean preserve, boolean strict) throws Exception
+    {
+        Html ret = new Html();
+        ret.setStrict(strict);
+        ret.setPreserveWhiteSpace(preserve);
+        ret.setLazyParsing(lazy);
+        ret.parse(doc, FormatType.HTML);
+        return ret;
+    }
+
+    /**
+     * Goes through the body of the given content and everything under it and returns how much
+     * content there was.
+     *
+     * @param content The content.
+     * @return int
+     */
+    private static int touch(MarkupContent content)
+    {
+        int ret = 1;
+        for (int i=0; i<content.getBodySize(); i++)
+        {
+            ret += touch( content.getBodyContent(i) );
+        }
+        return ret;
+    }
+}
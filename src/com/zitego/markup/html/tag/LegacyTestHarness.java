@@ -0,0 +1,162 @@
+package com.zitego.markup.html.tag;
+
+import com.zitego.markup.MarkupContent;
+import com.zitego.markup.MarkupFactory;
+import com.zitego.markup.ParseCursor;
+import com.zitego.markup.IllegalMarkupException;
+import com.zitego.markup.TextContent;
+import com.zitego.markup.html.HtmlMarkupFactory;
+import com.zitego.markup.html.HtmlTextContent;
+import com.zitego.markup.html.tag.block.Div;
+import com.zitego.markup.tag.MarkupTag;
+import com.zitego.format.FormatType;
+import com.zitego.format.UnsupportedFormatException;
+
+/**
+ * Checks that factories and tags that still override the deprecated StringBuffer methods have them
+ * called and parse the same as the ParseCursor methods. The sample document is parsed with a factory
+ * that overrides createTag, getTagName, and createTextContent and creates divs that override
+ * parseText and setAttributes. Every override has to be called, no override can be given much more
+ * then the tag or text it is for, and the formatted html and the number of mapped content have to
+ * be the same as a normal parse. This exits with a non zero status if anything is different.
+ *
+ * @author John Glorioso
+ * @version $Id$
+ */
+public class LegacyTestHarness
+{
+    private static final String[] METHODS =
+    {
+        "MarkupFactory.createTag", "MarkupFactory.getTagName", "MarkupFactory.createTextContent",
+        "MarkupContent.parseText", "MarkupTag.setAttributes"
+    };
+    /** The number of times each method in METHODS was called. */
+    private static int[] _calls = new int[METHODS.length];
+    /** The longest text that was given to one of the methods. */
+    private static int _longest = 0;
+
+    public static void main(String[] args) throws Exception
+    {
+        int failures = 0;
+        String doc = SampleDocument.build(50);
+        Html expected = parse(doc);
+        MarkupFactory.setThreadFactoryClass(LegacyFactory.class);
+        Html legacy = null;
+        try
+        {
+            legacy = parse(doc);
+        }
+        finally
+        {
+            MarkupFactory.setThreadFactoryClass(null);
+        }
+
+        for (int i=0; i<METHODS.length; i++)
+        {
+            if (_calls[i] == 0)
+            {
+                System.out.println("FAIL: the deprecated " + METHODS[i] + " was not called");
+                failures++;
+            }
+        }
+        if (_longest > 200)
+        {
+            System.out.println("FAIL: a deprecated method was given " + _longest + " characters of a " + doc.length() + " character document");
+            failures++;
+        }
+        if ( !legacy.format(FormatType.HTML).equals(expected.format(FormatType.HTML)) )
+        {
+            System.out.println("FAIL: the formatted html is different");
+            failures++;
+        }
+        if ( legacy.getMap().size() != expected.getMap().size() )
+        {
+            System.out.println("FAIL: " + legacy.getMap().size() + " content was mapped rather then " + expected.getMap().size());
+            failures++;
+        }
+        if (legacy.search(LegacyDiv.class).size() != 50)
+        {
+            System.out.println("FAIL: the factory did not create the divs");
+            failures++;
+        }
+        System.out.println( (failures == 0 ? "PASS" : failures + " failure(s)") );
+        if (failures > 0) System.exit(1);
+    }
+
+    private static Html parse(String doc) throws Exception
+    {
+        Html ret = new Html();
+        ret.setStrict(false);
+        ret.parse(new ParseCursor(doc), FormatType.HTML);
+        return ret;
+    }
+
+    private static void called(int method, StringBuffer text)
+    {
+        _calls[method]++;
+        _longest = Math.max( _longest, text.length() );
+    }
+
+    /**
+     * A factory that overrides the deprecated StringBuffer methods. It passes the tags and tag names
+     * on, but parses text content from the copy it is given.
+     */
+    public static class LegacyFactory extends HtmlMarkupFactory
+    {
+        protected MarkupTag createTag(StringBuffer in, MarkupContent parent, FormatType type, boolean strict, boolean preserveSpaces)
+        throws IllegalMarkupException, UnsupportedFormatException
+        {
+            called(0, in);
+            return super.createTag(in, parent, type, strict, preserveSpaces);
+        }
+
+        protected String getTagName(StringBuffer in) throws IllegalMarkupException
+        {
+            called(1, in);
+            return super.getTagName(in);
+        }
+
+        protected TextContent createTextContent(StringBuffer in, MarkupContent parent, FormatType type, boolean preserveSpaces)
+        throws IllegalMarkupException, UnsupportedFormatException
+        {
+            called(2, in);
+            int index = in.indexOf("<");
+            if (index == -1) index = in.length();
+            StringBuffer text = new StringBuffer( in.substring(0, index) );
+            in.delete(0, index);
+            HtmlTextContent ret = ( parent != null ? new HtmlTextContent(parent) : new HtmlTextContent() );
+            ret.setPreserveWhiteSpace(preserveSpaces);
+            ret.parse(text, type);
+            return ret;
+        }
+
+        protected MarkupTag createTagByName(String name, MarkupContent parent) throws Exception
+        {
+            if ( "div".equalsIgnoreCase(name) && parent instanceof HtmlMarkupTag ) return new LegacyDiv( (HtmlMarkupTag)parent );
+            return super.createTagByName(name, parent);
+        }
+    }
+
+    /**
+     * A div that overrides the deprecated StringBuffer parseText and setAttributes methods.
+     */
+    public static class LegacyDiv extends Div
+    {
+        public LegacyDiv(HtmlMarkupTag parent)
+        {
+            super(parent);
+        }
+
+        public void parseText(StringBuffer text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
+        {
+            called(3, text);
+            super.parseText(text, type);
+        }
+
+        public void setAttributes(StringBuffer in, FormatType type)
+        {
+            called(4, in);
+            super.setAttributes(in, type);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.zitego.markup.html.tag;
+
+import com.zitego.markup.MarkupContent;
+import com.zitego.markup.MarkupMap;
+import com.zitego.markup.html.tag.block.Div;
+import com.zitego.markup.html.tag.block.Span;
+import com.zitego.format.FormatType;
+import java.util.Vector;
+
+/**
+ * Checks that content removed from a document is removed from its map. Every list in the sample
+ * document is removed, which has to take it and everything under it out of the map while the rest
+ * of the document stays mapped under its ids. Adding the lists back has to store them under the
+ * ids they had. Moving a span with a line break to another div, and adding and removing content
+ * many times over, must not change the number of mapped content. This exits with a non zero status
+ * if anything is different.
+ *
+ * @author John Glorioso
+ * @version $Id$
+ */
+public class MapTestHarness
+{
+    public static void main(String[] args) throws Exception
+    {
+        int failures = 0;
+        Html page = new Html();
+        page.parse(SampleDocument.build(10), FormatType.HTML);
+        MarkupMap map = page.getMap();
+        int size = map.size();
+        String expected = page.format(FormatType.HTML);
+
+        Vector lists = page.getTagsByName("ul");
+        Vector removed = new Vector();
+        int[] ids = new int[lists.size()];
+        MarkupContent[] parents = new MarkupContent[lists.size()];
+        int[] indexes = new int[lists.size()];
+        for (int i=0; i<lists.size(); i++)
+        {
+            MarkupContent list = (MarkupContent)lists.get(i);
+            ids[i] = list.getMapId();
+            parents[i] = list.getParent();
+            removed.add(list);
+            removed.addAll( list.search(MarkupContent.class) );
+            indexes[i] = parents[i].removeBodyContent(list);
+        }
+        for (int i=0; i<removed.size(); i++)
+        {
+            MarkupContent content = (MarkupContent)removed.get(i);
+            if (map.get( content.getMapId() ) == content)
+            {
+                System.out.println("FAIL: removed " + content.getClass().getName() + " is still mapped");
+                failures++;
+                break;
+            }
+        }
+        if ( !isMapped(page) )
+        {
+            System.out.println("FAIL: content left in the document is not mapped under its id");
+            failures++;
+        }
+
+        for (int i=lists.size()-1; i>=0; i--)
+        {
+            parents[i].addBodyContent( (MarkupContent)lists.get(i) );
+            parents[i].moveBodyContentTo( indexes[i], (MarkupContent)lists.get(i) );
+        }
+        for (int i=0; i<lists.size(); i++)
+        {
+            if (map.get(ids[i]) != lists.get(i))
+            {
+                System.out.println("FAIL: list " + i + " was not mapped under its old id when added back");
+                failures++;
+                break;
+            }
+        }
+        if ( map.size() != size || !isMapped(page) || !page.format(FormatType.HTML).equals(expected) )
+        {
+            System.out.println("FAIL: adding the lists back did not give back the same document");
+            failures++;
+        }
+
+        //Line breaks go with the content they are on
+        Html moved = new Html();
+        Body body = moved.getBodyTag();
+        Div first = new Div(body);
+        Div second = new Div(body);
+        Span span = new Span(first);
+        span.addBodyContent("x");
+        span.addLineBreak();
+        size = moved.getMap().size();
+        span.setParent(second);
+        if (moved.getMap().size() != size || !isMapped(moved) )
+        {
+            System.out.println("FAIL: moving a span with a line break went from " + size + " to " +
+                               moved.getMap().size() + " mapped content");
+            failures++;
+        }
+
+        //The map only holds what is still in the document
+        size = moved.getMap().size();
+        for (int i=0; i<10000; i++)
+        {
+            Div div = new Div(second);
+            div.addBodyContent("text " + i);
+            second.removeBodyContent(div);
+        }
+        if (moved.getMap().size() != size || !isMapped(moved) )
+        {
+            System.out.println("FAIL: adding and removing content went from " + size + " to " +
+                               moved.getMap().size() + " mapped content");
+            failures++;
+        }
+        System.out.println( (failures == 0 ? "PASS" : failures + " failure(s)") );
+        if (failures > 0) System.exit(1);
+    }
+
+    /**
+     * Returns whether everything in the given document is stored in its map under its own id.
+     *
+     * @param doc The document.
+     * @return boolean
+     */
+    private static boolean isMapped(Html doc)
+    {
+        MarkupMap map = doc.getMap();
+        Vector content = doc.search(MarkupContent.class);
+        for (int i=0; i<content.size(); i++)
+        {
+            MarkupContent c = (MarkupContent)content.get(i);
+            if (map.get( c.getMapId() ) != c) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,116 @@
+package com.zitego.markup.html.tag;
+
+import com.zitego.markup.MappedText;
+import com.zitego.markup.ParseCursor;
+import com.zitego.format.FormatType;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Checks that documents parsed from a memory mapped file come out the same as when they are parsed
+ * from a string. The sample document, the sample document cut off in the middle of a tag, a document
+ * with accented text and attribute values in UTF-8, one in UTF-16 with a byte order mark, and an empty
+ * file are written out and parsed back. The mapped text itself has to decode sub sequences, leave out
+ * the byte order mark, and reject indexes outside of it. This exits with a non zero status if anything
+ * is different.
+ *
+ * @author John Glorioso
+ * @version $Id$
+ */
+public class MappedTextTestHarness
+{
+    public static void main(String[] args) throws Exception
+    {
+        int failures = 0;
+        String sample = SampleDocument.build(50);
+        String accented = "<html><head><meta charset=\"UTF-8\"></head><body><p title=\"caf\u00e9\">\u00fcber "
+                        + "caf\u00e9 \u20ac5</p></body></html>";
+        Object[][] docs =
+        {
+            { sample, "ISO-8859-1" },
+            { sample.substring(0, sample.length()/2) + "<a href=\"x", "ISO-8859-1" },
+            { accented, "UTF-8" },
+            { "\ufeff" + accented, "UTF-16LE" },
+            { "", "ISO-8859-1" }
+        };
+        File f = File.createTempFile("mapped", ".html");
+        f.deleteOnExit();
+        for (int i=0; i<docs.length; i++)
+        {
+            String doc = (String)docs[i][0];
+            write( f, doc.getBytes((String)docs[i][1]) );
+            Html mapped = new Html();
+            mapped.setStrict(false);
+            mapped.parse(f);
+            //The byte order mark is not part of the text
+            if ( doc.startsWith("\ufeff") ) doc = doc.substring(1);
+            Html expected = new Html();
+            expected.setStrict(false);
+            expected.parse(new ParseCursor(doc), FormatType.HTML);
+            if ( !mapped.format(FormatType.HTML).equals(expected.format(FormatType.HTML)) )
+            {
+                System.out.println("FAIL: the " + docs[i][1] + " document " + i + " parses differently from a file");
+                failures++;
+            }
+        }
+
+        //The mapped text
+        write( f, ("\ufeff" + accented).getBytes("UTF-8") );
+        CharSequence text = MappedText.map(f, null);
+        int start = accented.indexOf("<p");
+        int end = accented.indexOf("</p>");
+        byte[] utf8 = accented.getBytes("UTF-8");
+        int byteEnd = end + (utf8.length - accented.length());
+        if ( !(text instanceof MappedText) || !"UTF-8".equals(((MappedText)text).getCharset().name()) )
+        {
+            System.out.println("FAIL: a UTF-8 file was not mapped a byte at a time");
+            failures++;
+        }
+        else if ( text.length() != utf8.length || text.charAt(0) != '<' )
+        {
+            System.out.println("FAIL: the byte order mark is part of the mapped text");
+            failures++;
+        }
+        else if ( !text.subSequence(start, byteEnd).toString().equals(accented.substring(start, end)) )
+        {
+            System.out.println("FAIL: a sub sequence decoded as " + text.subSequence(start, byteEnd));
+            failures++;
+        }
+        try
+        {
+            text.charAt( text.length() );
+            System.out.println("FAIL: a character passed the end was returned");
+            failures++;
+        }
+        catch (IndexOutOfBoundsException ioobe) { }
+        try
+        {
+            text.subSequence(5, 4);
+            System.out.println("FAIL: an invalid range was returned");
+            failures++;
+        }
+        catch (IndexOutOfBoundsException ioobe) { }
+        if ( MappedText.isByteCompatible(Charset.forName("UTF-16LE")) || !MappedText.isByteCompatible(Charset.forName("windows-1252")) )
+        {
+            System.out.println("FAIL: isByteCompatible is wrong");
+            failures++;
+        }
+        f.delete();
+        System.out.println( (failures == 0 ? "PASS" : failures + " failure(s)") );
+        if (failures > 0) System.exit(1);
+    }
+
+    private static void write(File f, byte[] bytes) throws Exception
+    {
+        FileOutputStream out = new FileOutputStream(f);
+        try
+        {
+            out.write(bytes);
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+}
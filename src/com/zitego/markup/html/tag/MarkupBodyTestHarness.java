@@ -0,0 +1,208 @@
+package com.zitego.markup.html.tag;
+
+import com.zitego.markup.MarkupBody;
+import com.zitego.markup.MarkupContent;
+import com.zitego.markup.html.HtmlTextContent;
+import com.zitego.markup.html.tag.block.Div;
+import com.zitego.format.FormatType;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * Checks that MarkupBody finds its children in the right place. A div is given 100000 children
+ * and each has to be found at its index, both right after they are added and after many of them
+ * have been moved around. A body is then changed at random, with content added, inserted, removed,
+ * replaced, and put in a second body at the same time, and every child has to be found where a plain
+ * list has it. The Vector methods that are kept have to work the same way. This exits with a non
+ * zero status if anything is different.
+ *
+ * @author John Glorioso
+ * @version $Id$
+ */
+public class MarkupBodyTestHarness
+{
+    private static final int CHILDREN = 100000;
+    private static int _failures = 0;
+
+    public static void main(String[] args) throws Exception
+    {
+        Html html = new Html();
+        html.parse("<html><body></body></html>", FormatType.HTML);
+        Div div = new Div( html.getBodyTag() );
+        List<MarkupContent> expected = new ArrayList<MarkupContent>();
+        long start = System.currentTimeMillis();
+        for (int i=0; i<CHILDREN; i++)
+        {
+            expected.add( new HtmlTextContent(div, "t" + i) );
+        }
+        check(div, expected, "after they were added");
+
+        //Move every hundredth child to the front and every other hundredth to the end
+        Random random = new Random(18);
+        for (int i=0; i<CHILDREN; i+=100)
+        {
+            MarkupContent c = expected.get(i);
+            expected.remove(i);
+            if (i % 200 == 0)
+            {
+                expected.add(0, c);
+                div.moveBodyContentTo(0, c);
+            }
+            else
+            {
+                expected.add(c);
+                div.moveBodyContentTo(div.getBodySize(), c);
+            }
+        }
+        for (int i=0; i<100; i++)
+        {
+            MarkupContent c = expected.remove( random.nextInt(expected.size()) );
+            if (div.removeBodyContent(c) == -1) fail("a child was not found to be removed");
+            if ( div.indexOfInBody(c) != -1 ) fail("a removed child was still found");
+        }
+        check(div, expected, "after they were moved");
+        long elapsed = System.currentTimeMillis() - start;
+        //Looking each child up by a scan would take many times this long
+        if (elapsed > 20000) fail(CHILDREN + " children took " + elapsed + "ms");
+
+        //Random changes to a body compared to a list
+        MarkupBody body = new MarkupBody(null);
+        MarkupBody other = new MarkupBody(null);
+        List<Object> list = new ArrayList<Object>();
+        List<MarkupContent> all = new ArrayList<MarkupContent>();
+        IdentityHashMap<Object, Object> inOther = new IdentityHashMap<Object, Object>();
+        for (int i=0; i<20000; i++)
+        {
+            MarkupContent c = null;
+            int op = random.nextInt(10);
+            if (op < 4 || list.size() == 0)
+            {
+                c = new HtmlTextContent();
+                all.add(c);
+                int index = ( op < 2 ? list.size() : random.nextInt(list.size()+1) );
+                list.add(index, c);
+                body.add(index, c);
+            }
+            else if (op < 6)
+            {
+                int index = random.nextInt( list.size() );
+                if (list.remove(index) != body.remove(index)) fail("remove(int) removed the wrong child");
+            }
+            else if (op == 6)
+            {
+                Object o = list.get( random.nextInt(list.size()) );
+                list.remove(o);
+                body.remove(o);
+            }
+            else if (op == 7)
+            {
+                c = new HtmlTextContent();
+                all.add(c);
+                int index = random.nextInt( list.size() );
+                if (list.set(index, c) != body.set(index, c)) fail("set replaced the wrong child");
+            }
+            else if (op == 8)
+            {
+                //The same content in a second body
+                Object o = list.get( random.nextInt(list.size()) );
+                if ( !inOther.containsKey(o) ) other.add(0, o);
+                inOther.put(o, o);
+            }
+            else if (random.nextInt(500) == 0)
+            {
+                list.clear();
+                body.clear();
+            }
+            if (i % 500 == 0 || i == 19999)
+            {
+                for (int j=0; j<all.size(); j++)
+                {
+                    c = all.get(j);
+                    if ( body.indexOf(c) != list.indexOf(c) || body.contains(c) != list.contains(c) )
+                    {
+                        fail("child " + j + " was found at " + body.indexOf(c) + " rather then " + list.indexOf(c) + " after " + i + " changes");
+                        break;
+                    }
+                }
+                for (int j=0; j<other.size(); j++)
+                {
+                    if (other.indexOf(other.get(j)) != j)
+                    {
+                        fail("content in two bodies was not found in the second");
+                        break;
+                    }
+                }
+            }
+        }
+        if ( !body.equals(list) || body.indexOf("x") != -1 || body.indexOf(null) != list.indexOf(null) ) fail("the body is not the same as the list");
+
+        //The Vector methods
+        body.clear();
+        try
+        {
+            body.firstElement();
+            fail("firstElement of an empty body did not throw");
+        }
+        catch (NoSuchElementException nsee) { }
+        MarkupContent a = new HtmlTextContent();
+        MarkupContent b = new HtmlTextContent();
+        MarkupContent c = new HtmlTextContent();
+        body.addElement(b);
+        body.insertElementAt(a, 0);
+        body.addElement(c);
+        body.removeElementAt(2);
+        Object[] copy = new Object[2];
+        body.copyInto(copy);
+        Enumeration e = body.elements();
+        if ( body.firstElement() != a || body.lastElement() != b || body.elementAt(1) != b || copy[0] != a || copy[1] != b ||
+             e.nextElement() != a || e.nextElement() != b || e.hasMoreElements() || body.removeElement(c) || !body.removeElement(a) ||
+             body.indexOf(b) != 0 )
+        {
+            fail("the Vector methods are wrong");
+        }
+        body.removeAllElements();
+        if ( body.size() != 0 || body.contains(b) ) fail("removeAllElements left " + body.size() + " children");
+        System.out.println( (_failures == 0 ? "PASS" : _failures + " failure(s)") );
+        if (_failures > 0) System.exit(1);
+    }
+
+    private static void fail(String msg)
+    {
+        System.out.println("FAIL: " + msg);
+        _failures++;
+    }
+
+    /**
+     * Checks that every child is in the div where it is in the list.
+     *
+     * @param div The div.
+     * @param expected The children in order.
+     * @param when When the check is done.
+     */
+    private static void check(Div div, List<MarkupContent> expected, String when)
+    {
+        if (div.getBodySize() != expected.size())
+        {
+            fail("the div has " + div.getBodySize() + " children rather then " + expected.size() + " " + when);
+            return;
+        }
+        IdentityHashMap<MarkupContent, Integer> indexes = new IdentityHashMap<MarkupContent, Integer>();
+        for (int i=0; i<expected.size(); i++)
+        {
+            indexes.put( expected.get(i), Integer.valueOf(i) );
+        }
+        for (int i=0; i<expected.size(); i++)
+        {
+            MarkupContent c = expected.get(i);
+            if ( div.getBodyContent(i) != c || div.indexOfInBody(c) != indexes.get(c).intValue() )
+            {
+                fail("child " + i + " was found at " + div.indexOfInBody(c) + " " + when);
+                return;
+            }
+        }
+    }
+}
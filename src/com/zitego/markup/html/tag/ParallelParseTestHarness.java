@@ -0,0 +1,162 @@
+package com.zitego.markup.html.tag;
+
+import com.zitego.markup.MarkupContent;
+import com.zitego.markup.MarkupMap;
+import com.zitego.format.FormatType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Checks that a document parsed in parallel pieces comes out the same as one parsed on a single
+ * thread. The formatted html, and the class, map id, parent, and settings of every piece of mapped
+ * content are compared. The sample document is parsed as it is and with broken markup put into some
+ * of its sections, such as tags that are never closed, end tags without a start tag, an open quote in
+ * an attribute, and a comment that never ends. The broken documents are parsed leniently and a parse
+ * that fails has to fail the same way on both. This exits with a non zero status if anything is different.
+ *
+ * @author John Glorioso
+ * @version $Id$
+ */
+public class ParallelParseTestHarness
+{
+    /** Broken markup put into the sections as the text to put it after and the text to put there. */
+    private static final String[][] BROKEN =
+    {
+        { "<div id=\"s20\" class=\"section even\">", "<b><i>never closed" },
+        { "<div id=\"s60\" class=\"section even\">", "</div></span></td>" },
+        { "<div id=\"s100\" class=\"section even\">", "<p>a<li COLSPAN=\"3>b</li>" },
+        { "<div id=\"s140\" class=\"section even\">", "<b<<br>x</b>" },
+        { "<div id=\"s180\" class=\"section even\">", "<table><tr><td>cell" },
+        { "<div id=\"s220\" class=\"section even\">", "</form><input type=text name=z>" },
+        { "<div id=\"s390\" class=\"section even\">", "<!-- never ends" }
+    };
+
+    public static void main(String[] args) throws Exception
+    {
+        //Big enough to be split into several pieces
+        String doc = SampleDocument.build(400);
+        String broken = doc;
+        for (int i=0; i<BROKEN.length; i++)
+        {
+            int index = broken.indexOf(BROKEN[i][0]) + BROKEN[i][0].length();
+            broken = broken.substring(0, index) + BROKEN[i][1] + broken.substring(index);
+        }
+        int failures = 0;
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try
+        {
+            for (int i=0; i<2; i++)
+            {
+                boolean preserve = (i == 1);
+                failures += compare(doc, true, preserve, executor, "");
+                failures += compare(broken, false, preserve, executor, " in the broken document");
+            }
+            //Each broken section on its own
+            for (int i=0; i<BROKEN.length; i++)
+            {
+                int index = doc.indexOf(BROKEN[i][0]) + BROKEN[i][0].length();
+                String one = doc.substring(0, index) + BROKEN[i][1] + doc.substring(index);
+                failures += compare(one, false, false, executor, " with " + BROKEN[i][1]);
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+        System.out.println( (failures == 0 ? "PASS" : failures + " failure(s)") );
+        if (failures > 0) System.exit(1);
+    }
+
+    /**
+     * Parses the document on one thread and in parallel and returns the number of differences.
+     *
+     * @param doc The document.
+     * @param strict Whether to parse strictly.
+     * @param preserve Whether to preserve white space.
+     * @param executor The executor.
+     * @param what What is being parsed for the failure messages.
+     * @return int
+     * @throws Exception if the document cannot be formatted.
+     */
+    private static int compare(String doc, boolean strict, boolean preserve, ExecutorService executor, String what) throws Exception
+    {
+        what += " with preserve white space " + preserve;
+        Html sequential = null;
+        Html parallel = null;
+        Exception sequentialError = null;
+        Exception parallelError = null;
+        try
+        {
+            sequential = parse(doc, strict, preserve, null);
+        }
+        catch (Exception e)
+        {
+            sequentialError = e;
+        }
+        try
+        {
+            parallel = parse(doc, strict, preserve, executor);
+        }
+        catch (Exception e)
+        {
+            parallelError = e;
+        }
+
+        if (sequentialError != null || parallelError != null)
+        {
+            if ( sequentialError == null || parallelError == null || sequentialError.getClass() != parallelError.getClass() )
+            {
+                System.out.println("FAIL: parsing failed differently" + what + ": " + sequentialError + " / " + parallelError);
+                return 1;
+            }
+            return 0;
+        }
+        int ret = 0;
+        if ( !sequential.format(FormatType.HTML).equals(parallel.format(FormatType.HTML)) )
+        {
+            System.out.println("FAIL: formatted html is different" + what);
+            ret++;
+        }
+        if ( !describe(sequential).equals(describe(parallel)) )
+        {
+            System.out.println("FAIL: mapped content is different" + what);
+            ret++;
+        }
+        return ret;
+    }
+
+    private static Html parse(String doc, boolean strict, boolean preserve, ExecutorService executor) throws Exception
+    {
+        Html ret = new Html();
+        ret.setStrict(strict);
+        ret.setPreserveWhiteSpace(preserve);
+        ret.setParallelExecutor(executor);
+        ret.parse(doc, FormatType.HTML);
+        return ret;
+    }
+
+    /**
+     * Returns a line for each map id in the document describing the content stored under it.
+     *
+     * @param doc The document.
+     * @return String
+     */
+    private static String describe(Html doc)
+    {
+        MarkupMap map = doc.getMap();
+        StringBuffer ret = new StringBuffer().append( map.size() ).append('\n');
+        for (int id=0, found=0; found<map.size(); id++)
+        {
+            MarkupContent content = map.get(id);
+            if (content == null) continue;
+            found++;
+            MarkupContent parent = content.getParent();
+            ret.append(id).append(' ').append( content.getClass().getName() )
+               .append(' ').append( (parent != null ? parent.getMapId() : -1) )
+               .append(' ').append( content.getBodySize() )
+               .append(' ').append( content.isStrict() ).append(' ').append( content.preserveWhiteSpace() )
+               .append('\n');
+        }
+        return ret.toString();
+    }
+}
@@ -0,0 +1,76 @@
+package com.zitego.markup.html.tag;
+
+import com.zitego.markup.ParseCursor;
+import com.zitego.markup.TextContent;
+import com.zitego.format.FormatType;
+import java.util.IdentityHashMap;
+import java.util.Vector;
+
+/**
+ * Checks that a pooled document that is parsed into, released, and parsed into again comes out
+ * the same as a new document. Documents of different sizes are parsed into the same pooled
+ * document a few times over with preserve white space on and off. Each time the formatted html and
+ * the number of mapped content have to match a new unpooled parse, and after the first round some
+ * of the text content has to be reused from the documents that were released. This exits with a
+ * non zero status if anything is different.
+ *
+ * @author John Glorioso
+ * @version $Id$
+ */
+public class PoolTestHarness
+{
+    public static void main(String[] args) throws Exception
+    {
+        String[] docs = new String[]
+        {
+            SampleDocument.build(5),
+            "<html><body><p>Small <b>document</b> with &amp; entity</p></body></html>",
+            SampleDocument.build(1)
+        };
+        int failures = 0;
+        for (int i=0; i<2; i++)
+        {
+            boolean preserve = (i == 1);
+            Html pooled = new Html();
+            pooled.setPreserveWhiteSpace(preserve);
+            pooled.setPooling(true);
+            IdentityHashMap released = new IdentityHashMap();
+            for (int round=0; round<3; round++)
+            {
+                boolean reused = false;
+                for (int j=0; j<docs.length; j++)
+                {
+                    Html expected = new Html();
+                    expected.setPreserveWhiteSpace(preserve);
+                    expected.parse(docs[j], FormatType.HTML);
+                    pooled.parse(new ParseCursor(docs[j]), FormatType.HTML);
+
+                    if ( !pooled.format(FormatType.HTML).equals(expected.format(FormatType.HTML)) )
+                    {
+                        System.out.println("FAIL: document " + j + " in round " + round + " formats differently with preserve white space " + preserve);
+                        failures++;
+                    }
+                    if ( pooled.getMap().size() != expected.getMap().size() )
+                    {
+                        System.out.println("FAIL: document " + j + " in round " + round + " maps different content with preserve white space " + preserve);
+                        failures++;
+                    }
+                    Vector text = pooled.search(TextContent.class);
+                    for (int k=0; k<text.size(); k++)
+                    {
+                        if ( released.containsKey(text.get(k)) ) reused = true;
+                        else released.put(text.get(k), text.get(k));
+                    }
+                    pooled.release();
+                }
+                if (round > 0 && !reused)
+                {
+                    System.out.println("FAIL: no text content was reused in round " + round + " with preserve white space " + preserve);
+                    failures++;
+                }
+            }
+        }
+        System.out.println( (failures == 0 ? "PASS" : failures + " failure(s)") );
+        if (failures > 0) System.exit(1);
+    }
+}
@@ -0,0 +1,194 @@
+package com.zitego.markup.html.tag;
+
+import com.zitego.markup.MarkupContent;
+import com.zitego.markup.MarkupMap;
+import com.zitego.markup.ParseCursor;
+import com.zitego.format.FormatType;
+import java.util.Random;
+
+/**
+ * Checks that reparsing an edited part of a document comes out the same as parsing the whole
+ * edited document again. Random edits are made to the sample document with lazy parsing and
+ * preserve white space on and off. After each one the kept source has to be the edited text, the
+ * formatted html and the number of mapped content have to match a new parse of that text, and
+ * every mapped content has to be found under its own id. Some of the edits leave the markup broken,
+ * such as an open quote or comment put inside an attribute value, which a full parse reads past the
+ * end of the tag that was edited. Reparsing without an edit must not change the number of mapped
+ * content, even in a broken document. This exits with a non zero status if anything is different.
+ *
+ * @author John Glorioso
+ * @version $Id$
+ */
+public class ReparseTestHarness
+{
+    private static final String[] EDITS =
+    {
+        "x", "<b>bold</b>", "", "</div>", "<div>", "<span>q</span> ", "<td>", "<input type=text name=z>",
+        "<!-- c -->", "&amp;", "<br>", "<p>", "<!-- c", "-->", "\"", "'", "<b", "<<", "</", "<li COLSPAN=\""
+    };
+    /** Edits made before the random ones as the text to put them after and the text to put there. */
+    private static final String[][] BROKEN_EDITS =
+    {
+        { "<li class=\"it", "<!-- c -->" },
+        { "<li class=\"it", "\"" },
+        { "<li c", "'" },
+        { "<div id=\"s1\" cl", "'" },
+        { "<td class=\"head", "<!-- c" },
+        { "<ul id=\"l1\"", " COLSPAN=\"" },
+        { "Entry 2", "<b" },
+        { "</h2", "<" }
+    };
+    /** Broken documents that are reparsed without an edit. */
+    private static final String[] BROKEN_DOCS =
+    {
+        "<html><body><b<<br>x</b></body></html>",
+        "<html><body><p>a<br>b<li COLSPAN=\"3>c</li></body></html>",
+        "<html><body><div><!-- x </div></body></html>"
+    };
+
+    public static void main(String[] args) throws Exception
+    {
+        int edits = (args.length > 0 ? Integer.parseInt(args[0]) : 100);
+        int failures = 0;
+        for (int mode=0; mode<4; mode++)
+        {
+            boolean lazy = ( (mode & 1) == 1 );
+            boolean preserve = ( (mode & 2) == 2 );
+            String doc = SampleDocument.build(3);
+            Html page = parse(doc, lazy, preserve);
+
+            int size = page.getMap().size();
+            for (int i=0; i<3; i++)
+            {
+                page.reparse(0, 0, "");
+            }
+            if (page.getMap().size() != size)
+            {
+                System.out.println("FAIL: reparsing without an edit went from " + size + " to " + page.getMap().size() +
+                                   " mapped content in mode " + mode);
+                failures++;
+            }
+
+            for (int i=0; i<BROKEN_DOCS.length; i++)
+            {
+                Html broken = parse(BROKEN_DOCS[i], lazy, preserve);
+                size = broken.getMap().size();
+                for (int j=0; j<5; j++)
+                {
+                    broken.reparse(0, 0, "");
+                }
+                if (broken.getMap().size() != size)
+                {
+                    System.out.println("FAIL: reparsing broken document " + i + " without an edit went from " + size + " to " +
+                                       broken.getMap().size() + " mapped content in mode " + mode);
+                    failures++;
+                }
+            }
+
+            Random random = new Random(42);
+            for (int i=0; i<BROKEN_EDITS.length+edits; i++)
+            {
+                int start;
+                int end;
+                String replacement;
+                if (i < BROKEN_EDITS.length)
+                {
+                    start = doc.indexOf(BROKEN_EDITS[i][0]);
+                    if (start == -1) continue;
+                    start += BROKEN_EDITS[i][0].length();
+                    end = start;
+                    replacement = BROKEN_EDITS[i][1];
+                }
+                else
+                {
+                    start = random.nextInt( doc.length() );
+                    end = Math.min( doc.length(), start + (random.nextInt(3) == 0 ? random.nextInt(40) : 0) );
+                    replacement = EDITS[random.nextInt(EDITS.length)];
+                }
+                String edited = doc.substring(0, start) + replacement + doc.substring(end);
+                Html expected = null;
+                try
+                {
+                    expected = parse(edited, false, preserve);
+                }
+                catch (Exception e)
+                {
+                    //The edit is not valid markup, so reparsing has to fail too
+                }
+                try
+                {
+                    page.reparse(start, end, replacement);
+                }
+                catch (Exception e)
+                {
+                    if (expected != null)
+                    {
+                        System.out.println("FAIL: reparsing edit " + i + " in mode " + mode + " threw " + e);
+                        failures++;
+                    }
+                    page = parse(doc, lazy, preserve);
+                    continue;
+                }
+                if (expected == null)
+                {
+                    System.out.println("FAIL: reparsing edit " + i + " in mode " + mode + " did not throw");
+                    failures++;
+                    page = parse(doc, lazy, preserve);
+                    continue;
+                }
+                doc = edited;
+                if (lazy) touch(page);
+                touch(expected);
+                String problem = null;
+                if ( !page.getSource().toString().equals(doc) ) problem = "the kept source is different";
+                else if ( !page.format(FormatType.HTML).equals(expected.format(FormatType.HTML)) ) problem = "the formatted html is different";
+                else if ( page.getMap().size() != expected.getMap().size() ) problem = "the number of mapped content is different";
+                else if ( !isMapped(page) ) problem = "content is not found under its id";
+                if (problem != null)
+                {
+                    System.out.println("FAIL: after edit " + i + " [" + start + "," + end + ") '" + replacement + "' in mode " + mode + " " + problem);
+                    failures++;
+                    page = parse(doc, lazy, preserve);
+                }
+            }
+        }
+        System.out.println( (failures == 0 ? "PASS" : failures + " failure(s)") );
+        if (failures > 0) System.exit(1);
+    }
+
+    private static Html parse(String doc, boolean lazy, boolean preserve) throws Exception
+    {
+        Html ret = new Html();
+        ret.setStrict(false);
+        ret.setPreserveWhiteSpace(preserve);
+        ret.setKeepSource(true);
+        ret.setLazyParsing(lazy);
+        ret.parse(new ParseCursor(doc), FormatType.HTML);
+        return ret;
+    }
+
+    /**
+     * Returns whether every content in the given document's map is stored under its own id.
+     *
+     * @param doc The document.
+     * @return boolean
+     */
+    private static boolean isMapped(Html doc)
+    {
+        MarkupMap map = doc.getMap();
+        MarkupContent[] content = map.getContent();
+        for (int i=0; i<content.length; i++)
+        {
+            if (map.get(content[i].getMapId()) != content[i]) return false;
+        }
+        return true;
+    }
+
+    private static void touch(MarkupContent content)
+    {
+        for (int i=0; i<content.getBodySize(); i++)
+        {
+            touch( content.getBodyContent(i) );
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.zitego.markup.html.tag;
+
+/**
+ * This builds the html document that the test harnesses in this package parse. The document is
+ * made of numbered sections that each have a table, a list, a form, a comment, entities, and
+ * tags with ids and classes, so any number of them can be put together to get a document as
+ * large as a harness needs.
+ *
+ * @author John Glorioso
+ * @version $Id$
+ */
+class SampleDocument
+{
+    /**
+     * Returns a document with the given number of sections in the body.
+     *
+     * @param sections The number of sections.
+     * @return String
+     */
+    static String build(int sections)
+    {
+        StringBuffer ret = new StringBuffer()
+            .append("<!DOCTYPE HTML PUBLIC \"-//W3C//DTD HTML 4.01 Transitional//EN\">\r\n")
+            .append("<html>\r\n<head>\r\n<title>Sample &amp; Test</title>\r\n")
+            .append("<style type=\"text/css\">\r\ntd.header { background-color: #D4D0C8 }\r\n</style>\r\n")
+            .append("</head>\r\n<body bgcolor=\"#ffffff\" style=\"font-family:Verdana\">\r\n");
+        for (int i=0; i<sections; i++)
+        {
+            ret.append("<div id=\"s").append(i).append("\" class=\"section ").append( (i%2 == 0 ? "even" : "odd") ).append("\">\r\n")
+               .append("<!-- section ").append(i).append(" -->\r\n")
+               .append("<h2 id=\"h").append(i).append("\">Section ").append(i).append("</h2>\r\n")
+               .append("<table cellpadding=3 cellspacing=0 border=0 class=\"grid\">\r\n")
+               .append("<tr><td class=\"header\">Name</td><td class=\"header\">Value</td></tr>\r\n")
+               .append("<tr><td>Item&nbsp;").append(i).append("</td><td><b>").append(i*7).append("</b> &lt; ")
+               .append(i*7+1).append("</td></tr>\r\n")
+               .append("</table>\r\n")
+               .append("<ul id=\"l").append(i).append("\">\r\n");
+            for (int j=0; j<4; j++)
+            {
+                ret.append("<li class=\"item").append( (j%2 == 0 ? " odd" : "") ).append("\">Entry ").append(j)
+                   .append(" <a href=\"http://example.com/").append(i).append('/').append(j).append(".html\">link</a></li>\r\n");
+            }
+            ret.append("</ul>\r\n")
+               .append("<p>Some <i>text</i> in section ").append(i).append(" with a line break<br>and &quot;quotes&quot;.</p>\r\n")
+               .append("<form action=\"/post\" method=\"post\">\r\n")
+               .append("<input type=\"text\" name=\"f").append(i).append("\" value=\"v").append(i).append("\">\r\n")
+               .append("<input type=\"checkbox\" name=\"c").append(i).append("\" checked>\r\n")
+               .append("</form>\r\n")
+               .append("</div>\r\n");
+        }
+        return ret.append("</body>\r\n</html>\r\n").toString();
+    }
+}
@@ -0,0 +1,153 @@
+package com.zitego.markup.html.tag;
+
+import com.zitego.markup.MarkupContent;
+import com.zitego.markup.Selector;
+import com.zitego.markup.tag.MarkupTag;
+import com.zitego.format.FormatType;
+import java.util.Vector;
+
+/**
+ * Checks the tags that css selectors find. Each selector is run on a document that is indexed and
+ * one that is not, which has to find the same tags in the same order as is expected. Every
+ * :nth-child(an+b) with a and b from -3 to 9 and either sign is checked against the positions that
+ * an+b gives for some n of 0 or more. Selectors that are not valid have to be rejected, and the same
+ * text has to give back the same compiled selector. This exits with a non zero status if anything is
+ * different.
+ *
+ * @author John Glorioso
+ * @version $Id$
+ */
+public class SelectorTestHarness
+{
+    private static final String DOC =
+        "<html><head><title>t</title></head><body>" +
+        "<div id=d1 class=\"a b\"><ul id=u1><li id=l1 class=x>1</li><li id=l2>2</li><li id=l3 class=\"x y\">3</li>" +
+        "<li id=l4>4</li><li id=l5>5</li><li id=l6>6</li><li id=l7>7</li><li id=l8>8</li></ul></div>" +
+        "<div id=d2 class=b><span id=p1><a id=a1 href=\"http://x.com/a.gif\" lang=en-US>x</a></span>" +
+        "<a id=a2 href=/rel title=\"hello world\">y</a><input id=i1 type=checkbox checked></div>" +
+        "</body></html>";
+
+    private static int _failures = 0;
+
+    public static void main(String[] args) throws Exception
+    {
+        for (int i=0; i<2; i++)
+        {
+            Html page = new Html();
+            page.setIndexing(i == 1);
+            page.parse(DOC, FormatType.HTML);
+            String desc = (i == 1 ? "indexed" : "walked");
+
+            check(desc, page, "li", "l1,l2,l3,l4,l5,l6,l7,l8");
+            check(desc, page, "LI.x", "l1,l3");
+            check(desc, page, ".x.y", "l3");
+            check(desc, page, "#l2", "l2");
+            check(desc, page, "div > ul > li:nth-child(2)", "l2");
+            check(desc, page, "li:nth-child(odd)", "l1,l3,l5,l7");
+            check(desc, page, "li:nth-child(even)", "l2,l4,l6,l8");
+            check(desc, page, "li:first-child, li:last-child", "l1,l8");
+            check(desc, page, "div a", "a1,a2");
+            check(desc, page, "div > a", "a2");
+            check(desc, page, "div.b > span a", "a1");
+            check(desc, page, "body div.a li.x", "l1,l3");
+            check(desc, page, "html > body > div", "d1,d2");
+            check(desc, page, "[href]", "a1,a2");
+            check(desc, page, "a[href^=http]", "a1");
+            check(desc, page, "a[href$='.gif']", "a1");
+            check(desc, page, "a[title~=world]", "a2");
+            check(desc, page, "a[title*=\"lo w\"]", "a2");
+            check(desc, page, "[lang|=en]", "a1");
+            check(desc, page, "input[type=checkbox]", "i1");
+            check(desc, page, "#d2 *", "p1,a1,a2,i1");
+            check(desc, page, "ul li.x, #a2, span", "l1,l3,p1,a2");
+            check(desc, page, "#d1 li:nth-child(-n+2)", "l1,l2");
+            check(desc, page, "#d2 li", "");
+            check(desc, page, "em", "");
+            check(desc, page, "#nope", "");
+            check(desc, page.getBodyTag(), "body", "body");
+            check(desc, page.getBodyTag(), "div#d1 li.x", "l1,l3");
+            //The tag with the id is above the content looked under
+            check( desc, page.getTagById("u1"), "#d1 li.y", "l3" );
+
+            for (int a=-3; a<=9; a++)
+            {
+                for (int b=-3; b<=9; b++)
+                {
+                    StringBuffer expected = new StringBuffer();
+                    for (int position=1; position<=8; position++)
+                    {
+                        boolean matches = (a == 0 ? position == b : (position-b) % a == 0 && (position-b) / a >= 0);
+                        if (matches) expected.append( (expected.length() > 0 ? "," : "") ).append("l").append(position);
+                    }
+                    String nth = (a == 1 ? "" : (a == -1 ? "-" : String.valueOf(a))) + "n" + (b < 0 ? "" : "+") + b;
+                    check( desc, page, "li:nth-child(" + nth + ")", expected.toString() );
+                    if (a == 0) check( desc, page, "li:nth-child(" + b + ")", expected.toString() );
+                    if (a > 0) check( desc, page, "li:nth-child( +" + nth + " )", expected.toString() );
+                }
+            }
+        }
+
+        String[] invalid = new String[] { "", "div >", "[a", "li:nth-child(x)", "li:nth-child(2n+)", "li:nth-child(n+-1)", "a,,b", ":hover", "#" };
+        for (int i=0; i<invalid.length; i++)
+        {
+            try
+            {
+                Selector.compile(invalid[i]);
+                System.out.println("FAIL: '" + invalid[i] + "' was not rejected");
+                _failures++;
+            }
+            catch (IllegalArgumentException iae) { }
+        }
+
+        if ( Selector.compile("li.x") != Selector.compile("li.x") )
+        {
+            System.out.println("FAIL: the same selector text was compiled twice");
+            _failures++;
+        }
+        //More selectors then are kept still have to work after the cache is cleared
+        Html page = new Html();
+        page.parse(DOC, FormatType.HTML);
+        for (int i=0; i<600; i++)
+        {
+            String item = "l" + (i%8+1);
+            //The first div is before the items in it and the second is after them
+            if (i%2 == 0) check("cached", page, "#" + item + ", #d1", "d1," + item);
+            else check("cached", page, "#" + item + ", #d2", item + ",d2");
+        }
+        System.out.println( (_failures == 0 ? "PASS" : _failures + " failure(s)") );
+        if (_failures > 0) System.exit(1);
+    }
+
+    /**
+     * Runs the given selector under the given content with select and selectFirst and checks that it
+     * finds the tags with the given comma separated ids or tag names in that order.
+     *
+     * @param desc The document being looked in.
+     * @param root The content to look under.
+     * @param selector The selector.
+     * @param expected The ids or tag names.
+     */
+    private static void check(String desc, MarkupContent root, String selector, String expected)
+    {
+        Vector<MarkupContent> found = root.select(selector);
+        StringBuffer got = new StringBuffer();
+        for (int i=0; i<found.size(); i++)
+        {
+            if (i > 0) got.append(',');
+            got.append( describe((MarkupTag)found.get(i)) );
+        }
+        MarkupTag first = root.selectFirst(selector);
+        boolean firstMatches = ( found.size() == 0 ? first == null : first == found.get(0) );
+        if ( !got.toString().equals(expected) || !firstMatches )
+        {
+            System.out.println("FAIL: " + desc + " '" + selector + "' found " + got + " instead of " + expected +
+                               (firstMatches ? "" : " and selectFirst found " + (first != null ? describe(first) : null)) );
+            _failures++;
+        }
+    }
+
+    private static String describe(MarkupTag tag)
+    {
+        return (tag.getIdAttribute() != null ? tag.getIdAttribute() : tag.getTagName());
+    }
+}
@@ -0,0 +1,171 @@
+package com.zitego.markup.html.tag;
+
+import com.zitego.markup.MarkupContent;
+import com.zitego.markup.html.tag.block.Div;
+import com.zitego.format.FormatType;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks that content takes the strict and preserve white space settings from the right place. A
+ * tree of divs is changed at random, with the settings set on some of them and some of them moved
+ * under other divs, and every div has to have the settings of the nearest div above it, or itself,
+ * that they were set on. A chain of 20000 nested divs has to work out its settings without running
+ * out of stack. This exits with a non zero status if anything is different.
+ *
+ * @author John Glorioso
+ * @version $Id$
+ */
+public class SettingsTestHarness
+{
+    private static final int DIVS = 3000;
+    private static final int CHAIN = 20000;
+    private static int _failures = 0;
+    /** The parent of each div. */
+    private static IdentityHashMap<MarkupContent, MarkupContent> _parents = new IdentityHashMap<MarkupContent, MarkupContent>();
+    /** The strict setting each div was given. */
+    private static IdentityHashMap<MarkupContent, Boolean> _strict = new IdentityHashMap<MarkupContent, Boolean>();
+    /** The preserve white space setting each div was given. */
+    private static IdentityHashMap<MarkupContent, Boolean> _preserve = new IdentityHashMap<MarkupContent, Boolean>();
+
+    public static void main(String[] args) throws Exception
+    {
+        Html html = new Html();
+        html.parse("<html><body></body></html>", FormatType.HTML);
+        html.setStrict(true);
+        html.setPreserveWhiteSpace(false);
+        _strict.put(html, Boolean.TRUE);
+        _preserve.put(html, Boolean.FALSE);
+        Body body = html.getBodyTag();
+        _parents.put(body, html);
+
+        Random random = new Random(20);
+        List<Div> divs = new ArrayList<Div>();
+        for (int i=0; i<DIVS; i++)
+        {
+            HtmlMarkupTag parent = (i == 0 ? body : divs.get( random.nextInt(i) ));
+            Div div = new Div(parent);
+            _parents.put(div, parent);
+            divs.add(div);
+        }
+        check(divs, "after they were added");
+
+        for (int i=0; i<5000 && _failures < 10; i++)
+        {
+            Div div = divs.get( random.nextInt(DIVS) );
+            int op = random.nextInt(10);
+            if (op < 3)
+            {
+                boolean value = random.nextBoolean();
+                div.setStrict(value);
+                set(_strict, div, value);
+            }
+            else if (op < 6)
+            {
+                boolean value = random.nextBoolean();
+                div.setPreserveWhiteSpace(value);
+                set(_preserve, div, value);
+            }
+            else if (op < 8)
+            {
+                //Move it under a div that is not under it
+                MarkupContent parent = divs.get( random.nextInt(DIVS) );
+                if ( isUnder(parent, div) ) parent = body;
+                div.setParent(parent);
+                _parents.put(div, parent);
+                _strict.remove(div);
+                _preserve.remove(div);
+            }
+            else
+            {
+                if ( div.isStrict() != expected(_strict, div) ) fail(div + " was strict " + div.isStrict() + " after " + i + " changes");
+                if ( div.preserveWhiteSpace() != expected(_preserve, div) ) fail(div + " preserved white space " + div.preserveWhiteSpace() + " after " + i + " changes");
+            }
+            if (i % 500 == 499) check(divs, "after " + (i+1) + " changes");
+        }
+
+        //A deep chain, built in a batch so each div does not set all of the ones above it as changed
+        html.beginBatch();
+        Div top = new Div(body);
+        Div leaf = top;
+        Div middle = null;
+        for (int i=0; i<CHAIN; i++)
+        {
+            leaf = new Div(leaf);
+            if (i == CHAIN/2) middle = leaf;
+        }
+        html.endBatch();
+        try
+        {
+            if ( !leaf.isStrict() || leaf.preserveWhiteSpace() ) fail("the end of the chain did not take the settings of the body");
+            middle.setStrict(false);
+            middle.setPreserveWhiteSpace(true);
+            if ( leaf.isStrict() || !leaf.preserveWhiteSpace() ) fail("the end of the chain did not take the settings of the middle");
+            if ( !top.isStrict() || top.preserveWhiteSpace() ) fail("the top of the chain took the settings of the middle");
+            top.setStrict(true);
+            if ( !leaf.isStrict() || !leaf.preserveWhiteSpace() ) fail("the strict setting of the top did not replace the middle's");
+        }
+        catch (StackOverflowError e)
+        {
+            fail("a chain of " + CHAIN + " divs ran out of stack");
+        }
+
+        System.out.println( (_failures == 0 ? "PASS" : _failures + " failure(s)") );
+        if (_failures > 0) System.exit(1);
+    }
+
+    /**
+     * Sets the setting on the given div and makes everything under it take it from the div.
+     */
+    private static void set(IdentityHashMap<MarkupContent, Boolean> settings, MarkupContent div, boolean value)
+    {
+        for (Object c : settings.keySet().toArray())
+        {
+            if ( isUnder((MarkupContent)c, div) ) settings.remove(c);
+        }
+        settings.put( div, Boolean.valueOf(value) );
+    }
+
+    /**
+     * Returns whether the content is the given parent or is somewhere under it.
+     */
+    private static boolean isUnder(MarkupContent content, MarkupContent parent)
+    {
+        for (MarkupContent c=content; c != null; c=_parents.get(c))
+        {
+            if (c == parent) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the setting of the nearest content to the given div that it was set on.
+     */
+    private static boolean expected(IdentityHashMap<MarkupContent, Boolean> settings, MarkupContent div)
+    {
+        for (MarkupContent c=div; c != null; c=_parents.get(c))
+        {
+            Boolean value = settings.get(c);
+            if (value != null) return value.booleanValue();
+        }
+        throw new IllegalStateException(div + " is not under the html");
+    }
+
+    private static void check(List<Div> divs, String when)
+    {
+        int wrong = 0;
+        for (Div div : divs)
+        {
+            if ( div.isStrict() != expected(_strict, div) || div.preserveWhiteSpace() != expected(_preserve, div) ) wrong++;
+        }
+        if (wrong > 0) fail(wrong + " divs had the wrong settings " + when);
+    }
+
+    private static void fail(String msg)
+    {
+        System.out.println("FAIL: " + msg);
+        _failures++;
+    }
+}
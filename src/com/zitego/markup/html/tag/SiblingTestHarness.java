@@ -0,0 +1,115 @@
+package com.zitego.markup.html.tag;
+
+import com.zitego.markup.html.javascript.Function;
+import com.zitego.markup.html.tag.table.Tr;
+import com.zitego.format.FormatType;
+
+/**
+ * Checks that long runs of sibling content are parsed in a loop rather then by recursion. A table
+ * with 20000 rows, a script with 20000 statements, and a body with 20000 end tags that do not belong
+ * to anything are parsed on a thread with a small stack and have to come out with all of their
+ * content. Broken scripts, such as a string or a function that never ends, have to finish parsing
+ * rather then loop forever. This exits with a non zero status if anything is different.
+ *
+ * @author John Glorioso
+ * @version $Id$
+ */
+public class SiblingTestHarness
+{
+    private static final int SIBLINGS = 20000;
+    /** Scripts that are broken. */
+    private static final String[] BROKEN_SCRIPTS =
+    {
+        "var s = 'never ends", "function f( {", "function", "x = 1;; ; ;", "if (a) { b = \"c;", "<b>x</b> y = <i"
+    };
+    private static int _failures = 0;
+
+    public static void main(String[] args) throws Exception
+    {
+        //The stack is small enough that parsing a sibling per call would run out of it
+        Thread thread = new Thread(null, new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    check();
+                }
+                catch (Throwable t)
+                {
+                    System.out.println("FAIL: " + t);
+                    _failures++;
+                }
+            }
+        }, "parse", 512*1024);
+        thread.setDaemon(true);
+        thread.start();
+        thread.join(60000);
+        if ( thread.isAlive() )
+        {
+            System.out.println("FAIL: parsing did not finish");
+            _failures++;
+        }
+        System.out.println( (_failures == 0 ? "PASS" : _failures + " failure(s)") );
+        System.exit( (_failures == 0 ? 0 : 1) );
+    }
+
+    private static void check() throws Exception
+    {
+        StringBuffer table = new StringBuffer("<html><body><table>");
+        StringBuffer script = new StringBuffer("<html><head><script>\r\n");
+        StringBuffer ends = new StringBuffer("<html><body>");
+        for (int i=0; i<SIBLINGS; i++)
+        {
+            table.append("<tr><td>").append(i).append("</td></tr>\r\n");
+            script.append("x").append(i).append(" = ").append(i).append(";\r\n");
+            ends.append("</span>");
+        }
+        table.append("</table></body></html>");
+        script.append("function last() { return 1; }\r\n</script></head><body></body></html>");
+        ends.append("<b>after</b></body></html>");
+
+        Html page = parse(table.toString(), true);
+        int rows = page.search(Tr.class).size();
+        if (rows != SIBLINGS)
+        {
+            System.out.println("FAIL: found " + rows + " table rows rather then " + SIBLINGS);
+            _failures++;
+        }
+
+        page = parse(script.toString(), true);
+        String html = page.format(FormatType.HTML);
+        if ( html.indexOf("x" + (SIBLINGS-1) + " = " + (SIBLINGS-1) + ";") == -1 || page.search(Function.class).size() != 1 )
+        {
+            System.out.println("FAIL: the end of a long script was not parsed");
+            _failures++;
+        }
+
+        page = parse(ends.toString(), false);
+        if (page.getTagsByName("b").size() != 1)
+        {
+            System.out.println("FAIL: the tag after a run of stray end tags was not parsed");
+            _failures++;
+        }
+
+        for (int i=0; i<BROKEN_SCRIPTS.length; i++)
+        {
+            try
+            {
+                parse("<html><head><script>" + BROKEN_SCRIPTS[i] + "</script></head><body><b>after</b></body></html>", false);
+            }
+            catch (Exception e)
+            {
+                //Failing is fine as long as it finishes
+            }
+        }
+    }
+
+    private static Html parse(String doc, boolean strict) throws Exception
+    {
+        Html ret = new Html();
+        ret.setStrict(strict);
+        ret.parse(doc, FormatType.HTML);
+        return ret;
+    }
+}
@@ -336,7 +336,7 @@ public class Style extends HtmlMarkupTag
         return new StyleBody(this);
     }
 
-    public void parseText(StringBuffer text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
+    public void parseText(ParseCursor text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
     {
         super.parseText(text, type);
         //Set the style declarations
@@ -351,6 +351,12 @@ public class Style extends HtmlMarkupTag
         }
     }
 
+    protected boolean canParseBodyLazily()
+    {
+        //The style declarations are looked for as soon as it is parsed
+        return false;
+    }
+
     /**
      * Parses the given text for style declarations. They typically appear in the format
      * of:<br>
@@ -367,11 +373,33 @@ public class Style extends HtmlMarkupTag
      * @return StyleDeclaration[]
      */
     public static StyleDeclaration[] parseForStyleDeclarations(StringBuffer text, MarkupContent parent)
+    {
+        if (text == null) return new StyleDeclaration[0];
+        ParseCursor in = new ParseCursor( text.toString() );
+        try
+        {
+            return parseForStyleDeclarations(in, parent);
+        }
+        finally
+        {
+            text.delete( 0, in.getPosition() );
+        }
+    }
+
+    /**
+     * Parses the text at the given cursor for style declarations. The cursor is left at the
+     * first character after the last declaration.
+     *
+     * @param text The text to parse.
+     * @param parent The parent markup content.
+     * @return StyleDeclaration[]
+     */
+    public static StyleDeclaration[] parseForStyleDeclarations(ParseCursor text, MarkupContent parent)
     {
         StyleDeclaration[] decs = new StyleDeclaration[0];
         if (text == null) return decs;
         Vector tmp = new Vector();
-        while (text.length() > 0 && text.charAt(0) != '<' && text.indexOf("{") > -1)
+        while (text.length() > 0 && text.charAt(0) != '<' && text.indexOf('{') > -1)
         {
             StyleDeclaration dec = null;
             if (parent != null)
@@ -394,7 +422,7 @@ public class Style extends HtmlMarkupTag
                 throw new RuntimeException("An error occurred parsing the style declaration:", ime);
             }
             tmp.add(dec);
-            removeLeadingSpaces(text);
+            skipLeadingSpaces(text);
         }
         decs = new StyleDeclaration[tmp.size()];
         tmp.copyInto(decs);
@@ -413,11 +441,11 @@ public class Style extends HtmlMarkupTag
             super(content);
         }
 
-        public void parseText(StringBuffer text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
+        public void parseText(ParseCursor text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
         {
             if (text == null) return;
 
-            removeLeadingSpaces(text);
+            skipLeadingSpaces(text);
             if (text.length() > 0)
             {
                 if (text.charAt(0) == '<')
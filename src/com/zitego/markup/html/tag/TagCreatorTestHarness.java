@@ -0,0 +1,179 @@
+package com.zitego.markup.html.tag;
+
+import com.zitego.markup.MarkupContent;
+import com.zitego.markup.html.HtmlMarkupFactory;
+import com.zitego.markup.html.tag.block.Div;
+import com.zitego.markup.tag.Doctype;
+import com.zitego.markup.tag.MarkupTag;
+import com.zitego.format.FormatType;
+import java.util.Vector;
+
+/**
+ * Checks that the tag creators registered with HtmlMarkupFactory create the same tags as looking
+ * up a constructor by reflection. Every tag name that is created from a constructor is created with
+ * parents of many kinds and has to come out as the same class, or not be created at all, each way.
+ * Comments and doctypes have to be created in any parent. The h1 through h6 tags have to
+ * get their sizes in any case, and a factory that maps a name to another class through getTagClass
+ * has to get that class. This exits with a non zero status if anything is different.
+ *
+ * @author John Glorioso
+ * @version $Id$
+ */
+public class TagCreatorTestHarness
+{
+    private static final String[] NAMES =
+    {
+        "a", "applet", "area", "base", "body", "br", "frame", "frameset", "head", "h1", "h2",
+        "h3", "h4", "h5", "h6", "hr", "html", "iframe", "img", "link", "map", "meta", "nobr", "noframes",
+        "noscript", "object", "param", "script", "style", "title", "address", "blockquote", "div", "p", "span",
+        "button", "checkbox", "fieldset", "file", "form", "hidden", "image", "label", "legend", "optgroup",
+        "option", "password", "radio", "reset", "select", "submit", "text", "textarea", "dd", "dl", "dt", "li",
+        "ol", "ul", "caption", "table", "tbody", "td", "tfoot", "th", "thead", "tr", "big", "b", "cite", "code",
+        "del", "dfn", "em", "font", "ins", "i", "kbd", "pre", "samp", "small", "strike", "strong", "sub", "sup",
+        "tt", "u", "var", "xmp"
+    };
+    /** The tag names of the parents to create each tag in or null for no parent. */
+    private static final String[] PARENTS =
+    {
+        null, "html", "head", "body", "table", "tr", "td", "form", "select", "ul", "dl", "div", "script"
+    };
+    /** The document the parents are found in. */
+    private static final String DOC = "<html><head><script>x = 1;</script></head><body><table><tr><td>a</td></tr></table>"
+                                    + "<form><select><option>b</select></form><ul><li>c</ul><dl><dt>d</dl><div>e</div></body></html>";
+
+    public static void main(String[] args) throws Exception
+    {
+        int failures = 0;
+        TestFactory factory = new TestFactory();
+        for (int i=0; i<NAMES.length; i++)
+        {
+            if (factory.getTagClass(NAMES[i]) == null)
+            {
+                System.out.println("FAIL: " + NAMES[i] + " has no tag class");
+                failures++;
+            }
+            for (int j=0; j<PARENTS.length; j++)
+            {
+                String registered = null;
+                try
+                {
+                    registered = describe( factory.createTagByName(NAMES[i], parent(PARENTS[j])) );
+                }
+                catch (Exception e)
+                {
+                    registered = e.getClass().getName();
+                }
+                Object[] size = ( NAMES[i].matches("h[1-6]") ? new Object[] { Integer.valueOf(NAMES[i].substring(1)) } : null );
+                String reflected = null;
+                try
+                {
+                    reflected = describe( factory.createTagInstance(factory.getTagClass(NAMES[i]), parent(PARENTS[j]), size) );
+                }
+                catch (Exception e)
+                {
+                    reflected = e.getClass().getName();
+                }
+                if ( !registered.equals(reflected) )
+                {
+                    System.out.println("FAIL: " + NAMES[i] + " in " + PARENTS[j] + " was " + registered + " rather then " + reflected);
+                    failures++;
+                }
+            }
+        }
+
+        for (int i=0; i<PARENTS.length; i++)
+        {
+            if ( !(factory.createTagByName("!--", parent(PARENTS[i])) instanceof HtmlCommentTag) ||
+                 !(factory.createTagByName("!DOCTYPE", parent(PARENTS[i])) instanceof Doctype) )
+            {
+                System.out.println("FAIL: a comment or doctype was not created in " + PARENTS[i]);
+                failures++;
+            }
+        }
+
+        for (int i=1; i<=6; i++)
+        {
+            MarkupTag tag = factory.createTagByName( (i % 2 == 0 ? "H" : "h") + i, parent("body") );
+            if ( !(tag instanceof Header) || ((Header)tag).getHeaderSize() != i )
+            {
+                System.out.println("FAIL: h" + i + " was " + describe(tag));
+                failures++;
+            }
+        }
+
+        factory.setWide(true);
+        MarkupTag tag = factory.createTagByName("DIV", parent("body"));
+        if (tag == null || tag.getClass() != WideDiv.class)
+        {
+            System.out.println("FAIL: a div mapped to another class was " + describe(tag));
+            failures++;
+        }
+        System.out.println( (failures == 0 ? "PASS" : failures + " failure(s)") );
+        if (failures > 0) System.exit(1);
+    }
+
+    /**
+     * Returns the first tag with the given name in a newly parsed copy of the document or null
+     * if the name is null.
+     *
+     * @param name The tag name.
+     * @return MarkupContent
+     * @throws Exception if an error occurs parsing.
+     */
+    private static MarkupContent parent(String name) throws Exception
+    {
+        if (name == null) return null;
+        Html html = new Html();
+        html.setStrict(false);
+        html.parse(DOC, FormatType.HTML);
+        if ( "html".equals(name) ) return html;
+        Vector<MarkupContent> tags = html.getTagsByName(name);
+        if (tags.size() == 0) throw new IllegalStateException("the document has no " + name);
+        return tags.get(0);
+    }
+
+    private static String describe(MarkupTag tag)
+    {
+        return ( tag != null ? tag.getClass().getName() : "null" );
+    }
+
+    /**
+     * A factory that exposes how tags are created and can map div to another class.
+     */
+    private static class TestFactory extends HtmlMarkupFactory
+    {
+        private boolean _wide = false;
+
+        private void setWide(boolean wide)
+        {
+            _wide = wide;
+        }
+
+        protected MarkupTag createTagByName(String name, MarkupContent parent) throws Exception
+        {
+            return super.createTagByName(name, parent);
+        }
+
+        protected Class getTagClass(String name)
+        {
+            if ( _wide && "div".equalsIgnoreCase(name) ) return WideDiv.class;
+            return super.getTagClass(name);
+        }
+
+        protected MarkupTag createTagInstance(Class tagClass, MarkupContent parent, Object[] args) throws Exception
+        {
+            return super.createTagInstance(tagClass, parent, args);
+        }
+    }
+
+    /**
+     * A div that is created in place of the normal one.
+     */
+    public static class WideDiv extends Div
+    {
+        public WideDiv(HtmlMarkupTag parent)
+        {
+            super(parent);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.zitego.markup.html.tag;
+
+import com.zitego.markup.MarkupContent;
+import com.zitego.markup.html.tag.block.Div;
+import com.zitego.markup.tag.TagSymbol;
+import com.zitego.format.FormatType;
+import java.util.Vector;
+
+/**
+ * Checks that tag names resolve to the same TagSymbol however they are spelled. Names are interned
+ * and looked up in different cases, from a String and from a range of characters in a larger text,
+ * and by several threads at once while the table grows. A document with tags and end tags in mixed
+ * case has to nest the same as one in lower case, and tags that are not known have to keep their
+ * spelling. This exits with a non zero status if anything is different.
+ *
+ * @author John Glorioso
+ * @version $Id$
+ */
+public class TagSymbolTestHarness
+{
+    private static final int THREADS = 8;
+    private static final int NAMES = 2000;
+    private static int _failures = 0;
+
+    public static void main(String[] args) throws Exception
+    {
+        TagSymbol div = TagSymbol.intern("div");
+        if ( TagSymbol.intern("DIV") != div || TagSymbol.lookup("Div") != div || !"div".equals(div.getName()) )
+        {
+            fail("div is not one symbol in every case");
+        }
+        String text = "<p><dIv class=x>";
+        if ( TagSymbol.lookup(text, 4, 7) != div || TagSymbol.lookup(text, 4, 6) != null || TagSymbol.lookup(text, 4, 4) != null )
+        {
+            fail("looking up a range of characters is wrong");
+        }
+        if ( !div.matches(text, 4, 7) || div.isSpelledBy(text, 4, 7) || !div.isSpelledBy("div", 0, 3) || div.matches(text, 4, 8) )
+        {
+            fail("matches or isSpelledBy is wrong");
+        }
+        if ( TagSymbol.lookup("never-interned-tag") != null || TagSymbol.lookup(null) != null )
+        {
+            fail("a name that was not interned has a symbol");
+        }
+        try
+        {
+            TagSymbol.intern("");
+            fail("an empty name was interned");
+        }
+        catch (IllegalArgumentException iae) { }
+
+        //Threads intern and look up the same names in different cases while the table grows
+        final TagSymbol[][] found = new TagSymbol[THREADS][NAMES];
+        Thread[] threads = new Thread[THREADS];
+        for (int i=0; i<THREADS; i++)
+        {
+            final int thread = i;
+            threads[i] = new Thread()
+            {
+                public void run()
+                {
+                    for (int j=0; j<NAMES; j++)
+                    {
+                        String name = "tag" + j;
+                        if ( (thread+j) % 2 == 0 ) name = name.toUpperCase();
+                        TagSymbol symbol = TagSymbol.intern(name);
+                        if (TagSymbol.lookup(name) != symbol) found[thread][j] = null;
+                        else found[thread][j] = symbol;
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (int i=0; i<THREADS; i++)
+        {
+            threads[i].join();
+        }
+        int different = 0;
+        for (int j=0; j<NAMES; j++)
+        {
+            TagSymbol symbol = TagSymbol.lookup("Tag" + j);
+            for (int i=0; i<THREADS; i++)
+            {
+                if (found[i][j] == null || found[i][j] != symbol) different++;
+            }
+        }
+        if (different > 0) fail(different + " names resolved to different symbols across threads");
+        if (TagSymbol.lookup("div") != div) fail("div changed symbols as the table grew");
+
+        //Mixed case tags nest the same as lower case ones
+        Html html = parse("<html><body><DIV id=a><Div id=b>x</dIV><b>y</B></div><p>z</P></body></html>");
+        Vector divs = html.search(Div.class);
+        Vector<MarkupContent> bold = html.getTagsByName("b");
+        if ( divs.size() != 2 || ( (MarkupContent)divs.get(1) ).getParent() != divs.get(0) )
+        {
+            fail("mixed case divs did not nest");
+        }
+        else if ( bold.size() != 1 || bold.get(0).getParent() != divs.get(0) )
+        {
+            fail("a mixed case end tag did not end its div");
+        }
+        String formatted = parse("<html><body><Custom>x</CUSTOM></body></html>").format(FormatType.HTML);
+        if (formatted.indexOf("<Custom>") == -1)
+        {
+            fail("an unknown tag lost its spelling: " + formatted);
+        }
+        System.out.println( (_failures == 0 ? "PASS" : _failures + " failure(s)") );
+        if (_failures > 0) System.exit(1);
+    }
+
+    private static void fail(String msg)
+    {
+        System.out.println("FAIL: " + msg);
+        _failures++;
+    }
+
+    private static Html parse(String doc) throws Exception
+    {
+        Html ret = new Html();
+        ret.setStrict(false);
+        ret.parse(doc, FormatType.HTML);
+        return ret;
+    }
+}
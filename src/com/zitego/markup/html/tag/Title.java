@@ -139,7 +139,7 @@ public class Title extends HtmlMarkupTag
         else return super.createTextEffect(type);
     }
 
-    public void parseText(StringBuffer text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
+    public void parseText(ParseCursor text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
     {
         super.parseText(text, type);
         //Set the title
@@ -154,4 +154,10 @@ public class Title extends HtmlMarkupTag
             }
         }
     }
+
+    protected boolean canParseBodyLazily()
+    {
+        //The title text is looked for as soon as it is parsed
+        return false;
+    }
 }
\ No newline at end of file
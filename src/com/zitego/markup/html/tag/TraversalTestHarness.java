@@ -0,0 +1,166 @@
+package com.zitego.markup.html.tag;
+
+import com.zitego.markup.MarkupContent;
+import com.zitego.markup.html.tag.block.Div;
+import com.zitego.format.FormatType;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Vector;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Checks that going through content with descendants(), children(), and ancestors() gives the same
+ * content in the same order as walking it recursively. This is checked for every content in the
+ * sample document parsed all at once and lazily. The document that is parsed all at once is also
+ * gone through with parallel streams, which have to split it and still give the content in order.
+ * A chain of divs deeper then a recursive walk could go has to be gone through completely, and the
+ * iterators have to refuse to remove content or go past the end. This exits with a non zero status
+ * if anything is different.
+ *
+ * @author John Glorioso
+ * @version $Id$
+ */
+public class TraversalTestHarness
+{
+    private static int _failures = 0;
+
+    public static void main(String[] args) throws Exception
+    {
+        String doc = SampleDocument.build(5);
+        for (int i=0; i<2; i++)
+        {
+            boolean lazy = (i == 1);
+            Html page = new Html();
+            page.setLazyParsing(lazy);
+            page.parse(doc, FormatType.HTML);
+
+            //Going through the lazy document first parses its bodies as they are come to
+            Vector got = collect( page.descendants() );
+            Vector walked = new Vector();
+            walk(page, walked);
+            compare("descendants of the document lazy " + lazy, walked, got);
+            if (!lazy)
+            {
+                compare( "parallel descendants of the document", walked, new Vector(page.descendants().parallel().collect(Collectors.toList())) );
+                Spliterator split = page.descendants().spliterator();
+                if (split.trySplit() == null)
+                {
+                    System.out.println("FAIL: the descendants of the document were not split");
+                    _failures++;
+                }
+                if (page.getBodyTag().descendants().parallel().filter(c -> c instanceof Div).count() != 5)
+                {
+                    System.out.println("FAIL: did not count the divs in parallel");
+                    _failures++;
+                }
+            }
+            for (int j=0; j<walked.size(); j++)
+            {
+                MarkupContent content = (MarkupContent)walked.get(j);
+                Vector children = new Vector();
+                for (int k=0; k<content.getBodySize(); k++)
+                {
+                    children.add( content.getBodyContent(k) );
+                }
+                compare( "children lazy " + lazy, children, collect(content.children()) );
+                Vector ancestors = new Vector();
+                for (MarkupContent parent=content.getParent(); parent != null; parent=parent.getParent())
+                {
+                    ancestors.add(parent);
+                }
+                compare( "ancestors lazy " + lazy, ancestors, collect(content.ancestors()) );
+                Vector under = new Vector();
+                walk(content, under);
+                compare( "descendants lazy " + lazy, under, collect(content.descendants()) );
+                if (!lazy)
+                {
+                    compare( "parallel children", children, new Vector(content.children().parallel().collect(Collectors.toList())) );
+                    compare( "parallel descendants", under, new Vector(content.descendants().parallel().collect(Collectors.toList())) );
+                }
+            }
+        }
+
+        Html deep = new Html();
+        Div div = new Div( deep.getBodyTag() );
+        for (int i=0; i<20000; i++)
+        {
+            div = new Div(div);
+        }
+        int count = 0;
+        for (Iterator i=deep.getBodyTag().descendants().iterator(); i.hasNext(); i.next())
+        {
+            count++;
+        }
+        int up = 0;
+        for (Iterator i=div.ancestors().iterator(); i.hasNext(); i.next())
+        {
+            up++;
+        }
+        if (count != 20001 || up != 20002)
+        {
+            System.out.println("FAIL: went through " + count + " descendants and " + up + " ancestors of a deep chain");
+            _failures++;
+        }
+        if (deep.getBodyTag().descendants().parallel().count() != 20001)
+        {
+            System.out.println("FAIL: did not go through all of a deep chain in parallel");
+            _failures++;
+        }
+
+        Iterator i = div.children().iterator();
+        try
+        {
+            i.next();
+            System.out.println("FAIL: went past the end of an empty body");
+            _failures++;
+        }
+        catch (NoSuchElementException nsee) { }
+        i = deep.descendants().iterator();
+        i.next();
+        try
+        {
+            i.remove();
+            System.out.println("FAIL: removed content while going through it");
+            _failures++;
+        }
+        catch (UnsupportedOperationException uoe) { }
+        System.out.println( (_failures == 0 ? "PASS" : _failures + " failure(s)") );
+        if (_failures > 0) System.exit(1);
+    }
+
+    /**
+     * Adds everything under the given content to the given vector in the order it is in the document.
+     *
+     * @param content The content.
+     * @param ret The vector to add to.
+     */
+    private static void walk(MarkupContent content, Vector ret)
+    {
+        for (int i=0; i<content.getBodySize(); i++)
+        {
+            ret.add( content.getBodyContent(i) );
+            walk(content.getBodyContent(i), ret);
+        }
+    }
+
+    private static Vector collect(Stream<MarkupContent> content)
+    {
+        Vector ret = new Vector();
+        for (Iterator<MarkupContent> i=content.iterator(); i.hasNext();)
+        {
+            ret.add( i.next() );
+        }
+        return ret;
+    }
+
+    private static void compare(String desc, Vector expected, Vector got)
+    {
+        if ( !got.equals(expected) )
+        {
+            System.out.println("FAIL: " + desc + " gave " + got.size() + " content instead of " + expected.size());
+            _failures++;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.zitego.markup.html.tag;
 
 import com.zitego.format.FormatType;
 import com.zitego.format.UnsupportedFormatException;
+import com.zitego.markup.ParseCursor;
 import com.zitego.markup.IllegalMarkupException;
 
 /**
@@ -48,11 +49,10 @@ public class UnknownHtmlTag extends HtmlMarkupTag
         return _originalText;
     }
 
-    public void parseText(StringBuffer text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
+    public void parseText(ParseCursor text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
     {
-        _originalText = text.toString();
-        int index = _originalText.indexOf(">");
-        if (index > -1) _originalText = _originalText.substring(0, index+1);
+        int index = text.indexOf('>');
+        _originalText = (index > -1 ? text.substring(0, index+1) : text.toString());
         super.parseText(text, type);
     }
 }
\ No newline at end of file
@@ -0,0 +1,105 @@
+package com.zitego.markup.html.tag;
+
+import com.zitego.markup.CharStream;
+import com.zitego.markup.MarkupContent;
+import com.zitego.markup.ParseCursor;
+import com.zitego.format.FormatType;
+import java.io.StringReader;
+
+/**
+ * Checks how white space is skipped while parsing. The cursor has to count and skip spaces, tabs,
+ * carriage returns, and newlines and nothing else, without going passed its end, and hand back the
+ * skipped range only when it is kept. A document with white space added between its tags, in its
+ * style and script, and a run of 100000 spaces has to format the same as without it unless white
+ * space is preserved, in which case it has to keep all of it. Each document has to parse the same
+ * through a small reader window as from a string. This exits with a non zero status if anything is
+ * different.
+ *
+ * @author John Glorioso
+ * @version $Id$
+ */
+public class WhiteSpaceTestHarness
+{
+    private static final String DOC = "<html><head><title>t</title><style>p { color: red; }</style><script>var x = 1;\n"
+                                    + "function f() { return x; }</script></head><body><!-- c --><div id=\"a\"><p>x <b>y</b> z</p>"
+                                    + "<pre>  a\n\t b  </pre></div></body></html>";
+    private static int _failures = 0;
+
+    public static void main(String[] args) throws Exception
+    {
+        ParseCursor in = new ParseCursor(" \r\n\tx  \f");
+        if ( in.countWhiteSpace() != 4 || in.getPosition() != 0 || in.skipWhiteSpace() != 4 || in.getPosition() != 4 )
+        {
+            fail("the leading white space was not counted and skipped");
+        }
+        in.skip(1);
+        if (in.countWhiteSpace() != 0) fail("a non breaking space was counted as white space");
+        in = new ParseCursor("a    b", 1, 3);
+        if ( in.skipWhiteSpace() != 2 || in.countWhiteSpace() != 0 ) fail("white space was skipped passed the end of the cursor");
+
+        in = new ParseCursor("  \r\n x");
+        CharSequence kept = MarkupContent.skipLeadingSpaces(in, true);
+        if ( kept == null || !kept.toString().equals("  \r\n ") || in.getPosition() != 5 ) fail("the kept white space was " + kept);
+        in.setPosition(0);
+        if ( MarkupContent.skipLeadingSpaces(in, false) != null || in.getPosition() != 5 ) fail("white space that is not kept was returned");
+        if ( MarkupContent.skipLeadingSpaces(in, true) != null ) fail("white space was returned where there is none");
+        in.setPosition(0);
+        if ( !MarkupContent.removeLeadingSpaces(in).equals("  \r\n ") || in.getPosition() != 5 ) fail("removeLeadingSpaces is wrong");
+        StringBuffer buf = new StringBuffer("\t\r\n x");
+        if ( !MarkupContent.removeLeadingSpaces(buf).toString().equals("\t\r\n ") || !buf.toString().equals("x") ) fail("removeLeadingSpaces(StringBuffer) is wrong");
+
+        //The same document with white space added
+        String spaced = DOC.replace("><", ">\r\n \t  <").replace("{ ", "{ \r\n\t  ").replace("; ", ";  \r\n\t ");
+        StringBuffer run = new StringBuffer();
+        for (int i=0; i<100000; i++)
+        {
+            run.append( (i % 100 == 99 ? '\n' : ' ') );
+        }
+        String longRun = DOC.replace("<div", run + "<div");
+        String compact = parse(DOC, false);
+        if ( !parse(spaced, false).equals(compact) ) fail("added white space changed the document");
+        if ( !parse(longRun, false).equals(compact) ) fail("a long run of white space changed the document");
+        String preserved = parse(spaced, true);
+        if ( preserved.indexOf("\r\n \t  <div id=\"a\">") == -1 || preserved.indexOf("<pre>  a\n\t b  </pre>") == -1 ||
+             preserved.indexOf("color: red;  \r\n\t }") == -1 )
+        {
+            fail("preserved white space was lost:\n" + preserved);
+        }
+        if (parse(longRun, true).indexOf(run + "<div") == -1) fail("a long run of preserved white space was lost");
+
+        String[] docs = { DOC, spaced, longRun };
+        for (int i=0; i<docs.length; i++)
+        {
+            for (int preserve=0; preserve<2; preserve++)
+            {
+                Html html = new Html();
+                html.setStrict(false);
+                html.setPreserveWhiteSpace(preserve == 1);
+                CharStream stream = new CharStream(new StringReader(docs[i]), 16);
+                html.parse(new ParseCursor(stream), FormatType.HTML);
+                stream.checkError();
+                if ( !html.format(FormatType.HTML).equals(parse(docs[i], preserve == 1)) )
+                {
+                    fail("document " + i + " parses differently through a small window" + (preserve == 1 ? " preserving white space" : ""));
+                }
+            }
+        }
+        System.out.println( (_failures == 0 ? "PASS" : _failures + " failure(s)") );
+        if (_failures > 0) System.exit(1);
+    }
+
+    private static void fail(String msg)
+    {
+        System.out.println("FAIL: " + msg);
+        _failures++;
+    }
+
+    private static String parse(String doc, boolean preserve) throws Exception
+    {
+        Html ret = new Html();
+        ret.setStrict(false);
+        ret.setPreserveWhiteSpace(preserve);
+        ret.parse(doc, FormatType.HTML);
+        return ret.format(FormatType.HTML);
+    }
+}
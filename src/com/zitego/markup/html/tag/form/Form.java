@@ -1,5 +1,6 @@
 package com.zitego.markup.html.tag.form;
 
+import com.zitego.markup.ParseCursor;
 import com.zitego.markup.IllegalMarkupException;
 import com.zitego.markup.tag.AttributeList;
 import com.zitego.markup.tag.TagAttribute;
@@ -340,7 +341,7 @@ public class Form extends HtmlMarkupTag
         return _startTag;
     }
 
-    public void parseText(StringBuffer text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
+    public void parseText(ParseCursor text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
     {
         super.parseText(text, type);
         //Search body for FormElements
@@ -360,6 +361,18 @@ public class Form extends HtmlMarkupTag
         removeAttribute("onreset");
     }
 
+    protected boolean canParseBodyLazily()
+    {
+        //The form elements are looked for as soon as it is parsed
+        return false;
+    }
+
+    protected boolean canReparseDescendants()
+    {
+        //The form elements anywhere in the body are kept in the form
+        return false;
+    }
+
     public void setAttribute(String name, String val)
     {
         name = name.toLowerCase();
@@ -2,6 +2,7 @@ package com.zitego.markup.html.tag.form;
 
 import com.zitego.format.FormatType;
 import com.zitego.format.UnsupportedFormatException;
+import com.zitego.markup.ParseCursor;
 import com.zitego.markup.IllegalMarkupException;
 import com.zitego.markup.MarkupContent;
 import com.zitego.markup.html.tag.HtmlMarkupTag;
@@ -139,7 +140,7 @@ public abstract class FormElement extends EventDrivenTag
         }
     }
 
-    public void parseText(StringBuffer text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
+    public void parseText(ParseCursor text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
     {
         super.parseText(text, type);
         //Look for the parent form if not specified
@@ -1,5 +1,6 @@
 package com.zitego.markup.html.tag.form;
 
+import com.zitego.markup.ParseCursor;
 import com.zitego.markup.html.tag.HtmlMarkupTag;
 import com.zitego.markup.IllegalMarkupException;
 import com.zitego.format.FormatType;
@@ -86,7 +87,7 @@ public abstract class Input extends FormElement
         return getAttributeValue("type");
     }
 
-    public void parseText(StringBuffer text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
+    public void parseText(ParseCursor text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
     {
         //So that the order stays the same if preserve
         if ( preserveWhiteSpace() )
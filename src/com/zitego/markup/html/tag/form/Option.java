@@ -227,7 +227,7 @@ public class Option extends FormElement
         }
     }
 
-    public void parseText(StringBuffer text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
+    public void parseText(ParseCursor text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
     {
         super.parseText(text, type);
 
@@ -242,4 +242,10 @@ public class Option extends FormElement
             }
         }
     }
+
+    protected boolean canParseBodyLazily()
+    {
+        //The option text is looked for as soon as it is parsed
+        return false;
+    }
 }
\ No newline at end of file
@@ -1,7 +1,7 @@
 package com.zitego.markup.html.tag.list;
 
 import com.zitego.markup.html.tag.HtmlMarkupTag;
-import java.util.Hashtable;
+import java.util.HashMap;
 
 /**
  * This class represents an html ordered list tag. Ordered list tags have two optional
@@ -15,7 +15,7 @@ import java.util.Hashtable;
 public class Ol extends List
 {
     /** The valid types. */
-    private static Hashtable _types = new Hashtable();
+    private static HashMap _types = new HashMap();
     static
     {
         _types.put("A", "1");
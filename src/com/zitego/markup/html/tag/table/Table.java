@@ -6,7 +6,7 @@ import com.zitego.markup.html.tag.HtmlMarkupTag;
 import com.zitego.markup.html.tag.VariableSize;
 import com.zitego.markup.html.tag.textEffect.*;
 import com.zitego.format.*;
-import java.util.Hashtable;
+import java.util.HashMap;
 import java.util.Vector;
 
 /**
@@ -22,7 +22,7 @@ import java.util.Vector;
 public class Table extends TrParent
 {
     /** A hashtable of the allowable frame options. */
-    private static Hashtable _allowableFrames = new Hashtable();
+    private static HashMap _allowableFrames = new HashMap();
     static
     {
         _allowableFrames.put("void", "1");
@@ -36,7 +36,7 @@ public class Table extends TrParent
         _allowableFrames.put("border", "1");
     }
     /** A hashtable of the allowable rules options. */
-    private static Hashtable _allowableRules = new Hashtable();
+    private static HashMap _allowableRules = new HashMap();
     static
     {
         _allowableRules.put("none", "1");
@@ -432,26 +432,39 @@ public class Table extends TrParent
         super.setMap(map);
 
         //Only need to do this if we are changing maps
-        if (_map != null && mapChanging)
+        if (_map != null && mapChanging) resetTableMap();
+    }
+
+    /**
+     * Overrides mapIdsMoved to make sure that the table map is recreated with the new ids.
+     */
+    protected void mapIdsMoved()
+    {
+        if (_map != null) resetTableMap();
+    }
+
+    /**
+     * Recreates the table map from the rows and cells so that it has their current ids.
+     */
+    private void resetTableMap()
+    {
+        Vector rows = getRows();
+        int size = rows.size();
+        if (size > 0)
         {
-            Vector rows = getRows();
-            int size = rows.size();
-            if (size > 0)
+            //Clear the original table map to use the new ids
+            _map = new TableMap(this);
+            for (int i=0; i<size; i++)
             {
-                //Clear the original table map to use the new ids
-                _map = new TableMap(this);
-                for (int i=0; i<size; i++)
+                Tr row = (Tr)rows.get(i);
+                //Add this row to the map
+                _map.addRow();
+                Vector cells = row.getCells();
+                int size2 = cells.size();
+                for (int j=0; j<size2; j++)
                 {
-                    Tr row = (Tr)rows.get(i);
-                    //Add this row to the map
-                    _map.addRow();
-                    Vector cells = row.getCells();
-                    int size2 = cells.size();
-                    for (int j=0; j<size2; j++)
-                    {
-                        //Add the cell to the table map
-                        addCell(row, j);
-                    }
+                    //Add the cell to the table map
+                    addCell(row, j);
                 }
             }
         }
@@ -797,7 +810,7 @@ public class Table extends TrParent
         return new Td[] { originCell, cell2 };
     }
 
-    public void parseText(StringBuffer text, FormatType type) throws IllegalArgumentException, UnsupportedFormatException
+    public void parseText(ParseCursor text, FormatType type) throws IllegalArgumentException, UnsupportedFormatException
     {
         super.parseText(text, type);
         //Need to add the cells to the map
@@ -1,5 +1,6 @@
 package com.zitego.markup.html.tag.table;
 
+import com.zitego.markup.ParseCursor;
 import com.zitego.markup.MarkupContent;
 import com.zitego.markup.IllegalMarkupException;
 import com.zitego.markup.html.tag.EventDrivenTag;
@@ -7,7 +8,7 @@ import com.zitego.markup.html.tag.form.Form;
 import com.zitego.format.FormatType;
 import com.zitego.format.UnsupportedFormatException;
 import com.zitego.markup.html.tag.form.Form;
-import java.util.Hashtable;
+import java.util.HashMap;
 import java.util.Vector;
 
 /**
@@ -26,7 +27,7 @@ public class Tr extends EventDrivenTag
     /** The cells. */
     private Vector _cells = new Vector();
     /** A hashtable of the allowable alignment options. */
-    private static Hashtable _allowableAligns = new Hashtable();
+    private static HashMap _allowableAligns = new HashMap();
     static
     {
         _allowableAligns.put("left", "1");
@@ -35,7 +36,7 @@ public class Tr extends EventDrivenTag
         _allowableAligns.put("justify", "1");
     }
     /** A hashtable of the allowable valign options. */
-    private static Hashtable _allowableValigns = new Hashtable();
+    private static HashMap _allowableValigns = new HashMap();
     static
     {
         _allowableValigns.put("top", "1");
@@ -420,7 +421,7 @@ public class Tr extends EventDrivenTag
         }
     }
 
-    public void parseText(StringBuffer text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
+    public void parseText(ParseCursor text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
     {
         super.parseText(text, type);
 
@@ -436,4 +437,10 @@ public class Tr extends EventDrivenTag
             }
         }
     }
+
+    protected boolean canParseBodyLazily()
+    {
+        //The cells are looked for as soon as it is parsed
+        return false;
+    }
 }
\ No newline at end of file
@@ -370,7 +370,7 @@ public abstract class TrParent extends EventDrivenTag
         }
     }
 
-    public void parseText(StringBuffer text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
+    public void parseText(ParseCursor text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
     {
         super.parseText(text, type);
 
@@ -384,4 +384,10 @@ public abstract class TrParent extends EventDrivenTag
             }
         }
     }
+
+    protected boolean canParseBodyLazily()
+    {
+        //The rows are looked for as soon as it is parsed
+        return false;
+    }
 }
\ No newline at end of file
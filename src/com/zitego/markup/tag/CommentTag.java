@@ -4,8 +4,9 @@ import com.zitego.format.FormatType;
 import com.zitego.format.UnsupportedFormatException;
 import com.zitego.markup.MarkupContent;
 import com.zitego.markup.IllegalMarkupException;
+import com.zitego.markup.ParseDiagnostics;
+import com.zitego.markup.ParseCursor;
 import com.zitego.markup.Newline;
-import com.zitego.util.TextUtils;
 
 /**
  * This class represents an markup content comment tag. A comment tag must have
@@ -122,45 +123,44 @@ public class CommentTag extends MarkupTag
         }
     }
 
-    public void parseText(StringBuffer text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
+    public void parseText(ParseCursor text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
     {
         if (text == null) return;
 
-        removeLeadingSpaces(text);
+        skipLeadingSpaces(text);
         //The next four characters should be "<!--". Error if not
-        if ( text.length() < 4 || !text.substring(0, 4).equals("<!--") ) throw new IllegalMarkupException("Invalid comment: "+text);
+        if ( !text.startsWith("<!--") )
+        {
+            //When lenient, leave the text for the parent
+            if ( recover(ParseDiagnostics.INVALID_TAG, text, "!--") ) return;
+            throw new IllegalMarkupException("Invalid comment: "+text.peek(25));
+        }
 
-        //Remove that
-        text.delete(0, 4);
+        //Skip that
+        text.skip(4);
         boolean preserve = preserveWhiteSpace();
-        if (!preserve) removeLeadingSpaces(text);
+        if (!preserve) skipLeadingSpaces(text);
 
-        //Set the comment
-        StringBuffer comment = new StringBuffer();
-        while (text.length() > 0)
+        //Set the comment if we find the end of it
+        int index = text.indexOf("-->");
+        if (index > -1)
+        {
+            String comment = text.consume(index);
+            setComment( (!preserve ? comment.trim() : comment) );
+            text.skip(3);
+        }
+        else
         {
-            char c = text.charAt(0);
-            if (c == '-' && text.length() > 2 && text.charAt(1) == '-' && text.charAt(2) == '>')
-            {
-                //At the end here...
-                setComment( (!preserve ? comment.toString().trim() : comment.toString()) );
-                text.delete(0, 3);
-                break;
-            }
-            else
-            {
-                comment.append(c);
-                text.delete(0, 1);
-            }
+            text.skip( text.length() );
         }
     }
 
-    protected void validateTagName(StringBuffer text)
+    protected void validateTagName(ParseCursor text)
     {
         //Now we should be at the tag name. Make sure it is right
-        if (text == null || text.indexOf("!--") != 0) throw new IllegalMarkupException
+        if ( text == null || (!text.startsWith("!--") && !recover(ParseDiagnostics.INVALID_TAG, text, "!--")) ) throw new IllegalMarkupException
         (
-            "Expected open comment tag, but found <"+TextUtils.trunc(text.toString(), 25)
+            "Expected open comment tag, but found <"+(text != null ? text.peek(25) : null)
         );
     }
 }
\ No newline at end of file
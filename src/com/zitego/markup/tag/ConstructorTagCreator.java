@@ -0,0 +1,114 @@
+package com.zitego.markup.tag;
+
+import com.zitego.markup.MarkupContent;
+import java.lang.reflect.Constructor;
+import java.util.Vector;
+
+/**
+ * A TagCreator that calls the public constructors of a tag class. The constructors are looked
+ * up once when the creator is made. A tag without a parent is created with the constructor that
+ * takes only the extra arguments given. A tag with a parent is created with the first constructor
+ * whose first parameter the parent can be passed as, followed by the extra arguments. For example,
+ * a creator for h1 tags would be made with a one element array holding the Integer 1.
+ *
+ * @author John Glorioso
+ * @version $Id$
+ */
+public class ConstructorTagCreator implements TagCreator
+{
+    private Class _tagClass;
+    /** The arguments passed to the constructor after the parent. */
+    private Object[] _args;
+    /** The constructor for tags without a parent. */
+    private Constructor _noParent;
+    /** The constructors that take a parent and the type of parent each one takes. */
+    private Constructor[] _withParent;
+    private Class[] _parentTypes;
+
+    /**
+     * Creates a new creator for the given class.
+     *
+     * @param tagClass The class of the tags to create.
+     * @throws IllegalArgumentException if the class is null.
+     */
+    public ConstructorTagCreator(Class tagClass) throws IllegalArgumentException
+    {
+        this(tagClass, null);
+    }
+
+    /**
+     * Creates a new creator for the given class that passes the given arguments to the constructor
+     * after the parent. The arguments must be in declared order.
+     *
+     * @param tagClass The class of the tags to create.
+     * @param args The arguments of the constructor not including the parent.
+     * @throws IllegalArgumentException if the class is null.
+     */
+    public ConstructorTagCreator(Class tagClass, Object[] args) throws IllegalArgumentException
+    {
+        if (tagClass == null) throw new IllegalArgumentException("tag class cannot be null");
+        _tagClass = tagClass;
+        _args = (args != null ? args : new Object[0]);
+
+        Vector withParent = new Vector();
+        Constructor[] c = tagClass.getConstructors();
+        for (int i=0; i<c.length; i++)
+        {
+            Class[] cargs = c[i].getParameterTypes();
+            if (cargs.length == _args.length)
+            {
+                if (_noParent == null && matches(cargs, 0)) _noParent = c[i];
+            }
+            else if ( cargs.length == _args.length+1 && matches(cargs, 1) )
+            {
+                withParent.add(c[i]);
+            }
+        }
+        _withParent = new Constructor[withParent.size()];
+        withParent.copyInto(_withParent);
+        _parentTypes = new Class[_withParent.length];
+        for (int i=0; i<_withParent.length; i++)
+        {
+            _parentTypes[i] = _withParent[i].getParameterTypes()[0];
+        }
+    }
+
+    public Class getTagClass()
+    {
+        return _tagClass;
+    }
+
+    public MarkupTag createTag(MarkupContent parent) throws Exception
+    {
+        if (parent == null) return ( _noParent != null ? (MarkupTag)_noParent.newInstance(_args) : null );
+
+        Class parentClass = parent.getClass();
+        for (int i=0; i<_parentTypes.length; i++)
+        {
+            if ( _parentTypes[i].isAssignableFrom(parentClass) )
+            {
+                Object[] args = new Object[_args.length+1];
+                args[0] = parent;
+                System.arraycopy(_args, 0, args, 1, _args.length);
+                return (MarkupTag)_withParent[i].newInstance(args);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns whether the parameter types starting at the given index take the arguments.
+     *
+     * @param cargs The parameter types.
+     * @param start The index of the first parameter after the parent.
+     * @return boolean
+     */
+    private boolean matches(Class[] cargs, int start)
+    {
+        for (int i=0; i<_args.length; i++)
+        {
+            if ( !cargs[start+i].isAssignableFrom(_args[i].getClass()) ) return false;
+        }
+        return true;
+    }
+}
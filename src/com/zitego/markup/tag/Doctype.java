@@ -2,6 +2,8 @@ package com.zitego.markup.tag;
 
 import com.zitego.markup.MarkupContent;
 import com.zitego.markup.IllegalMarkupException;
+import com.zitego.markup.ParseDiagnostics;
+import com.zitego.markup.ParseCursor;
 import com.zitego.markup.html.tag.Html;
 import com.zitego.format.*;
 
@@ -172,21 +174,29 @@ public class Doctype extends MarkupTag
         }
     }
 
-    public void parseText(StringBuffer text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
+    public void parseText(ParseCursor text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
     {
         if (text == null) return;
 
-        removeLeadingSpaces(text);
-        int index = text.indexOf(">");
+        skipLeadingSpaces(text);
+        int index = text.indexOf('>');
         //Check to see if they forgot a closing tag
-        int nextTagIndex = text.indexOf("<", 1);
+        int nextTagIndex = text.indexOf('<', 1);
         if (index > nextTagIndex) index = nextTagIndex-1;
-        if (index == -1) throw new IllegalMarkupException("Invalid doctype tag: "+text);
+        if (index == -1)
+        {
+            //When lenient, the rest of the text is the doctype
+            if ( !recover(ParseDiagnostics.INVALID_TAG, text, "!doctype") ) throw new IllegalMarkupException("Invalid doctype tag: "+text.peek(25));
+            index = text.length()-1;
+        }
 
         String tag = text.substring(0, index+1);
         tag = tag.toLowerCase();
 
-        if (tag.indexOf("<!doctype") != 0) throw new IllegalMarkupException("Invalid doctype tag: "+tag);
+        if ( tag.indexOf("<!doctype") != 0 && !recover(ParseDiagnostics.INVALID_TAG, text, "!doctype") )
+        {
+            throw new IllegalMarkupException("Invalid doctype tag: "+tag);
+        }
 
         if (tag.indexOf("strict") > -1)
         {
@@ -198,6 +208,6 @@ public class Doctype extends MarkupTag
             setDocType(TRANSITIONAL);
             setMarkupType(HTML);
         }
-        text.delete(0, index+1);
+        text.skip(index+1);
     }
 }
\ No newline at end of file
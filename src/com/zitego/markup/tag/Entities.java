@@ -0,0 +1,339 @@
+package com.zitego.markup.tag;
+
+import java.util.Vector;
+
+/**
+ * This decodes and encodes character entity references. Every SpecialChar is kept in two hash
+ * tables that are built once. One is keyed by the entity name and the other by the character it
+ * stands for. The tables are kept at most a quarter full, so a lookup almost never probes more then
+ * one slot. Numeric references (&amp;#123; and &amp;#x7B;) are decoded as well.<br>
+ * <br>
+ * References are read straight from the characters being parsed, so a tokenizer can decode them
+ * as it goes without creating a String for each one. Entity names are case sensitive and a
+ * reference must end with a semicolon. Anything else starting with an ampersand is left as it is.
+ *
+ * @author John Glorioso
+ * @version $Id$
+ */
+public final class Entities
+{
+    /** The special characters by the hash of their entity names. */
+    private static final SpecialChar[] _byName;
+    /** The hash of the name of each special character in _byName. */
+    private static final int[] _nameHashes;
+    /** The special characters by their characters. */
+    private static final SpecialChar[] _byChar;
+    /** The length of the longest entity name. */
+    private static final int _maxNameLength;
+    static
+    {
+        Vector chars = SpecialChar.getChars();
+        int size = chars.size();
+        int length = 16;
+        while (length < size*4)
+        {
+            length *= 2;
+        }
+        _byName = new SpecialChar[length];
+        _nameHashes = new int[length];
+        _byChar = new SpecialChar[length];
+        int max = 0;
+        for (int i=0; i<size; i++)
+        {
+            SpecialChar c = (SpecialChar)chars.get(i);
+            String symbol = c.getSymbol();
+            int hash = hash(symbol, 1, symbol.length()-1);
+            int index = hash & (length-1);
+            while (_byName[index] != null)
+            {
+                index = (index+1) & (length-1);
+            }
+            _byName[index] = c;
+            _nameHashes[index] = hash;
+            max = Math.max( max, symbol.length()-2 );
+
+            //The first one for a character is the one it is encoded as
+            if ( forChar(c.getChar()) == null )
+            {
+                index = hash( c.getChar() ) & (length-1);
+                while (_byChar[index] != null)
+                {
+                    index = (index+1) & (length-1);
+                }
+                _byChar[index] = c;
+            }
+        }
+        _maxNameLength = max;
+    }
+
+    private Entities() { }
+
+    /**
+     * Returns the special character with the entity name made up of the given range of characters
+     * or null if there is not one. The range does not include the ampersand or the semicolon.
+     *
+     * @param text The text the name is in.
+     * @param start The index of the first character in the name.
+     * @param end The index after the last character in the name.
+     * @return SpecialChar
+     */
+    public static SpecialChar lookup(CharSequence text, int start, int end)
+    {
+        if (text == null || start >= end || end-start > _maxNameLength) return null;
+        int hash = hash(text, start, end);
+        for (int i=hash & (_byName.length-1); _byName[i] != null; i=(i+1) & (_byName.length-1))
+        {
+            if ( _nameHashes[i] == hash && matches(_byName[i].getSymbol(), text, start, end) ) return _byName[i];
+        }
+        return null;
+    }
+
+    /**
+     * Returns the special character for the given character or null if there is not one.
+     *
+     * @param c The character.
+     * @return SpecialChar
+     */
+    public static SpecialChar forChar(char c)
+    {
+        for (int i=hash(c) & (_byChar.length-1); _byChar[i] != null; i=(i+1) & (_byChar.length-1))
+        {
+            if (_byChar[i].getChar() == c) return _byChar[i];
+        }
+        return null;
+    }
+
+    /**
+     * Reads the reference that starts with the ampersand at the given index. If there is one, the
+     * code point it stands for is returned in the low 32 bits and the number of characters in the
+     * reference (from the ampersand to the semicolon) in the high 32 bits. Otherwise, -1 is returned.
+     * See getCodePoint(long) and getLength(long).
+     *
+     * @param text The text.
+     * @param index The index of the ampersand.
+     * @param end The index to not read passed.
+     * @return long
+     */
+    public static long readReference(CharSequence text, int index, int end)
+    {
+        if (index+3 > end || text.charAt(index) != '&') return -1;
+        int i = index+1;
+        if (text.charAt(i) == '#')
+        {
+            i++;
+            int radix = 10;
+            if ( text.charAt(i) == 'x' || text.charAt(i) == 'X' )
+            {
+                radix = 16;
+                i++;
+            }
+            int start = i;
+            int value = 0;
+            for (; i<end; i++)
+            {
+                int digit = Character.digit( text.charAt(i), radix );
+                if (digit == -1) break;
+                value = value*radix + digit;
+                if (value > Character.MAX_CODE_POINT) return -1;
+            }
+            if (i == start || i == end || text.charAt(i) != ';') return -1;
+            if ( value == 0 || (value >= Character.MIN_SURROGATE && value <= Character.MAX_SURROGATE) ) return -1;
+            return ( (long)(i+1-index) << 32 ) | value;
+        }
+        else
+        {
+            int max = Math.min(end, i+_maxNameLength+1);
+            for (; i<max; i++)
+            {
+                if (text.charAt(i) == ';')
+                {
+                    SpecialChar c = lookup(text, index+1, i);
+                    if (c == null) return -1;
+                    return ( (long)(i+1-index) << 32 ) | c.getChar();
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the code point of a reference read with readReference(CharSequence, int, int).
+     *
+     * @param reference The reference.
+     * @return int
+     */
+    public static int getCodePoint(long reference)
+    {
+        return (int)reference;
+    }
+
+    /**
+     * Returns the number of characters in a reference read with readReference(CharSequence, int, int).
+     *
+     * @param reference The reference.
+     * @return int
+     */
+    public static int getLength(long reference)
+    {
+        return (int)(reference >>> 32);
+    }
+
+    /**
+     * Returns the given text with its references replaced with the characters they stand for. The
+     * text is returned as it is if it has no ampersands.
+     *
+     * @param text The text.
+     * @return String
+     */
+    public static String decode(CharSequence text)
+    {
+        if (text == null) return null;
+        int length = text.length();
+        for (int i=0; i<length; i++)
+        {
+            if (text.charAt(i) == '&')
+            {
+                StringBuffer ret = new StringBuffer(length);
+                decode(text, 0, length, ret);
+                return ret.toString();
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Appends the given range of the text to the buffer with its references replaced with the
+     * characters they stand for.
+     *
+     * @param text The text.
+     * @param start The index to start at.
+     * @param end The index to end at.
+     * @param out The buffer to append to.
+     */
+    public static void decode(CharSequence text, int start, int end, StringBuffer out)
+    {
+        int last = start;
+        for (int i=start; i<end; i++)
+        {
+            if (text.charAt(i) != '&') continue;
+            long reference = readReference(text, i, end);
+            if (reference == -1) continue;
+            out.append(text, last, i).appendCodePoint( getCodePoint(reference) );
+            i += getLength(reference)-1;
+            last = i+1;
+        }
+        out.append(text, last, end);
+    }
+
+    /**
+     * Returns the given text with ampersands, less than, and greater than signs replaced with
+     * their references. If named is true, every other character that has an entity name is
+     * replaced as well. The text is returned as it is if nothing needs to be replaced.
+     *
+     * @param text The text.
+     * @param named Whether to replace every character that has an entity name.
+     * @return String
+     */
+    public static String encode(CharSequence text, boolean named)
+    {
+        if (text == null) return null;
+        int length = text.length();
+        for (int i=0; i<length; i++)
+        {
+            if ( needsEncoding(text.charAt(i), named) )
+            {
+                StringBuffer ret = new StringBuffer(length+16);
+                encode(text, 0, length, ret, named);
+                return ret.toString();
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Appends the given range of the text to the buffer with ampersands, less than, and greater
+     * than signs replaced with their references. If named is true, every other character that has
+     * an entity name is replaced as well.
+     *
+     * @param text The text.
+     * @param start The index to start at.
+     * @param end The index to end at.
+     * @param out The buffer to append to.
+     * @param named Whether to replace every character that has an entity name.
+     */
+    public static void encode(CharSequence text, int start, int end, StringBuffer out, boolean named)
+    {
+        int last = start;
+        for (int i=start; i<end; i++)
+        {
+            char c = text.charAt(i);
+            if ( !needsEncoding(c, named) ) continue;
+            out.append(text, last, i).append( forChar(c).getSymbol() );
+            last = i+1;
+        }
+        out.append(text, last, end);
+    }
+
+    /**
+     * Returns whether the given character is replaced with its reference when encoding.
+     *
+     * @param c The character.
+     * @param named Whether every character that has an entity name is replaced.
+     * @return boolean
+     */
+    private static boolean needsEncoding(char c, boolean named)
+    {
+        if (c == '&' || c == '<' || c == '>') return true;
+        //The double quote is the only other ascii character with a name
+        return ( named && (c == '"' || (c > 127 && forChar(c) != null)) );
+    }
+
+    /**
+     * Returns whether the given range of characters is the name in the given symbol.
+     *
+     * @param symbol The symbol with the ampersand and semicolon.
+     * @param text The text the name is in.
+     * @param start The index of the first character in the name.
+     * @param end The index after the last character in the name.
+     * @return boolean
+     */
+    private static boolean matches(String symbol, CharSequence text, int start, int end)
+    {
+        if (end-start != symbol.length()-2) return false;
+        for (int i=start; i<end; i++)
+        {
+            if ( text.charAt(i) != symbol.charAt(i-start+1) ) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the hash of the given range of characters.
+     *
+     * @param text The text.
+     * @param start The start index.
+     * @param end The end index.
+     * @return int
+     */
+    private static int hash(CharSequence text, int start, int end)
+    {
+        int hash = 0;
+        for (int i=start; i<end; i++)
+        {
+            hash = 31*hash + text.charAt(i);
+        }
+        //Spread the bits so that short names do not all land together
+        return hash ^ (hash >>> 16) ^ (hash >>> 7);
+    }
+
+    /**
+     * Returns the hash of the given character.
+     *
+     * @param c The character.
+     * @return int
+     */
+    private static int hash(char c)
+    {
+        return c ^ (c >>> 7);
+    }
+}
@@ -4,11 +4,16 @@ import com.zitego.markup.MarkupContent;
 import com.zitego.markup.Newline;
 import com.zitego.markup.MarkupBody;
 import com.zitego.markup.MarkupMap;
+import com.zitego.markup.MarkupHandler;
+import com.zitego.markup.DefaultMarkupHandler;
+import com.zitego.markup.ParseCursor;
+import com.zitego.markup.ParseDiagnostics;
+import com.zitego.markup.ParseArena;
 import com.zitego.markup.IllegalMarkupException;
 import com.zitego.format.FormatType;
 import com.zitego.format.UnsupportedFormatException;
-import com.zitego.util.TextUtils;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * This class is abstract and represents a markup tag. The tag
@@ -19,7 +24,13 @@ import java.util.Vector;
  */
 public abstract class MarkupTag extends MarkupContent
 {
+    /** The characters that end the tag name in a start tag. */
+    private static final char[] TAG_NAME_END = new char[] {' ', '>', '<', '\r', '\n'};
+    /** Whether each class of tag overrides the deprecated setAttributes method that takes a StringBuffer by class. */
+    private static final ConcurrentHashMap _legacySetAttributes = new ConcurrentHashMap();
     private String _tagName;
+    /** The symbol for the tag name if it has one. */
+    private TagSymbol _tagSymbol;
     private AttributeList _attributes;
     /** Whether or not there is an end tag. Default is true. */
     private boolean _hasEndTag = true;
@@ -34,6 +45,8 @@ public abstract class MarkupTag extends MarkupContent
     private boolean _foundSingleQuotes = false;
     private boolean _forceSingleQuotes = false;
     private boolean _addClosingSlashInStart = false;
+    /** The attributes scanned ahead of parsing by the factory. */
+    private StartTagScan _startTagScan;
 
     /**
      * Creates a new markup tag.
@@ -156,6 +169,8 @@ public abstract class MarkupTag extends MarkupContent
     {
         setChanged();
         _tagName = name;
+        _tagSymbol = null;
+        indexChanged();
     }
 
     /**
@@ -168,6 +183,42 @@ public abstract class MarkupTag extends MarkupContent
         return _tagName;
     }
 
+    /**
+     * Returns the symbol for the tag name or null if the name has not been interned.
+     *
+     * @return TagSymbol
+     */
+    public TagSymbol getTagSymbol()
+    {
+        if (_tagSymbol == null) _tagSymbol = TagSymbol.lookup(_tagName);
+        return _tagSymbol;
+    }
+
+    /**
+     * Returns whether the given range of characters is the name of this tag, ignoring case. If the
+     * name has a symbol, then the characters are resolved to their symbol and compared by identity.
+     * No String is created for the characters either way.
+     *
+     * @param text The text the name is in.
+     * @param start The index of the first character in the name.
+     * @param end The index after the last character in the name.
+     * @return boolean
+     */
+    public boolean isTagName(CharSequence text, int start, int end)
+    {
+        TagSymbol symbol = getTagSymbol();
+        if (symbol != null) return ( symbol == TagSymbol.lookup(text, start, end) );
+        if (_tagName == null || _tagName.length() != end-start) return false;
+        for (int i=start; i<end; i++)
+        {
+            char c1 = _tagName.charAt(i-start);
+            char c2 = text.charAt(i);
+            if ( c1 != c2 && Character.toUpperCase(c1) != Character.toUpperCase(c2) &&
+                 Character.toLowerCase(c1) != Character.toLowerCase(c2) ) return false;
+        }
+        return true;
+    }
+
     /**
      * Sets whether or not there is an end tag.
      *
@@ -349,7 +400,18 @@ public abstract class MarkupTag extends MarkupContent
         {
             if (val != null || allowNull)
             {
-                a = new TagAttribute(name, val);
+                ParseArena arena = getParseArena();
+                a = (arena != null ? (TagAttribute)arena.take(TagAttribute.class) : null);
+                if (a != null)
+                {
+                    a.setName(name);
+                    a.setValue(val);
+                }
+                else
+                {
+                    a = new TagAttribute(name, val);
+                    if (arena != null) arena.add(a);
+                }
                 a.setStrict( isStrict() );
                 a.setPreserveWhiteSpace( preserveWhiteSpace() );
                 attributes.add(a);
@@ -367,6 +429,18 @@ public abstract class MarkupTag extends MarkupContent
                 attributes.remove(a);
             }
         }
+        if ( isIndexing() && isIndexedAttribute(name) ) indexChanged();
+    }
+
+    /**
+     * Returns whether the document is indexed by the given attribute.
+     *
+     * @param name The attribute name.
+     * @return boolean
+     */
+    private static boolean isIndexedAttribute(String name)
+    {
+        return ( "id".equalsIgnoreCase(name) || "class".equalsIgnoreCase(name) );
     }
 
     /**
@@ -424,6 +498,7 @@ public abstract class MarkupTag extends MarkupContent
         if (attr == null)
         {
             getAttributes().removeAllElements();
+            indexChanged();
         }
         else
         {
@@ -464,34 +539,94 @@ public abstract class MarkupTag extends MarkupContent
     public void setAttributes(StringBuffer in, FormatType type)
     {
         if (in == null) return;
+        ParseCursor cursor = ParseCursor.borrow(in);
+        int start = cursor.getPosition();
+        setAttributes(cursor, type);
+        in.delete( 0, Math.min(in.length(), cursor.getPosition()-start) );
+    }
+
+    /**
+     * Sets the attributes in the markup tag given a cursor and format type. This advances
+     * the cursor up to the end of the attributes and will stop at the > if there
+     * is more text. This assumes the cursor is at the first attribute, if it is
+     * a space, carriage return, or newline then it will get skipped until it gets to
+     * something different.
+     *
+     * @param in The attribute text.
+     * @param type The format type for attributes.
+     */
+    public void setAttributes(ParseCursor in, FormatType type)
+    {
+        if (in == null) return;
+
+        StartTagScan scan = _startTagScan;
+        _startTagScan = null;
+        boolean closed = false;
+        if ( scan != null && scan.isFor(in) ) closed = scan.replay( in, new AttributeBuilder(type) );
+        else closed = parseAttributes( in, new AttributeBuilder(type) );
+        if (closed) setHasEndTag(false);
+    }
+
+    /**
+     * Sets the attributes of the start tag that were scanned before this tag was created. If the
+     * attributes are then parsed at the same place in the same cursor, they are taken from the
+     * scan instead of being tokenized again. The scan is only used once.
+     *
+     * @param scan The scan.
+     */
+    public void setStartTagScan(StartTagScan scan)
+    {
+        _startTagScan = scan;
+    }
+
+    /**
+     * Parses the attributes of a start tag at the given cursor and passes each one to the handler.
+     * This advances the cursor up to the end of the attributes and will stop at the > if there
+     * is more text. This assumes the cursor is at the first attribute, if it is a space, carriage
+     * return, or newline then it will get skipped until it gets to something different. This is
+     * used both when building tags and when parsing with a MarkupHandler. Returns whether the
+     * start tag was closed with a /&gt;.
+     *
+     * @param in The attribute text.
+     * @param handler The handler to pass the attributes to.
+     * @return boolean
+     */
+    public static boolean parseAttributes(ParseCursor in, MarkupHandler handler)
+    {
+        if (in == null) return false;
 
         //Clean leading spaces
-        removeLeadingSpaces(in);
+        skipLeadingSpaces(in);
         //See if we need to set attributes or not. Until we reach a > or end of string we are still in the start tag
         String name = null;
+        //The solo attribute that was last passed to the handler so that it is only passed once
+        String soloName = null;
         boolean inVal = false;
         boolean inQuotes = false;
         char escapeChar = '\\';
         char theQuote = '\'';
         boolean hitText = false;
+        boolean closed = false;
         int i = -1;
         boolean done = false;
         char c = (char)0;
         char lastChar = (char)0;
+        //Whether the quoted value we are in has newlines that need to be stripped out
+        boolean hasNewlines = false;
         while (!done)
         {
             c = (++i < in.length() ? in.charAt(i) : (char)0);
             //See if we are done. That is a > when we are not in quotes. We check for < also, just
             //in case the html is screwed up and they never closed their opening tag
             done = ( c == (char)0 || (!inQuotes && (c == '>' || c == '<')) );
-            if (done && c == '>' && lastChar =='/') setHasEndTag(false);
+            if (done && c == '>' && lastChar =='/') closed = true;
             if (c == '=' && !inQuotes)
             {
                 if (name == null) name = in.substring(0, i);
                 inVal = true;
                 hitText = false;
-                //Delete up to just passed the equals and reset index to -1
-                in.delete(0, i+1);
+                //Skip up to just passed the equals and reset index to -1
+                in.skip(i+1);
                 i = -1;
             }
             else if ( inVal && (hitText || (inQuotes && c == theQuote)) )
@@ -501,33 +636,24 @@ public abstract class MarkupTag extends MarkupContent
                 if ( (inQuotes && c == theQuote && lastChar != escapeChar) ||
                      (!inQuotes && (c == ' ' || c == '\r' || c == '\n' || c == '>' || c == '<')) )
                 {
-                    TagAttributeValue c2 = new TagAttributeValue();
-                    c2.setStrict( isStrict() );
-                    c2.setPreserveWhiteSpace( preserveWhiteSpace() );
-                    try
-                    {
-                        c2.parse(in.substring(0, i), type);
-                    }
-                    catch (UnsupportedFormatException ufe)
-                    {
-                        throw new RuntimeException("Could not parse "+in.substring(0, i), ufe);
-                    }
-                    setAttribute(name, c2);
+                    CharSequence val = in.span(0, i);
+                    if (hasNewlines) val = val.toString().replaceAll("[\r\n]", "");
+                    handler.attribute( name, val, (inQuotes ? theQuote : (char)0) );
                     inVal = false;
                     inQuotes = false;
                     name = null;
                     hitText = false;
-                    //Delete up to just past the char we are on and reset index to -1, unless we have that special
+                    hasNewlines = false;
+                    //Skip up to just past the char we are on and reset index to -1, unless we have that special
                     //case where they did not close the open tag
-                    if (c != '<') in.delete(0, i+1);
-                    else in.delete(0, i);
+                    if (c != '<') in.skip(i+1);
+                    else in.skip(i);
                     i = -1;
-                    _foundSingleQuotes = (_foundSingleQuotes || theQuote == '\'');
                 }
                 else if (c == '\r' || c == '\n')
                 {
-                    //No newlines in a quoted attribute, so remove it
-                    in.deleteCharAt(i--);
+                    //No newlines in a quoted attribute, so they are removed from the value
+                    hasNewlines = true;
                 }
             }
             else if ( i > 0 && !inVal && (c == ' ' || c == '\r' || c == '\n' || c == '>' || c == '<') )
@@ -535,22 +661,27 @@ public abstract class MarkupTag extends MarkupContent
                 //if we hit a space, carriage return, newline, or > and the index is passed 0
                 //then we set the name
                 name = in.substring(0, i);
-                //Delete up to just past the char we are on and reset index to -1, unless we have that special
+                //Skip up to just past the char we are on and reset index to -1, unless we have that special
                 //case where they did not close the open tag
-                if (c != '<') in.delete(0, i+1);
-                else in.delete(0, i);
+                if (c != '<') in.skip(i+1);
+                else in.skip(i);
                 i = -1;
                 hitText = false;
             }
             else if (c == ' ' || c == '\r' || c == '\n')
             {
-                //Get rid of the extra spaces.
-                in.deleteCharAt(i--);
+                //Skip the extra spaces. We are always at the front here.
+                in.skip(1);
+                i--;
             }
             else
             {
                 //If we have a name here and we are not in value then we have a solo attribute
-                if (name != null && !inVal) setAttribute(name);
+                if (name != null && !inVal && name != soloName)
+                {
+                    handler.attribute(name, null, (char)0);
+                    soloName = name;
+                }
 
                 hitText = true;
                 //See if char is quote if we are in a value block
@@ -558,15 +689,16 @@ public abstract class MarkupTag extends MarkupContent
                 {
                     theQuote = c;
                     inQuotes = true;
-                    in.delete(0, i+1);
+                    in.skip(i+1);
                     i = -1;
                 }
             }
             lastChar = c;
         }
-        //Special case where the closing > is missing. We don't want to delete the opening < of the next tag
-        if (c == '<' && i > -1) in.delete(0, i);
-        else in.delete(0, i+1);
+        //Special case where the closing > is missing. We don't want to skip the opening < of the next tag
+        if (c == '<' && i > -1) in.skip(i);
+        else in.skip(i+1);
+        return closed;
     }
 
     /**
@@ -602,6 +734,7 @@ public abstract class MarkupTag extends MarkupContent
         {
             getAttributes().remove(a);
             setChanged();
+            if ( isIndexedAttribute(name) ) indexChanged();
         }
     }
 
@@ -678,6 +811,13 @@ public abstract class MarkupTag extends MarkupContent
         return _attributes;
     }
 
+    public void release() throws IllegalStateException
+    {
+        super.release();
+        //The attributes may have been taken from the arena
+        if (_attributes != null) _attributes.clear();
+    }
+
     /**
      * Adds a comment to the body and returns the comment tag.
      *
@@ -726,8 +866,8 @@ public abstract class MarkupTag extends MarkupContent
     {
         _startTag = getStartTag(type);
         StringBuffer ret = new StringBuffer(_startTag);
-        MarkupBody body = getBody();
-        if (body != null) ret.append( body.format(type) );
+        //A body that has not been parsed yet is formatted as the text it was parsed from
+        ret.append( getBodyAsParsed().format(type) );
         _endTag = getEndTag(type);
         ret.append(_endTag);
         return ret.toString();
@@ -769,7 +909,7 @@ public abstract class MarkupTag extends MarkupContent
             MarkupContent parent = getParent();
             if (_hasEndTag)
             {
-                if (getBodySize() > 0) ret = Newline.CHARACTER;
+                if ( !hasDeferredBody() && getBodySize() > 0 ) ret = Newline.CHARACTER;
             }
             else if ( !(parent instanceof MarkupTag) || !((MarkupTag)parent).hasEndTagOnSameLine() || parent.indexOfInBody(this) != parent.getBodySize()-1 )
             {
@@ -796,7 +936,7 @@ public abstract class MarkupTag extends MarkupContent
             boolean noNewline = (parent instanceof MarkupTag && ((MarkupTag)parent).hasEndTagOnSameLine() && parent.indexOfInBody(this) == parent.getBodySize()-1);
             if (_hasEndTag)
             {
-                if (!preserve && !_isOnOwnLine && !_hasEndTagOnSameLine) ret.append( getPadding() );
+                if ( !preserve && !_isOnOwnLine && !_hasEndTagOnSameLine && !hasDeferredBody() ) ret.append( getPadding() );
                 ret.append("</").append( getTagName() ).append(">");
             }
             if (!preserve && parent != null && hasNewline() && !noNewline) ret.append(Newline.CHARACTER);
@@ -828,24 +968,45 @@ public abstract class MarkupTag extends MarkupContent
         return ret.toString();
     }
 
-    public void parseText(StringBuffer text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
+    public void parseText(ParseCursor text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
     {
         if (text == null) return;
 
         //Clean leading spaces
-        removeLeadingSpaces(text);
+        skipLeadingSpaces(text);
 
-        //The leading char should be a < now. If not, then err
-        if (text.charAt(0) != '<') throw new IllegalMarkupException("Invalid text: "+text);
+        //The leading char should be a < now. If not, then err or leave the text for the parent when lenient
+        if (text.charAt(0) != '<')
+        {
+            if ( recover(ParseDiagnostics.INVALID_TAG, text, getTagName()) ) return;
+            throw new IllegalMarkupException("Invalid text: "+text.peek(25));
+        }
 
-        //Remove that
-        text.deleteCharAt(0);
+        //Skip that
+        text.skip(1);
 
         //Only validate if not comment tag
         validateTagName(text);
 
         //Set the attributes in the start tag
-        setAttributes(text, type);
+        if ( overridesLegacySetAttributes(getClass()) )
+        {
+            //The override is only given a copy of the start tag
+            int index = text.indexOf('>');
+            StringBuffer copy = text.lend( index != -1 ? index+1 : text.length() );
+            try
+            {
+                setAttributes(copy, type);
+            }
+            finally
+            {
+                text.takeBack();
+            }
+        }
+        else
+        {
+            setAttributes(text, type);
+        }
 
         //Parse the body if we have an end tag
         if ( hasEndTag() ) getBody().parseText(text, type);
@@ -853,17 +1014,30 @@ public abstract class MarkupTag extends MarkupContent
         //See if there is an end tag here (check hasEndTag later cause sometimes people put them there anyway)
         if (text.length() > 1 && text.charAt(0) == '<' && text.charAt(1) == '/')
         {
-            text.delete(0, 2);
-            char c = (char)0;
-            String name = TextUtils.getTextUpTo(text, '>');
-            //Delete the >
-            text.deleteCharAt(0);
-            if ( !getTagName().equalsIgnoreCase(name) )
-            {
-                //Gotta stick the </tagname> back on
-                text.insert(0, "</"+name+">");
-            }
+            //Only skip it if it is ours
+            int index = text.indexOf('>', 2);
+            if (index == -1) index = text.getEnd()-text.getPosition();
+            if ( isTagName(text, 2, index) ) text.skip(index+1);
+        }
+    }
+
+    /**
+     * Returns whether the given class of tag or a class between it and this one overrides the deprecated
+     * setAttributes method that takes a StringBuffer and a FormatType. If it does, it is called in place
+     * of setAttributes(ParseCursor, FormatType) when the tag is parsed.
+     *
+     * @param tagClass The class of tag.
+     * @return boolean
+     */
+    private static boolean overridesLegacySetAttributes(Class tagClass)
+    {
+        Boolean ret = (Boolean)_legacySetAttributes.get(tagClass);
+        if (ret == null)
+        {
+            ret = Boolean.valueOf( declares(tagClass, MarkupTag.class, "setAttributes", new Class[] {StringBuffer.class, FormatType.class}) );
+            _legacySetAttributes.put(tagClass, ret);
         }
+        return ret.booleanValue();
     }
 
     /**
@@ -872,15 +1046,24 @@ public abstract class MarkupTag extends MarkupContent
      * @param text The content.
      * @throws IllegalMarkupException if the tag is invalid.
      */
-    protected void validateTagName(StringBuffer text)
+    protected void validateTagName(ParseCursor text)
     {
-        String tag = TextUtils.getTextUpTo(text, new char[]{' ','>','<','\r','\n'});
+        int index = text.indexOfAny(TAG_NAME_END);
+        if (index == -1) index = text.getEnd()-text.getPosition();
         String tagName = getTagName();
         //Now we should be at the tag name. Make sure it is right
-        if ( tagName != null && !tagName.equalsIgnoreCase(tag) ) throw new IllegalMarkupException
-        (
-            "Expected tag <"+tagName+">, but found <"+tag+TextUtils.trunc(text.toString(), 25)
-        );
+        if ( tagName != null && !isTagName(text, 0, index) )
+        {
+            //When lenient, the tag is kept as the one that was created for it
+            if ( recover(ParseDiagnostics.WRONG_TAG_NAME, text, text.substring(0, index)) )
+            {
+                text.skip(index);
+                return;
+            }
+            String tag = text.consume(index);
+            throw new IllegalMarkupException("Expected tag <"+tagName+">, but found <"+tag+text.peek(25));
+        }
+        text.skip(index);
     }
 
     /**
@@ -934,4 +1117,45 @@ public abstract class MarkupTag extends MarkupContent
     {
         return _addClosingSlashInStart;
     }
+
+    /**
+     * Sets each attribute that is parsed from the start tag in this tag.
+     */
+    private class AttributeBuilder extends DefaultMarkupHandler
+    {
+        private FormatType _type;
+
+        private AttributeBuilder(FormatType type)
+        {
+            _type = type;
+        }
+
+        public void attribute(String name, CharSequence value, char quote)
+        {
+            if (value == null)
+            {
+                setAttribute(name);
+                return;
+            }
+            ParseArena arena = getParseArena();
+            TagAttributeValue val = (arena != null ? (TagAttributeValue)arena.take(TagAttributeValue.class) : null);
+            if (val == null)
+            {
+                val = new TagAttributeValue();
+                if (arena != null) arena.add(val);
+            }
+            val.setStrict( isStrict() );
+            val.setPreserveWhiteSpace( preserveWhiteSpace() );
+            try
+            {
+                val.parse(new ParseCursor(value), _type);
+            }
+            catch (UnsupportedFormatException ufe)
+            {
+                throw new RuntimeException("Could not parse "+value, ufe);
+            }
+            setAttribute(name, val);
+            _foundSingleQuotes = (_foundSingleQuotes || quote != '"');
+        }
+    }
 }
\ No newline at end of file
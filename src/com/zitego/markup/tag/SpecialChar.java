@@ -12,135 +12,135 @@ import com.zitego.util.Constant;
  */
 public final class SpecialChar extends Constant
 {
-    public static final SpecialChar NBSP = new SpecialChar("Non-breaking Space", "&nbsp;");
-    public static final SpecialChar LESS_THAN = new SpecialChar("Less Than Sign", "&lt;");
-    public static final SpecialChar GREATER_THAN = new SpecialChar("Greater Than Sign", "&gt;");
-    public static final SpecialChar AMPERSAND = new SpecialChar("Ampersand", "&amp;");
-    public static final SpecialChar QUOTE = new SpecialChar("Double Quote", "&quot;");
-    public static final SpecialChar INVERTED_EXCLAMATION = new SpecialChar("Inverted Exclamation Point", "&iexcl;");
-    public static final SpecialChar CURRENCY = new SpecialChar("Currency Mark", "&curren;");
-    public static final SpecialChar CENT = new SpecialChar("Cent Mark", "&cent;");
-    public static final SpecialChar POUND = new SpecialChar("British Pound Sign", "&pound;");
-    public static final SpecialChar YEN = new SpecialChar("Japanese Yen Sign", "&yen;");
-    public static final SpecialChar EURO = new SpecialChar("Euro Symbol", "&euro;");
-    public static final SpecialChar BROKEN_VERTICAL_BAR = new SpecialChar("Broken Vertical Bar", "&brvbar;");
-    public static final SpecialChar SECTION = new SpecialChar("Section Symbol", "&sect;");
-    public static final SpecialChar SPACING_DIAERESIS = new SpecialChar("Spacing Diaeresis", "&uml;");
-    public static final SpecialChar COPYRIGHT = new SpecialChar("Copyright Symbol", "&copy;");
-    public static final SpecialChar FEMININE_ORDINAL_INDICATOR = new SpecialChar("Feminine Ordinal Indicator", "&ordf;");
-    public static final SpecialChar LEFT_ANGLE_QUOTATION_MARK = new SpecialChar("Angle Quotation Mark (left)", "&laquo;");
-    public static final SpecialChar NEGATION = new SpecialChar("Negation Symbol", "&not;");
-    public static final SpecialChar SOFT_HYPHEN = new SpecialChar("Soft Hyphen", "&shy;");
-    public static final SpecialChar REGISTERED_TRADEMARK = new SpecialChar("Registered Trademark Symbol", "&reg;");
-    public static final SpecialChar TRADEMARK = new SpecialChar("Trademark Symbol", "&trade;");
-    public static final SpecialChar SPACING_MACRON = new SpecialChar("Spacing Macron", "&macr;");
-    public static final SpecialChar DEGREE = new SpecialChar("Degree Symbol", "&deg;");
-    public static final SpecialChar PLUS_OR_MINUS = new SpecialChar("Plus/Minus Symbol", "&plusmn;");
-    public static final SpecialChar SUPERSCRIPT_2 = new SpecialChar("Superscript 2", "&sup2;");
-    public static final SpecialChar SUPERSCRIPT_3 = new SpecialChar("Superscript 3", "&sup3;");
-    public static final SpecialChar SPACING_ACUTE = new SpecialChar("Spacing Acute Symbol", "&acute;");
-    public static final SpecialChar MICRO = new SpecialChar("Micro Symbol", "&micro;");
-    public static final SpecialChar PARAGRAPH = new SpecialChar("Paragraph Symbol", "&para;");
-    public static final SpecialChar MIDDLE_DOT = new SpecialChar("Middle Dot Symbol", "&middot;");
-    public static final SpecialChar SPACING_CEDILLA = new SpecialChar("Spacing Cedilla", "&cedil;");
-    public static final SpecialChar SUPERSCRIPT_1 = new SpecialChar("Superscript 1", "&sup1;");
-    public static final SpecialChar MASCULINE_ORDINAL_INDICATOR = new SpecialChar("Masculine Ordinal Indicator", "&ordm;");
-    public static final SpecialChar ANGLE_QUOTATION_MARK = new SpecialChar("Angle Quotation Mark (RIGHT)", "&raquo;");
-    public static final SpecialChar QUARTER_FRACTION = new SpecialChar("Fraction 1/4", "&frac14;");
-    public static final SpecialChar HALF_FRACTION = new SpecialChar("Fraction 1/2", "&frac12;");
-    public static final SpecialChar THREE_QUARTER_FRACTION = new SpecialChar("Fraction 3/4", "&frac34;");
-    public static final SpecialChar INVERTED_QUESTION_MARK = new SpecialChar("Inverted Question Mark", "&iquest;");
-    public static final SpecialChar MULTIPLICATION = new SpecialChar("Multiplication Symbol", "&times;");
-    public static final SpecialChar DIVISION = new SpecialChar("Division Symbol", "&divide;");
-    public static final SpecialChar GRAVE_CAPITAL_A = new SpecialChar("Capital a, grave accent", "&Agrave;");
-    public static final SpecialChar ACUTE_CAPITAL_A = new SpecialChar("Capital a, acute accent", "&Aacute;");
-    public static final SpecialChar CIRCUMFLEX_CAPITAL_A = new SpecialChar("Capital a, circumflex accent", "&Acirc;");
-    public static final SpecialChar TILDE_CAPITAL_A = new SpecialChar("Capital a, tilde", "&Atilde;");
-    public static final SpecialChar UMLAUT_CAPITAL_A = new SpecialChar("Capital a, umlaut mark", "&Auml;");
-    public static final SpecialChar RING_CAPITAL_A = new SpecialChar("Capital a, ring", "&Aring;");
-    public static final SpecialChar CAPITAL_AE = new SpecialChar("Capital ae", "&AElig;");
-    public static final SpecialChar CEDILLA_CAPITAL_C = new SpecialChar("Capital c, cedilla", "&Ccedil;");
-    public static final SpecialChar GRACE_CAPITAL_E = new SpecialChar("Capital e, grave accent", "&Egrave;");
-    public static final SpecialChar ACUTE_CAPITAL_E = new SpecialChar("Capital e, acute accent", "&Eacute;");
-    public static final SpecialChar CIRCUMFLEX_CAPITAL_E = new SpecialChar("Capital e, circumflex accent", "&Ecirc;");
-    public static final SpecialChar UNLAUT_CAPITAL_E = new SpecialChar("Capital e, umlaut mark", "&Euml;");
-    public static final SpecialChar GRAVE_CAPITAL_I = new SpecialChar("Capital i, grave accent", "&Igrave;");
-    public static final SpecialChar ACUTE_CAPITAL_I = new SpecialChar("Capital i, acute accent", "&Iacute;");
-    public static final SpecialChar CIRCUMFLEX_CAPITAL_I = new SpecialChar("Capital i, circumflex accent", "&Icirc;");
-    public static final SpecialChar UMLAUT_CAPITAL_I = new SpecialChar("Capital i, umlaut mark", "&Iuml;");
-    public static final SpecialChar ICELANDIC_CAPITAL_ETH = new SpecialChar("Capital eth, Icelandic", "&ETH;");
-    public static final SpecialChar TILDE_CAPITAL_N = new SpecialChar("Capital n, tilde", "&Ntilde;");
-    public static final SpecialChar GRAVE_CAPITAL_O = new SpecialChar("Capital o, grave accent", "&Ograve;");
-    public static final SpecialChar ACUTE_CAPITAL_O = new SpecialChar("Capital o, acute accent", "&Oacute;");
-    public static final SpecialChar CIRCUMFLEX_CAPITAL_O = new SpecialChar("Capital o, circumflex accent", "&Ocirc;");
-    public static final SpecialChar TILDE_CAPITAL_O = new SpecialChar("Capital o, tilde", "&Otilde;");
-    public static final SpecialChar UMLAUT_CAPITAL_O = new SpecialChar("Capital o, umlaut mark", "&Ouml;");
-    public static final SpecialChar SLASH_CAPITAL_O = new SpecialChar("Capital o, slash", "&Oslash;");
-    public static final SpecialChar GRACE_CAPITAL_U = new SpecialChar("Capital u, grave accent", "&Ugrave;");
-    public static final SpecialChar ACUTE_CAPITAL_U = new SpecialChar("Capital u, acute accent", "&Uacute;");
-    public static final SpecialChar CIRCUMFLEX_CAPITAL_U = new SpecialChar("Capital u, circumflex accent", "&Ucirc;");
-    public static final SpecialChar UMLAUT_CAPITAL_U = new SpecialChar("Capital u, umlaut mark", "&Uuml;");
-    public static final SpecialChar ACUTE_CAPITAL_Y = new SpecialChar("Capital y, acute accent", "&Yacute;");
-    public static final SpecialChar ICELANDIC_CAPITAL_THORN = new SpecialChar("Capital THORN, Icelandic", "&THORN;");
-    public static final SpecialChar GERMAN_SMALL_S = new SpecialChar("Small sharp s, German", "&szlig;");
-    public static final SpecialChar GRAVE_SMALL_A = new SpecialChar("Small a, grave accent", "&agrave;");
-    public static final SpecialChar ACUTE_SMALL_A = new SpecialChar("Small a, acute accent", "&aacute;");
-    public static final SpecialChar CIRCUMFLEX_SMALL_A = new SpecialChar("Small a, circumflex accent", "&acirc;");
-    public static final SpecialChar TILDE_SMALL_A = new SpecialChar("Small a, tilde", "&atilde;");
-    public static final SpecialChar UMLAUT_SMALL_A = new SpecialChar("Small a, umlaut mark", "&auml;");
-    public static final SpecialChar RING_SMALL_A = new SpecialChar("Small a, ring", "&aring;");
-    public static final SpecialChar SMALL_AE = new SpecialChar("Small ae", "&aelig;");
-    public static final SpecialChar CEDILLA_SMALL_C = new SpecialChar("Small c, cedilla", "&ccedil;");
-    public static final SpecialChar GRAVE_SMALL_E = new SpecialChar("Small e, grave accent", "&egrave;");
-    public static final SpecialChar ACUTE_SMALL_E = new SpecialChar("Small e, acute accent", "&eacute;");
-    public static final SpecialChar CIRCUMFLEX_SMALL_E = new SpecialChar("Small e, circumflex accent", "&ecirc;");
-    public static final SpecialChar UMLAUT_SMALL_E = new SpecialChar("Small e, umlaut mark", "&euml;");
-    public static final SpecialChar GRAVE_SMALL_I = new SpecialChar("Small i, grave accent", "&igrave;");
-    public static final SpecialChar ACUTE_SMALL_I = new SpecialChar("Small i, acute accent", "&iacute;");
-    public static final SpecialChar CIRCUMFLEX_SMALL_I = new SpecialChar("Small i, circumflex accent", "&icirc;");
-    public static final SpecialChar UMLAUT_SMALL_I = new SpecialChar("Small i, umlaut mark", "&iuml;");
-    public static final SpecialChar ICELANDIC_SMALL_ETH = new SpecialChar("Small eth, Icelandic", "&eth;");
-    public static final SpecialChar TILDE_SMALL_N = new SpecialChar("Small n, tilde", "&ntilde;");
-    public static final SpecialChar GRAVE_SMALL_O = new SpecialChar("Small o, grave accent", "&ograve;");
-    public static final SpecialChar ACUTE_SMALL_O = new SpecialChar("Small o, acute accent", "&oacute;");
-    public static final SpecialChar CIRCUMFLEX_SMALL_O = new SpecialChar("Small o, circumflex accent", "&ocirc;");
-    public static final SpecialChar TILDE_SMALL_O = new SpecialChar("Small o, tilde", "&otilde;");
-    public static final SpecialChar UMLAUT_SMALL_O = new SpecialChar("Small o, umlaut mark", "&ouml;");
-    public static final SpecialChar SLASH_SMALL_O = new SpecialChar("Small o, slash", "&oslash;");
-    public static final SpecialChar GRAVE_SMALL_U = new SpecialChar("Small u, grave accent", "&ugrave;");
-    public static final SpecialChar ACUTE_SMALL_U = new SpecialChar("Small u, acute accent", "&uacute;");
-    public static final SpecialChar CIRCUMFLEX_SMALL_U = new SpecialChar("Small u, circumflex accent", "&ucirc;");
-    public static final SpecialChar UMLAUT_SMALL_U = new SpecialChar("Small u, umlaut mark", "&uuml;");
-    public static final SpecialChar ACUTE_SMALL_Y = new SpecialChar("Small y, acute accent", "&yacute;");
-    public static final SpecialChar ICELANDIC_SMALL_THORN = new SpecialChar("Small thorn, Icelandic", "&thorn;");
-    public static final SpecialChar UMLAUT_SMALL_Y = new SpecialChar("Small y, umlaut mark", "&yuml;");
-    public static final SpecialChar LIGATURE_CAPITAL_OE = new SpecialChar("Capital ligature OE", "&OElig;");
-    public static final SpecialChar LIGATURE_SMALL_OE = new SpecialChar("Small ligature oe", "&oelig;");
-    public static final SpecialChar CARON_CAPITAL_S = new SpecialChar("Capital S with caron", "&Scaron;");
-    public static final SpecialChar CARON_SMALL_S = new SpecialChar("Small S with caron", "&scaron;");
-    public static final SpecialChar DIARES_CAPITAL_Y = new SpecialChar("Capital Y with diaeres", "&Yuml;");
-    public static final SpecialChar CIRCUMFLEX_LETTER_MODIFER = new SpecialChar("Modifier letter circumflex accent", "&circ;");
-    public static final SpecialChar SMALL_TILDE = new SpecialChar("Small tilde", "&tilde;");
-    public static final SpecialChar EN_SPACE = new SpecialChar("en space", "&ensp;");
-    public static final SpecialChar EM_SPACE = new SpecialChar("em space", "&emsp;");
-    public static final SpecialChar THIN_SPACE = new SpecialChar("Thin space", "&thinsp;");
-    public static final SpecialChar ZERO_WIDTH_NON_JOINER = new SpecialChar("Zero width non-joiner", "&zwnj;");
-    public static final SpecialChar ZERO_WIDTH_JOINER = new SpecialChar("Zero width joiner", "&zwj;");
-    public static final SpecialChar LEFT_TO_RIGHT_MARK = new SpecialChar("Left-to-right mark", "&lrm;");
-    public static final SpecialChar RIGHT_TO_LEFT_MARK = new SpecialChar("Right-to-left mark", "&rlm;");
-    public static final SpecialChar EN_DASH = new SpecialChar("en dash", "&ndash;");
-    public static final SpecialChar EM_DASH = new SpecialChar("em dash", "&mdash;");
-    public static final SpecialChar LEFT_SINGLE_QUOTE = new SpecialChar("Left single quotation mark", "&lsquo;");
-    public static final SpecialChar RIGHT_SINGLE_QUOTE = new SpecialChar("Right single quotation mark", "&rsquo;");
-    public static final SpecialChar SINGLE_LOW9_QUOTE = new SpecialChar("Single low-9 quotation mark", "&sbquo;");
-    public static final SpecialChar LEFT_DOUBLE_QUOTE = new SpecialChar("Left double quotation mark", "&ldquo;");
-    public static final SpecialChar RIGHT_DOUBLE_QUOTE = new SpecialChar("Right double quotation mark", "&rdquo;");
-    public static final SpecialChar DOUBLE_LOW9_QUOTE = new SpecialChar("Double low-9 quotation mark", "&bdquo;");
-    public static final SpecialChar DAGGER = new SpecialChar("Dagger", "&dagger;");
-    public static final SpecialChar DOUBLE_DAGGER = new SpecialChar("Double dagger", "&Dagger;");
-    public static final SpecialChar PER_MILLE = new SpecialChar("Per mille", "&permil;");
-    public static final SpecialChar SINGLE_LEFT_ANGLE_QUOTE = new SpecialChar("Single left-pointing angle quotation", "&lsaquo;");
-    public static final SpecialChar SINLE_RIGHT_ANGLE_QUOTE = new SpecialChar("Single right-pointing angle quotation", "&rsaquo;");
+    public static final SpecialChar NBSP = new SpecialChar("Non-breaking Space", "&nbsp;", '\u00a0');
+    public static final SpecialChar LESS_THAN = new SpecialChar("Less Than Sign", "&lt;", '<');
+    public static final SpecialChar GREATER_THAN = new SpecialChar("Greater Than Sign", "&gt;", '>');
+    public static final SpecialChar AMPERSAND = new SpecialChar("Ampersand", "&amp;", '&');
+    public static final SpecialChar QUOTE = new SpecialChar("Double Quote", "&quot;", '"');
+    public static final SpecialChar INVERTED_EXCLAMATION = new SpecialChar("Inverted Exclamation Point", "&iexcl;", '\u00a1');
+    public static final SpecialChar CURRENCY = new SpecialChar("Currency Mark", "&curren;", '\u00a4');
+    public static final SpecialChar CENT = new SpecialChar("Cent Mark", "&cent;", '\u00a2');
+    public static final SpecialChar POUND = new SpecialChar("British Pound Sign", "&pound;", '\u00a3');
+    public static final SpecialChar YEN = new SpecialChar("Japanese Yen Sign", "&yen;", '\u00a5');
+    public static final SpecialChar EURO = new SpecialChar("Euro Symbol", "&euro;", '\u20ac');
+    public static final SpecialChar BROKEN_VERTICAL_BAR = new SpecialChar("Broken Vertical Bar", "&brvbar;", '\u00a6');
+    public static final SpecialChar SECTION = new SpecialChar("Section Symbol", "&sect;", '\u00a7');
+    public static final SpecialChar SPACING_DIAERESIS = new SpecialChar("Spacing Diaeresis", "&uml;", '\u00a8');
+    public static final SpecialChar COPYRIGHT = new SpecialChar("Copyright Symbol", "&copy;", '\u00a9');
+    public static final SpecialChar FEMININE_ORDINAL_INDICATOR = new SpecialChar("Feminine Ordinal Indicator", "&ordf;", '\u00aa');
+    public static final SpecialChar LEFT_ANGLE_QUOTATION_MARK = new SpecialChar("Angle Quotation Mark (left)", "&laquo;", '\u00ab');
+    public static final SpecialChar NEGATION = new SpecialChar("Negation Symbol", "&not;", '\u00ac');
+    public static final SpecialChar SOFT_HYPHEN = new SpecialChar("Soft Hyphen", "&shy;", '\u00ad');
+    public static final SpecialChar REGISTERED_TRADEMARK = new SpecialChar("Registered Trademark Symbol", "&reg;", '\u00ae');
+    public static final SpecialChar TRADEMARK = new SpecialChar("Trademark Symbol", "&trade;", '\u2122');
+    public static final SpecialChar SPACING_MACRON = new SpecialChar("Spacing Macron", "&macr;", '\u00af');
+    public static final SpecialChar DEGREE = new SpecialChar("Degree Symbol", "&deg;", '\u00b0');
+    public static final SpecialChar PLUS_OR_MINUS = new SpecialChar("Plus/Minus Symbol", "&plusmn;", '\u00b1');
+    public static final SpecialChar SUPERSCRIPT_2 = new SpecialChar("Superscript 2", "&sup2;", '\u00b2');
+    public static final SpecialChar SUPERSCRIPT_3 = new SpecialChar("Superscript 3", "&sup3;", '\u00b3');
+    public static final SpecialChar SPACING_ACUTE = new SpecialChar("Spacing Acute Symbol", "&acute;", '\u00b4');
+    public static final SpecialChar MICRO = new SpecialChar("Micro Symbol", "&micro;", '\u00b5');
+    public static final SpecialChar PARAGRAPH = new SpecialChar("Paragraph Symbol", "&para;", '\u00b6');
+    public static final SpecialChar MIDDLE_DOT = new SpecialChar("Middle Dot Symbol", "&middot;", '\u00b7');
+    public static final SpecialChar SPACING_CEDILLA = new SpecialChar("Spacing Cedilla", "&cedil;", '\u00b8');
+    public static final SpecialChar SUPERSCRIPT_1 = new SpecialChar("Superscript 1", "&sup1;", '\u00b9');
+    public static final SpecialChar MASCULINE_ORDINAL_INDICATOR = new SpecialChar("Masculine Ordinal Indicator", "&ordm;", '\u00ba');
+    public static final SpecialChar ANGLE_QUOTATION_MARK = new SpecialChar("Angle Quotation Mark (RIGHT)", "&raquo;", '\u00bb');
+    public static final SpecialChar QUARTER_FRACTION = new SpecialChar("Fraction 1/4", "&frac14;", '\u00bc');
+    public static final SpecialChar HALF_FRACTION = new SpecialChar("Fraction 1/2", "&frac12;", '\u00bd');
+    public static final SpecialChar THREE_QUARTER_FRACTION = new SpecialChar("Fraction 3/4", "&frac34;", '\u00be');
+    public static final SpecialChar INVERTED_QUESTION_MARK = new SpecialChar("Inverted Question Mark", "&iquest;", '\u00bf');
+    public static final SpecialChar MULTIPLICATION = new SpecialChar("Multiplication Symbol", "&times;", '\u00d7');
+    public static final SpecialChar DIVISION = new SpecialChar("Division Symbol", "&divide;", '\u00f7');
+    public static final SpecialChar GRAVE_CAPITAL_A = new SpecialChar("Capital a, grave accent", "&Agrave;", '\u00c0');
+    public static final SpecialChar ACUTE_CAPITAL_A = new SpecialChar("Capital a, acute accent", "&Aacute;", '\u00c1');
+    public static final SpecialChar CIRCUMFLEX_CAPITAL_A = new SpecialChar("Capital a, circumflex accent", "&Acirc;", '\u00c2');
+    public static final SpecialChar TILDE_CAPITAL_A = new SpecialChar("Capital a, tilde", "&Atilde;", '\u00c3');
+    public static final SpecialChar UMLAUT_CAPITAL_A = new SpecialChar("Capital a, umlaut mark", "&Auml;", '\u00c4');
+    public static final SpecialChar RING_CAPITAL_A = new SpecialChar("Capital a, ring", "&Aring;", '\u00c5');
+    public static final SpecialChar CAPITAL_AE = new SpecialChar("Capital ae", "&AElig;", '\u00c6');
+    public static final SpecialChar CEDILLA_CAPITAL_C = new SpecialChar("Capital c, cedilla", "&Ccedil;", '\u00c7');
+    public static final SpecialChar GRACE_CAPITAL_E = new SpecialChar("Capital e, grave accent", "&Egrave;", '\u00c8');
+    public static final SpecialChar ACUTE_CAPITAL_E = new SpecialChar("Capital e, acute accent", "&Eacute;", '\u00c9');
+    public static final SpecialChar CIRCUMFLEX_CAPITAL_E = new SpecialChar("Capital e, circumflex accent", "&Ecirc;", '\u00ca');
+    public static final SpecialChar UNLAUT_CAPITAL_E = new SpecialChar("Capital e, umlaut mark", "&Euml;", '\u00cb');
+    public static final SpecialChar GRAVE_CAPITAL_I = new SpecialChar("Capital i, grave accent", "&Igrave;", '\u00cc');
+    public static final SpecialChar ACUTE_CAPITAL_I = new SpecialChar("Capital i, acute accent", "&Iacute;", '\u00cd');
+    public static final SpecialChar CIRCUMFLEX_CAPITAL_I = new SpecialChar("Capital i, circumflex accent", "&Icirc;", '\u00ce');
+    public static final SpecialChar UMLAUT_CAPITAL_I = new SpecialChar("Capital i, umlaut mark", "&Iuml;", '\u00cf');
+    public static final SpecialChar ICELANDIC_CAPITAL_ETH = new SpecialChar("Capital eth, Icelandic", "&ETH;", '\u00d0');
+    public static final SpecialChar TILDE_CAPITAL_N = new SpecialChar("Capital n, tilde", "&Ntilde;", '\u00d1');
+    public static final SpecialChar GRAVE_CAPITAL_O = new SpecialChar("Capital o, grave accent", "&Ograve;", '\u00d2');
+    public static final SpecialChar ACUTE_CAPITAL_O = new SpecialChar("Capital o, acute accent", "&Oacute;", '\u00d3');
+    public static final SpecialChar CIRCUMFLEX_CAPITAL_O = new SpecialChar("Capital o, circumflex accent", "&Ocirc;", '\u00d4');
+    public static final SpecialChar TILDE_CAPITAL_O = new SpecialChar("Capital o, tilde", "&Otilde;", '\u00d5');
+    public static final SpecialChar UMLAUT_CAPITAL_O = new SpecialChar("Capital o, umlaut mark", "&Ouml;", '\u00d6');
+    public static final SpecialChar SLASH_CAPITAL_O = new SpecialChar("Capital o, slash", "&Oslash;", '\u00d8');
+    public static final SpecialChar GRACE_CAPITAL_U = new SpecialChar("Capital u, grave accent", "&Ugrave;", '\u00d9');
+    public static final SpecialChar ACUTE_CAPITAL_U = new SpecialChar("Capital u, acute accent", "&Uacute;", '\u00da');
+    public static final SpecialChar CIRCUMFLEX_CAPITAL_U = new SpecialChar("Capital u, circumflex accent", "&Ucirc;", '\u00db');
+    public static final SpecialChar UMLAUT_CAPITAL_U = new SpecialChar("Capital u, umlaut mark", "&Uuml;", '\u00dc');
+    public static final SpecialChar ACUTE_CAPITAL_Y = new SpecialChar("Capital y, acute accent", "&Yacute;", '\u00dd');
+    public static final SpecialChar ICELANDIC_CAPITAL_THORN = new SpecialChar("Capital THORN, Icelandic", "&THORN;", '\u00de');
+    public static final SpecialChar GERMAN_SMALL_S = new SpecialChar("Small sharp s, German", "&szlig;", '\u00df');
+    public static final SpecialChar GRAVE_SMALL_A = new SpecialChar("Small a, grave accent", "&agrave;", '\u00e0');
+    public static final SpecialChar ACUTE_SMALL_A = new SpecialChar("Small a, acute accent", "&aacute;", '\u00e1');
+    public static final SpecialChar CIRCUMFLEX_SMALL_A = new SpecialChar("Small a, circumflex accent", "&acirc;", '\u00e2');
+    public static final SpecialChar TILDE_SMALL_A = new SpecialChar("Small a, tilde", "&atilde;", '\u00e3');
+    public static final SpecialChar UMLAUT_SMALL_A = new SpecialChar("Small a, umlaut mark", "&auml;", '\u00e4');
+    public static final SpecialChar RING_SMALL_A = new SpecialChar("Small a, ring", "&aring;", '\u00e5');
+    public static final SpecialChar SMALL_AE = new SpecialChar("Small ae", "&aelig;", '\u00e6');
+    public static final SpecialChar CEDILLA_SMALL_C = new SpecialChar("Small c, cedilla", "&ccedil;", '\u00e7');
+    public static final SpecialChar GRAVE_SMALL_E = new SpecialChar("Small e, grave accent", "&egrave;", '\u00e8');
+    public static final SpecialChar ACUTE_SMALL_E = new SpecialChar("Small e, acute accent", "&eacute;", '\u00e9');
+    public static final SpecialChar CIRCUMFLEX_SMALL_E = new SpecialChar("Small e, circumflex accent", "&ecirc;", '\u00ea');
+    public static final SpecialChar UMLAUT_SMALL_E = new SpecialChar("Small e, umlaut mark", "&euml;", '\u00eb');
+    public static final SpecialChar GRAVE_SMALL_I = new SpecialChar("Small i, grave accent", "&igrave;", '\u00ec');
+    public static final SpecialChar ACUTE_SMALL_I = new SpecialChar("Small i, acute accent", "&iacute;", '\u00ed');
+    public static final SpecialChar CIRCUMFLEX_SMALL_I = new SpecialChar("Small i, circumflex accent", "&icirc;", '\u00ee');
+    public static final SpecialChar UMLAUT_SMALL_I = new SpecialChar("Small i, umlaut mark", "&iuml;", '\u00ef');
+    public static final SpecialChar ICELANDIC_SMALL_ETH = new SpecialChar("Small eth, Icelandic", "&eth;", '\u00f0');
+    public static final SpecialChar TILDE_SMALL_N = new SpecialChar("Small n, tilde", "&ntilde;", '\u00f1');
+    public static final SpecialChar GRAVE_SMALL_O = new SpecialChar("Small o, grave accent", "&ograve;", '\u00f2');
+    public static final SpecialChar ACUTE_SMALL_O = new SpecialChar("Small o, acute accent", "&oacute;", '\u00f3');
+    public static final SpecialChar CIRCUMFLEX_SMALL_O = new SpecialChar("Small o, circumflex accent", "&ocirc;", '\u00f4');
+    public static final SpecialChar TILDE_SMALL_O = new SpecialChar("Small o, tilde", "&otilde;", '\u00f5');
+    public static final SpecialChar UMLAUT_SMALL_O = new SpecialChar("Small o, umlaut mark", "&ouml;", '\u00f6');
+    public static final SpecialChar SLASH_SMALL_O = new SpecialChar("Small o, slash", "&oslash;", '\u00f8');
+    public static final SpecialChar GRAVE_SMALL_U = new SpecialChar("Small u, grave accent", "&ugrave;", '\u00f9');
+    public static final SpecialChar ACUTE_SMALL_U = new SpecialChar("Small u, acute accent", "&uacute;", '\u00fa');
+    public static final SpecialChar CIRCUMFLEX_SMALL_U = new SpecialChar("Small u, circumflex accent", "&ucirc;", '\u00fb');
+    public static final SpecialChar UMLAUT_SMALL_U = new SpecialChar("Small u, umlaut mark", "&uuml;", '\u00fc');
+    public static final SpecialChar ACUTE_SMALL_Y = new SpecialChar("Small y, acute accent", "&yacute;", '\u00fd');
+    public static final SpecialChar ICELANDIC_SMALL_THORN = new SpecialChar("Small thorn, Icelandic", "&thorn;", '\u00fe');
+    public static final SpecialChar UMLAUT_SMALL_Y = new SpecialChar("Small y, umlaut mark", "&yuml;", '\u00ff');
+    public static final SpecialChar LIGATURE_CAPITAL_OE = new SpecialChar("Capital ligature OE", "&OElig;", '\u0152');
+    public static final SpecialChar LIGATURE_SMALL_OE = new SpecialChar("Small ligature oe", "&oelig;", '\u0153');
+    public static final SpecialChar CARON_CAPITAL_S = new SpecialChar("Capital S with caron", "&Scaron;", '\u0160');
+    public static final SpecialChar CARON_SMALL_S = new SpecialChar("Small S with caron", "&scaron;", '\u0161');
+    public static final SpecialChar DIARES_CAPITAL_Y = new SpecialChar("Capital Y with diaeres", "&Yuml;", '\u0178');
+    public static final SpecialChar CIRCUMFLEX_LETTER_MODIFER = new SpecialChar("Modifier letter circumflex accent", "&circ;", '\u02c6');
+    public static final SpecialChar SMALL_TILDE = new SpecialChar("Small tilde", "&tilde;", '\u02dc');
+    public static final SpecialChar EN_SPACE = new SpecialChar("en space", "&ensp;", '\u2002');
+    public static final SpecialChar EM_SPACE = new SpecialChar("em space", "&emsp;", '\u2003');
+    public static final SpecialChar THIN_SPACE = new SpecialChar("Thin space", "&thinsp;", '\u2009');
+    public static final SpecialChar ZERO_WIDTH_NON_JOINER = new SpecialChar("Zero width non-joiner", "&zwnj;", '\u200c');
+    public static final SpecialChar ZERO_WIDTH_JOINER = new SpecialChar("Zero width joiner", "&zwj;", '\u200d');
+    public static final SpecialChar LEFT_TO_RIGHT_MARK = new SpecialChar("Left-to-right mark", "&lrm;", '\u200e');
+    public static final SpecialChar RIGHT_TO_LEFT_MARK = new SpecialChar("Right-to-left mark", "&rlm;", '\u200f');
+    public static final SpecialChar EN_DASH = new SpecialChar("en dash", "&ndash;", '\u2013');
+    public static final SpecialChar EM_DASH = new SpecialChar("em dash", "&mdash;", '\u2014');
+    public static final SpecialChar LEFT_SINGLE_QUOTE = new SpecialChar("Left single quotation mark", "&lsquo;", '\u2018');
+    public static final SpecialChar RIGHT_SINGLE_QUOTE = new SpecialChar("Right single quotation mark", "&rsquo;", '\u2019');
+    public static final SpecialChar SINGLE_LOW9_QUOTE = new SpecialChar("Single low-9 quotation mark", "&sbquo;", '\u201a');
+    public static final SpecialChar LEFT_DOUBLE_QUOTE = new SpecialChar("Left double quotation mark", "&ldquo;", '\u201c');
+    public static final SpecialChar RIGHT_DOUBLE_QUOTE = new SpecialChar("Right double quotation mark", "&rdquo;", '\u201d');
+    public static final SpecialChar DOUBLE_LOW9_QUOTE = new SpecialChar("Double low-9 quotation mark", "&bdquo;", '\u201e');
+    public static final SpecialChar DAGGER = new SpecialChar("Dagger", "&dagger;", '\u2020');
+    public static final SpecialChar DOUBLE_DAGGER = new SpecialChar("Double dagger", "&Dagger;", '\u2021');
+    public static final SpecialChar PER_MILLE = new SpecialChar("Per mille", "&permil;", '\u2030');
+    public static final SpecialChar SINGLE_LEFT_ANGLE_QUOTE = new SpecialChar("Single left-pointing angle quotation", "&lsaquo;", '\u2039');
+    public static final SpecialChar SINLE_RIGHT_ANGLE_QUOTE = new SpecialChar("Single right-pointing angle quotation", "&rsaquo;", '\u203a');
 
     /** Gets incremented as format types are initialized. */
     private static int _nextId = 0;
@@ -148,17 +148,21 @@ public final class SpecialChar extends Constant
     private static Vector _chars;
     /** The symbol. */
     protected String _symbol;
+    /** The character the symbol stands for. */
+    protected char _char;
 
     /**
-     * Creates a new SpecialChar given the description and the symbol.
+     * Creates a new SpecialChar given the description, the symbol, and the character it stands for.
      *
      * @param String The description.
      * @param String The symbol.
+     * @param char The character.
      */
-    private SpecialChar(String desc, String symbol)
+    private SpecialChar(String desc, String symbol, char c)
     {
         super(_nextId++, desc);
         _symbol = symbol;
+        _char = c;
         if (_chars == null) _chars = new Vector();
         _chars.add(this);
     }
@@ -173,6 +177,16 @@ public final class SpecialChar extends Constant
         return _symbol;
     }
 
+    /**
+     * Returns the character the symbol stands for.
+     *
+     * @return char
+     */
+    public char getChar()
+    {
+        return _char;
+    }
+
     /**
      * Returns an SpecialChar based on the id passed in. If the id does not match the id of
      * a constant, then we return null. If there are two constants with the same id, then
@@ -187,23 +201,40 @@ public final class SpecialChar extends Constant
     }
 
     /**
-     * Returns an SpecialChar based on the symbol passed in.
+     * Returns an SpecialChar based on the symbol passed in. The symbol is looked up in the hash
+     * table in Entities.
      *
-     * @param Vector The vector of constants to evaluate from.
-     * @param String The description.
+     * @param String The symbol.
      * @return SpecialChar
      */
     public static SpecialChar evaluate(String symbol)
     {
         if (symbol == null) return null;
 
-        int count = _chars.size();
-        for (int i=0; i<count; i++)
-        {
-            SpecialChar ret = (SpecialChar)_chars.elementAt(i);
-            if ( symbol.equals(ret.getSymbol()) ) return ret;
-        }
-        return null;
+        int len = symbol.length();
+        if (len < 3 || symbol.charAt(0) != '&' || symbol.charAt(len-1) != ';') return null;
+        return Entities.lookup(symbol, 1, len-1);
+    }
+
+    /**
+     * Returns the SpecialChar for the given character or null if there is not one.
+     *
+     * @param char The character.
+     * @return SpecialChar
+     */
+    public static SpecialChar forChar(char c)
+    {
+        return Entities.forChar(c);
+    }
+
+    /**
+     * Returns all of the special characters in the order they were created.
+     *
+     * @return Vector
+     */
+    static Vector getChars()
+    {
+        return _chars;
     }
 
     public String toString()
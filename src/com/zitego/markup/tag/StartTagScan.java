@@ -0,0 +1,112 @@
+package com.zitego.markup.tag;
+
+import com.zitego.markup.DefaultMarkupHandler;
+import com.zitego.markup.MarkupHandler;
+import com.zitego.markup.ParseCursor;
+import java.util.Vector;
+
+/**
+ * This holds the attributes of a start tag that have been scanned ahead of the tag being parsed.
+ * A factory that needs to look at an attribute to decide what tag to create (such as the type of
+ * an input tag) can scan the start tag once and hand the scan to the tag. When the tag parses its
+ * attributes at the same place in the same cursor, they are replayed from the scan rather then
+ * tokenized again. See <code>MarkupTag.setStartTagScan(StartTagScan)</code>.
+ *
+ * @author John Glorioso
+ * @version $Id$
+ */
+public class StartTagScan extends DefaultMarkupHandler
+{
+    private ParseCursor _cursor;
+    /** The position of the attributes in the cursor. */
+    private int _start;
+    /** The position just passed the start tag. */
+    private int _end;
+    private boolean _closed;
+    private Vector _names = new Vector();
+    private Vector _values = new Vector();
+    private StringBuffer _quotes = new StringBuffer();
+
+    /**
+     * Scans the attributes of the start tag at the given cursor. The cursor is left where it was.
+     *
+     * @param in The cursor at the first attribute.
+     * @throws IllegalArgumentException if the cursor is null.
+     */
+    public StartTagScan(ParseCursor in) throws IllegalArgumentException
+    {
+        if (in == null) throw new IllegalArgumentException("cursor cannot be null");
+        _cursor = in;
+        _start = in.getPosition();
+        _closed = MarkupTag.parseAttributes(in, this);
+        _end = in.getPosition();
+        in.setPosition(_start);
+    }
+
+    public void attribute(String name, CharSequence value, char quote)
+    {
+        _names.add(name);
+        _values.add(value);
+        _quotes.append(quote);
+    }
+
+    /**
+     * Returns the value of the first attribute with the given name or null if there is not one.
+     * The name is not case sensitive.
+     *
+     * @param name The attribute name.
+     * @return CharSequence
+     */
+    public CharSequence getValue(String name)
+    {
+        int size = _names.size();
+        for (int i=0; i<size; i++)
+        {
+            if ( name.equalsIgnoreCase((String)_names.get(i)) ) return (CharSequence)_values.get(i);
+        }
+        return null;
+    }
+
+    /**
+     * Returns whether the start tag ended with a &gt; rather then running into the end of the text.
+     *
+     * @return boolean
+     */
+    public boolean isTerminated()
+    {
+        return ( _end > 0 && _cursor.getText().charAt(_end-1) == '>' );
+    }
+
+    /**
+     * Returns whether this scan was made at the current position of the given cursor.
+     *
+     * @param in The cursor.
+     * @return boolean
+     */
+    public boolean isFor(ParseCursor in)
+    {
+        return ( in == _cursor && in.getPosition() == _start );
+    }
+
+    /**
+     * Passes the scanned attributes to the handler and advances the cursor passed the start tag the
+     * same way as <code>MarkupTag.parseAttributes(ParseCursor, MarkupHandler)</code>. Returns whether
+     * the start tag was closed with a /&gt;.
+     *
+     * @param in The cursor the scan was made for.
+     * @param handler The handler to pass the attributes to.
+     * @return boolean
+     * @throws IllegalArgumentException if the scan was not made at the cursor's position.
+     */
+    public boolean replay(ParseCursor in, MarkupHandler handler) throws IllegalArgumentException
+    {
+        if ( !isFor(in) ) throw new IllegalArgumentException("Scan is not for the cursor position");
+        int size = _names.size();
+        for (int i=0; i<size; i++)
+        {
+            handler.attribute( (String)_names.get(i), (CharSequence)_values.get(i), _quotes.charAt(i) );
+        }
+        in.setPosition(_end);
+        return _closed;
+    }
+}
@@ -77,6 +77,21 @@ public class TagAttribute extends com.zitego.util.CachedContent
         }
     }
 
+    /**
+     * Clears the name, value, and settings of this attribute, so that a ParseArena can hand it out
+     * again.
+     */
+    public void recycle()
+    {
+        _name = null;
+        _value = null;
+        _forceSingleQuotes = false;
+        _strict = true;
+        _preserveWhiteSpace = false;
+        cacheContent(this, null);
+        setChanged();
+    }
+
     /**
      * Returns the name.
      *
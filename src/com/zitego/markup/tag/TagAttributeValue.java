@@ -2,6 +2,7 @@ package com.zitego.markup.tag;
 
 import com.zitego.markup.MarkupContent;
 import com.zitego.markup.MarkupFactory;
+import com.zitego.markup.ParseCursor;
 import com.zitego.markup.TextContent;
 import com.zitego.markup.IllegalMarkupException;
 import com.zitego.format.FormatType;
@@ -9,14 +10,21 @@ import com.zitego.format.UnsupportedFormatException;
 
 /**
  * Encapsulates a tag attribute value. Typically, a tag attribute value is text, but
- * this class supports multiple MarkupContents.
+ * this class supports multiple MarkupContents. A parsed value that has no markup in it
+ * is kept as plain text rather then being parsed into MarkupContent.
  *
  * @author John Glorioso
  * @version $Id: TagAttributeValue.java,v 1.1.1.1 2008/02/20 15:01:12 jglorioso Exp $
  */
 public class TagAttributeValue extends MarkupContent
 {
+    /** The content of a value that has none. It is shared since it cannot be changed. */
+    private static final MarkupContent[] NO_CONTENT = new MarkupContent[0];
     private MarkupContent[] _content;
+    /** The value if it is plain text. */
+    private CharSequence _text;
+    /** Whether the plain text is trimmed when it is formatted. */
+    private boolean _trimText;
 
     /**
      * Creates a new tag attribute value.
@@ -66,7 +74,30 @@ public class TagAttributeValue extends MarkupContent
     {
         setChanged();
         _content = content;
-        if (_content == null) _content = new MarkupContent[0];
+        if (_content == null) _content = NO_CONTENT;
+        _text = null;
+    }
+
+    /**
+     * Sets the value to plain text. The text is formatted as it is, except that it is trimmed unless
+     * white space is being preserved. This is the same as setting it to a parsed TextContent without
+     * creating one.
+     *
+     * @param text The text.
+     */
+    public void setText(CharSequence text)
+    {
+        setValue( (MarkupContent[])null );
+        _text = text;
+        _trimText = !preserveWhiteSpace();
+    }
+
+    protected void recycle()
+    {
+        //Parsed values are handed out by ParseArena
+        super.recycle();
+        setValue( (MarkupContent[])null );
+        _trimText = false;
     }
 
     protected String generateContent(FormatType type) throws UnsupportedFormatException
@@ -74,6 +105,11 @@ public class TagAttributeValue extends MarkupContent
         if ( hasChanged() )
         {
             StringBuffer ret = new StringBuffer();
+            if (_text != null)
+            {
+                String txt = _text.toString();
+                ret.append( (_trimText ? txt.trim() : txt) );
+            }
             for (int i=0; i<_content.length; i++)
             {
                 if (_content[i] != null) ret.append( _content[i].format(type) );
@@ -84,9 +120,19 @@ public class TagAttributeValue extends MarkupContent
         return (String)getCachedContent(type);
     }
 
-    public void parseText(StringBuffer txt, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
+    /**
+     * Parses the value. If there is no &lt; in it, it is set as plain text without going through
+     * the MarkupFactory. Otherwise, it is parsed as markup.
+     *
+     * @param txt The text.
+     * @param type The format type.
+     * @throws IllegalMarkupException if the text is invalid.
+     * @throws UnsupportedFormatException if the format is not supported.
+     */
+    public void parseText(ParseCursor txt, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
     {
-        setValue( MarkupFactory.getInstance().parse(txt, null, type, true, isStrict(), preserveWhiteSpace()) );
+        if (txt.indexOf('<') == -1) setText( txt.getSpanUpTo('<') );
+        else setValue( MarkupFactory.getInstance().parse(txt, null, type, true, isStrict(), preserveWhiteSpace()) );
     }
 
     /**
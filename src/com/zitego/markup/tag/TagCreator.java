@@ -0,0 +1,32 @@
+package com.zitego.markup.tag;
+
+import com.zitego.markup.MarkupContent;
+
+/**
+ * This interface creates tags of one kind for a markup factory. A factory keeps one creator
+ * for each tag name it knows about, so the work of figuring out how to create a tag is done
+ * once rather then for every tag that is parsed.
+ *
+ * @author John Glorioso
+ * @version $Id$
+ * @see ConstructorTagCreator
+ */
+public interface TagCreator
+{
+    /**
+     * Returns the class of the tags that are created.
+     *
+     * @return Class
+     */
+    public Class getTagClass();
+
+    /**
+     * Creates a new tag with the given parent. Null is returned if the tag cannot have
+     * that parent.
+     *
+     * @param parent The parent or null if there is not one.
+     * @return MarkupTag
+     * @throws Exception if an error occurs creating the tag.
+     */
+    public MarkupTag createTag(MarkupContent parent) throws Exception;
+}
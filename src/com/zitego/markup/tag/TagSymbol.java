@@ -0,0 +1,210 @@
+package com.zitego.markup.tag;
+
+/**
+ * This is the canonical symbol for a tag name. Tag names are case insensitive, so every spelling
+ * of a name that has been interned resolves to the same TagSymbol and symbols can be compared by
+ * identity. Names can be looked up straight from the characters being parsed without creating
+ * a String for them first. Only names that have been interned (such as the tags a factory knows
+ * about) have symbols. Looking up any other name returns null.<br>
+ * <br>
+ * Names are folded to lower case for ascii letters only. That is all that tag names use.
+ *
+ * @author John Glorioso
+ * @version $Id$
+ */
+public final class TagSymbol
+{
+    /** The hash table of symbols. It is replaced rather then changed when a name is interned. */
+    private static volatile TagSymbol[] _table = new TagSymbol[256];
+    /** The number of symbols in the table. */
+    private static int _count = 0;
+
+    /** The lower case name. */
+    private String _name;
+    /** The hash of the name. */
+    private int _hash;
+
+    /**
+     * Creates a new symbol.
+     *
+     * @param name The lower case name.
+     * @param hash The hash of the name.
+     */
+    private TagSymbol(String name, int hash)
+    {
+        _name = name;
+        _hash = hash;
+    }
+
+    /**
+     * Returns the symbol for the given name, creating it if there is not one yet.
+     *
+     * @param name The tag name.
+     * @return TagSymbol
+     * @throws IllegalArgumentException if the name is null or empty.
+     */
+    public static synchronized TagSymbol intern(String name) throws IllegalArgumentException
+    {
+        if (name == null || name.length() == 0) throw new IllegalArgumentException("name cannot be empty");
+        TagSymbol ret = lookup(name);
+        if (ret != null) return ret;
+
+        StringBuffer lower = new StringBuffer( name.length() );
+        for (int i=0; i<name.length(); i++)
+        {
+            lower.append( fold(name.charAt(i)) );
+        }
+        ret = new TagSymbol( lower.toString(), hash(name, 0, name.length()) );
+
+        //Copy the table so that lookups never see it half done
+        TagSymbol[] table = _table;
+        if ( (_count+1)*2 > table.length ) table = new TagSymbol[table.length*2];
+        else table = table.clone();
+        if (table.length != _table.length)
+        {
+            for (int i=0; i<_table.length; i++)
+            {
+                if (_table[i] != null) put(table, _table[i]);
+            }
+        }
+        put(table, ret);
+        _count++;
+        _table = table;
+        return ret;
+    }
+
+    /**
+     * Returns the symbol for the given name or null if it has not been interned.
+     *
+     * @param name The tag name.
+     * @return TagSymbol
+     */
+    public static TagSymbol lookup(String name)
+    {
+        if (name == null) return null;
+        return lookup(name, 0, name.length());
+    }
+
+    /**
+     * Returns the symbol for the name made up of the given range of characters or null
+     * if it has not been interned.
+     *
+     * @param text The text the name is in.
+     * @param start The index of the first character in the name.
+     * @param end The index after the last character in the name.
+     * @return TagSymbol
+     */
+    public static TagSymbol lookup(CharSequence text, int start, int end)
+    {
+        if (text == null || start >= end) return null;
+        TagSymbol[] table = _table;
+        int hash = hash(text, start, end);
+        for (int i=hash & (table.length-1); table[i] != null; i=(i+1) & (table.length-1))
+        {
+            if ( table[i]._hash == hash && table[i].matches(text, start, end) ) return table[i];
+        }
+        return null;
+    }
+
+    /**
+     * Returns whether the given range of characters is this name, ignoring case.
+     *
+     * @param text The text the name is in.
+     * @param start The index of the first character in the name.
+     * @param end The index after the last character in the name.
+     * @return boolean
+     */
+    public boolean matches(CharSequence text, int start, int end)
+    {
+        if (end-start != _name.length()) return false;
+        for (int i=start; i<end; i++)
+        {
+            if ( fold(text.charAt(i)) != _name.charAt(i-start) ) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether the given range of characters is this name in the same case.
+     *
+     * @param text The text the name is in.
+     * @param start The index of the first character in the name.
+     * @param end The index after the last character in the name.
+     * @return boolean
+     */
+    public boolean isSpelledBy(CharSequence text, int start, int end)
+    {
+        if (end-start != _name.length()) return false;
+        for (int i=start; i<end; i++)
+        {
+            if ( text.charAt(i) != _name.charAt(i-start) ) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the name in lower case. The same String is always returned.
+     *
+     * @return String
+     */
+    public String getName()
+    {
+        return _name;
+    }
+
+    public int hashCode()
+    {
+        return _hash;
+    }
+
+    public String toString()
+    {
+        return _name;
+    }
+
+    /**
+     * Adds the symbol to the given table.
+     *
+     * @param table The table.
+     * @param symbol The symbol.
+     */
+    private static void put(TagSymbol[] table, TagSymbol symbol)
+    {
+        int i = symbol._hash & (table.length-1);
+        while (table[i] != null)
+        {
+            i = (i+1) & (table.length-1);
+        }
+        table[i] = symbol;
+    }
+
+    /**
+     * Returns the case insensitive hash of the given range of characters.
+     *
+     * @param text The text.
+     * @param start The start index.
+     * @param end The end index.
+     * @return int
+     */
+    private static int hash(CharSequence text, int start, int end)
+    {
+        int hash = 0;
+        for (int i=start; i<end; i++)
+        {
+            hash = 31*hash + fold( text.charAt(i) );
+        }
+        //Spread the bits so that short names do not all land together
+        return hash ^ (hash >>> 16) ^ (hash >>> 7);
+    }
+
+    /**
+     * Returns the given character in lower case if it is an ascii letter.
+     *
+     * @param c The character.
+     * @return char
+     */
+    private static char fold(char c)
+    {
+        return ( c >= 'A' && c <= 'Z' ? (char)(c + ('a'-'A')) : c );
+    }
+}
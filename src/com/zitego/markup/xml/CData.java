@@ -2,7 +2,6 @@ package com.zitego.markup.xml;
 
 import com.zitego.markup.*;
 import com.zitego.format.*;
-import com.zitego.util.TextUtils;
 import org.w3c.dom.CDATASection;
 
 /**
@@ -52,19 +51,19 @@ public class CData extends TextContent
     /**
      * Parses the given string and sets the text until it reaches the ]]> characters.
      *
-     * @param StringBuffer The text.
+     * @param ParseCursor The text.
      * @param FormatType The format type.
      * @throws IllegalMarkupException if the text is invalid.
      * @throws UnsupportedFormatException if the format is not supported.
      */
-    public void parseText(StringBuffer text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
+    public void parseText(ParseCursor text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
     {
-        setText( TextUtils.getTextUpTo(text, SUFFIX) );
+        setText( text.getTextUpTo(SUFFIX) );
     }
 
     public void parse(Object objToParse, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
     {
-        if (objToParse instanceof CDATASection) parseText( new StringBuffer(((CDATASection)objToParse).getNodeValue()), type );
+        if (objToParse instanceof CDATASection) parseText( new ParseCursor(((CDATASection)objToParse).getNodeValue()), type );
         else super.parse(objToParse, type);
     }
 }
\ No newline at end of file
@@ -4,6 +4,7 @@ import com.zitego.markup.TextContent;
 import com.zitego.markup.MarkupContent;
 import com.zitego.markup.MarkupBody;
 import com.zitego.markup.IllegalMarkupException;
+import com.zitego.markup.ParseCursor;
 import com.zitego.markup.tag.MarkupTag;
 import com.zitego.format.FormatType;
 import com.zitego.format.UnsupportedFormatException;
@@ -108,7 +109,7 @@ public class XmlTag extends MarkupTag implements XmlConverter
         return _validateXml;
     }
 
-    public void parseText(StringBuffer text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
+    public void parseText(ParseCursor text, FormatType type) throws IllegalMarkupException, UnsupportedFormatException
     {
         if (text == null) return;
         if (type != FormatType.XML) throw new UnsupportedFormatException("Illegal format type: "+type);
@@ -193,13 +194,24 @@ public class XmlTag extends MarkupTag implements XmlConverter
 
     /**
      * Returns the first occurrence of an XmlTag by traversing the document
-     * from top down.
+     * from top down. If the document is indexed, the tag is found from the
+     * index instead.
      *
      * @param tag The tag name.
      * @return XmlTag
      */
     public XmlTag getFirstOccurrenceOf(String tag)
     {
+        if ( isIndexing() )
+        {
+            Vector found = getTagsByName(tag);
+            int size = found.size();
+            for (int i=0; i<size; i++)
+            {
+                if (found.get(i) instanceof XmlTag) return (XmlTag)found.get(i);
+            }
+            return null;
+        }
         if ( getTagName().equalsIgnoreCase(tag) ) return this;
         int size = getBodySize();
         for (int i=0; i<size; i++)